@@ -0,0 +1,294 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.denovogui.io.ModificationRemapper;
+import com.compomics.denovogui.io.SpectrumIndex;
+import com.compomics.denovogui.workload.WorkloadGenerator;
+import com.compomics.util.db.ObjectsCache;
+import com.compomics.util.experiment.identification.Identification;
+import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.identification.identifications.Ms2Identification;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.identification.spectrum_assumptions.TagAssumption;
+import com.compomics.util.experiment.io.identifications.IdfileReader;
+import com.compomics.util.experiment.io.identifications.IdfileReaderFactory;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import com.compomics.util.preferences.SequenceMatchingPreferences;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * Creates the input files of the benchmarks. The spectra are either
+ * synthetic or copies of the spectra of the example dataset, the results are
+ * synthetic results in the PepNovo+ and Novor formats.
+ *
+ * @author Marc Vaudel
+ */
+public class BenchmarkData {
+
+    /**
+     * The system property giving the folder of the example dataset.
+     */
+    public static final String DATASET_PROPERTY = "denovogui.dataset";
+    /**
+     * The default folder of the example dataset, relative to the benchmark
+     * module.
+     */
+    public static final String DEFAULT_DATASET_FOLDER = "../example_dataset";
+    /**
+     * The name of the example spectrum file.
+     */
+    public static final String EXAMPLE_MGF = "Ecoli_30.mgf";
+    /**
+     * The name of the example parameters file.
+     */
+    public static final String EXAMPLE_PARAMETERS = "denovo.par";
+    /**
+     * Source of synthetic spectra.
+     */
+    public static final String SYNTHETIC = "synthetic";
+    /**
+     * Source of spectra copied from the example dataset.
+     */
+    public static final String EXAMPLE = "example";
+    /**
+     * The seed of the random generator so that all runs use the same data.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * Empty default constructor.
+     */
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns the folder of the example dataset.
+     *
+     * @return the folder of the example dataset
+     */
+    public static File getDatasetFolder() {
+        return new File(System.getProperty(DATASET_PROPERTY, DEFAULT_DATASET_FOLDER));
+    }
+
+    /**
+     * Returns the search parameters of the example dataset.
+     *
+     * @return the search parameters of the example dataset
+     *
+     * @throws IOException thrown if the parameters cannot be read
+     * @throws ClassNotFoundException thrown if the parameters cannot be
+     * deserialized
+     */
+    public static SearchParameters getSearchParameters() throws IOException, ClassNotFoundException {
+        return SearchParameters.getIdentificationParameters(new File(getDatasetFolder(), EXAMPLE_PARAMETERS));
+    }
+
+    /**
+     * Writes an mgf file of the given number of spectra from the given
+     * source.
+     *
+     * @param mgfFile the mgf file to write
+     * @param source the source of the spectra, SYNTHETIC or EXAMPLE
+     * @param nSpectra the number of spectra
+     * @param nPeaks the average number of peaks per synthetic spectrum
+     *
+     * @throws IOException thrown if a file cannot be read or written
+     */
+    public static void writeMgf(File mgfFile, String source, int nSpectra, int nPeaks) throws IOException {
+        if (EXAMPLE.equals(source)) {
+            writeExampleMgf(mgfFile, nSpectra);
+        } else if (SYNTHETIC.equals(source)) {
+            writeSyntheticMgf(mgfFile, nSpectra, nPeaks);
+        } else {
+            throw new IllegalArgumentException("Spectrum source " + source + " not recognized.");
+        }
+    }
+
+    /**
+     * Writes an mgf file of synthetic spectra.
+     *
+     * @param mgfFile the mgf file to write
+     * @param nSpectra the number of spectra
+     * @param nPeaks the average number of peaks per spectrum
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public static void writeSyntheticMgf(File mgfFile, int nSpectra, int nPeaks) throws IOException {
+        WorkloadGenerator workloadGenerator = new WorkloadGenerator(SEED);
+        workloadGenerator.setNPeaks(nPeaks);
+        workloadGenerator.writeMgf(mgfFile, nSpectra);
+    }
+
+    /**
+     * Writes an mgf file made of copies of the spectra of the example
+     * dataset. The titles of the copies are made unique.
+     *
+     * @param mgfFile the mgf file to write
+     * @param nSpectra the number of spectra
+     *
+     * @throws IOException thrown if a file cannot be read or written
+     */
+    public static void writeExampleMgf(File mgfFile, int nSpectra) throws IOException {
+        File exampleFile = new File(getDatasetFolder(), EXAMPLE_MGF);
+        ArrayList<String> lines = new ArrayList<String>();
+        BufferedReader br = new BufferedReader(new FileReader(exampleFile));
+        try {
+            String line;
+            boolean inSpectrum = false;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("BEGIN IONS")) {
+                    inSpectrum = true;
+                }
+                if (inSpectrum) {
+                    lines.add(line);
+                }
+            }
+        } finally {
+            br.close();
+        }
+        BufferedWriter bw = new BufferedWriter(new FileWriter(mgfFile));
+        try {
+            int spectrumCount = 0, copy = 0;
+            while (spectrumCount < nSpectra) {
+                for (String line : lines) {
+                    if (line.startsWith("TITLE=")) {
+                        line = line + " copy " + copy;
+                    }
+                    bw.write(line);
+                    bw.newLine();
+                    if (line.startsWith("END IONS") && ++spectrumCount == nSpectra) {
+                        break;
+                    }
+                }
+                copy++;
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Writes synthetic PepNovo+ results for the spectra of the given mgf
+     * file.
+     *
+     * @param mgfFile the mgf file
+     * @param outFile the PepNovo+ out file to write
+     * @param nSolutions the number of solutions per spectrum
+     *
+     * @throws IOException thrown if a file cannot be read or written
+     */
+    public static void writePepNovoOut(File mgfFile, File outFile, int nSolutions) throws IOException {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outFile));
+        try {
+            new WorkloadGenerator(SEED).writePepNovoResults(SpectrumIndex.index(mgfFile), bw, nSolutions, 0);
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Writes synthetic Novor results for the spectra of the given mgf file.
+     *
+     * @param mgfFile the mgf file
+     * @param csvFile the Novor csv file to write
+     *
+     * @throws IOException thrown if a file cannot be read or written
+     */
+    public static void writeNovorCsv(File mgfFile, File csvFile) throws IOException {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(csvFile));
+        try {
+            new WorkloadGenerator(SEED).writeNovorResults(SpectrumIndex.index(mgfFile), mgfFile.getName(), bw, 0);
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Parses the spectrum matches of a result file. The spectra of the
+     * result file must be loaded in the spectrum factory.
+     *
+     * @param resultFile the result file
+     * @param searchParameters the search parameters
+     *
+     * @return the spectrum matches
+     *
+     * @throws Exception thrown if the file cannot be parsed
+     */
+    public static LinkedList<SpectrumMatch> parse(File resultFile, SearchParameters searchParameters) throws Exception {
+        IdfileReader idfileReader = IdfileReaderFactory.getInstance().getFileReader(resultFile);
+        try {
+            return idfileReader.getAllSpectrumMatches(new WaitingHandlerCLIImpl(), searchParameters);
+        } finally {
+            idfileReader.close();
+        }
+    }
+
+    /**
+     * Remaps the modifications of the spectrum matches like when importing
+     * the results in the GUI.
+     *
+     * @param spectrumMatches the spectrum matches
+     * @param searchParameters the search parameters
+     * @param sequenceMatchingPreferences the sequence matching preferences
+     */
+    public static void remapModifications(LinkedList<SpectrumMatch> spectrumMatches, SearchParameters searchParameters,
+            SequenceMatchingPreferences sequenceMatchingPreferences) {
+        for (SpectrumMatch spectrumMatch : spectrumMatches) {
+            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
+            for (int advocate : assumptionsMap.keySet()) {
+                HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> assumptions = assumptionsMap.get(advocate);
+                for (double score : assumptions.keySet()) {
+                    for (SpectrumIdentificationAssumption assumption : assumptions.get(score)) {
+                        if (assumption instanceof TagAssumption) {
+                            ModificationRemapper.remapModifications((TagAssumption) assumption, advocate, searchParameters,
+                                    sequenceMatchingPreferences, spectrumMatch.getKey());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates an identification containing the given spectrum matches.
+     *
+     * @param spectrumMatches the spectrum matches
+     * @param dbFolder the folder where to store the identification database
+     *
+     * @return the identification
+     *
+     * @throws Exception thrown if the identification database cannot be
+     * created
+     */
+    public static Identification createIdentification(LinkedList<SpectrumMatch> spectrumMatches, File dbFolder) throws Exception {
+        Identification identification = new Ms2Identification(Identification.getDefaultReference("DeNovoGUI benchmark", "sample reference", 0));
+        ObjectsCache objectsCache = new ObjectsCache();
+        objectsCache.setAutomatedMemoryManagement(true);
+        identification.establishConnection(dbFolder.getAbsolutePath(), true, objectsCache);
+        identification.addSpectrumMatches(spectrumMatches);
+        return identification;
+    }
+
+    /**
+     * Deletes a folder and its content.
+     *
+     * @param folder the folder
+     */
+    public static void delete(File folder) {
+        File[] files = folder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                delete(file);
+            }
+        }
+        folder.delete();
+    }
+}
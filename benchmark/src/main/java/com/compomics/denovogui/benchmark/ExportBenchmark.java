@@ -0,0 +1,61 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.denovogui.io.TextExporter;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the text exports of the results.
+ *
+ * @author Marc Vaudel
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ExportBenchmark {
+
+    /**
+     * Exports the peptides.
+     *
+     * @param state the identification to export
+     *
+     * @throws Exception thrown if the export fails
+     */
+    @Benchmark
+    public void exportPeptides(IdentificationState state) throws Exception {
+        TextExporter.exportPeptides(new File(state.folder, "peptides.txt"), state.identification, state.searchParameters, null, null, true, null);
+    }
+
+    /**
+     * Exports the tags.
+     *
+     * @param state the identification to export
+     *
+     * @throws Exception thrown if the export fails
+     */
+    @Benchmark
+    public void exportTags(IdentificationState state) throws Exception {
+        TextExporter.exportTags(new File(state.folder, "tags.txt"), state.identification, state.searchParameters, null, null, true, null);
+    }
+
+    /**
+     * Exports the matches in the BLAST format.
+     *
+     * @param state the identification to export
+     *
+     * @throws Exception thrown if the export fails
+     */
+    @Benchmark
+    public void exportBlastPSMs(IdentificationState state) throws Exception {
+        TextExporter.exportBlastPSMs(new File(state.folder, "blast.txt"), state.identification, state.searchParameters, null, null, true, null);
+    }
+}
@@ -0,0 +1,219 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.denovogui.io.FileProcessor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the chunking of the mgf files and the merging of the PepNovo+
+ * results of the chunks.
+ *
+ * @author Marc Vaudel
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileProcessorBenchmark {
+
+    /**
+     * The spectrum file to chunk.
+     */
+    @State(Scope.Benchmark)
+    public static class ChunkState {
+
+        /**
+         * The source of the spectra.
+         */
+        @Param({BenchmarkData.SYNTHETIC, BenchmarkData.EXAMPLE})
+        public String source;
+        /**
+         * The number of spectra.
+         */
+        @Param({"10000"})
+        public int nSpectra;
+        /**
+         * The number of peaks per synthetic spectrum.
+         */
+        @Param({"200"})
+        public int nPeaks;
+        /**
+         * The number of chunks.
+         */
+        @Param({"8"})
+        public int nChunks;
+        /**
+         * The temporary folder.
+         */
+        public File folder;
+        /**
+         * The mgf file.
+         */
+        public File mgfFile;
+        /**
+         * The chunks of the last invocation.
+         */
+        public ArrayList<File> chunks;
+
+        /**
+         * Writes the mgf file.
+         *
+         * @throws IOException thrown if the file cannot be written
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            folder = Files.createTempDirectory("denovogui_benchmark").toFile();
+            mgfFile = new File(folder, "benchmark.mgf");
+            BenchmarkData.writeMgf(mgfFile, source, nSpectra, nPeaks);
+        }
+
+        /**
+         * Deletes the chunks of the last invocation.
+         */
+        @TearDown(Level.Invocation)
+        public void deleteChunks() {
+            if (chunks != null) {
+                for (File chunk : chunks) {
+                    chunk.delete();
+                }
+                chunks = null;
+            }
+        }
+
+        /**
+         * Deletes the temporary folder.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            BenchmarkData.delete(folder);
+        }
+    }
+
+    /**
+     * The PepNovo+ results of the chunks to merge.
+     */
+    @State(Scope.Benchmark)
+    public static class MergeState {
+
+        /**
+         * The source of the spectra.
+         */
+        @Param({BenchmarkData.SYNTHETIC, BenchmarkData.EXAMPLE})
+        public String source;
+        /**
+         * The number of spectra.
+         */
+        @Param({"10000"})
+        public int nSpectra;
+        /**
+         * The number of chunks.
+         */
+        @Param({"8"})
+        public int nChunks;
+        /**
+         * The number of solutions per spectrum.
+         */
+        @Param({"10"})
+        public int nSolutions;
+        /**
+         * The temporary folder.
+         */
+        public File folder;
+        /**
+         * The results of the chunks, kept as templates since the merging
+         * deletes the merged files.
+         */
+        public ArrayList<File> templates = new ArrayList<File>();
+        /**
+         * The results of the chunks to merge in the next invocation.
+         */
+        public ArrayList<File> outFiles = new ArrayList<File>();
+
+        /**
+         * Writes the results of the chunks.
+         *
+         * @throws IOException thrown if a file cannot be written
+         */
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            folder = Files.createTempDirectory("denovogui_benchmark").toFile();
+            File templateFolder = new File(folder, "templates");
+            templateFolder.mkdir();
+            File mgfFile = new File(folder, "benchmark.mgf");
+            BenchmarkData.writeMgf(mgfFile, source, nSpectra, 50);
+            ArrayList<File> chunks = FileProcessor.chunkFile(mgfFile, nSpectra / nChunks, nSpectra % nChunks, nSpectra, null);
+            for (File chunk : chunks) {
+                File template = new File(templateFolder, chunk.getName() + ".out");
+                BenchmarkData.writePepNovoOut(chunk, template, nSolutions);
+                templates.add(template);
+                outFiles.add(new File(folder, template.getName()));
+                chunk.delete();
+            }
+        }
+
+        /**
+         * Copies the results of the chunks before every merge.
+         *
+         * @throws IOException thrown if a file cannot be copied
+         */
+        @Setup(Level.Invocation)
+        public void copyResults() throws IOException {
+            for (int i = 0; i < templates.size(); i++) {
+                Files.copy(templates.get(i).toPath(), outFiles.get(i).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        /**
+         * Deletes the temporary folder.
+         */
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            BenchmarkData.delete(folder);
+        }
+    }
+
+    /**
+     * Chunks the mgf file like before running PepNovo+.
+     *
+     * @param state the state
+     *
+     * @return the chunks
+     *
+     * @throws IOException thrown if a file cannot be read or written
+     */
+    @Benchmark
+    public ArrayList<File> chunkFile(ChunkState state) throws IOException {
+        state.chunks = FileProcessor.chunkFile(state.mgfFile, state.nSpectra / state.nChunks, state.nSpectra % state.nChunks, state.nSpectra, null);
+        return state.chunks;
+    }
+
+    /**
+     * Merges the PepNovo+ results of the chunks.
+     *
+     * @param state the state
+     *
+     * @throws IOException thrown if a file cannot be read or written
+     */
+    @Benchmark
+    public void mergeAndDeleteOutputFiles(MergeState state) throws IOException {
+        FileProcessor.mergeAndDeleteOutputFiles(state.outFiles);
+    }
+}
@@ -0,0 +1,119 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.util.db.DerbyUtil;
+import com.compomics.util.experiment.identification.Identification;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import com.compomics.util.preferences.SequenceMatchingPreferences;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * An identification made of synthetic PepNovo+ tags and Novor peptides for
+ * the spectra of a generated mgf file, loaded like in the results frame.
+ *
+ * @author Marc Vaudel
+ */
+@State(Scope.Benchmark)
+public class IdentificationState {
+
+    /**
+     * The source of the spectra.
+     */
+    @Param({BenchmarkData.SYNTHETIC, BenchmarkData.EXAMPLE})
+    public String source;
+    /**
+     * The number of spectra.
+     */
+    @Param({"20000"})
+    public int nSpectra;
+    /**
+     * The number of PepNovo+ solutions per spectrum.
+     */
+    @Param({"10"})
+    public int nSolutions;
+    /**
+     * The temporary folder.
+     */
+    public File folder;
+    /**
+     * The mgf file.
+     */
+    public File mgfFile;
+    /**
+     * The PepNovo+ results.
+     */
+    public File pepNovoFile;
+    /**
+     * The Novor results.
+     */
+    public File novorFile;
+    /**
+     * The search parameters.
+     */
+    public SearchParameters searchParameters;
+    /**
+     * The sequence matching preferences.
+     */
+    public SequenceMatchingPreferences sequenceMatchingPreferences;
+    /**
+     * The identification.
+     */
+    public Identification identification;
+
+    /**
+     * Writes the spectra and results, loads the spectra in the spectrum
+     * factory and imports the results in the identification.
+     *
+     * @throws Exception thrown if the data cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        folder = Files.createTempDirectory("denovogui_benchmark").toFile();
+        mgfFile = new File(folder, "benchmark.mgf");
+        BenchmarkData.writeMgf(mgfFile, source, nSpectra, 100);
+        pepNovoFile = FileProcessor.getOutFile(folder, mgfFile);
+        BenchmarkData.writePepNovoOut(mgfFile, pepNovoFile, nSolutions);
+        novorFile = FileProcessor.getNovorResultFile(folder, mgfFile);
+        BenchmarkData.writeNovorCsv(mgfFile, novorFile);
+
+        SpectrumFactory.getInstance().addSpectra(mgfFile, new WaitingHandlerCLIImpl());
+        searchParameters = BenchmarkData.getSearchParameters();
+        sequenceMatchingPreferences = SequenceMatchingPreferences.getDefaultSequenceMatching();
+
+        File dbFolder = new File(folder, "matches");
+        dbFolder.mkdir();
+        LinkedList<SpectrumMatch> spectrumMatches = new LinkedList<SpectrumMatch>();
+        for (File resultFile : new File[]{pepNovoFile, novorFile}) {
+            LinkedList<SpectrumMatch> fileMatches = BenchmarkData.parse(resultFile, searchParameters);
+            BenchmarkData.remapModifications(fileMatches, searchParameters, sequenceMatchingPreferences);
+            spectrumMatches.addAll(fileMatches);
+        }
+        identification = BenchmarkData.createIdentification(spectrumMatches, dbFolder);
+    }
+
+    /**
+     * Closes the identification and the spectrum factory and deletes the
+     * temporary folder.
+     *
+     * @throws Exception thrown if the identification cannot be closed
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        identification.close();
+        DerbyUtil.closeConnection();
+        SpectrumFactory.getInstance().closeFiles();
+        SpectrumFactory.getInstance().clearFactory();
+        BenchmarkData.delete(folder);
+    }
+}
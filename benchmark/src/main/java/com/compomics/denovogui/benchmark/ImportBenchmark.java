@@ -0,0 +1,66 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the remapping of the modifications done when importing the
+ * results in the results frame.
+ *
+ * @author Marc Vaudel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1)
+@Measurement(iterations = 10, batchSize = 1)
+@Fork(1)
+public class ImportBenchmark {
+
+    /**
+     * The spectrum matches to remap, parsed again before every invocation
+     * since the remapping modifies them.
+     */
+    @State(Scope.Benchmark)
+    public static class MatchesState {
+
+        /**
+         * The spectrum matches.
+         */
+        public LinkedList<SpectrumMatch> spectrumMatches;
+
+        /**
+         * Parses the PepNovo+ results.
+         *
+         * @param identificationState the data of the identification
+         *
+         * @throws Exception thrown if the results cannot be parsed
+         */
+        @Setup(Level.Invocation)
+        public void setUp(IdentificationState identificationState) throws Exception {
+            spectrumMatches = BenchmarkData.parse(identificationState.pepNovoFile, identificationState.searchParameters);
+        }
+    }
+
+    /**
+     * Remaps the modifications of the PepNovo+ tags.
+     *
+     * @param state the spectrum matches
+     * @param identificationState the data of the identification
+     */
+    @Benchmark
+    public void remapModifications(MatchesState state, IdentificationState identificationState) {
+        BenchmarkData.remapModifications(state.spectrumMatches, identificationState.searchParameters, identificationState.sequenceMatchingPreferences);
+    }
+}
@@ -0,0 +1,71 @@
+package com.compomics.denovogui.benchmark;
+
+import com.compomics.denovogui.gui.tablemodels.SpectrumTableModel;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the filling of the spectrum table of the results frame over a
+ * large identification, all cells being read like when scrolling through the
+ * table.
+ *
+ * @author Marc Vaudel
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class SpectrumTableBenchmark {
+
+    /**
+     * The table model.
+     */
+    @State(Scope.Benchmark)
+    public static class TableState {
+
+        /**
+         * The table model.
+         */
+        public SpectrumTableModel tableModel;
+
+        /**
+         * Creates the table model.
+         *
+         * @param identificationState the identification displayed
+         */
+        @Setup(Level.Trial)
+        public void setUp(IdentificationState identificationState) {
+            tableModel = new SpectrumTableModel(identificationState.mgfFile.getName(), identificationState.identification, null);
+        }
+    }
+
+    /**
+     * Reads all cells of the spectrum table.
+     *
+     * @param state the table model
+     * @param blackhole the black hole consuming the values
+     */
+    @Benchmark
+    public void getValueAt(TableState state, Blackhole blackhole) {
+        SpectrumTableModel tableModel = state.tableModel;
+        int nRows = tableModel.getRowCount();
+        int nColumns = tableModel.getColumnCount();
+        for (int row = 0; row < nRows; row++) {
+            for (int column = 0; column < nColumns; column++) {
+                blackhole.consume(tableModel.getValueAt(row, column));
+            }
+        }
+    }
+}
@@ -1,20 +1,38 @@
 package com.compomics.denovogui;
 
+import com.compomics.denovogui.execution.InProcessRunner;
 import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.execution.JobFactory;
+import com.compomics.denovogui.execution.JobSupervisor;
+import com.compomics.denovogui.execution.ResourceMonitor;
+import com.compomics.denovogui.execution.RunMetrics;
+import com.compomics.denovogui.execution.RunPlan;
 import com.compomics.denovogui.execution.jobs.DirecTagJob;
 import com.compomics.denovogui.execution.jobs.NovorJob;
 import com.compomics.denovogui.execution.jobs.PNovoJob;
 import com.compomics.denovogui.execution.jobs.PepNovoJob;
 import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.MgfIndexer;
+import com.compomics.denovogui.io.PeakPreprocessor;
 import com.compomics.denovogui.io.PepNovoModificationFile;
+import com.compomics.denovogui.io.SessionFolder;
+import com.compomics.denovogui.io.ShardSet;
+import com.compomics.denovogui.io.SpectrumCascade;
+import com.compomics.denovogui.io.SpectrumBatch;
+import com.compomics.denovogui.io.SpectrumClusterer;
+import com.compomics.denovogui.io.SpectrumIndex;
+import com.compomics.denovogui.io.SpectrumRouter;
+import com.compomics.denovogui.io.SpectrumSampler;
+import com.compomics.denovogui.io.CompressedMgfFile;
+import com.compomics.denovogui.io.XmlSpectrumFile;
 import com.compomics.denovogui.util.Properties;
 import com.compomics.software.CompomicsWrapper;
+import com.compomics.util.Util;
 import com.compomics.util.exceptions.ExceptionHandler;
 import com.compomics.util.experiment.biology.PTMFactory;
 import com.compomics.util.experiment.identification.Advocate;
 import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
 import com.compomics.util.experiment.identification.identification_parameters.tool_specific.PepnovoParameters;
-import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
 import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
 import com.compomics.util.preferences.UtilitiesUserPreferences;
 import com.compomics.util.waiting.Duration;
@@ -22,18 +40,18 @@ import com.compomics.util.waiting.WaitingHandler;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.swing.JOptionPane;
 
 /**
  * This handle the searches with the search parameters taken from the GUI or the
- * command line.
+ * command line. The state of every run is kept in its own session so that
+ * several runs can be started concurrently on the same handler.
  *
  * @author Marc Vaudel
  * @author Thilo Muth
@@ -58,25 +76,78 @@ public class DeNovoSequencingHandler {
      */
     private File novorFolder;
     /**
-     * If true, PepNovo will be run.
+     * If true, near-identical spectra are clustered and only one
+     * representative per cluster is sequenced.
      */
-    private boolean enablePepNovo = true;
+    private boolean clusterSpectra = false;
     /**
-     * If true, DirecTag will be used.
+     * The minimal cosine similarity for two spectra to be clustered.
      */
-    private boolean enableDirecTag = true;
+    private double clusteringSimilarity = 0.9;
     /**
-     * If true, pNovo+ will be run.
+     * The width of the m/z bins used to compare spectra when clustering.
      */
-    private boolean enablePNovo = false;
+    private double clusteringBinSize = 1.0005;
     /**
-     * If true, Novor will be run.
+     * If true, Novor is run in the DeNovoGUI process instead of a separate
+     * Java process.
      */
-    private boolean enableNovor = false;
+    private boolean novorInProcess = false;
+    /**
+     * The mgf files with less spectra than this number are sequenced together
+     * in batches of at least this number of spectra, 0 to sequence every file
+     * separately.
+     */
+    private int batchSize = 0;
+    /**
+     * The peak preprocessing of the spectra of every algorithm, indexed by
+     * the name of the algorithm on the command line: pepnovo, directag, pnovo
+     * or novor. The spectra of the algorithms without preprocessing are
+     * sequenced as they are.
+     */
+    private HashMap<String, PeakPreprocessor> peakPreprocessors = new HashMap<String, PeakPreprocessor>();
+    /**
+     * The score thresholds of the sequencing cascade, indexed by the name of
+     * the algorithm on the command line: novor or pepnovo. The spectra
+     * confidently sequenced by one of these algorithms are not sequenced by
+     * the following algorithms. Empty to sequence all spectra with every
+     * algorithm.
+     */
+    private HashMap<String, Double> cascadeThresholds = new HashMap<String, Double>();
+    /**
+     * The routing of the spectra to the algorithms according to their
+     * characteristics, null to sequence all spectra with every algorithm.
+     */
+    private SpectrumRouter spectrumRouter = null;
+    /**
+     * The plan of the run estimated on a sample of the spectra, used to
+     * estimate the duration of the first jobs, null if not available.
+     */
+    private RunPlan runPlan = null;
     /**
      * Default PTM selection.
      */
     public static final String DENOVOGUI_COMFIGURATION_FILE = "DeNovoGUI_configuration.txt";
+    /**
+     * The folder of the session folder where the shards of the spectrum
+     * files are written.
+     */
+    public static final String SPECTRUM_CHUNKS_FOLDER = "spectrum_chunks";
+    /**
+     * The folder of the session folder where the preprocessed spectra of
+     * every algorithm are written.
+     */
+    public static final String PREPROCESSED_SPECTRA_FOLDER = "preprocessed_spectra";
+    /**
+     * The folder of the session folder where the spectra selected for every
+     * algorithm by the routing and the cascade are written.
+     */
+    public static final String SELECTED_SPECTRA_FOLDER = "selected_spectra";
+    /**
+     * The folder of the session folder where the sample of the spectra used
+     * to plan a run is sequenced.
+     */
+    public static final String PLAN_FOLDER = "plan";
     /**
      * Modification file.
      */
@@ -90,29 +161,35 @@ public class DeNovoSequencingHandler {
      */
     private static String ENZYME_FILE = "resources/conf/enzymes.xml";
     /**
-     * The chunk files.
+     * Number of threads to use for the processing.
      */
-    private ArrayList<File> chunkFiles;
+    private int nThreads = ResourceMonitor.getCpuLimit(); // @TODO: should be moved to user preferences?
     /**
-     * Number of threads to use for the processing.
+     * The memory in bytes estimated to be used by a PepNovo+ job.
      */
-    private int nThreads = Runtime.getRuntime().availableProcessors(); // @TODO: should be moved to user preferences?
+    private static final long PEPNOVO_JOB_MEMORY = 256L * 1024 * 1024;
     /**
-     * The thread executor.
+     * The memory in bytes estimated to be used by a pNovo+ job.
      */
-    private ExecutorService threadExecutor = null;
+    private static final long PNOVO_JOB_MEMORY = 1024L * 1024 * 1024;
     /**
-     * The spectrum factory.
+     * The monitor of the resources of the machine, null to use nThreads
+     * whatever the load of the machine.
      */
-    private SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
+    private ResourceMonitor resourceMonitor = null;
     /**
-     * The job queue.
+     * Time in milliseconds after which a job is considered as hanging when its
+     * duration cannot be estimated yet.
      */
-    private Deque<Job> jobs;
+    private long jobTimeout = 12 * 60 * 60 * 1000L;
     /**
-     * The exception handler.
+     * If true, slow jobs are speculatively started again on idle threads.
      */
-    private ExceptionHandler exceptionHandler;
+    private boolean speculativeExecution = false;
+    /**
+     * The sessions of the sequencing runs in progress.
+     */
+    private final CopyOnWriteArrayList<SequencingSession> sessions = new CopyOnWriteArrayList<SequencingSession>();
     /**
      * The factory used to handle the modifications.
      */
@@ -135,7 +212,8 @@ public class DeNovoSequencingHandler {
 
     /**
      * Starts the sequencing for a list of files which will be processed
-     * sequentially.
+     * sequentially. The method can be called concurrently, for example with
+     * different search parameters, every run having its own session.
      *
      * @param spectrumFiles the spectrum files to process
      * @param searchParameters the search parameters
@@ -153,109 +231,481 @@ public class DeNovoSequencingHandler {
      * @param exceptionHandler the exception handler to use when an exception is
      * caught
      *
+     * @return the metrics of the run, null if the run could not be started
+     *
      * @throws IOException thrown if there is an IO issue
      * @throws ClassNotFoundException thrown if the search parameters cannot be
      * processed from file
      */
-    public void startSequencing(List<File> spectrumFiles, SearchParameters searchParameters, File outputFolder, File searchParametersFile, String pepNovoExeTitle, String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle,
+    public RunMetrics startSequencing(List<File> spectrumFiles, SearchParameters searchParameters, File outputFolder, File searchParametersFile, String pepNovoExeTitle, String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle,
             boolean enablePepNovo, boolean enableDirecTag, boolean enablePNovo, boolean enableNovor, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) throws IOException, ClassNotFoundException {
 
-        this.enablePepNovo = enablePepNovo;
-        this.enableDirecTag = enableDirecTag;
-        this.enablePNovo = enablePNovo;
-        this.enableNovor = enableNovor;
-        this.exceptionHandler = exceptionHandler;
+        // the state and the settings of the run are kept in its own session so that several runs can share the handler
+        SequencingSession session = createSession(enablePepNovo, enableDirecTag, enablePNovo, enableNovor, waitingHandler, exceptionHandler);
+        runSequencing(session, spectrumFiles, searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle);
+
+        if (!waitingHandler.isRunCanceled()) {
+
+            // make sure that the ptm mappings are saved, also for novor and pnovo
+            saveSearchParameters(searchParameters, searchParametersFile);
+
+            // check if we have any output files
+            ArrayList<File> resultFiles = FileProcessor.getAllResultFiles(outputFolder, FileProcessor.getResultSpectrumFiles(spectrumFiles, outputFolder), enablePepNovo, enableDirecTag, enablePNovo, enableNovor);
+
+            if (resultFiles.isEmpty()) {
+                waitingHandler.appendReportEndLine();
+                waitingHandler.appendReport("The de novo sequencing did not generate any output files!", true, true);
+                waitingHandler.setRunCanceled();
+            } else {
+                waitingHandler.setRunFinished();
+            }
+        }
+
+        return session.runMetrics;
+    }
+
+    /**
+     * Stores the PepNovo+ to utilities PTM mapping in the search parameters
+     * and saves them to the given file so that the results can be imported
+     * with the modifications used for the sequencing.
+     *
+     * @param searchParameters the search parameters
+     * @param searchParametersFile the file where to save the search
+     * parameters, ignored if null
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public static void saveSearchParameters(SearchParameters searchParameters, File searchParametersFile) throws IOException {
+        PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(Advocate.pepnovo.getIndex());
+        pepnovoParameters.setPepNovoPtmMap(PepNovoModificationFile.getInvertedModIdMap());
+        if (searchParametersFile != null) {
+            SearchParameters.saveIdentificationParameters(searchParameters, searchParametersFile);
+        }
+    }
+
+    /**
+     * Sequences the given spectrum files in the given session. The progress
+     * and the report are given in the waiting handler of the session, the run
+     * is neither marked as finished nor are the results checked.
+     *
+     * @param session the sequencing session
+     * @param spectrumFiles the spectrum files to process
+     * @param searchParameters the search parameters
+     * @param outputFolder the output folder
+     * @param pepNovoExeTitle the name of the PepNovo+ executable
+     * @param direcTagExeTitle the name of the DirecTag executable
+     * @param pNovoExeTitle the name of the pNovo+ executable
+     * @param novorExeTitle the name of the Novor executable
+     *
+     * @throws IOException thrown if there is an IO issue
+     * @throws ClassNotFoundException thrown if the user preferences cannot be
+     * processed from file
+     */
+    private void runSequencing(SequencingSession session, List<File> spectrumFiles, SearchParameters searchParameters, File outputFolder, String pepNovoExeTitle,
+            String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle) throws IOException, ClassNotFoundException {
+
+        WaitingHandler waitingHandler = session.waitingHandler;
 
         int numberOfSpectrumFiles = spectrumFiles.size();
         int primaryProgressCounterMax = 1;
-        if (enablePepNovo) {
+        if (session.enablePepNovo) {
             primaryProgressCounterMax += numberOfSpectrumFiles + 1;
-            // write the modification file
+            // write the modification file in a model folder of the session
             try {
-                File folder = new File(pepNovoFolder, "Models");
-                PepNovoModificationFile.writeFile(folder, searchParameters.getPtmSettings());
+                try {
+                    session.modelFolder = PepNovoModificationFile.writeModelFolder(pepNovoFolder, searchParameters.getPtmSettings());
+                } catch (IOException e) {
+                    // the modification file of the PepNovo+ folder is shared by all sessions
+                    waitingHandler.appendReport("The PepNovo+ models could not be linked for this run (" + e.getMessage() + "), the modifications are written in the PepNovo+ folder.", true, true);
+                    File folder = new File(pepNovoFolder, PepNovoModificationFile.MODELS_FOLDER);
+                    PepNovoModificationFile.writeFile(folder, searchParameters.getPtmSettings());
+                }
             } catch (Exception e) {
                 waitingHandler.appendReport("An error occurred while writing the modification file: " + e.getMessage(), true, true);
-                exceptionHandler.catchException(e);
+                session.exceptionHandler.catchException(e);
                 waitingHandler.setRunCanceled();
                 return;
             }
         }
-        if (enableDirecTag) {
+        if (session.enableDirecTag) {
             primaryProgressCounterMax += numberOfSpectrumFiles;
         }
-        if (enablePNovo) {
+        if (session.enablePNovo) {
             primaryProgressCounterMax += numberOfSpectrumFiles;
         }
-        if (enableNovor) {
+        if (session.enableNovor) {
             primaryProgressCounterMax += numberOfSpectrumFiles;
         }
 
-        waitingHandler.setMaxPrimaryProgressCounter(primaryProgressCounterMax);
-        waitingHandler.increasePrimaryProgressCounter();
-        waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+        sessions.add(session);
+        Duration duration = new Duration();
+        try {
+            waitingHandler.setMaxPrimaryProgressCounter(primaryProgressCounterMax);
+            waitingHandler.increasePrimaryProgressCounter();
+
+            // the temporary files of the session are written in its own folder, the shards left by a killed run are reused
+            session.sessionFolder = SessionFolder.create(outputFolder);
+            session.sessionFolder.adopt(SPECTRUM_CHUNKS_FOLDER);
+            waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+
+            // index the mgf files in parallel in the background, the sequencing
+            // of a file only waits for its own index, when needed. The clustered
+            // files are indexed once clustered.
+            session.mgfIndexer = new MgfIndexer(session.nThreads);
+            if (!session.clusterSpectra) {
+                for (File spectrumFile : spectrumFiles) {
+                    if (!XmlSpectrumFile.isXmlSpectrumFile(spectrumFile) && !CompressedMgfFile.isCompressedMgfFile(spectrumFile)) {
+                        session.mgfIndexer.index(spectrumFile);
+                    }
+                }
+            }
 
-        // get the number of available threads
-        String fileEnding = "";
-        if (spectrumFactory.getMgfFileNames().size() > 1) {
-            fileEnding = "s";
-        }
-        String threadEnding = "";
-        if (nThreads > 1) {
-            threadEnding = "s";
-        }
+            // get the number of available threads
+            String fileEnding = "";
+            if (numberOfSpectrumFiles > 1) {
+                fileEnding = "s";
+            }
+            String threadEnding = "";
+            if (session.nThreads > 1) {
+                threadEnding = "s";
+            }
         
-        // set this version as the default DeNovoGUI version
-        if (!getJarFilePath().equalsIgnoreCase(".")) {
-            UtilitiesUserPreferences utilitiesUserPreferences = UtilitiesUserPreferences.loadUserPreferences();
-            String versionNumber = Properties.getVersion();
-            utilitiesUserPreferences.setDeNovoGuiPath(new File(getJarFilePath(), "DeNovoGUI-" + versionNumber + ".jar").getAbsolutePath());
-            UtilitiesUserPreferences.saveUserPreferences(utilitiesUserPreferences);
-        }
+            // set this version as the default DeNovoGUI version
+            if (!getJarFilePath().equalsIgnoreCase(".")) {
+                UtilitiesUserPreferences utilitiesUserPreferences = UtilitiesUserPreferences.loadUserPreferences();
+                String versionNumber = Properties.getVersion();
+                utilitiesUserPreferences.setDeNovoGuiPath(new File(getJarFilePath(), "DeNovoGUI-" + versionNumber + ".jar").getAbsolutePath());
+                UtilitiesUserPreferences.saveUserPreferences(utilitiesUserPreferences);
+            }
 
-        Duration duration = new Duration();
-        duration.start();
+            duration.start();
+
+            waitingHandler.appendReport("Starting de novo sequencing of " + numberOfSpectrumFiles + " file" + fileEnding
+                    + " using " + session.nThreads + " thread" + threadEnding + ".", true, true);
+            waitingHandler.appendReportEndLine();
+
+            // the supervisors are kept for all files so that the job durations
+            // can be estimated from the previous files. DirecTag uses all threads
+            // itself, the other algorithms use one thread per job.
+            session.novorSupervisor = new JobSupervisor(session.nThreads, session.jobTimeout, session.speculativeExecution, waitingHandler);
+            session.direcTagSupervisor = new JobSupervisor(1, session.jobTimeout, session.speculativeExecution, waitingHandler);
+            session.pepNovoSupervisor = new JobSupervisor(session.nThreads, session.jobTimeout, session.speculativeExecution, waitingHandler);
+            session.pNovoSupervisor = new JobSupervisor(session.nThreads, session.jobTimeout, session.speculativeExecution, waitingHandler);
+
+            // collect the metrics of the jobs, available through JMX during the run
+            session.runMetrics = new RunMetrics(session.nThreads);
+            session.runMetrics.register();
+            for (JobSupervisor jobSupervisor : new JobSupervisor[]{session.novorSupervisor, session.direcTagSupervisor, session.pepNovoSupervisor, session.pNovoSupervisor}) {
+                jobSupervisor.setRunMetrics(session.runMetrics);
+            }
 
-        waitingHandler.appendReport("Starting de novo sequencing: " + spectrumFactory.getNSpectra() + " spectra in "
-                + spectrumFactory.getMgfFileNames().size() + " file" + fileEnding + " using " + nThreads + " thread" + threadEnding + ".", true, true);
-        waitingHandler.appendReportEndLine();
+            // the durations of the first jobs are estimated from the sample of the plan
+            if (session.runPlan != null) {
+                JobSupervisor[] jobSupervisors = new JobSupervisor[]{session.novorSupervisor, session.direcTagSupervisor, session.pepNovoSupervisor, session.pNovoSupervisor};
+                for (int i = 0; i < RunPlan.ALGORITHMS.length; i++) {
+                    jobSupervisors[i].addEstimate(session.runPlan.getSampleSpectra(RunPlan.ALGORITHMS[i]), session.runPlan.getSampleTime(RunPlan.ALGORITHMS[i]));
+                }
+            }
+
+            // the fallback to separate Novor processes is reported once for the run
+            if (session.enableNovor && session.novorInProcess) {
+                try {
+                    InProcessRunner.getRunner(new File(novorFolder, NovorJob.EXECUTABLE_FILE_NAME));
+                } catch (IOException e) {
+                    waitingHandler.appendReport("Novor cannot be run in DeNovoGUI (" + e.getMessage() + "), separate processes are used.", true, true);
+                    session.novorInProcess = false;
+                }
+            }
+
+            // adapt the number of jobs and the Novor memory to the resources left by the other processes
+            session.novorHeapSize = -1;
+            if (session.resourceMonitor != null) {
+                session.novorHeapSize = session.resourceMonitor.getChildHeapSize(session.nThreads);
+                session.novorSupervisor.setResourceMonitor(session.resourceMonitor, session.novorHeapSize > 0 && !session.novorInProcess ? ResourceMonitor.getChildMemory(session.novorHeapSize) : -1);
+                session.pepNovoSupervisor.setResourceMonitor(session.resourceMonitor, PEPNOVO_JOB_MEMORY);
+                session.pNovoSupervisor.setResourceMonitor(session.resourceMonitor, PNOVO_JOB_MEMORY);
+            }
 
-        for (File spectrumFile : spectrumFiles) {
-            startSequencing(spectrumFile, searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle, waitingHandler);
-            if (waitingHandler.isRunCanceled()) {
-                break;
+            // small mgf files are sequenced in batches to start the algorithms less often
+            boolean batching = session.batchSize > 0 && !session.clusterSpectra;
+            if (session.batchSize > 0 && session.clusterSpectra) {
+                waitingHandler.appendReport("Batching is not supported with spectrum clustering, every file will be sequenced separately.", true, true);
+            }
+            File batchFolder = new File(outputFolder, SpectrumBatch.BATCHES_FOLDER);
+            SpectrumBatch spectrumBatch = null;
+            int nBatches = 0;
+
+            for (File spectrumFile : spectrumFiles) {
+                if (XmlSpectrumFile.isXmlSpectrumFile(spectrumFile) || CompressedMgfFile.isCompressedMgfFile(spectrumFile)) {
+                    if (session.clusterSpectra) {
+                        waitingHandler.appendReport("Spectrum clustering is not supported for " + spectrumFile.getName() + ", all spectra will be sequenced.", true, true);
+                    }
+                    startShardedSequencing(session, spectrumFile, searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, waitingHandler);
+                    if (waitingHandler.isRunCanceled()) {
+                        break;
+                    }
+                    continue;
+                }
+                if (batching) {
+                    int nSpectra = session.mgfIndexer.getNSpectra(spectrumFile);
+                    if (nSpectra < session.batchSize) {
+                        if (spectrumBatch == null) {
+                            spectrumBatch = new SpectrumBatch(batchFolder, ++nBatches);
+                        }
+                        spectrumBatch.add(spectrumFile, nSpectra);
+                        if (spectrumBatch.getNSpectra() >= session.batchSize) {
+                            sequenceBatch(session, spectrumBatch, searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle, waitingHandler);
+                            spectrumBatch = null;
+                            if (waitingHandler.isRunCanceled()) {
+                                break;
+                            }
+                        }
+                        continue;
+                    }
+                }
+                File sequencedFile = spectrumFile;
+                if (session.clusterSpectra) {
+                    waitingHandler.appendReport("Clustering the spectra of " + spectrumFile.getName() + ".", true, true);
+                    SpectrumClusterer spectrumClusterer = new SpectrumClusterer(searchParameters.getPrecursorAccuracyDalton(), session.clusteringBinSize, session.clusteringSimilarity);
+                    sequencedFile = spectrumClusterer.clusterFile(spectrumFile, outputFolder, waitingHandler);
+                    session.mgfIndexer.index(sequencedFile);
+                }
+                startSequencing(session, sequencedFile, searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle, waitingHandler);
+                if (session.clusterSpectra) {
+                    sequencedFile.delete();
+                }
+                if (waitingHandler.isRunCanceled()) {
+                    break;
+                }
+            }
+            if (spectrumBatch != null && !waitingHandler.isRunCanceled()) {
+                sequenceBatch(session, spectrumBatch, searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle, waitingHandler);
+            }
+            if (batching) {
+                batchFolder.delete();
+            }
+            if (session.clusterSpectra) {
+                new File(outputFolder, SpectrumClusterer.CLUSTERED_SPECTRA_FOLDER).delete();
+            }
+        } finally {
+            for (JobSupervisor jobSupervisor : new JobSupervisor[]{session.novorSupervisor, session.direcTagSupervisor, session.pepNovoSupervisor, session.pNovoSupervisor}) {
+                if (jobSupervisor != null) {
+                    jobSupervisor.shutdown();
+                }
+            }
+            if (session.mgfIndexer != null) {
+                session.mgfIndexer.shutdown();
+            }
+            if (session.runMetrics != null) {
+                session.runMetrics.end();
+                session.runMetrics.unregister();
+            }
+            sessions.remove(session);
+            if (session.modelFolder != null) {
+                PepNovoModificationFile.deleteModelFolder(session.modelFolder);
+            }
+            if (session.sessionFolder != null) {
+                session.sessionFolder.delete();
             }
         }
 
         if (!waitingHandler.isRunCanceled()) {
             duration.end();
             waitingHandler.appendReport("De novo sequencing completed (" + duration.toString() + ").", true, true);
+        }
+    }
 
-            // store the pepnovo to utilities ptm mapping
-            PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(Advocate.pepnovo.getIndex());
-            pepnovoParameters.setPepNovoPtmMap(PepNovoModificationFile.getInvertedModIdMap());
+    /**
+     * Returns a new session for a sequencing run, the settings of the handler
+     * are copied in the session so that changing them does not affect the
+     * runs in progress.
+     *
+     * @param enablePepNovo run PepNovo?
+     * @param enableDirecTag run DirecTag?
+     * @param enablePNovo run pNovo?
+     * @param enableNovor run Novor?
+     * @param waitingHandler the waiting handler of the run
+     * @param exceptionHandler the exception handler
+     *
+     * @return a new session
+     */
+    private SequencingSession createSession(boolean enablePepNovo, boolean enableDirecTag, boolean enablePNovo, boolean enableNovor, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+        SequencingSession session = new SequencingSession(enablePepNovo, enableDirecTag, enablePNovo, enableNovor, waitingHandler, exceptionHandler);
+        session.nThreads = nThreads;
+        session.jobTimeout = jobTimeout;
+        session.speculativeExecution = speculativeExecution;
+        session.resourceMonitor = resourceMonitor;
+        session.clusterSpectra = clusterSpectra;
+        session.clusteringSimilarity = clusteringSimilarity;
+        session.clusteringBinSize = clusteringBinSize;
+        session.novorInProcess = novorInProcess;
+        session.batchSize = batchSize;
+        session.peakPreprocessors = new HashMap<String, PeakPreprocessor>(peakPreprocessors);
+        session.spectrumRouter = spectrumRouter;
+        session.runPlan = runPlan;
+        if (!cascadeThresholds.isEmpty()) {
+            session.spectrumCascade = new SpectrumCascade(new HashMap<String, Double>(cascadeThresholds));
+        }
+        return session;
+    }
 
-            // make sure that the ptm mappings are saved, also for novor and pnovo
-            if (searchParametersFile != null) {
-                SearchParameters.saveIdentificationParameters(searchParameters, searchParametersFile);
+    /**
+     * Plans a sequencing run: a stratified random sample of the spectra of
+     * every file is sequenced with the given settings, and the duration and
+     * resources of the complete run are extrapolated from the jobs of the
+     * sample. The plan is written in the output folder and reported in the
+     * waiting handler. The sample is sequenced in its own session and with its
+     * own waiting handler, its report being forwarded to the given waiting
+     * handler. The results of the sample are discarded, the sampled spectra
+     * are sequenced again by the complete run.
+     *
+     * @param spectrumFiles the spectrum files to process
+     * @param sampleFraction the fraction of the spectra to sample, between 0
+     * and 1
+     * @param searchParameters the search parameters
+     * @param outputFolder the output folder
+     * @param pepNovoExeTitle the name of the PepNovo+ executable
+     * @param direcTagExeTitle the name of the DirecTag executable
+     * @param pNovoExeTitle the name of the pNovo+ executable
+     * @param novorExeTitle the name of the Novor executable
+     * @param enablePepNovo run PepNovo?
+     * @param enableDirecTag run DirecTag?
+     * @param enablePNovo run pNovo?
+     * @param enableNovor run Novor?
+     * @param waitingHandler the waiting handler
+     * @param exceptionHandler the exception handler to use when an exception is
+     * caught
+     *
+     * @return the plan of the run, null if the sample could not be sequenced
+     *
+     * @throws IOException thrown if there is an IO issue
+     * @throws ClassNotFoundException thrown if the search parameters cannot be
+     * processed from file
+     */
+    public RunPlan planSequencing(List<File> spectrumFiles, double sampleFraction, SearchParameters searchParameters, File outputFolder, String pepNovoExeTitle, String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle,
+            boolean enablePepNovo, boolean enableDirecTag, boolean enablePNovo, boolean enableNovor, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) throws IOException, ClassNotFoundException {
+
+        SessionFolder planSessionFolder = SessionFolder.create(outputFolder);
+        File planFolder = new File(planSessionFolder.getFolder(), PLAN_FOLDER);
+        planFolder.mkdirs();
+        File sampleFolder = new File(planFolder, SPECTRUM_CHUNKS_FOLDER);
+
+        // the sample has its own waiting handler so that its end does not end the plan
+        final WaitingHandler planWaitingHandler = waitingHandler;
+        WaitingHandler sampleWaitingHandler = new WaitingHandlerCLIImpl() {
+            @Override
+            public void appendReport(String report, boolean includeDate, boolean addNewLine) {
+                planWaitingHandler.appendReport(report, includeDate, addNewLine);
             }
 
-            // check if we have any output files
-            ArrayList<File> resultFiles = FileProcessor.getAllResultFiles(outputFolder, spectrumFiles, enablePepNovo, enableDirecTag, enablePNovo, enableNovor);
+            @Override
+            public void appendReportEndLine() {
+                planWaitingHandler.appendReportEndLine();
+            }
 
-            if (resultFiles.isEmpty()) {
-                waitingHandler.appendReportEndLine();
-                waitingHandler.appendReport("The de novo sequencing did not generate any output files!", true, true);
-                waitingHandler.setRunCanceled();
-            } else {
-                waitingHandler.setRunFinished();
+            @Override
+            public boolean isRunCanceled() {
+                return super.isRunCanceled() || planWaitingHandler.isRunCanceled();
+            }
+        };
+        SequencingSession sampleSession = createSession(enablePepNovo, enableDirecTag, enablePNovo, enableNovor, sampleWaitingHandler, exceptionHandler);
+        sampleSession.ownerWaitingHandler = waitingHandler;
+        // the durations of the sample are not estimated from a previous plan
+        sampleSession.runPlan = null;
+
+        try {
+            waitingHandler.appendReport("Sampling " + Util.roundDouble(100 * sampleFraction, 2) + "% of the spectra to plan the run.", true, true);
+
+            // sample every file, the other formats are converted to mgf first
+            SpectrumSampler spectrumSampler = new SpectrumSampler(sampleFraction, 0);
+            ArrayList<File> sampleFiles = new ArrayList<File>(spectrumFiles.size());
+            long nSpectra = 0;
+            long nSampleSpectra = 0;
+            long minFileSpectra = Long.MAX_VALUE;
+            long mgfBytes = 0;
+            for (File spectrumFile : spectrumFiles) {
+                File mgfFile = spectrumFile;
+                if (XmlSpectrumFile.isXmlSpectrumFile(spectrumFile)) {
+                    mgfFile = new XmlSpectrumFile(spectrumFile, waitingHandler).writeMgfChunks(1, planFolder, waitingHandler).get(0);
+                } else if (CompressedMgfFile.isCompressedMgfFile(spectrumFile)) {
+                    mgfFile = new CompressedMgfFile(spectrumFile, sampleSession.nThreads).writeMgfChunks(1, planFolder, waitingHandler).get(0);
+                }
+                if (waitingHandler.isRunCanceled()) {
+                    return null;
+                }
+                SpectrumIndex spectrumIndex = SpectrumIndex.index(mgfFile);
+                int[] sample = spectrumSampler.sample(spectrumIndex);
+                File sampleFile = FileProcessor.getResultSpectrumFile(spectrumFile, sampleFolder);
+                SpectrumSampler.writeSpectra(mgfFile, spectrumIndex, sample, sampleFile);
+                sampleFiles.add(sampleFile);
+                nSpectra += spectrumIndex.getNSpectra();
+                nSampleSpectra += sample.length;
+                minFileSpectra = Math.min(minFileSpectra, spectrumIndex.getNSpectra());
+                mgfBytes += mgfFile.length();
+                if (mgfFile != spectrumFile) {
+                    mgfFile.delete();
+                }
+            }
+            if (nSampleSpectra == 0) {
+                waitingHandler.appendReport("No spectra to sample.", true, true);
+                return null;
             }
+
+            runSequencing(sampleSession, sampleFiles, searchParameters, planFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle);
+            if (sampleWaitingHandler.isRunCanceled() || sampleSession.runMetrics == null) {
+                return null;
+            }
+
+            // the results of the sample are used to estimate the disk space of the results
+            HashMap<String, Long> resultBytes = new HashMap<String, Long>();
+            resultBytes.put("Novor", getLength(FileProcessor.getNovorResultFiles(planFolder, sampleFiles)));
+            resultBytes.put("DirecTag", getLength(FileProcessor.getTagsFiles(planFolder, sampleFiles)));
+            resultBytes.put("PepNovo+", getLength(FileProcessor.getOutFiles(planFolder, sampleFiles)));
+            resultBytes.put("pNovo+", getLength(FileProcessor.getPNovoResultFiles(planFolder, sampleFiles)));
+
+            // the shards, plus the preprocessed and selected spectra when used
+            int nTemporaryCopies = 1;
+            if (!sampleSession.peakPreprocessors.isEmpty()) {
+                nTemporaryCopies++;
+            }
+            if (sampleSession.spectrumCascade != null || sampleSession.spectrumRouter != null) {
+                nTemporaryCopies++;
+            }
+
+            RunPlan result = RunPlan.create(sampleSession.runMetrics, sampleSession.nThreads, resultBytes, nSampleSpectra, nSpectra, spectrumFiles.size(), minFileSpectra, mgfBytes, nTemporaryCopies);
+            result.write(new File(outputFolder, RunPlan.PLAN_FILE));
+
+            long availableMemory = sampleSession.resourceMonitor != null ? sampleSession.resourceMonitor.getAvailableMemory() : -1;
+            waitingHandler.appendReportEndLine();
+            waitingHandler.appendReport(result.getReport(sampleSession.nThreads, ResourceMonitor.getCpuLimit(), availableMemory), true, true);
+            waitingHandler.appendReportEndLine();
+
+            return result;
+
+        } finally {
+            planSessionFolder.delete();
+        }
+    }
+
+    /**
+     * Returns the total size of the given files.
+     *
+     * @param files the files
+     *
+     * @return the total size in bytes
+     */
+    private static long getLength(List<File> files) {
+        long result = 0;
+        for (File file : files) {
+            result += file.length();
         }
+        return result;
     }
 
     /**
      * Starts the sequencing for a single file.
      *
+     * @param session the sequencing session
      * @param spectrumFile the spectrum file to process
      * @param searchParameters the search parameters
      * @param outputFolder the output folder
@@ -267,14 +717,23 @@ public class DeNovoSequencingHandler {
      * @param secondaryProgress if true the progress on the given file will be
      * displayed
      */
-    private void startSequencing(File spectrumFile, SearchParameters searchParameters, File outputFolder, String pepNovoExeTitle,
+    private void startSequencing(SequencingSession session, File spectrumFile, SearchParameters searchParameters, File outputFolder, String pepNovoExeTitle,
             String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle, WaitingHandler waitingHandler) throws IOException {
 
         try {
-            jobs = new ArrayDeque<Job>();
+            // the spectra are split in shards once for all algorithms
+            if (session.nThreads > 1 && session.mgfIndexer.getNSpectra(spectrumFile) > 1) {
+                startShardedSequencing(session, spectrumFile, searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, waitingHandler);
+                return;
+            }
+
+            // Novor and DirecTag read the spectrum file directly and do not
+            // wait for its index, without index the jobs are submitted
+            // without number of spectra
+            int nSpectra = session.mgfIndexer.getNSpectraIfIndexed(spectrumFile);
 
             // Novor
-            if (enableNovor && !waitingHandler.isRunCanceled()) {
+            if (session.enableNovor && !waitingHandler.isRunCanceled()) {
 
                 Duration algorithmDuration = new Duration();
                 algorithmDuration.start();
@@ -283,22 +742,15 @@ public class DeNovoSequencingHandler {
                 waitingHandler.appendReport("Sequencing " + spectrumFile.getName() + " using Novor.", true, true);
                 waitingHandler.appendReportEndLine();
 
-                threadExecutor = Executors.newFixedThreadPool(1);
-                NovorJob novorJob = new NovorJob(novorFolder, spectrumFile, outputFolder, searchParameters, waitingHandler instanceof WaitingHandlerCLIImpl, waitingHandler, exceptionHandler);
-                threadExecutor.submit(novorJob);
-                jobs.add(novorJob);
-
-                // wait for executor service to shutdown
-                threadExecutor.shutdown();
-
-                try {
-                    threadExecutor.awaitTermination(12, TimeUnit.HOURS);
-                } catch (InterruptedException ex) {
-                    if (!waitingHandler.isRunCanceled()) {
-                        threadExecutor.shutdownNow();
-                        exceptionHandler.catchException(ex);
-                    }
+                File selectedFile = selectSpectra(session, Advocate.novor, "Novor", Collections.singletonList(spectrumFile), waitingHandler).get(0);
+                if (selectedFile != null) {
+                    nSpectra = getNSelectedSpectra(session, spectrumFile, nSpectra);
+                    File novorFile = preprocessSpectra(session, Advocate.novor, "Novor", Collections.singletonList(selectedFile), searchParameters, waitingHandler).get(0);
+                    session.novorSupervisor.submit(getJobFactory(session, Advocate.novor, null, novorFile, nSpectra, searchParameters, waitingHandler), outputFolder, nSpectra);
+                    awaitJobs(session, session.novorSupervisor, waitingHandler);
                 }
+                deletePreprocessedSpectra(session, waitingHandler);
+                completeSelection(session, Advocate.novor, Collections.singletonList(spectrumFile), outputFolder, waitingHandler);
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
@@ -313,7 +765,7 @@ public class DeNovoSequencingHandler {
             }
 
             // DirecTag
-            if (enableDirecTag && !waitingHandler.isRunCanceled()) {
+            if (session.enableDirecTag && !waitingHandler.isRunCanceled()) {
 
                 Duration algorithmDuration = new Duration();
                 algorithmDuration.start();
@@ -322,22 +774,16 @@ public class DeNovoSequencingHandler {
                 waitingHandler.appendReport("Sequencing " + spectrumFile.getName() + " using DirecTag.", true, true);
                 waitingHandler.appendReportEndLine();
 
-                threadExecutor = Executors.newFixedThreadPool(1);
-                DirecTagJob direcTagJob = new DirecTagJob(direcTagFolder, direcTagExeTitle, spectrumFile, nThreads, outputFolder, searchParameters, waitingHandler, exceptionHandler);
-                threadExecutor.submit(direcTagJob);
-                jobs.add(direcTagJob);
-
-                // wait for executor service to shutdown
-                threadExecutor.shutdown();
-
-                try {
-                    threadExecutor.awaitTermination(12, TimeUnit.HOURS);
-                } catch (InterruptedException ex) {
-                    if (!waitingHandler.isRunCanceled()) {
-                        threadExecutor.shutdownNow();
-                        exceptionHandler.catchException(ex);
-                    }
+                nSpectra = session.mgfIndexer.getNSpectraIfIndexed(spectrumFile);
+                File selectedFile = selectSpectra(session, Advocate.direcTag, "DirecTag", Collections.singletonList(spectrumFile), waitingHandler).get(0);
+                if (selectedFile != null) {
+                    nSpectra = getNSelectedSpectra(session, spectrumFile, nSpectra);
+                    File direcTagFile = preprocessSpectra(session, Advocate.direcTag, "DirecTag", Collections.singletonList(selectedFile), searchParameters, waitingHandler).get(0);
+                    session.direcTagSupervisor.submit(getJobFactory(session, Advocate.direcTag, direcTagExeTitle, direcTagFile, nSpectra, searchParameters, waitingHandler), outputFolder, nSpectra);
+                    awaitJobs(session, session.direcTagSupervisor, waitingHandler);
                 }
+                deletePreprocessedSpectra(session, waitingHandler);
+                completeSelection(session, Advocate.direcTag, Collections.singletonList(spectrumFile), outputFolder, waitingHandler);
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
@@ -352,7 +798,7 @@ public class DeNovoSequencingHandler {
             }
 
             // PepNovo+
-            if (enablePepNovo && !waitingHandler.isRunCanceled()) {
+            if (session.enablePepNovo && !waitingHandler.isRunCanceled()) {
 
                 Duration algorithmDuration = new Duration();
                 algorithmDuration.start();
@@ -361,25 +807,10 @@ public class DeNovoSequencingHandler {
                 waitingHandler.appendReport("Sequencing " + spectrumFile.getName() + " using PepNovo+.", true, true);
                 waitingHandler.appendReportEndLine();
 
-                // start a fixed thread pool
-                threadExecutor = Executors.newFixedThreadPool(nThreads);
-
-                // job queue
-                int nSpectra = spectrumFactory.getNSpectra(spectrumFile.getName());
-                if (nThreads > 1) {
-                    int remaining = nSpectra % nThreads;
-                    int chunkSize = nSpectra / nThreads;
-                    String report = "Processing " + spectrumFile.getName() + " (" + nSpectra + " spectra, " + chunkSize;
-                    if (remaining > 0) {
-                        int maxSize = chunkSize + 1;
-                        report += "-" + maxSize;
-                    }
-                    report += " spectra per thread).";
-                    waitingHandler.appendReport(report, true, true);
-
-                    waitingHandler.appendReport("Preparing the spectra.", true, true);
-                    chunkFiles = FileProcessor.chunkFile(spectrumFile, chunkSize, remaining, nSpectra, waitingHandler);
-                }
+                nSpectra = session.mgfIndexer.getNSpectra(spectrumFile);
+                File selectedFile = selectSpectra(session, Advocate.pepnovo, "PepNovo+", Collections.singletonList(spectrumFile), waitingHandler).get(0);
+                nSpectra = selectedFile == null ? 0 : getNSelectedSpectra(session, spectrumFile, nSpectra);
+                File pepNovoFile = selectedFile == null ? null : preprocessSpectra(session, Advocate.pepnovo, "PepNovo+", Collections.singletonList(selectedFile), searchParameters, waitingHandler).get(0);
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
@@ -391,50 +822,20 @@ public class DeNovoSequencingHandler {
                 waitingHandler.resetSecondaryProgressCounter();
                 waitingHandler.setMaxSecondaryProgressCounter(nSpectra);
 
-                // verify that the file is chunked and use the entire if not
-                boolean chunksuccess = true;
-                for (File chunkFile : chunkFiles) {
-                    if (!chunkFile.exists()) {
-                        chunksuccess = false;
-                        waitingHandler.appendReport("Processing of the spectra failed. Only one thread will be used for PepNovo+.", true, true);
-                    }
-                }
-
-                // distribute the chunked spectra to the different PepNovo+ jobs
-                if (chunksuccess) {
-                    for (File chunkFile : chunkFiles) {
-                        PepNovoJob pepNovoJob = new PepNovoJob(pepNovoFolder, pepNovoExeTitle, chunkFile, outputFolder, searchParameters, waitingHandler, exceptionHandler);
-                        threadExecutor.submit(pepNovoJob);
-                        jobs.add(pepNovoJob);
-                    }
-                } else {
-                    PepNovoJob pepNovoJob = new PepNovoJob(pepNovoFolder, pepNovoExeTitle, spectrumFile, outputFolder, searchParameters, waitingHandler, exceptionHandler);
-                    threadExecutor.submit(pepNovoJob);
-                    jobs.add(pepNovoJob);
+                if (pepNovoFile != null) {
+                    session.pepNovoSupervisor.submit(getJobFactory(session, Advocate.pepnovo, pepNovoExeTitle, pepNovoFile, nSpectra, searchParameters, waitingHandler), outputFolder, nSpectra);
                 }
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
                 }
 
-                // wait for executor service to shutdown
-                threadExecutor.shutdown();
-
-                try {
-                    threadExecutor.awaitTermination(12, TimeUnit.HOURS);
-                } catch (InterruptedException ex) {
-                    if (!waitingHandler.isRunCanceled()) {
-                        threadExecutor.shutdownNow();
-                        exceptionHandler.catchException(ex);
-                    }
-                }
+                awaitJobs(session, session.pepNovoSupervisor, waitingHandler);
 
                 waitingHandler.setSecondaryProgressCounterIndeterminate(true);
 
-                FileProcessor.mergeAndDeleteOutputFiles(FileProcessor.getOutFiles(outputFolder, chunkFiles));
-
-                // delete the mgf file chunks
-                FileProcessor.deleteChunkFiles(chunkFiles, waitingHandler);
+                deletePreprocessedSpectra(session, waitingHandler);
+                completeSelection(session, Advocate.pepnovo, Collections.singletonList(spectrumFile), outputFolder, waitingHandler);
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
@@ -449,7 +850,7 @@ public class DeNovoSequencingHandler {
             }
 
             // pNovo+
-            if (enablePNovo && !waitingHandler.isRunCanceled()) {
+            if (session.enablePNovo && !waitingHandler.isRunCanceled()) {
                 
                 Duration algorithmDuration = new Duration();
                 algorithmDuration.start();
@@ -458,22 +859,18 @@ public class DeNovoSequencingHandler {
                 waitingHandler.appendReport("Sequencing " + spectrumFile.getName() + " using pNovo+.", true, true);
                 waitingHandler.appendReportEndLine();
 
-                threadExecutor = Executors.newFixedThreadPool(1); // @TODO: implement chunking so that pNovo can be run with more than one thread...
-                PNovoJob pNovoJob = new PNovoJob(pNovoFolder, pNovoExeTitle, spectrumFile, 1, outputFolder, searchParameters, waitingHandler, exceptionHandler);
-                threadExecutor.submit(pNovoJob);
-                jobs.add(pNovoJob);
-
-                // wait for executor service to shutdown
-                threadExecutor.shutdown();
+                nSpectra = session.mgfIndexer.getNSpectra(spectrumFile);
 
-                try {
-                    threadExecutor.awaitTermination(12, TimeUnit.HOURS);
-                } catch (InterruptedException ex) {
-                    if (!waitingHandler.isRunCanceled()) {
-                        threadExecutor.shutdownNow();
-                        exceptionHandler.catchException(ex);
-                    }
+                // @TODO: implement chunking so that pNovo can be run with more than one thread...
+                File selectedFile = selectSpectra(session, Advocate.pNovo, "pNovo+", Collections.singletonList(spectrumFile), waitingHandler).get(0);
+                if (selectedFile != null) {
+                    nSpectra = getNSelectedSpectra(session, spectrumFile, nSpectra);
+                    File pNovoFile = preprocessSpectra(session, Advocate.pNovo, "pNovo+", Collections.singletonList(selectedFile), searchParameters, waitingHandler).get(0);
+                    session.pNovoSupervisor.submit(getJobFactory(session, Advocate.pNovo, pNovoExeTitle, pNovoFile, nSpectra, searchParameters, waitingHandler), outputFolder, nSpectra);
+                    awaitJobs(session, session.pNovoSupervisor, waitingHandler);
                 }
+                deletePreprocessedSpectra(session, waitingHandler);
+                completeSelection(session, Advocate.pNovo, Collections.singletonList(spectrumFile), outputFolder, waitingHandler);
 
                 if (waitingHandler.isRunCanceled()) {
                     return;
@@ -488,80 +885,700 @@ public class DeNovoSequencingHandler {
             }
 
         } catch (FileNotFoundException ex) {
-            exceptionHandler.catchException(ex);
+            session.exceptionHandler.catchException(ex);
         } catch (IOException ex) {
-            exceptionHandler.catchException(ex);
+            session.exceptionHandler.catchException(ex);
+        } finally {
+            deletePreprocessedSpectra(session, waitingHandler);
+            deleteSelectedSpectra(session, waitingHandler);
+            if (session.spectrumCascade != null) {
+                session.spectrumCascade.clear(Collections.singletonList(spectrumFile));
+            }
         }
     }
 
     /**
-     * Cancels the sequencing process.
+     * Sequences a batch of small mgf files. The files are concatenated in a
+     * batch mgf file which is sequenced like a single file, the results are
+     * then split back into the results of every file. A batch of a single
+     * file is sequenced directly.
      *
+     * @param session the sequencing session
+     * @param spectrumBatch the batch
+     * @param searchParameters the search parameters
      * @param outputFolder the output folder
+     * @param pepNovoExeTitle the name of the PepNovo+ executable
+     * @param direcTagExeTitle the name of the DirecTag executable
+     * @param pNovoExeTitle the name of the pNovo+ executable
+     * @param novorExeTitle the name of the Novor executable
      * @param waitingHandler the waiting handler
-     * @throws IOException thrown if the deletion of the chunk files fail
+     *
+     * @throws IOException thrown if the batch mgf file cannot be written or
+     * the results cannot be split
      */
-    public void cancelSequencing(File outputFolder, WaitingHandler waitingHandler) throws IOException {
-        if (jobs != null) {
-            // cancel the jobs and delete temp .out files
-            for (Job job : jobs) {
-                job.cancel();
-            }
+    private void sequenceBatch(SequencingSession session, SpectrumBatch spectrumBatch, SearchParameters searchParameters, File outputFolder, String pepNovoExeTitle,
+            String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle, WaitingHandler waitingHandler) throws IOException {
+
+        if (spectrumBatch.getMgfFiles().size() == 1) {
+            startSequencing(session, spectrumBatch.getMgfFiles().get(0), searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle, waitingHandler);
+            return;
         }
-        if (threadExecutor != null) {
-            threadExecutor.shutdown();
-            try {
-                threadExecutor.awaitTermination(12, TimeUnit.HOURS);
-            } catch (InterruptedException ex) {
-                if (waitingHandler.isRunCanceled()) {
-                    threadExecutor.shutdownNow();
-                    ex.printStackTrace();
-                }
-            }
 
-            if (chunkFiles != null) {
-                // delete the output files
-                FileProcessor.deleteChunkFiles(FileProcessor.getOutFiles(outputFolder, chunkFiles), waitingHandler);
+        waitingHandler.appendReportEndLine();
+        waitingHandler.appendReport("Sequencing " + spectrumBatch.getMgfFiles().size() + " files (" + spectrumBatch.getNSpectra() + " spectra) in batch "
+                + spectrumBatch.getBatchFile().getName() + ".", true, true);
+
+        File batchFile = spectrumBatch.getBatchFile();
+        spectrumBatch.writeBatchFile();
+        session.mgfIndexer.index(batchFile);
 
-                // delete the mgf file chunks
-                FileProcessor.deleteChunkFiles(chunkFiles, waitingHandler);
+        try {
+            startSequencing(session, batchFile, searchParameters, outputFolder, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle, waitingHandler);
+            if (!waitingHandler.isRunCanceled()) {
+                spectrumBatch.splitResults(outputFolder, session.enablePepNovo, session.enableDirecTag, session.enablePNovo, session.enableNovor);
             }
+        } finally {
+            spectrumBatch.deleteBatchFile();
         }
     }
 
     /**
-     * Returns the path to the jar file.
+     * Starts the sequencing of a spectrum file split in shards. The shards are
+     * prepared once and sequenced by every algorithm, the results of the
+     * shards are then merged into results named after the mgf file of the
+     * spectrum file. The shards and the results of the shards are deleted
+     * once the algorithms are done, whether the run completed, failed or was
+     * canceled.
      *
-     * @return the path to the jar file
-     */
-    public String getJarFilePath() {
-        return CompomicsWrapper.getJarFilePath(this.getClass().getResource("DeNovoSequencingHandler.class").getPath(), "DeNovoGUI");
-    }
-
-    /**
-     * Returns the user defined enzymes file.
+     * @param session the sequencing session
+     * @param spectrumFile the mgf, mzML, mzXML or compressed mgf file
+     * @param searchParameters the search parameters
+     * @param outputFolder the output folder
+     * @param pepNovoExeTitle the name of the PepNovo+ executable
+     * @param direcTagExeTitle the name of the DirecTag executable
+     * @param pNovoExeTitle the name of the pNovo+ executable
+     * @param waitingHandler the waiting handler
      *
-     * @param jarFolder the folder containing the jar file
-     * @return the user defined enzymes file
+     * @throws IOException thrown if the file cannot be read or the results
+     * cannot be merged
      */
-    public static File getEnzymesFile(String jarFolder) {
-        File result = new File(jarFolder, ENZYME_FILE);
-        if (!result.exists()) {
-            JOptionPane.showMessageDialog(null, ENZYME_FILE + " not found.", "Enzymes File Error", JOptionPane.ERROR_MESSAGE);
-        }
-        return result;
-    }
+    private void startShardedSequencing(SequencingSession session, File spectrumFile, SearchParameters searchParameters, File outputFolder, String pepNovoExeTitle,
+            String direcTagExeTitle, String pNovoExeTitle, WaitingHandler waitingHandler) throws IOException {
 
-    /**
-     * Get the number of threads to use for the processing.
-     *
-     * @return the mgfNSpectra
-     */
-    public int getNThreads() {
-        return nThreads;
-    }
+        File mgfFile = FileProcessor.getResultSpectrumFile(spectrumFile, outputFolder);
+        File shardFolder = new File(session.sessionFolder.getFolder(), SPECTRUM_CHUNKS_FOLDER);
 
-    /**
+        ShardSet currentShardSet = getShardSet(session, spectrumFile, shardFolder, waitingHandler);
+        if (currentShardSet == null) {
+            return;
+        }
+        session.shardSet = currentShardSet;
+        ArrayList<File> shardFiles = currentShardSet.getShardFiles();
+        ArrayList<Integer> offsets = currentShardSet.getOffsets();
+        int nSpectra = currentShardSet.getNSpectra();
+
+        try {
+            // Novor
+            if (session.enableNovor && !waitingHandler.isRunCanceled()) {
+                sequenceShards(session, Advocate.novor, "Novor", null, session.novorSupervisor, currentShardSet, spectrumFile, outputFolder, searchParameters, waitingHandler);
+                ArrayList<File> novorFiles = FileProcessor.getNovorResultFiles(outputFolder, shardFiles);
+                if (!waitingHandler.isRunCanceled() && !novorFiles.isEmpty()) {
+                    FileProcessor.mergeNovorFiles(novorFiles, getOffsets(novorFiles, FileProcessor.getNovorResultFiles(outputFolder, shardFiles), offsets),
+                            FileProcessor.getNovorResultFile(outputFolder, mgfFile));
+                }
+                FileProcessor.deleteChunkFiles(novorFiles, waitingHandler);
+            }
+
+            // DirecTag
+            if (session.enableDirecTag && !waitingHandler.isRunCanceled()) {
+                sequenceShards(session, Advocate.direcTag, "DirecTag", direcTagExeTitle, session.direcTagSupervisor, currentShardSet, spectrumFile, outputFolder, searchParameters, waitingHandler);
+                ArrayList<File> tagsFiles = FileProcessor.getTagsFiles(outputFolder, shardFiles);
+                if (!waitingHandler.isRunCanceled() && !tagsFiles.isEmpty()) {
+                    FileProcessor.mergeTagsFiles(tagsFiles, getOffsets(tagsFiles, FileProcessor.getTagsFiles(outputFolder, shardFiles), offsets),
+                            FileProcessor.getTagsFile(outputFolder, mgfFile));
+                }
+                FileProcessor.deleteChunkFiles(tagsFiles, waitingHandler);
+            }
+
+            // PepNovo+
+            if (session.enablePepNovo && !waitingHandler.isRunCanceled()) {
+                waitingHandler.increasePrimaryProgressCounter();
+                waitingHandler.resetSecondaryProgressCounter();
+                waitingHandler.setMaxSecondaryProgressCounter(nSpectra);
+                sequenceShards(session, Advocate.pepnovo, "PepNovo+", pepNovoExeTitle, session.pepNovoSupervisor, currentShardSet, spectrumFile, outputFolder, searchParameters, waitingHandler);
+                waitingHandler.setSecondaryProgressCounterIndeterminate(true);
+                ArrayList<File> outFiles = FileProcessor.getOutFiles(outputFolder, shardFiles);
+                if (!waitingHandler.isRunCanceled() && !outFiles.isEmpty()) {
+                    FileProcessor.mergeOutputFiles(outFiles, FileProcessor.getOutFile(outputFolder, mgfFile), false);
+                }
+                FileProcessor.deleteChunkFiles(outFiles, waitingHandler);
+            }
+
+            // pNovo+
+            if (session.enablePNovo && !waitingHandler.isRunCanceled()) {
+                sequenceShards(session, Advocate.pNovo, "pNovo+", pNovoExeTitle, session.pNovoSupervisor, currentShardSet, spectrumFile, outputFolder, searchParameters, waitingHandler);
+                ArrayList<File> pNovoFiles = FileProcessor.getPNovoResultFiles(outputFolder, shardFiles);
+                if (!waitingHandler.isRunCanceled() && !pNovoFiles.isEmpty()) {
+                    FileProcessor.concatenateFiles(pNovoFiles, FileProcessor.getPNovoResultFile(outputFolder, mgfFile));
+                }
+                FileProcessor.deleteChunkFiles(pNovoFiles, waitingHandler);
+            }
+        } finally {
+            session.shardSet = null;
+            if (session.spectrumCascade != null) {
+                session.spectrumCascade.clear(shardFiles);
+            }
+            // the results of the shards are left when an algorithm failed
+            FileProcessor.deleteChunkFiles(FileProcessor.getNovorResultFiles(outputFolder, shardFiles), waitingHandler);
+            FileProcessor.deleteChunkFiles(FileProcessor.getTagsFiles(outputFolder, shardFiles), waitingHandler);
+            FileProcessor.deleteChunkFiles(FileProcessor.getOutFiles(outputFolder, shardFiles), waitingHandler);
+            FileProcessor.deleteChunkFiles(FileProcessor.getPNovoResultFiles(outputFolder, shardFiles), waitingHandler);
+            currentShardSet.delete(waitingHandler);
+            shardFolder.delete();
+        }
+    }
+
+    /**
+     * Returns the shards of the given spectrum file. The shards left by a run
+     * which did not end, for example when DeNovoGUI was killed, are reused if
+     * the spectrum file did not change, otherwise the
+     * spectra are split in one shard per thread: mzML, mzXML and compressed
+     * mgf files are streamed into mgf shards, mgf files are split in shards of
+     * similar cost.
+     *
+     * @param session the sequencing session
+     * @param spectrumFile the spectrum file
+     * @param shardFolder the folder where to write the shards
+     * @param waitingHandler the waiting handler
+     *
+     * @return the shards of the spectrum file, null if the run was canceled
+     *
+     * @throws IOException thrown if the file cannot be read or the shards
+     * cannot be written
+     */
+    private ShardSet getShardSet(SequencingSession session, File spectrumFile, File shardFolder, WaitingHandler waitingHandler) throws IOException {
+
+        waitingHandler.appendReportEndLine();
+
+        ShardSet result = ShardSet.load(spectrumFile, shardFolder);
+        if (result != null) {
+            waitingHandler.appendReport("Reusing the " + result.getNShards() + " shards of " + spectrumFile.getName() + " (" + result.getNSpectra() + " spectra).", true, true);
+            return result;
+        }
+
+        waitingHandler.appendReport("Preparing the spectra of " + spectrumFile.getName() + ".", true, true);
+        shardFolder.mkdirs();
+        ArrayList<File> shardFiles;
+        if (XmlSpectrumFile.isXmlSpectrumFile(spectrumFile)) {
+            XmlSpectrumFile xmlSpectrumFile = new XmlSpectrumFile(spectrumFile, waitingHandler);
+            shardFiles = xmlSpectrumFile.writeMgfChunks(session.nThreads, shardFolder, waitingHandler);
+        } else if (CompressedMgfFile.isCompressedMgfFile(spectrumFile)) {
+            shardFiles = new CompressedMgfFile(spectrumFile, session.nThreads).writeMgfChunks(session.nThreads, shardFolder, waitingHandler);
+        } else {
+            shardFiles = FileProcessor.chunkFileByCost(spectrumFile, session.nThreads, shardFolder, waitingHandler);
+        }
+
+        if (waitingHandler.isRunCanceled()) {
+            FileProcessor.deleteChunkFiles(shardFiles, waitingHandler);
+            return null;
+        }
+
+        result = ShardSet.create(spectrumFile, shardFiles, shardFolder);
+        waitingHandler.appendReport(result.getNSpectra() + " spectra in " + result.getNShards() + " shards.", true, true);
+        return result;
+    }
+
+    /**
+     * Sequences the given shards using the given algorithm.
+     *
+     * @param session the sequencing session
+     * @param algorithm the algorithm
+     * @param algorithmName the name of the algorithm to display
+     * @param exeTitle the name of the executable of the algorithm, ignored for
+     * Novor
+     * @param jobSupervisor the supervisor of the jobs of the algorithm
+     * @param shards the shards to sequence
+     * @param spectrumFile the spectrum file the shards were taken from
+     * @param outputFolder the output folder
+     * @param searchParameters the search parameters
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if the shards cannot be preprocessed
+     */
+    private void sequenceShards(SequencingSession session, Advocate algorithm, String algorithmName, String exeTitle, JobSupervisor jobSupervisor, ShardSet shards, File spectrumFile,
+            File outputFolder, SearchParameters searchParameters, WaitingHandler waitingHandler) throws IOException {
+
+        Duration algorithmDuration = new Duration();
+        algorithmDuration.start();
+
+        waitingHandler.appendReportEndLine();
+        waitingHandler.appendReport("Sequencing " + spectrumFile.getName() + " using " + algorithmName + ".", true, true);
+        waitingHandler.appendReportEndLine();
+
+        // the selected and preprocessed shards have the names of the shards, their results are merged the same way
+        ArrayList<File> selectedFiles = selectSpectra(session, algorithm, algorithmName, shards.getShardFiles(), waitingHandler);
+        ArrayList<File> sequencedFiles = new ArrayList<File>(selectedFiles.size());
+        ArrayList<Integer> shardSpectra = new ArrayList<Integer>(selectedFiles.size());
+        int nSequencedSpectra = 0;
+        for (int i = 0; i < shards.getNShards(); i++) {
+            if (selectedFiles.get(i) != null) {
+                int nShardSpectra = getNSelectedSpectra(session, shards.getShardFiles().get(i), shards.getNSpectra(i));
+                sequencedFiles.add(selectedFiles.get(i));
+                shardSpectra.add(nShardSpectra);
+                nSequencedSpectra += nShardSpectra;
+            }
+        }
+        try {
+            ArrayList<File> shardFiles = preprocessSpectra(session, algorithm, algorithmName, sequencedFiles, searchParameters, waitingHandler);
+            for (int i = 0; i < shardFiles.size() && !waitingHandler.isRunCanceled(); i++) {
+                jobSupervisor.submit(getJobFactory(session, algorithm, exeTitle, shardFiles.get(i), nSequencedSpectra, searchParameters, waitingHandler), outputFolder, shardSpectra.get(i));
+            }
+            awaitJobs(session, jobSupervisor, waitingHandler);
+            deletePreprocessedSpectra(session, waitingHandler);
+            completeSelection(session, algorithm, shards.getShardFiles(), outputFolder, waitingHandler);
+        } finally {
+            deletePreprocessedSpectra(session, waitingHandler);
+            deleteSelectedSpectra(session, waitingHandler);
+        }
+
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        algorithmDuration.end();
+
+        waitingHandler.appendReportEndLine();
+        waitingHandler.appendReport("Sequencing " + spectrumFile.getName() + " using " + algorithmName + " completed (" + algorithmDuration.toString() + ").", true, true);
+        waitingHandler.appendReportEndLine();
+        waitingHandler.increasePrimaryProgressCounter();
+    }
+
+    /**
+     * Preprocesses the peaks of the given mgf files for an algorithm. The
+     * reduced files are written in a folder of the algorithm under the names
+     * of the mgf files, so that their results are named like the results of
+     * the mgf files. The files are returned as they are if no preprocessing is
+     * set for the algorithm or if they are not mgf files. When the charges are
+     * assigned, the jobs of the algorithm use the charges of the spectra.
+     *
+     * @param session the sequencing session
+     * @param algorithm the algorithm
+     * @param algorithmName the name of the algorithm to display
+     * @param mgfFiles the mgf files
+     * @param searchParameters the search parameters
+     * @param waitingHandler the waiting handler
+     *
+     * @return the files to sequence, in the order of the mgf files
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    private ArrayList<File> preprocessSpectra(SequencingSession session, Advocate algorithm, String algorithmName, List<File> mgfFiles,
+            SearchParameters searchParameters, WaitingHandler waitingHandler) throws IOException {
+
+        String algorithmKey = getAlgorithmKey(algorithm);
+        PeakPreprocessor peakPreprocessor = session.peakPreprocessors.get(algorithmKey);
+        session.chargesAssigned = false;
+        if (peakPreprocessor == null || !peakPreprocessor.isEnabled() || waitingHandler.isRunCanceled()) {
+            return new ArrayList<File>(mgfFiles);
+        }
+        for (File mgfFile : mgfFiles) {
+            if (!mgfFile.getName().toLowerCase().endsWith(".mgf")) {
+                waitingHandler.appendReport("The spectra of " + mgfFile.getName() + " can only be preprocessed in the mgf format, they are sequenced by " + algorithmName + " as they are.", true, true);
+                return new ArrayList<File>(mgfFiles);
+            }
+        }
+
+        waitingHandler.appendReport("Preprocessing the spectra for " + algorithmName + " (" + peakPreprocessor + ").", true, true);
+        File destinationFolder = new File(new File(session.sessionFolder.getFolder(), PREPROCESSED_SPECTRA_FOLDER), algorithmKey);
+        boolean ppm = searchParameters.getFragmentAccuracyType() == SearchParameters.MassAccuracyType.PPM;
+        session.preprocessedFiles = new ArrayList<File>(mgfFiles.size());
+        for (File mgfFile : mgfFiles) {
+            session.preprocessedFiles.add(new File(destinationFolder, mgfFile.getName()));
+        }
+        ArrayList<File> result = peakPreprocessor.process(mgfFiles, destinationFolder, searchParameters.getFragmentIonAccuracy(), ppm, session.nThreads, waitingHandler);
+        // the algorithm then scores every spectrum for its assigned charges only
+        session.chargesAssigned = peakPreprocessor.isAssigningCharges();
+        return result;
+    }
+
+    /**
+     * Deletes the preprocessed spectrum files of the session, if any.
+     *
+     * @param session the sequencing session
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if a file cannot be deleted
+     */
+    private void deletePreprocessedSpectra(SequencingSession session, WaitingHandler waitingHandler) throws IOException {
+        ArrayList<File> preprocessedFiles = session.preprocessedFiles;
+        if (preprocessedFiles != null) {
+            session.preprocessedFiles = null;
+            deleteAlgorithmFiles(preprocessedFiles, waitingHandler);
+        }
+    }
+
+    /**
+     * Deletes the given spectrum files written in the folder of an algorithm,
+     * the folder of the algorithm and its parent folder are deleted when
+     * empty.
+     *
+     * @param files the files of the algorithm
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if a file cannot be deleted
+     */
+    private static void deleteAlgorithmFiles(ArrayList<File> files, WaitingHandler waitingHandler) throws IOException {
+        FileProcessor.deleteChunkFiles(files, waitingHandler);
+        if (!files.isEmpty()) {
+            File algorithmFolder = files.get(0).getParentFile();
+            algorithmFolder.delete();
+            algorithmFolder.getParentFile().delete();
+        }
+    }
+
+    /**
+     * Selects the spectra of the given mgf files to sequence with an
+     * algorithm: the spectra not matching the routing rules of the algorithm
+     * and the spectra confidently sequenced by the previous algorithms of the
+     * cascade are removed. The selected spectra are written in a folder of the
+     * algorithm under the names of the mgf files, so that their results are
+     * named like the results of the mgf files. The files are returned as they
+     * are if no spectrum was removed.
+     *
+     * @param session the sequencing session
+     * @param algorithm the algorithm
+     * @param algorithmName the name of the algorithm to display
+     * @param mgfFiles the mgf files
+     * @param waitingHandler the waiting handler
+     *
+     * @return the files to sequence in the order of the mgf files, null for
+     * the files without spectrum left
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    private ArrayList<File> selectSpectra(SequencingSession session, Advocate algorithm, String algorithmName, List<File> mgfFiles,
+            WaitingHandler waitingHandler) throws IOException {
+
+        ArrayList<File> result = new ArrayList<File>(mgfFiles);
+        session.selectedIndexes = new HashMap<String, int[]>();
+        String algorithmKey = getAlgorithmKey(algorithm);
+        SpectrumRouter router = session.spectrumRouter != null && session.spectrumRouter.isRouting(algorithmKey) ? session.spectrumRouter : null;
+        if (session.spectrumCascade == null && router == null || waitingHandler.isRunCanceled()) {
+            return result;
+        }
+
+        File destinationFolder = new File(new File(session.sessionFolder.getFolder(), SELECTED_SPECTRA_FOLDER), algorithmKey);
+        ArrayList<File> selectedFiles = new ArrayList<File>();
+        session.selectedFiles = selectedFiles;
+        int nRouted = 0;
+        int nConfident = 0;
+        for (int i = 0; i < mgfFiles.size() && !waitingHandler.isRunCanceled(); i++) {
+            File mgfFile = mgfFiles.get(i);
+            BitSet excluded = new BitSet();
+            if (router != null) {
+                excluded.or(router.getExcluded(algorithmKey, mgfFile));
+                nRouted += excluded.cardinality();
+            }
+            if (session.spectrumCascade != null) {
+                BitSet confident = session.spectrumCascade.getConfidentSpectra(mgfFile);
+                confident.andNot(excluded);
+                nConfident += confident.cardinality();
+                excluded.or(confident);
+            }
+            File selectedFile = new File(destinationFolder, mgfFile.getName());
+            selectedFiles.add(selectedFile);
+            int[] spectrumIndexes = SpectrumCascade.filter(mgfFile, excluded, selectedFile);
+            if (spectrumIndexes != null) {
+                session.selectedIndexes.put(mgfFile.getName(), spectrumIndexes);
+                result.set(i, spectrumIndexes.length > 0 ? selectedFile : null);
+            }
+        }
+        if (nRouted > 0) {
+            waitingHandler.appendReport(nRouted + " spectra not matching the routing rules of " + algorithmName + " (" + router.toString(algorithmKey) + ") are not sequenced by " + algorithmName + ".", true, true);
+        }
+        if (nConfident > 0) {
+            waitingHandler.appendReport(nConfident + " spectra confidently sequenced by the previous algorithms are not sequenced by " + algorithmName + ".", true, true);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of spectra of an mgf file selected for the
+     * algorithm being run.
+     *
+     * @param session the sequencing session
+     * @param mgfFile the mgf file
+     * @param nSpectra the number of spectra of the mgf file
+     *
+     * @return the number of spectra selected
+     */
+    private int getNSelectedSpectra(SequencingSession session, File mgfFile, int nSpectra) {
+        int[] spectrumIndexes = session.selectedIndexes.get(mgfFile.getName());
+        return spectrumIndexes == null ? nSpectra : spectrumIndexes.length;
+    }
+
+    /**
+     * Completes the sequencing of the given mgf files by an algorithm of the
+     * algorithm: the spectrum indexes of the results obtained on the selected
+     * spectra are mapped back to the mgf files, the spectra confidently
+     * sequenced are marked for the cascade, and the files of the selected
+     * spectra are deleted.
+     *
+     * @param session the sequencing session
+     * @param algorithm the algorithm
+     * @param mgfFiles the mgf files
+     * @param outputFolder the output folder
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if the results cannot be read or written
+     */
+    private void completeSelection(SequencingSession session, Advocate algorithm, List<File> mgfFiles, File outputFolder, WaitingHandler waitingHandler) throws IOException {
+
+        SpectrumCascade spectrumCascade = session.spectrumCascade;
+        if (!waitingHandler.isRunCanceled()) {
+            for (File mgfFile : mgfFiles) {
+                int[] spectrumIndexes = session.selectedIndexes.get(mgfFile.getName());
+                if (algorithm == Advocate.novor) {
+                    File novorFile = FileProcessor.getNovorResultFile(outputFolder, mgfFile);
+                    if (spectrumIndexes != null) {
+                        SpectrumCascade.mapNovorFile(novorFile, spectrumIndexes);
+                    }
+                    if (spectrumCascade != null) {
+                        spectrumCascade.addNovorResults(mgfFile, novorFile);
+                    }
+                } else if (algorithm == Advocate.direcTag) {
+                    if (spectrumIndexes != null) {
+                        SpectrumCascade.mapTagsFile(FileProcessor.getTagsFile(outputFolder, mgfFile), spectrumIndexes);
+                    }
+                } else if (algorithm == Advocate.pepnovo && spectrumCascade != null) {
+                    // the PepNovo+ and pNovo+ results refer to the spectrum titles
+                    spectrumCascade.addPepNovoResults(mgfFile, FileProcessor.getOutFile(outputFolder, mgfFile));
+                }
+            }
+        }
+        deleteSelectedSpectra(session, waitingHandler);
+    }
+
+    /**
+     * Deletes the files of the spectra selected in the session, if any.
+     *
+     * @param session the sequencing session
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if a file cannot be deleted
+     */
+    private void deleteSelectedSpectra(SequencingSession session, WaitingHandler waitingHandler) throws IOException {
+        ArrayList<File> selectedFiles = session.selectedFiles;
+        if (selectedFiles != null) {
+            session.selectedFiles = null;
+            deleteAlgorithmFiles(selectedFiles, waitingHandler);
+        }
+        session.selectedIndexes = new HashMap<String, int[]>();
+    }
+
+    /**
+     * Returns the name of the given algorithm on the command line.
+     *
+     * @param algorithm the algorithm
+     *
+     * @return the name of the algorithm on the command line
+     */
+    public static String getAlgorithmKey(Advocate algorithm) {
+        if (algorithm == Advocate.novor) {
+            return "novor";
+        } else if (algorithm == Advocate.direcTag) {
+            return "directag";
+        } else if (algorithm == Advocate.pNovo) {
+            return "pnovo";
+        }
+        return "pepnovo";
+    }
+
+    /**
+     * Returns the spectrum offsets of the chunks of the given result files.
+     *
+     * @param resultFiles the result files found
+     * @param expectedFiles the result files expected, one per chunk
+     * @param chunkOffsets the spectrum offsets of the chunks
+     *
+     * @return the spectrum offsets of the result files
+     */
+    private ArrayList<Integer> getOffsets(ArrayList<File> resultFiles, ArrayList<File> expectedFiles, ArrayList<Integer> chunkOffsets) {
+        ArrayList<Integer> result = new ArrayList<Integer>(resultFiles.size());
+        for (File resultFile : resultFiles) {
+            result.add(chunkOffsets.get(expectedFiles.indexOf(resultFile)));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a job factory for the given algorithm and spectrum file.
+     *
+     * @param session the sequencing session
+     * @param algorithm the algorithm
+     * @param exeTitle the name of the executable of the algorithm, ignored for
+     * Novor
+     * @param spectrumFile the spectrum file to process
+     * @param nSpectra the number of spectra of the spectrum file sequenced,
+     * used to display the progress, -1 if not known
+     * @param searchParameters the search parameters
+     * @param waitingHandler the waiting handler
+     *
+     * @return a job factory
+     */
+    private JobFactory getJobFactory(final SequencingSession session, final Advocate algorithm, final String exeTitle, final File spectrumFile, final int nSpectra, final SearchParameters searchParameters, final WaitingHandler waitingHandler) {
+        final boolean useSpectrumCharge = session.chargesAssigned;
+        return new JobFactory() {
+            @Override
+            public Job createJob(File jobOutputFolder) {
+                Job job;
+                if (algorithm == Advocate.novor) {
+                    NovorJob novorJob = new NovorJob(novorFolder, spectrumFile, jobOutputFolder, searchParameters, waitingHandler instanceof WaitingHandlerCLIImpl, session.novorHeapSize, waitingHandler, session.exceptionHandler);
+                    novorJob.setInProcess(session.novorInProcess);
+                    job = novorJob;
+                } else if (algorithm == Advocate.direcTag) {
+                    int direcTagThreads = session.resourceMonitor == null ? session.nThreads : session.resourceMonitor.getAvailableCpus(session.nThreads, 0);
+                    job = new DirecTagJob(direcTagFolder, exeTitle, spectrumFile, direcTagThreads, jobOutputFolder, useSpectrumCharge, searchParameters, waitingHandler, session.exceptionHandler);
+                } else if (algorithm == Advocate.pNovo) {
+                    job = new PNovoJob(pNovoFolder, exeTitle, spectrumFile, 1, jobOutputFolder, searchParameters, waitingHandler, session.exceptionHandler);
+                } else {
+                    job = new PepNovoJob(pepNovoFolder, exeTitle, spectrumFile, jobOutputFolder, session.modelFolder, useSpectrumCharge, searchParameters, waitingHandler, session.exceptionHandler);
+                    job.setTotalSpectrumCount(nSpectra);
+                }
+                job.getMetrics().setSpectrumFile(spectrumFile.getName());
+                return job;
+            }
+        };
+    }
+
+    /**
+     * Runs the jobs submitted to the given supervisor and waits for their
+     * completion.
+     *
+     * @param session the sequencing session
+     * @param jobSupervisor the job supervisor
+     * @param waitingHandler the waiting handler
+     */
+    private void awaitJobs(SequencingSession session, JobSupervisor jobSupervisor, WaitingHandler waitingHandler) {
+        try {
+            jobSupervisor.awaitCompletion();
+        } catch (InterruptedException ex) {
+            if (!waitingHandler.isRunCanceled()) {
+                jobSupervisor.cancel();
+                session.exceptionHandler.catchException(ex);
+            }
+        }
+    }
+
+    /**
+     * Cancels the sequencing process run with the given waiting handler. The
+     * other runs of the handler are not affected. The processes of the jobs
+     * and their descendants are stopped and the temporary files deleted in
+     * the background once the processes are stopped, the method returns
+     * immediately.
+     *
+     * @param outputFolder the output folder
+     * @param waitingHandler the waiting handler of the run to cancel
+     * @throws IOException thrown if the deletion of the chunk files fail
+     */
+    public void cancelSequencing(File outputFolder, WaitingHandler waitingHandler) throws IOException {
+        for (SequencingSession session : sessions) {
+            if (session.waitingHandler == waitingHandler || session.ownerWaitingHandler == waitingHandler) {
+                cancelSession(session, outputFolder);
+            }
+        }
+    }
+
+    /**
+     * Cancels the jobs of a session and deletes its temporary files in the
+     * background: the shards, the results of the shards, and the preprocessed
+     * and selected spectra.
+     *
+     * @param session the session to cancel
+     * @param outputFolder the output folder
+     */
+    private void cancelSession(final SequencingSession session, final File outputFolder) {
+        final WaitingHandler waitingHandler = session.waitingHandler;
+        if (session.pepNovoSupervisor != null) {
+            // cancel the jobs
+            final JobSupervisor[] jobSupervisors = new JobSupervisor[]{session.novorSupervisor, session.direcTagSupervisor, session.pepNovoSupervisor, session.pNovoSupervisor};
+            for (JobSupervisor jobSupervisor : jobSupervisors) {
+                jobSupervisor.cancel();
+            }
+
+            // delete the temp files once the processes are stopped
+            final ShardSet currentShardSet = session.shardSet;
+            final ArrayList<File> currentPreprocessedFiles = session.preprocessedFiles;
+            final ArrayList<File> currentSelectedFiles = session.selectedFiles;
+            Thread cleanupThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (JobSupervisor jobSupervisor : jobSupervisors) {
+                            jobSupervisor.awaitTermination();
+                        }
+                        if (currentPreprocessedFiles != null) {
+                            deleteAlgorithmFiles(currentPreprocessedFiles, waitingHandler);
+                        }
+                        if (currentSelectedFiles != null) {
+                            deleteAlgorithmFiles(currentSelectedFiles, waitingHandler);
+                        }
+                        if (currentShardSet != null) {
+                            ArrayList<File> shardFiles = currentShardSet.getShardFiles();
+                            FileProcessor.deleteChunkFiles(FileProcessor.getNovorResultFiles(outputFolder, shardFiles), waitingHandler);
+                            FileProcessor.deleteChunkFiles(FileProcessor.getTagsFiles(outputFolder, shardFiles), waitingHandler);
+                            FileProcessor.deleteChunkFiles(FileProcessor.getOutFiles(outputFolder, shardFiles), waitingHandler);
+                            FileProcessor.deleteChunkFiles(FileProcessor.getPNovoResultFiles(outputFolder, shardFiles), waitingHandler);
+                            currentShardSet.delete(waitingHandler);
+                        }
+                        if (session.sessionFolder != null) {
+                            session.sessionFolder.delete();
+                        }
+                    } catch (InterruptedException e) {
+                        // the files are left
+                    } catch (IOException e) {
+                        session.exceptionHandler.catchException(e);
+                    }
+                }
+            }, "DeNovoGUI cleanup");
+            cleanupThread.setDaemon(true);
+            cleanupThread.start();
+        }
+    }
+
+    /**
+     * Returns the path to the jar file.
+     *
+     * @return the path to the jar file
+     */
+    public String getJarFilePath() {
+        return CompomicsWrapper.getJarFilePath(this.getClass().getResource("DeNovoSequencingHandler.class").getPath(), "DeNovoGUI");
+    }
+
+    /**
+     * Returns the user defined enzymes file.
+     *
+     * @param jarFolder the folder containing the jar file
+     * @return the user defined enzymes file
+     */
+    public static File getEnzymesFile(String jarFolder) {
+        File result = new File(jarFolder, ENZYME_FILE);
+        if (!result.exists()) {
+            JOptionPane.showMessageDialog(null, ENZYME_FILE + " not found.", "Enzymes File Error", JOptionPane.ERROR_MESSAGE);
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of threads to use for the processing.
+     *
+     * @return the mgfNSpectra
+     */
+    public int getNThreads() {
+        return nThreads;
+    }
+
+    /**
      * Set the number of threads to use.
      *
      * @param nThreads the nThreads to set
@@ -570,6 +1587,257 @@ public class DeNovoSequencingHandler {
         this.nThreads = nThreads;
     }
 
+    /**
+     * Returns the time in milliseconds after which a job is considered as
+     * hanging when its duration cannot be estimated yet.
+     *
+     * @return the job timeout in milliseconds
+     */
+    public long getJobTimeout() {
+        return jobTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds after which a job is considered as
+     * hanging when its duration cannot be estimated yet. Once jobs have
+     * completed, the timeout is derived from the number of spectra processed
+     * per second.
+     *
+     * @param jobTimeout the job timeout in milliseconds
+     */
+    public void setJobTimeout(long jobTimeout) {
+        this.jobTimeout = jobTimeout;
+    }
+
+    /**
+     * Returns the plan of the run used to estimate the duration of the first
+     * jobs.
+     *
+     * @return the plan of the run, null if not available
+     */
+    public RunPlan getRunPlan() {
+        return runPlan;
+    }
+
+    /**
+     * Sets the plan of the run estimated on a sample of the spectra, used to
+     * estimate the duration of the first jobs.
+     *
+     * @param runPlan the plan of the run, null to estimate the durations
+     * from the jobs of the run only
+     */
+    public void setRunPlan(RunPlan runPlan) {
+        this.runPlan = runPlan;
+    }
+
+    /**
+     * Returns the monitor of the resources of the machine, null if not used.
+     *
+     * @return the monitor of the resources of the machine
+     */
+    public ResourceMonitor getResourceMonitor() {
+        return resourceMonitor;
+    }
+
+    /**
+     * Sets the monitor used to adapt the number of jobs run in parallel and
+     * the memory of the Novor JVMs to the resources left by the other
+     * processes of the machine.
+     *
+     * @param resourceMonitor the resource monitor, null to use nThreads
+     * whatever the load of the machine
+     */
+    public void setResourceMonitor(ResourceMonitor resourceMonitor) {
+        this.resourceMonitor = resourceMonitor;
+    }
+
+    /**
+     * Indicates whether slow jobs are speculatively started again on idle
+     * threads.
+     *
+     * @return true if slow jobs are speculatively started again
+     */
+    public boolean isSpeculativeExecution() {
+        return speculativeExecution;
+    }
+
+    /**
+     * Sets whether slow jobs are speculatively started again on idle threads.
+     * The first copy to finish is kept and the other is canceled.
+     *
+     * @param speculativeExecution true if slow jobs should be speculatively
+     * started again
+     */
+    public void setSpeculativeExecution(boolean speculativeExecution) {
+        this.speculativeExecution = speculativeExecution;
+    }
+
+    /**
+     * Indicates whether Novor is run in the DeNovoGUI process.
+     *
+     * @return true if Novor is run in the DeNovoGUI process
+     */
+    public boolean isNovorInProcess() {
+        return novorInProcess;
+    }
+
+    /**
+     * Sets whether Novor is run in the DeNovoGUI process instead of a
+     * separate Java process for every job. The Novor classes are then loaded
+     * and compiled once and the jobs share the heap of DeNovoGUI.
+     *
+     * @param novorInProcess true if Novor should be run in the DeNovoGUI
+     * process
+     */
+    public void setNovorInProcess(boolean novorInProcess) {
+        this.novorInProcess = novorInProcess;
+    }
+
+    /**
+     * Returns the number of spectra under which mgf files are sequenced in
+     * batches, 0 if every file is sequenced separately.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of spectra under which mgf files are sequenced in
+     * batches. The small files are concatenated until the batch contains at
+     * least this number of spectra and every algorithm is run once per batch,
+     * the results are then split back into the results of every file.
+     *
+     * @param batchSize the batch size, 0 to sequence every file separately
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Returns the peak preprocessing of the spectra of every algorithm,
+     * indexed by the name of the algorithm on the command line.
+     *
+     * @return the peak preprocessing of every algorithm
+     */
+    public HashMap<String, PeakPreprocessor> getPeakPreprocessors() {
+        return peakPreprocessors;
+    }
+
+    /**
+     * Sets the peak preprocessing of the spectra of every algorithm, indexed
+     * by the name of the algorithm on the command line: pepnovo, directag,
+     * pnovo or novor. The mgf files are reduced in parallel before being
+     * sequenced by the algorithm, for example to limit the number of peaks
+     * given to DirecTag and PepNovo+.
+     *
+     * @param peakPreprocessors the peak preprocessing of every algorithm
+     */
+    public void setPeakPreprocessors(HashMap<String, PeakPreprocessor> peakPreprocessors) {
+        this.peakPreprocessors = peakPreprocessors;
+    }
+
+    /**
+     * Returns the score thresholds of the sequencing cascade, indexed by the
+     * name of the algorithm on the command line.
+     *
+     * @return the score thresholds of the sequencing cascade
+     */
+    public HashMap<String, Double> getCascadeThresholds() {
+        return cascadeThresholds;
+    }
+
+    /**
+     * Sets the score thresholds of the sequencing cascade, indexed by the
+     * name of the algorithm on the command line: novor or pepnovo. An empty
+     * map sequences all spectra with every algorithm.
+     *
+     * @param cascadeThresholds the score thresholds of the sequencing cascade
+     */
+    public void setCascadeThresholds(HashMap<String, Double> cascadeThresholds) {
+        this.cascadeThresholds = cascadeThresholds;
+    }
+
+    /**
+     * Returns the routing of the spectra to the algorithms, null if all
+     * spectra are sequenced with every algorithm.
+     *
+     * @return the routing of the spectra to the algorithms
+     */
+    public SpectrumRouter getSpectrumRouter() {
+        return spectrumRouter;
+    }
+
+    /**
+     * Sets the routing of the spectra to the algorithms according to their
+     * characteristics, null to sequence all spectra with every algorithm.
+     *
+     * @param spectrumRouter the routing of the spectra to the algorithms
+     */
+    public void setSpectrumRouter(SpectrumRouter spectrumRouter) {
+        this.spectrumRouter = spectrumRouter;
+    }
+
+    /**
+     * Indicates whether near-identical spectra are clustered before
+     * sequencing.
+     *
+     * @return true if the spectra are clustered
+     */
+    public boolean isClusterSpectra() {
+        return clusterSpectra;
+    }
+
+    /**
+     * Sets whether near-identical spectra are clustered before sequencing.
+     * Only one representative per cluster is then sequenced and its results
+     * are given back to the other members when importing the results.
+     *
+     * @param clusterSpectra true if the spectra should be clustered
+     */
+    public void setClusterSpectra(boolean clusterSpectra) {
+        this.clusterSpectra = clusterSpectra;
+    }
+
+    /**
+     * Returns the minimal cosine similarity for two spectra to be clustered.
+     *
+     * @return the minimal cosine similarity for two spectra to be clustered
+     */
+    public double getClusteringSimilarity() {
+        return clusteringSimilarity;
+    }
+
+    /**
+     * Sets the minimal cosine similarity for two spectra to be clustered.
+     *
+     * @param clusteringSimilarity the minimal cosine similarity for two
+     * spectra to be clustered
+     */
+    public void setClusteringSimilarity(double clusteringSimilarity) {
+        this.clusteringSimilarity = clusteringSimilarity;
+    }
+
+    /**
+     * Returns the width of the m/z bins used to compare spectra when
+     * clustering.
+     *
+     * @return the width of the m/z bins
+     */
+    public double getClusteringBinSize() {
+        return clusteringBinSize;
+    }
+
+    /**
+     * Sets the width of the m/z bins used to compare spectra when clustering.
+     *
+     * @param clusteringBinSize the width of the m/z bins
+     */
+    public void setClusteringBinSize(double clusteringBinSize) {
+        this.clusteringBinSize = clusteringBinSize;
+    }
+
     /**
      * Returns the file containing the enzymes.
      *
@@ -652,4 +1920,187 @@ public class DeNovoSequencingHandler {
         }
         return error;
     }
+
+    /**
+     * The state of a sequencing run. Every call to startSequencing has its own
+     * session so that runs with different parameters can use the same handler
+     * concurrently.
+     */
+    private static class SequencingSession {
+
+        /**
+         * If true, PepNovo will be run.
+         */
+        private final boolean enablePepNovo;
+        /**
+         * If true, DirecTag will be used.
+         */
+        private final boolean enableDirecTag;
+        /**
+         * If true, pNovo+ will be run.
+         */
+        private final boolean enablePNovo;
+        /**
+         * If true, Novor will be run.
+         */
+        private final boolean enableNovor;
+        /**
+         * The waiting handler of the run.
+         */
+        private final WaitingHandler waitingHandler;
+        /**
+         * The exception handler.
+         */
+        private final ExceptionHandler exceptionHandler;
+        /**
+         * The waiting handler used to cancel the session: the waiting handler
+         * of the session, or the waiting handler of the plan for the sample of
+         * a plan.
+         */
+        private WaitingHandler ownerWaitingHandler;
+        /**
+         * The PepNovo+ model folder containing the modifications of the run,
+         * null if the models of PepNovo+ are used.
+         */
+        private File modelFolder = null;
+        /**
+         * The folder where the temporary files of the session are written,
+         * null before the run starts.
+         */
+        private volatile SessionFolder sessionFolder = null;
+        /**
+         * The supervisor of the Novor jobs.
+         */
+        private volatile JobSupervisor novorSupervisor = null;
+        /**
+         * The supervisor of the DirecTag jobs.
+         */
+        private volatile JobSupervisor direcTagSupervisor = null;
+        /**
+         * The supervisor of the PepNovo+ jobs.
+         */
+        private volatile JobSupervisor pepNovoSupervisor = null;
+        /**
+         * The supervisor of the pNovo+ jobs.
+         */
+        private volatile JobSupervisor pNovoSupervisor = null;
+        /**
+         * The indexer counting the spectra of the mgf files in the background.
+         */
+        private MgfIndexer mgfIndexer = null;
+        /**
+         * The metrics of the run.
+         */
+        private RunMetrics runMetrics = null;
+        /**
+         * The maximal heap size in bytes of the Novor JVMs, the memory options
+         * of DeNovoGUI are used if not positive.
+         */
+        private long novorHeapSize = -1;
+        /**
+         * The shards of the spectrum file being sequenced, null if the file is
+         * not sharded.
+         */
+        private volatile ShardSet shardSet = null;
+        /**
+         * The preprocessed spectrum files being sequenced, null if the spectra
+         * are not preprocessed.
+         */
+        private volatile ArrayList<File> preprocessedFiles = null;
+        /**
+         * Indicates whether the charges of the spectrum files being sequenced
+         * were assigned when preprocessing them.
+         */
+        private volatile boolean chargesAssigned = false;
+        /**
+         * The cascade of the algorithms, null if every algorithm sequences all
+         * spectra.
+         */
+        private SpectrumCascade spectrumCascade = null;
+        /**
+         * The mgf files of the selected spectra being sequenced, null if all
+         * spectra are sequenced.
+         */
+        private volatile ArrayList<File> selectedFiles = null;
+        /**
+         * The spectrum indexes in the original mgf file of the spectra of the
+         * files of the selected spectra, indexed by name of the mgf file.
+         */
+        private HashMap<String, int[]> selectedIndexes = new HashMap<String, int[]>();
+        /**
+         * The number of threads of the run.
+         */
+        private int nThreads;
+        /**
+         * The time in milliseconds after which a job of the run is considered
+         * as hanging when its duration cannot be estimated yet.
+         */
+        private long jobTimeout;
+        /**
+         * If true, slow jobs are speculatively started again on idle threads.
+         */
+        private boolean speculativeExecution;
+        /**
+         * The monitor of the resources of the machine, null to use all threads
+         * whatever the load of the machine.
+         */
+        private ResourceMonitor resourceMonitor = null;
+        /**
+         * If true, near-identical spectra are clustered and only one
+         * representative per cluster is sequenced.
+         */
+        private boolean clusterSpectra;
+        /**
+         * The minimal cosine similarity for two spectra to be clustered.
+         */
+        private double clusteringSimilarity;
+        /**
+         * The width of the m/z bins used to compare spectra when clustering.
+         */
+        private double clusteringBinSize;
+        /**
+         * If true, Novor is run in the DeNovoGUI process.
+         */
+        private boolean novorInProcess;
+        /**
+         * The minimal number of spectra of the batches of small mgf files, 0
+         * to sequence every file separately.
+         */
+        private int batchSize;
+        /**
+         * The peak preprocessing of the spectra of every algorithm, indexed by
+         * the name of the algorithm on the command line.
+         */
+        private HashMap<String, PeakPreprocessor> peakPreprocessors = new HashMap<String, PeakPreprocessor>();
+        /**
+         * The routing of the spectra to the algorithms, null to sequence all
+         * spectra with every algorithm.
+         */
+        private SpectrumRouter spectrumRouter = null;
+        /**
+         * The plan used to estimate the duration of the first jobs, null if
+         * not available.
+         */
+        private RunPlan runPlan = null;
+
+        /**
+         * Constructor.
+         *
+         * @param enablePepNovo run PepNovo?
+         * @param enableDirecTag run DirecTag?
+         * @param enablePNovo run pNovo?
+         * @param enableNovor run Novor?
+         * @param waitingHandler the waiting handler of the run
+         * @param exceptionHandler the exception handler
+         */
+        public SequencingSession(boolean enablePepNovo, boolean enableDirecTag, boolean enablePNovo, boolean enableNovor, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+            this.enablePepNovo = enablePepNovo;
+            this.enableDirecTag = enableDirecTag;
+            this.enablePNovo = enablePNovo;
+            this.enableNovor = enableNovor;
+            this.waitingHandler = waitingHandler;
+            this.ownerWaitingHandler = waitingHandler;
+            this.exceptionHandler = exceptionHandler;
+        }
+    }
 }
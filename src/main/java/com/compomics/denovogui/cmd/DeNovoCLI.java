@@ -1,7 +1,14 @@
 package com.compomics.denovogui.cmd;
 
 import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.distributed.DistributedCoordinator;
+import com.compomics.denovogui.distributed.DistributedWorker;
+import com.compomics.denovogui.execution.ResourceMonitor;
+import com.compomics.denovogui.execution.RunMetrics;
+import com.compomics.denovogui.execution.RunPlan;
 import com.compomics.denovogui.preferences.DeNovoGUIPathPreferences;
+import com.compomics.denovogui.service.FolderWatcher;
+import com.compomics.denovogui.service.SequencingService;
 import com.compomics.denovogui.util.Properties;
 import com.compomics.software.CompomicsWrapper;
 import com.compomics.software.settings.PathKey;
@@ -10,13 +17,14 @@ import com.compomics.util.Util;
 import com.compomics.util.exceptions.exception_handlers.CommandLineExceptionHandler;
 import com.compomics.util.experiment.biology.*;
 import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
-import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
 import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
 import com.compomics.util.preferences.UtilitiesUserPreferences;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.concurrent.Callable;
@@ -101,6 +109,7 @@ public class DeNovoCLI implements Callable {
                 exceptionHandler.catchException(e);
             }
         }
+
         try {
             ArrayList<PathKey> errorKeys = DeNovoGUIPathPreferences.getErrorKeys();
             if (!errorKeys.isEmpty()) {
@@ -292,14 +301,66 @@ public class DeNovoCLI implements Callable {
             waitingHandlerCLIImpl.appendReport("Starting DeNovoCLI.", true, true);
             waitingHandlerCLIImpl.appendReportEndLine();
 
-            // load the spectra into the factory
-            SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
-            waitingHandlerCLIImpl.appendReport("Loading the spectra.", true, true);
-            for (File spectrumFile : deNovoCLIInputBean.getSpectrumFiles()) {
-                spectrumFactory.addSpectra(spectrumFile, waitingHandlerCLIImpl);
+            // run as worker of a distributed sequencing
+            if (deNovoCLIInputBean.getWorkerFolder() != null) {
+                DeNovoSequencingHandler searchHandler = getSequencingHandler(pepNovoFolder, direcTagFolder, pNovoFolder, novorFolder);
+                DistributedWorker distributedWorker = new DistributedWorker(deNovoCLIInputBean.getWorkerFolder(), searchHandler);
+                distributedWorker.run(pepNovoExecutableTitle, direcTagExecutableTitle, pNovoExecutableTitle, novorExecutableTitle,
+                        runPepNovo, runDirecTag, runPNovo, runNovor, exceptionHandler);
+                return 0;
+            }
+
+            // run as sequencing service
+            if (deNovoCLIInputBean.getServicePort() != -1) {
+                SequencingService sequencingService = new SequencingService(deNovoCLIInputBean.getServicePort(), deNovoCLIInputBean.getNThreads(),
+                        pepNovoFolder, direcTagFolder, pNovoFolder, novorFolder,
+                        pepNovoFolder != null ? pepNovoExecutableTitle : null, direcTagFolder != null ? direcTagExecutableTitle : null,
+                        pNovoFolder != null ? pNovoExecutableTitle : null, novorFolder != null ? novorExecutableTitle : null,
+                        searchParametersFile, exceptionHandler);
+                sequencingService.setJobTimeout(deNovoCLIInputBean.getJobTimeout() * 60000L);
+                sequencingService.setSpeculativeExecution(deNovoCLIInputBean.isSpeculativeExecution());
+                sequencingService.setNovorInProcess(deNovoCLIInputBean.isNovorInProcess());
+                sequencingService.setBatchSize(deNovoCLIInputBean.getBatchSize());
+                sequencingService.setPeakPreprocessors(deNovoCLIInputBean.getPeakPreprocessors());
+                sequencingService.setCascadeThresholds(deNovoCLIInputBean.getCascadeThresholds());
+                sequencingService.setSpectrumRouter(deNovoCLIInputBean.getSpectrumRouter());
+                if (deNovoCLIInputBean.isAdaptiveResources()) {
+                    sequencingService.setResourceMonitor(new ResourceMonitor());
+                }
+                sequencingService.setClusterSpectra(deNovoCLIInputBean.isClusterSpectra());
+                sequencingService.setClusteringSimilarity(deNovoCLIInputBean.getClusteringSimilarity());
+                sequencingService.start();
+                sequencingService.awaitStop();
+                return 0;
+            }
+
+            // sequence the files of the watched folder as they arrive
+            if (deNovoCLIInputBean.getWatchFolder() != null) {
+                DeNovoSequencingHandler searchHandler = getSequencingHandler(pepNovoFolder, direcTagFolder, pNovoFolder, novorFolder);
+                final FolderWatcher folderWatcher = new FolderWatcher(deNovoCLIInputBean.getWatchFolder(), deNovoCLIInputBean.getOutputFile(), searchHandler,
+                        deNovoCLIInputBean.getWatchInterval() * 1000L, deNovoCLIInputBean.isWatchMarker());
+                Runtime.getRuntime().addShutdownHook(new Thread("DeNovoGUI watcher shutdown") {
+                    @Override
+                    public void run() {
+                        folderWatcher.stop();
+                    }
+                });
+                folderWatcher.run(searchParameters, searchParametersFile, pepNovoExecutableTitle, direcTagExecutableTitle, pNovoExecutableTitle, novorExecutableTitle,
+                        runPepNovo, runDirecTag, runPNovo, runNovor, exceptionHandler);
+                return 0;
+            }
+
+            // coordinate a distributed sequencing
+            if (deNovoCLIInputBean.getCoordinatorFolder() != null) {
+                DistributedCoordinator distributedCoordinator = new DistributedCoordinator(deNovoCLIInputBean.getCoordinatorFolder(),
+                        deNovoCLIInputBean.getNShards(), deNovoCLIInputBean.getWorkerTimeout() * 1000L);
+                distributedCoordinator.run(deNovoCLIInputBean.getSpectrumFiles(), searchParameters, searchParametersFile, deNovoCLIInputBean.getOutputFile(),
+                        runPepNovo, runDirecTag, runPNovo, runNovor, waitingHandlerCLIImpl);
+                return 0;
             }
-            waitingHandlerCLIImpl.appendReport("Done loading the spectra.", true, true);
-            
+
+            // the spectra are indexed by the sequencing handler while sequencing
+
             // incrementing the counter for a new DenovoGUI run
             UtilitiesUserPreferences utilitiesUserPreferences = UtilitiesUserPreferences.loadUserPreferences();
             if (utilitiesUserPreferences.isAutoUpdate()) {
@@ -307,12 +368,35 @@ public class DeNovoCLI implements Callable {
             }
 
             // start the sequencing
-            DeNovoSequencingHandler searchHandler = new DeNovoSequencingHandler(pepNovoFolder, direcTagFolder, pNovoFolder, novorFolder);
-            searchHandler.setNThreads(deNovoCLIInputBean.getNThreads());
-            searchHandler.startSequencing(deNovoCLIInputBean.getSpectrumFiles(),
+            DeNovoSequencingHandler searchHandler = getSequencingHandler(pepNovoFolder, direcTagFolder, pNovoFolder, novorFolder);
+
+            // plan the run on a sample of the spectra
+            if (deNovoCLIInputBean.getPlanPercentage() > 0) {
+                searchHandler.planSequencing(deNovoCLIInputBean.getSpectrumFiles(), deNovoCLIInputBean.getPlanPercentage() / 100,
+                        searchParameters,
+                        deNovoCLIInputBean.getOutputFile(), pepNovoExecutableTitle, direcTagExecutableTitle, pNovoExecutableTitle, novorExecutableTitle,
+                        runPepNovo, runDirecTag, runPNovo, runNovor, waitingHandlerCLIImpl, exceptionHandler);
+                return 0;
+            }
+
+            // the sample of a previous plan is used to estimate the duration of the first jobs
+            RunPlan runPlan = RunPlan.load(new File(deNovoCLIInputBean.getOutputFile(), RunPlan.PLAN_FILE));
+            if (runPlan != null) {
+                waitingHandlerCLIImpl.appendReport("Using the run plan of the output folder to estimate the duration of the first jobs.", true, true);
+                searchHandler.setRunPlan(runPlan);
+            }
+            RunMetrics runMetrics = searchHandler.startSequencing(deNovoCLIInputBean.getSpectrumFiles(),
                     searchParameters,
                     deNovoCLIInputBean.getOutputFile(), searchParametersFile, pepNovoExecutableTitle, direcTagExecutableTitle, pNovoExecutableTitle, novorExecutableTitle,
                     runPepNovo, runDirecTag, runPNovo, runNovor, waitingHandlerCLIImpl, exceptionHandler);
+
+            // save the metrics of the run
+            if (runMetrics != null && !waitingHandlerCLIImpl.isRunCanceled()) {
+                DateFormat df = new SimpleDateFormat("yyyy-MM-dd HH.mm.ss");
+                File metricsFile = new File(deNovoCLIInputBean.getOutputFile(), "DeNovoGUI Report " + df.format(new Date()) + ".json");
+                runMetrics.writeJson(metricsFile);
+                waitingHandlerCLIImpl.appendReport("Run metrics saved to " + metricsFile.getAbsolutePath() + ".", true, true);
+            }
         } catch (Exception e) {
             exceptionHandler.catchException(e);
             return 1;
@@ -321,6 +405,36 @@ public class DeNovoCLI implements Callable {
         return 0;
     }
 
+    /**
+     * Returns a sequencing handler using the settings of the command line.
+     * The same settings are used for a local run, a watched folder and a
+     * distributed worker.
+     *
+     * @param pepNovoFolder the PepNovo+ folder
+     * @param direcTagFolder the DirecTag folder
+     * @param pNovoFolder the pNovo+ folder
+     * @param novorFolder the Novor folder
+     *
+     * @return a sequencing handler
+     */
+    private DeNovoSequencingHandler getSequencingHandler(File pepNovoFolder, File direcTagFolder, File pNovoFolder, File novorFolder) {
+        DeNovoSequencingHandler searchHandler = new DeNovoSequencingHandler(pepNovoFolder, direcTagFolder, pNovoFolder, novorFolder);
+        searchHandler.setNThreads(deNovoCLIInputBean.getNThreads());
+        searchHandler.setClusterSpectra(deNovoCLIInputBean.isClusterSpectra());
+        searchHandler.setClusteringSimilarity(deNovoCLIInputBean.getClusteringSimilarity());
+        searchHandler.setJobTimeout(deNovoCLIInputBean.getJobTimeout() * 60000L);
+        searchHandler.setSpeculativeExecution(deNovoCLIInputBean.isSpeculativeExecution());
+        searchHandler.setNovorInProcess(deNovoCLIInputBean.isNovorInProcess());
+        searchHandler.setBatchSize(deNovoCLIInputBean.getBatchSize());
+        searchHandler.setPeakPreprocessors(deNovoCLIInputBean.getPeakPreprocessors());
+        searchHandler.setCascadeThresholds(deNovoCLIInputBean.getCascadeThresholds());
+        searchHandler.setSpectrumRouter(deNovoCLIInputBean.getSpectrumRouter());
+        if (deNovoCLIInputBean.isAdaptiveResources()) {
+            searchHandler.setResourceMonitor(new ResourceMonitor());
+        }
+        return searchHandler;
+    }
+
     /**
      * Sets the path configuration.
      */
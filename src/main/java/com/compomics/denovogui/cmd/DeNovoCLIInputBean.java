@@ -1,6 +1,11 @@
 package com.compomics.denovogui.cmd;
 
 import com.compomics.cli.identification_parameters.IdentificationParametersInputBean;
+import com.compomics.denovogui.execution.ResourceMonitor;
+import com.compomics.denovogui.io.CompressedMgfFile;
+import com.compomics.denovogui.io.PeakPreprocessor;
+import com.compomics.denovogui.io.SpectrumCascade;
+import com.compomics.denovogui.io.SpectrumRouter;
 import com.compomics.software.cli.CommandLineUtils;
 import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
 import com.compomics.util.preferences.IdentificationParameters;
@@ -8,6 +13,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import org.apache.commons.cli.CommandLine;
 
 /**
@@ -66,7 +73,89 @@ public class DeNovoCLIInputBean {
     /**
      * Number of threads to use. Defaults to the number of cores available.
      */
-    private int nThreads = Runtime.getRuntime().availableProcessors();
+    private int nThreads = ResourceMonitor.getCpuLimit();
+    /**
+     * If true, near-identical spectra are clustered before sequencing.
+     */
+    private boolean clusterSpectra = false;
+    /**
+     * The minimal cosine similarity for two spectra to be clustered.
+     */
+    private double clusteringSimilarity = 0.9;
+    /**
+     * Time in minutes after which a job is considered as hanging when its
+     * duration cannot be estimated yet.
+     */
+    private int jobTimeout = 720;
+    /**
+     * If true, slow jobs are speculatively started again on idle threads.
+     */
+    private boolean speculativeExecution = false;
+    /**
+     * If true, the number of jobs and the memory of the Novor processes are
+     * adapted to the resources left by the other processes of the machine.
+     */
+    private boolean adaptiveResources = false;
+    /**
+     * If true, Novor is run in the DeNovoGUI process.
+     */
+    private boolean novorInProcess = false;
+    /**
+     * The number of spectra under which mgf files are sequenced in batches, 0
+     * if not used.
+     */
+    private int batchSize = 0;
+    /**
+     * The peak preprocessing of every algorithm, indexed by algorithm name.
+     */
+    private HashMap<String, PeakPreprocessor> peakPreprocessors = new HashMap<String, PeakPreprocessor>();
+    /**
+     * The score thresholds of the sequencing cascade, indexed by algorithm
+     * name.
+     */
+    private HashMap<String, Double> cascadeThresholds = new HashMap<String, Double>();
+    /**
+     * The routing of the spectra to the algorithms, null if not set.
+     */
+    private SpectrumRouter spectrumRouter = null;
+    /**
+     * The percentage of the spectra sequenced to plan the run, -1 to run the
+     * sequencing.
+     */
+    private double planPercentage = -1;
+    /**
+     * The shared folder of a distributed run when running as coordinator.
+     */
+    private File coordinatorFolder = null;
+    /**
+     * The shared folder of a distributed run when running as worker.
+     */
+    private File workerFolder = null;
+    /**
+     * The number of shards per spectrum file of a distributed run.
+     */
+    private int nShards = 10;
+    /**
+     * Time in seconds without signal after which a worker is considered dead.
+     */
+    private int workerTimeout = 60;
+    /**
+     * The port of the sequencing service, -1 if not run as service.
+     */
+    private int servicePort = -1;
+    /**
+     * The folder watched for new spectrum files, null if not watching.
+     */
+    private File watchFolder = null;
+    /**
+     * Time in seconds between two checks of the watched folder.
+     */
+    private int watchInterval = 10;
+    /**
+     * If true, watched files are only sequenced when their marker file is
+     * present.
+     */
+    private boolean watchMarker = false;
     /**
      * The path settings.
      */
@@ -95,9 +184,13 @@ public class DeNovoCLIInputBean {
 
         // get the files needed for the search
         String filesTxt = aLine.getOptionValue(DeNovoCLIParams.SPECTRUM_FILES.id);
-        spectrumFiles = getSpectrumFiles(filesTxt);
+        if (filesTxt != null) {
+            spectrumFiles = getSpectrumFiles(filesTxt);
+        }
         String arg = aLine.getOptionValue(DeNovoCLIParams.OUTPUT_FOLDER.id);
-        outputFolder = new File(arg);
+        if (arg != null) {
+            outputFolder = new File(arg);
+        }
         String fileTxt = aLine.getOptionValue(DeNovoCLIParams.IDENTIFICATION_PARAMETERS.id);
         searchParametersFile = new File(fileTxt);
 
@@ -142,7 +235,90 @@ public class DeNovoCLIInputBean {
             arg = aLine.getOptionValue(DeNovoCLIParams.THREADS.id);
             nThreads = Integer.parseInt(arg);
         }
-        
+
+        // distributed sequencing
+        if (aLine.hasOption(DeNovoCLIParams.COORDINATOR.id)) {
+            coordinatorFolder = new File(aLine.getOptionValue(DeNovoCLIParams.COORDINATOR.id));
+        }
+        if (aLine.hasOption(DeNovoCLIParams.WORKER.id)) {
+            workerFolder = new File(aLine.getOptionValue(DeNovoCLIParams.WORKER.id));
+        }
+        if (aLine.hasOption(DeNovoCLIParams.SHARDS.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.SHARDS.id);
+            nShards = Integer.parseInt(arg);
+        }
+        if (aLine.hasOption(DeNovoCLIParams.WORKER_TIMEOUT.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.WORKER_TIMEOUT.id);
+            workerTimeout = Integer.parseInt(arg);
+        }
+
+        // sequencing service
+        if (aLine.hasOption(DeNovoCLIParams.SERVICE.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.SERVICE.id);
+            servicePort = Integer.parseInt(arg);
+        }
+
+        // watched folder
+        if (aLine.hasOption(DeNovoCLIParams.WATCH_FOLDER.id)) {
+            watchFolder = new File(aLine.getOptionValue(DeNovoCLIParams.WATCH_FOLDER.id));
+        }
+        if (aLine.hasOption(DeNovoCLIParams.WATCH_INTERVAL.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.WATCH_INTERVAL.id);
+            watchInterval = Integer.parseInt(arg);
+        }
+        if (aLine.hasOption(DeNovoCLIParams.WATCH_MARKER.id)) {
+            String markerOption = aLine.getOptionValue(DeNovoCLIParams.WATCH_MARKER.id);
+            watchMarker = markerOption.trim().equals("1");
+        }
+
+        // spectrum clustering
+        if (aLine.hasOption(DeNovoCLIParams.CLUSTER.id)) {
+            String clusterOption = aLine.getOptionValue(DeNovoCLIParams.CLUSTER.id);
+            clusterSpectra = clusterOption.trim().equals("1");
+        }
+        if (aLine.hasOption(DeNovoCLIParams.CLUSTER_SIMILARITY.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.CLUSTER_SIMILARITY.id);
+            clusteringSimilarity = Double.parseDouble(arg);
+        }
+
+        // job supervision
+        if (aLine.hasOption(DeNovoCLIParams.JOB_TIMEOUT.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.JOB_TIMEOUT.id);
+            jobTimeout = Integer.parseInt(arg);
+        }
+        if (aLine.hasOption(DeNovoCLIParams.SPECULATIVE.id)) {
+            String speculativeOption = aLine.getOptionValue(DeNovoCLIParams.SPECULATIVE.id);
+            speculativeExecution = speculativeOption.trim().equals("1");
+        }
+        if (aLine.hasOption(DeNovoCLIParams.ADAPTIVE.id)) {
+            String adaptiveOption = aLine.getOptionValue(DeNovoCLIParams.ADAPTIVE.id);
+            adaptiveResources = adaptiveOption.trim().equals("1");
+        }
+        if (aLine.hasOption(DeNovoCLIParams.NOVOR_IN_PROCESS.id)) {
+            String novorInProcessOption = aLine.getOptionValue(DeNovoCLIParams.NOVOR_IN_PROCESS.id);
+            novorInProcess = novorInProcessOption.trim().equals("1");
+        }
+        if (aLine.hasOption(DeNovoCLIParams.BATCH.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.BATCH.id);
+            batchSize = Integer.parseInt(arg);
+        }
+        if (aLine.hasOption(DeNovoCLIParams.PREPROCESSING.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.PREPROCESSING.id);
+            peakPreprocessors = PeakPreprocessor.parseAlgorithms(arg);
+        }
+        if (aLine.hasOption(DeNovoCLIParams.CASCADE.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.CASCADE.id);
+            cascadeThresholds = SpectrumCascade.parseThresholds(arg);
+        }
+        if (aLine.hasOption(DeNovoCLIParams.ROUTING.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.ROUTING.id);
+            spectrumRouter = SpectrumRouter.parse(arg);
+        }
+        if (aLine.hasOption(DeNovoCLIParams.PLAN.id)) {
+            arg = aLine.getOptionValue(DeNovoCLIParams.PLAN.id);
+            planPercentage = Double.parseDouble(arg);
+        }
+
         // identification parameters
         identificationParametersInputBean = new IdentificationParametersInputBean(aLine);
 
@@ -188,6 +364,10 @@ public class DeNovoCLIInputBean {
     public static ArrayList<File> getSpectrumFiles(String optionInput) throws FileNotFoundException {
         ArrayList<String> extentions = new ArrayList<String>();
         extentions.add(".mgf");
+        extentions.add(".mzml");
+        extentions.add(".mzxml");
+        extentions.add(CompressedMgfFile.GZIP_EXTENSION);
+        extentions.add(CompressedMgfFile.BGZF_EXTENSION);
         return CommandLineUtils.getFiles(optionInput, extentions);
     }
 
@@ -272,6 +452,193 @@ public class DeNovoCLIInputBean {
         return nThreads;
     }
 
+    /**
+     * Returns true if near-identical spectra are to be clustered before
+     * sequencing.
+     *
+     * @return true if the spectra are to be clustered
+     */
+    public boolean isClusterSpectra() {
+        return clusterSpectra;
+    }
+
+    /**
+     * Returns the minimal cosine similarity for two spectra to be clustered.
+     *
+     * @return the minimal cosine similarity for two spectra to be clustered
+     */
+    public double getClusteringSimilarity() {
+        return clusteringSimilarity;
+    }
+
+    /**
+     * Returns the shared folder of a distributed run when running as
+     * coordinator, null otherwise.
+     *
+     * @return the shared folder of a distributed run
+     */
+    public File getCoordinatorFolder() {
+        return coordinatorFolder;
+    }
+
+    /**
+     * Returns the shared folder of a distributed run when running as worker,
+     * null otherwise.
+     *
+     * @return the shared folder of a distributed run
+     */
+    public File getWorkerFolder() {
+        return workerFolder;
+    }
+
+    /**
+     * Returns the number of shards per spectrum file of a distributed run.
+     *
+     * @return the number of shards per spectrum file
+     */
+    public int getNShards() {
+        return nShards;
+    }
+
+    /**
+     * Returns the time in seconds without signal after which a worker is
+     * considered dead.
+     *
+     * @return the worker timeout in seconds
+     */
+    public int getWorkerTimeout() {
+        return workerTimeout;
+    }
+
+    /**
+     * Returns the port of the sequencing service, -1 if not run as service.
+     *
+     * @return the port of the sequencing service
+     */
+    public int getServicePort() {
+        return servicePort;
+    }
+
+    /**
+     * Returns the folder watched for new spectrum files, null if not
+     * watching.
+     *
+     * @return the folder watched for new spectrum files
+     */
+    public File getWatchFolder() {
+        return watchFolder;
+    }
+
+    /**
+     * Returns the time in seconds between two checks of the watched folder.
+     *
+     * @return the time in seconds between two checks of the watched folder
+     */
+    public int getWatchInterval() {
+        return watchInterval;
+    }
+
+    /**
+     * Returns true if watched files are only sequenced when their marker file
+     * is present.
+     *
+     * @return true if watched files need a marker file
+     */
+    public boolean isWatchMarker() {
+        return watchMarker;
+    }
+
+    /**
+     * Returns the time in minutes after which a job is considered as hanging
+     * when its duration cannot be estimated yet.
+     *
+     * @return the job timeout in minutes
+     */
+    public int getJobTimeout() {
+        return jobTimeout;
+    }
+
+    /**
+     * Returns true if slow jobs are to be speculatively started again on idle
+     * threads.
+     *
+     * @return true if slow jobs are to be speculatively started again
+     */
+    public boolean isSpeculativeExecution() {
+        return speculativeExecution;
+    }
+
+    /**
+     * Returns true if the number of jobs and the memory of the Novor
+     * processes are to be adapted to the resources left by the other
+     * processes of the machine.
+     *
+     * @return true if the resources are to be adapted
+     */
+    public boolean isAdaptiveResources() {
+        return adaptiveResources;
+    }
+
+    /**
+     * Returns true if Novor is to be run in the DeNovoGUI process instead of
+     * a separate Java process.
+     *
+     * @return true if Novor is to be run in the DeNovoGUI process
+     */
+    public boolean isNovorInProcess() {
+        return novorInProcess;
+    }
+
+    /**
+     * Returns the number of spectra under which mgf files are sequenced in
+     * batches, 0 if every file is sequenced separately.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns the peak preprocessing of every algorithm, indexed by algorithm
+     * name. Empty if the spectra are not preprocessed.
+     *
+     * @return the peak preprocessing of every algorithm
+     */
+    public HashMap<String, PeakPreprocessor> getPeakPreprocessors() {
+        return peakPreprocessors;
+    }
+
+    /**
+     * Returns the score thresholds of the sequencing cascade, indexed by
+     * algorithm name. Empty if all spectra are sequenced by every algorithm.
+     *
+     * @return the score thresholds of the sequencing cascade
+     */
+    public HashMap<String, Double> getCascadeThresholds() {
+        return cascadeThresholds;
+    }
+
+    /**
+     * Returns the routing of the spectra to the algorithms. Null if all
+     * spectra are sequenced by every algorithm.
+     *
+     * @return the routing of the spectra to the algorithms
+     */
+    public SpectrumRouter getSpectrumRouter() {
+        return spectrumRouter;
+    }
+
+    /**
+     * Returns the percentage of the spectra sequenced to plan the run. -1 if
+     * the sequencing is to be run.
+     *
+     * @return the percentage of the spectra sequenced to plan the run
+     */
+    public double getPlanPercentage() {
+        return planPercentage;
+    }
+
     /**
      * Verifies the command line start parameters.
      *
@@ -287,7 +654,66 @@ public class DeNovoCLIInputBean {
             return false;
         }
 
-        if (!aLine.hasOption(DeNovoCLIParams.SPECTRUM_FILES.id) || ((String) aLine.getOptionValue(DeNovoCLIParams.SPECTRUM_FILES.id)).equals("")) {
+        boolean worker = aLine.hasOption(DeNovoCLIParams.WORKER.id);
+        boolean service = aLine.hasOption(DeNovoCLIParams.SERVICE.id);
+        boolean watch = aLine.hasOption(DeNovoCLIParams.WATCH_FOLDER.id);
+
+        if (worker && aLine.hasOption(DeNovoCLIParams.COORDINATOR.id)) {
+            System.out.println(System.getProperty("line.separator") + "A process cannot be coordinator and worker at the same time." + System.getProperty("line.separator"));
+            return false;
+        }
+
+        if (service && (worker || aLine.hasOption(DeNovoCLIParams.COORDINATOR.id))) {
+            System.out.println(System.getProperty("line.separator") + "A service cannot take part in a distributed sequencing." + System.getProperty("line.separator"));
+            return false;
+        }
+
+        if (service) {
+            try {
+                int port = Integer.parseInt(aLine.getOptionValue(DeNovoCLIParams.SERVICE.id));
+                if (port <= 0 || port > 65535) {
+                    System.out.println(System.getProperty("line.separator") + "The service port has to be between 1 and 65535." + System.getProperty("line.separator"));
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println(System.getProperty("line.separator") + "Could not parse the service port as an integer." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (watch && (service || worker || aLine.hasOption(DeNovoCLIParams.COORDINATOR.id))) {
+            System.out.println(System.getProperty("line.separator") + "A watched folder cannot be combined with a service or a distributed sequencing." + System.getProperty("line.separator"));
+            return false;
+        }
+
+        if (watch) {
+            File folder = new File(aLine.getOptionValue(DeNovoCLIParams.WATCH_FOLDER.id));
+            if (!folder.isDirectory()) {
+                System.out.println(System.getProperty("line.separator") + "Watched folder \'" + folder.getName() + "\' not found." + System.getProperty("line.separator"));
+                return false;
+            }
+            if (aLine.hasOption(DeNovoCLIParams.OUTPUT_FOLDER.id)
+                    && folder.getAbsoluteFile().equals(new File(aLine.getOptionValue(DeNovoCLIParams.OUTPUT_FOLDER.id)).getAbsoluteFile())) {
+                System.out.println(System.getProperty("line.separator") + "The output folder has to be different from the watched folder." + System.getProperty("line.separator"));
+                return false;
+            }
+            if (aLine.hasOption(DeNovoCLIParams.WATCH_INTERVAL.id)) {
+                try {
+                    int interval = Integer.parseInt(aLine.getOptionValue(DeNovoCLIParams.WATCH_INTERVAL.id));
+                    if (interval <= 0) {
+                        System.out.println(System.getProperty("line.separator") + "The watch interval has to be a positive number of seconds." + System.getProperty("line.separator"));
+                        return false;
+                    }
+                } catch (NumberFormatException e) {
+                    System.out.println(System.getProperty("line.separator") + "Could not parse the watch interval as an integer." + System.getProperty("line.separator"));
+                    return false;
+                }
+            }
+        }
+
+        if (worker || service || watch) {
+            // the spectra are provided by the coordinator, per job or by the watched folder
+        } else if (!aLine.hasOption(DeNovoCLIParams.SPECTRUM_FILES.id) || ((String) aLine.getOptionValue(DeNovoCLIParams.SPECTRUM_FILES.id)).equals("")) {
             System.out.println(System.getProperty("line.separator") + "Spectrum files not specified." + System.getProperty("line.separator"));
             return false;
         } else {
@@ -300,7 +726,9 @@ public class DeNovoCLIInputBean {
             }
         }
 
-        if (!aLine.hasOption(DeNovoCLIParams.OUTPUT_FOLDER.id) || ((String) aLine.getOptionValue(DeNovoCLIParams.OUTPUT_FOLDER.id)).equals("")) {
+        if (worker || service) {
+            // the results are written to the shared folder or per job
+        } else if (!aLine.hasOption(DeNovoCLIParams.OUTPUT_FOLDER.id) || ((String) aLine.getOptionValue(DeNovoCLIParams.OUTPUT_FOLDER.id)).equals("")) {
             System.out.println(System.getProperty("line.separator") + "Output folder not specified." + System.getProperty("line.separator"));
             return false;
         } else {
@@ -323,6 +751,97 @@ public class DeNovoCLIInputBean {
             }
         }
 
+        if (aLine.hasOption(DeNovoCLIParams.CLUSTER_SIMILARITY.id)) {
+            try {
+                double similarity = Double.parseDouble(aLine.getOptionValue(DeNovoCLIParams.CLUSTER_SIMILARITY.id));
+                if (similarity < 0 || similarity > 1) {
+                    System.out.println(System.getProperty("line.separator") + "The clustering similarity has to be between 0 and 1." + System.getProperty("line.separator"));
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println(System.getProperty("line.separator") + "Could not parse the clustering similarity as a number." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(DeNovoCLIParams.JOB_TIMEOUT.id)) {
+            try {
+                int timeout = Integer.parseInt(aLine.getOptionValue(DeNovoCLIParams.JOB_TIMEOUT.id));
+                if (timeout <= 0) {
+                    System.out.println(System.getProperty("line.separator") + "The job timeout has to be a positive number of minutes." + System.getProperty("line.separator"));
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println(System.getProperty("line.separator") + "Could not parse the job timeout as an integer." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(DeNovoCLIParams.BATCH.id)) {
+            try {
+                int batchSize = Integer.parseInt(aLine.getOptionValue(DeNovoCLIParams.BATCH.id));
+                if (batchSize < 0) {
+                    System.out.println(System.getProperty("line.separator") + "The batch size cannot be negative." + System.getProperty("line.separator"));
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println(System.getProperty("line.separator") + "Could not parse the batch size as an integer." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(DeNovoCLIParams.PREPROCESSING.id)) {
+            try {
+                HashMap<String, PeakPreprocessor> peakPreprocessors = PeakPreprocessor.parseAlgorithms(aLine.getOptionValue(DeNovoCLIParams.PREPROCESSING.id));
+                for (String algorithm : peakPreprocessors.keySet()) {
+                    if (!Arrays.asList("pepnovo", "directag", "pnovo", "novor").contains(algorithm)) {
+                        System.out.println(System.getProperty("line.separator") + "Unknown algorithm '" + algorithm + "' in the preprocessing." + System.getProperty("line.separator"));
+                        return false;
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println(System.getProperty("line.separator") + "Could not parse the preprocessing: " + e.getMessage() + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(DeNovoCLIParams.CASCADE.id)) {
+            try {
+                SpectrumCascade.parseThresholds(aLine.getOptionValue(DeNovoCLIParams.CASCADE.id));
+            } catch (IllegalArgumentException e) {
+                System.out.println(System.getProperty("line.separator") + "Could not parse the cascade: " + e.getMessage() + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(DeNovoCLIParams.ROUTING.id)) {
+            try {
+                SpectrumRouter spectrumRouter = SpectrumRouter.parse(aLine.getOptionValue(DeNovoCLIParams.ROUTING.id));
+                for (String algorithm : spectrumRouter.getAlgorithms()) {
+                    if (!Arrays.asList("pepnovo", "directag", "pnovo", "novor").contains(algorithm)) {
+                        System.out.println(System.getProperty("line.separator") + "Unknown algorithm '" + algorithm + "' in the routing." + System.getProperty("line.separator"));
+                        return false;
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                System.out.println(System.getProperty("line.separator") + "Could not parse the routing: " + e.getMessage() + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(DeNovoCLIParams.PLAN.id)) {
+            try {
+                double planPercentage = Double.parseDouble(aLine.getOptionValue(DeNovoCLIParams.PLAN.id));
+                if (planPercentage <= 0 || planPercentage > 100) {
+                    System.out.println(System.getProperty("line.separator") + "The percentage of spectra to plan the run must be between 0 and 100." + System.getProperty("line.separator"));
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println(System.getProperty("line.separator") + "Could not parse the percentage of spectra to plan the run as a number." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
         // Check the identification parameters
         if (!IdentificationParametersInputBean.isValidStartup(aLine, false)) {
             return false;
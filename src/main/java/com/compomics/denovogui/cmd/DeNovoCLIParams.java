@@ -14,7 +14,7 @@ public enum DeNovoCLIParams {
     // IMPORTANT: Any change here must be reported in the wiki: 
     // https://github.com/compomics/denovogui/wiki/DeNovoCLI.
     ///////////////////////////////////////////////////////////////////////////////////////////////////////////////
-    SPECTRUM_FILES("spectrum_files", "Spectrum files (mgf format), comma separated list or an entire folder.", true),
+    SPECTRUM_FILES("spectrum_files", "Spectrum files (mgf, mgf.gz, mzML or mzXML format), comma separated list or an entire folder.", true),
     OUTPUT_FOLDER("output_folder", "The output folder.", true),
     IDENTIFICATION_PARAMETERS("id_params", "A search parameters file. Can be generated from the GUI or using the IdentificationParametersCLI (see http://compomics.github.io/projects/compomics-utilities/wiki/identificationparameterscli.html for details).", false),
     THREADS("threads", "The number of threads to use for the processing. Default is the number of cores available.", false),
@@ -25,7 +25,26 @@ public enum DeNovoCLIParams {
     PEPNOVO_LOCATION("pepnovo_folder", "The PepNovo+ executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
     DIRECTAG_LOCATION("directag_folder", "The DirecTag executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
     PNOVO_LOCATION("pnovo_folder", "The pNovo+ executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
-    NOVOR_LOCATION("novor_folder", "The Novor executable, defaults to the OS dependent versions included with DeNovoGUI.", false);
+    NOVOR_LOCATION("novor_folder", "The Novor executable, defaults to the OS dependent versions included with DeNovoGUI.", false),
+    CLUSTER("cluster", "Cluster near-identical spectra and sequence only one representative per cluster (1: on, 0: off, default is '0').", false),
+    CLUSTER_SIMILARITY("cluster_similarity", "The minimal cosine similarity between two spectra to be clustered (between 0 and 1, default is '0.9').", false),
+    JOB_TIMEOUT("job_timeout", "Time in minutes after which a sequencing job is considered as hanging and restarted when its duration cannot be estimated yet, default is '720'.", false),
+    SPECULATIVE("speculative", "Speculatively run slow sequencing jobs a second time on idle threads (1: on, 0: off, default is '0').", false),
+    ADAPTIVE("adaptive", "Adapt the number of parallel jobs and the memory of the Novor processes to the load, the free memory and the cgroup quotas of the machine (1: on, 0: off, default is '0').", false),
+    BATCH("batch", "Sequence the mgf files with less spectra than the given number together, in batches of at least this number of spectra (default is '0': every file is sequenced separately).", false),
+    NOVOR_IN_PROCESS("novor_in_process", "Run Novor in the DeNovoGUI process instead of a separate Java process per job (1: on, 0: off, default is '0'). Requires Java 8 to 17, or up to 23 with -Djava.security.manager=allow, separate processes are used otherwise.", false),
+    PREPROCESSING("preprocessing", "Peak preprocessing of the spectra per algorithm, semicolon separated list of algorithms (pepnovo, directag, pnovo or novor) followed by '=' and a comma separated list of steps: charge:<minimal confidence>:<highest charge> (the precursor charges are assigned and used by the algorithm), deisotope, charge_reduction, noise:<factor of the median intensity>, top_n:<peaks>:<window width in m/z>. For example 'directag=charge:0.8,deisotope,top_n:10:100;pepnovo=noise:2'. Default is no preprocessing.", false),
+    CASCADE("cascade", "Sequence in cascade: the spectra whose best score reaches the threshold of an algorithm are not sequenced by the following algorithms, run in the order novor, directag, pepnovo, pnovo. Semicolon separated list of novor or pepnovo followed by '=' and the score threshold, for example 'novor=80;pepnovo=60'. Default is all spectra sequenced by every algorithm.", false),
+    ROUTING("routing", "Route the spectra to the algorithms according to their characteristics. Semicolon separated list of algorithms (pepnovo, directag, pnovo or novor) followed by '=' and a comma separated list of rules, all to be matched by the spectra sequenced by the algorithm: charge:<min>-<max>, mz:<min>-<max> (precursor m/z), peaks:<min>-<max>, rt:<min>-<max> (retention time in seconds), title:<regular expression>. A bound can be omitted. For example 'pepnovo=charge:1-3,peaks:20-;novor=title:HCD'. Default is all spectra sequenced by every algorithm.", false),
+    PLAN("plan", "Plan the run instead of running it: the given percentage of the spectra, for example '0.5', is sequenced and the wall time, CPU time, memory and disk of the complete run are estimated, with the recommended number of threads and batch size. The plan is saved in the output folder and used by the following run to estimate the duration of its first jobs.", false),
+    COORDINATOR("coordinator", "Distribute the sequencing over DeNovoCLI workers using the given shared folder.", false),
+    WORKER("worker", "Run as a worker of a distributed sequencing using the given shared folder. Spectrum files and output folder are then not needed.", false),
+    SHARDS("shards", "The number of shards per spectrum file when distributing the sequencing, default is '10'.", false),
+    WORKER_TIMEOUT("worker_timeout", "Time in seconds without signal after which a worker is considered dead, default is '60'.", false),
+    SERVICE("service", "Run as a local sequencing service accepting jobs over HTTP on the given port. Spectrum files and output folder are then provided per job. Requests need the access token printed at startup.", false),
+    WATCH_FOLDER("watch_folder", "Sequence the spectrum files written to the given folder as they arrive, until stopped. Spectrum files are then not needed.", false),
+    WATCH_INTERVAL("watch_interval", "Time in seconds between two checks of the watched folder. A file is complete when its size did not change between two checks. Default is '10'.", false),
+    WATCH_MARKER("watch_marker", "Only sequence a watched file once a marker file named after it followed by '.done' is present (1: on, 0: off, default is '0').", false);
 
     /**
      * Short Id for the CLI parameter.
@@ -96,6 +115,29 @@ public enum DeNovoCLIParams {
         output += "-" + String.format(formatter, PNOVO_LOCATION.id) + " " + PNOVO_LOCATION.description + "\n";
         output += "-" + String.format(formatter, NOVOR_LOCATION.id) + " " + NOVOR_LOCATION.description + "\n";
         output += "-" + String.format(formatter, THREADS.id) + " " + THREADS.description + "\n";
+        output += "-" + String.format(formatter, CLUSTER.id) + " " + CLUSTER.description + "\n";
+        output += "-" + String.format(formatter, CLUSTER_SIMILARITY.id) + " " + CLUSTER_SIMILARITY.description + "\n";
+        output += "-" + String.format(formatter, JOB_TIMEOUT.id) + " " + JOB_TIMEOUT.description + "\n";
+        output += "-" + String.format(formatter, SPECULATIVE.id) + " " + SPECULATIVE.description + "\n";
+        output += "-" + String.format(formatter, ADAPTIVE.id) + " " + ADAPTIVE.description + "\n";
+        output += "-" + String.format(formatter, NOVOR_IN_PROCESS.id) + " " + NOVOR_IN_PROCESS.description + "\n";
+        output += "-" + String.format(formatter, BATCH.id) + " " + BATCH.description + "\n";
+        output += "-" + String.format(formatter, PREPROCESSING.id) + " " + PREPROCESSING.description + "\n";
+        output += "-" + String.format(formatter, CASCADE.id) + " " + CASCADE.description + "\n";
+        output += "-" + String.format(formatter, ROUTING.id) + " " + ROUTING.description + "\n";
+        output += "-" + String.format(formatter, PLAN.id) + " " + PLAN.description + "\n";
+
+        output += "\n\nOptional Distributed Sequencing Parameters:\n\n";
+        output += "-" + String.format(formatter, COORDINATOR.id) + " " + COORDINATOR.description + "\n";
+        output += "-" + String.format(formatter, WORKER.id) + " " + WORKER.description + "\n";
+        output += "-" + String.format(formatter, SHARDS.id) + " " + SHARDS.description + "\n";
+        output += "-" + String.format(formatter, WORKER_TIMEOUT.id) + " " + WORKER_TIMEOUT.description + "\n";
+
+        output += "\n\nOptional Service Parameters:\n\n";
+        output += "-" + String.format(formatter, SERVICE.id) + " " + SERVICE.description + "\n";
+        output += "-" + String.format(formatter, WATCH_FOLDER.id) + " " + WATCH_FOLDER.description + "\n";
+        output += "-" + String.format(formatter, WATCH_INTERVAL.id) + " " + WATCH_INTERVAL.description + "\n";
+        output += "-" + String.format(formatter, WATCH_MARKER.id) + " " + WATCH_MARKER.description + "\n";
 
         output += "\n\nOptional Temporary Folder:\n\n";
         output += "-" + String.format(formatter, PathSettingsCLIParams.ALL.id) + " " + PathSettingsCLIParams.ALL.description + "\n";
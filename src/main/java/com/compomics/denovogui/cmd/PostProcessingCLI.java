@@ -0,0 +1,244 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.io.ProteinMapper;
+import com.compomics.denovogui.io.SpectrumIndexCache;
+import com.compomics.denovogui.io.StreamingExporter;
+import com.compomics.denovogui.preferences.DeNovoGUIPathPreferences;
+import com.compomics.software.CompomicsWrapper;
+import com.compomics.software.settings.PathKey;
+import com.compomics.software.settings.UtilitiesPathPreferences;
+import com.compomics.util.exceptions.exception_handlers.CommandLineExceptionHandler;
+import com.compomics.util.experiment.identification.identification_parameters.PtmSettings;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.identification.protein_inference.PeptideMapper;
+import com.compomics.util.experiment.identification.protein_inference.PeptideMapperType;
+import com.compomics.util.experiment.identification.protein_sequences.SequenceFactory;
+import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import com.compomics.util.preferences.PeptideVariantsPreferences;
+import com.compomics.util.preferences.SequenceMatchingPreferences;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+
+/**
+ * Command line importing de novo results and writing the text exports without
+ * graphical interface. The result files are imported and exported one at a
+ * time so that only the matches of one result file are held in memory.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class PostProcessingCLI implements Callable {
+
+    /**
+     * The command line parameters.
+     */
+    private PostProcessingCLIInputBean postProcessingCLIInputBean;
+    /**
+     * The exception handler for the command line process.
+     */
+    private CommandLineExceptionHandler exceptionHandler = new CommandLineExceptionHandler();
+
+    /**
+     * Constructs a new post-processing runnable from the command line
+     * arguments and runs it.
+     *
+     * @param args the command line arguments
+     */
+    public PostProcessingCLI(String[] args) {
+
+        try {
+
+            Options lOptions = new Options();
+            PostProcessingCLIParams.createOptionsCLI(lOptions);
+            BasicParser parser = new BasicParser();
+            CommandLine line = parser.parse(lOptions, args);
+
+            if (!PostProcessingCLIInputBean.isValidStartup(line)) {
+                PrintWriter lPrintWriter = new PrintWriter(System.out);
+                lPrintWriter.print("\n======================" + System.getProperty("line.separator"));
+                lPrintWriter.print("PostProcessingCLI" + System.getProperty("line.separator"));
+                lPrintWriter.print("======================" + System.getProperty("line.separator"));
+                lPrintWriter.print(getHeader());
+                lPrintWriter.print(PostProcessingCLIParams.getOptionsAsString());
+                lPrintWriter.flush();
+                lPrintWriter.close();
+
+                System.exit(1);
+            } else {
+                postProcessingCLIInputBean = new PostProcessingCLIInputBean(line);
+                call();
+            }
+        } catch (Exception e) {
+            exceptionHandler.catchException(e);
+        }
+    }
+
+    /**
+     * Calling this method will run the configured post-processing.
+     */
+    public Object call() {
+
+        PathSettingsCLIInputBean pathSettingsCLIInputBean = postProcessingCLIInputBean.getPathSettingsCLIInputBean();
+
+        if (pathSettingsCLIInputBean.getLogFolder() != null) {
+            DeNovoCLI.redirectErrorStream(pathSettingsCLIInputBean.getLogFolder());
+        }
+
+        if (pathSettingsCLIInputBean.hasInput()) {
+            PathSettingsCLI pathSettingsCLI = new PathSettingsCLI(pathSettingsCLIInputBean);
+            pathSettingsCLI.setPathSettings();
+        } else {
+            try {
+                setPathConfiguration();
+            } catch (Exception e) {
+                System.out.println("An error occurred when setting the path configurations. Default paths will be used.");
+                exceptionHandler.catchException(e);
+            }
+        }
+        try {
+            ArrayList<PathKey> errorKeys = DeNovoGUIPathPreferences.getErrorKeys();
+            if (!errorKeys.isEmpty()) {
+                System.out.println("Unable to write in the following configuration folders. Please use a temporary folder, "
+                        + "the path configuration command line, or edit the configuration paths from the graphical interface.");
+                for (PathKey pathKey : errorKeys) {
+                    System.out.println(pathKey.getId() + ": " + pathKey.getDescription());
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("Unable to load the path configurations. Default paths will be used.");
+        }
+
+        try {
+            WaitingHandlerCLIImpl waitingHandlerCLIImpl = new WaitingHandlerCLIImpl();
+
+            SearchParameters searchParameters = SearchParameters.getIdentificationParameters(postProcessingCLIInputBean.getSearchParametersFile());
+
+            // load the project specific ptms
+            String error = DeNovoSequencingHandler.loadModifications(searchParameters);
+            if (error != null) {
+                System.out.println(error);
+            }
+
+            waitingHandlerCLIImpl.appendReportEndLine();
+            waitingHandlerCLIImpl.appendReport("Starting PostProcessingCLI.", true, true);
+            waitingHandlerCLIImpl.appendReportEndLine();
+
+            // load the spectra, needed for the precursors in the exports
+            SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
+            for (File spectrumFile : postProcessingCLIInputBean.getSpectrumFiles()) {
+                waitingHandlerCLIImpl.appendReport("Loading " + spectrumFile.getName() + ".", true, true);
+                SpectrumIndexCache.addSpectra(spectrumFactory, spectrumFile, waitingHandlerCLIImpl);
+                if (waitingHandlerCLIImpl.isRunCanceled()) {
+                    return 1;
+                }
+            }
+
+            SequenceMatchingPreferences sequenceMatchingPreferences = SequenceMatchingPreferences.getDefaultSequenceMatching();
+            StreamingExporter streamingExporter = new StreamingExporter(searchParameters, sequenceMatchingPreferences,
+                    postProcessingCLIInputBean.getThreshold(), postProcessingCLIInputBean.isGreaterThan(), postProcessingCLIInputBean.getNumberOfMatches());
+
+            // map the matches to the proteins
+            File fastaFile = postProcessingCLIInputBean.getFastaFile();
+            if (fastaFile != null) {
+                waitingHandlerCLIImpl.appendReport("Importing " + fastaFile.getName() + ".", true, true);
+                SequenceFactory sequenceFactory = SequenceFactory.getInstance();
+                sequenceFactory.loadFastaFile(fastaFile, waitingHandlerCLIImpl);
+                SequenceMatchingPreferences mappingPreferences = new SequenceMatchingPreferences();
+                mappingPreferences.setPeptideMapperType(PeptideMapperType.fm_index);
+                PeptideMapper peptideMapper = sequenceFactory.getDefaultPeptideMapper(mappingPreferences, searchParameters,
+                        PeptideVariantsPreferences.getNoVariantPreferences(), waitingHandlerCLIImpl, exceptionHandler);
+                PtmSettings ptmSettings = searchParameters.getPtmSettings();
+                streamingExporter.setProteinMapper(new ProteinMapper(peptideMapper, ptmSettings.getFixedModifications(), ptmSettings.getAllNotFixedModifications(),
+                        sequenceMatchingPreferences, searchParameters.getFragmentIonAccuracy()));
+            }
+
+            // import and export the results one file at a time
+            streamingExporter.open(postProcessingCLIInputBean.getPeptidesExportFile(), postProcessingCLIInputBean.getTagsExportFile(),
+                    postProcessingCLIInputBean.getBlastExportFile());
+            try {
+                for (File resultFile : postProcessingCLIInputBean.getResultFiles()) {
+                    waitingHandlerCLIImpl.appendReport("Exporting " + resultFile.getName() + ".", true, true);
+                    streamingExporter.export(resultFile, waitingHandlerCLIImpl);
+                    if (waitingHandlerCLIImpl.isRunCanceled()) {
+                        return 1;
+                    }
+                }
+            } finally {
+                streamingExporter.close();
+            }
+
+            if (fastaFile != null && !streamingExporter.isPeptideFound()) {
+                waitingHandlerCLIImpl.appendReport("No peptide could be matched to the database.", true, true);
+            }
+            waitingHandlerCLIImpl.appendReport("Matches of " + streamingExporter.getNSpectra() + " spectra exported.", true, true);
+
+        } catch (Exception e) {
+            exceptionHandler.catchException(e);
+            return 1;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Sets the path configuration.
+     */
+    private void setPathConfiguration() throws IOException {
+        File pathConfigurationFile = new File(getJarFilePath(), UtilitiesPathPreferences.configurationFileName);
+        if (pathConfigurationFile.exists()) {
+            DeNovoGUIPathPreferences.loadPathPreferencesFromFile(pathConfigurationFile);
+        }
+    }
+
+    /**
+     * PostProcessingCLI header message when printing the usage.
+     */
+    private static String getHeader() {
+        return System.getProperty("line.separator")
+                + "PostProcessingCLI imports the results of DeNovoCLI and exports the matches as text files without graphical interface." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "The matches can be mapped to a FASTA file to export the peptides of the tags." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "For further help see http://compomics.github.io/projects/denovogui.html and http://compomics.github.io/projects/denovogui/wiki/denovocli.html." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "Or contact the developers at http://groups.google.com/group/denovogui." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "----------------------"
+                + System.getProperty("line.separator")
+                + "OPTIONS"
+                + System.getProperty("line.separator")
+                + "----------------------" + System.getProperty("line.separator")
+                + "\n";
+    }
+
+    /**
+     * Starts the launcher by calling the launch method. Use this as the main
+     * class in the jar file.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        try {
+            new PostProcessingCLI(args);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the path to the jar file.
+     *
+     * @return the path to the jar file
+     */
+    public String getJarFilePath() {
+        return CompomicsWrapper.getJarFilePath(this.getClass().getResource("PostProcessingCLI.class").getPath(), "DeNovoGUI");
+    }
+}
@@ -0,0 +1,331 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.software.cli.CommandLineUtils;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.apache.commons.cli.CommandLine;
+
+/**
+ * Parses the command line and retrieves the user input for the
+ * post-processing.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class PostProcessingCLIInputBean {
+
+    /**
+     * The result files.
+     */
+    private ArrayList<File> resultFiles;
+    /**
+     * The spectrum files.
+     */
+    private ArrayList<File> spectrumFiles;
+    /**
+     * The search parameters file.
+     */
+    private File searchParametersFile;
+    /**
+     * The FASTA file, null if the matches are not mapped.
+     */
+    private File fastaFile = null;
+    /**
+     * The peptide export file, null if not exported.
+     */
+    private File peptidesExportFile = null;
+    /**
+     * The tag export file, null if not exported.
+     */
+    private File tagsExportFile = null;
+    /**
+     * The BLAST-compatible export file, null if not exported.
+     */
+    private File blastExportFile = null;
+    /**
+     * The de novo score threshold.
+     */
+    private double threshold = 0;
+    /**
+     * Indicates whether the scores have to be greater than the threshold.
+     */
+    private boolean greaterThan = true;
+    /**
+     * The maximum number of matches exported per spectrum.
+     */
+    private int numberOfMatches = 5;
+    /**
+     * The path settings.
+     */
+    private PathSettingsCLIInputBean pathSettingsCLIInputBean;
+
+    /**
+     * Takes all the arguments from a command line.
+     *
+     * @param aLine the command line
+     *
+     * @throws FileNotFoundException thrown if a result or spectrum file cannot
+     * be found
+     */
+    public PostProcessingCLIInputBean(CommandLine aLine) throws FileNotFoundException {
+
+        resultFiles = getResultFiles(aLine.getOptionValue(PostProcessingCLIParams.RESULT_FILES.id));
+        spectrumFiles = getSpectrumFiles(aLine.getOptionValue(PostProcessingCLIParams.SPECTRUM_FILES.id));
+        searchParametersFile = new File(aLine.getOptionValue(PostProcessingCLIParams.IDENTIFICATION_PARAMETERS.id));
+
+        if (aLine.hasOption(PostProcessingCLIParams.FASTA.id)) {
+            fastaFile = new File(aLine.getOptionValue(PostProcessingCLIParams.FASTA.id));
+        }
+
+        // exports
+        if (aLine.hasOption(PostProcessingCLIParams.PEPTIDES_EXPORT.id)) {
+            peptidesExportFile = new File(aLine.getOptionValue(PostProcessingCLIParams.PEPTIDES_EXPORT.id));
+        }
+        if (aLine.hasOption(PostProcessingCLIParams.TAGS_EXPORT.id)) {
+            tagsExportFile = new File(aLine.getOptionValue(PostProcessingCLIParams.TAGS_EXPORT.id));
+        }
+        if (aLine.hasOption(PostProcessingCLIParams.BLAST_EXPORT.id)) {
+            blastExportFile = new File(aLine.getOptionValue(PostProcessingCLIParams.BLAST_EXPORT.id));
+        }
+
+        // export settings
+        if (aLine.hasOption(PostProcessingCLIParams.THRESHOLD.id)) {
+            threshold = Double.parseDouble(aLine.getOptionValue(PostProcessingCLIParams.THRESHOLD.id));
+        }
+        if (aLine.hasOption(PostProcessingCLIParams.GREATER_THAN.id)) {
+            greaterThan = aLine.getOptionValue(PostProcessingCLIParams.GREATER_THAN.id).trim().equals("1");
+        }
+        if (aLine.hasOption(PostProcessingCLIParams.NUMBER_OF_MATCHES.id)) {
+            numberOfMatches = Integer.parseInt(aLine.getOptionValue(PostProcessingCLIParams.NUMBER_OF_MATCHES.id));
+        }
+
+        pathSettingsCLIInputBean = new PathSettingsCLIInputBean(aLine);
+    }
+
+    /**
+     * Returns the result files.
+     *
+     * @return the result files
+     */
+    public ArrayList<File> getResultFiles() {
+        return resultFiles;
+    }
+
+    /**
+     * Returns the spectrum files.
+     *
+     * @return the spectrum files
+     */
+    public ArrayList<File> getSpectrumFiles() {
+        return spectrumFiles;
+    }
+
+    /**
+     * Returns the search parameters file.
+     *
+     * @return the search parameters file
+     */
+    public File getSearchParametersFile() {
+        return searchParametersFile;
+    }
+
+    /**
+     * Returns the FASTA file, null if not set.
+     *
+     * @return the FASTA file
+     */
+    public File getFastaFile() {
+        return fastaFile;
+    }
+
+    /**
+     * Returns the peptide export file, null if not set.
+     *
+     * @return the peptide export file
+     */
+    public File getPeptidesExportFile() {
+        return peptidesExportFile;
+    }
+
+    /**
+     * Returns the tag export file, null if not set.
+     *
+     * @return the tag export file
+     */
+    public File getTagsExportFile() {
+        return tagsExportFile;
+    }
+
+    /**
+     * Returns the BLAST-compatible export file, null if not set.
+     *
+     * @return the BLAST-compatible export file
+     */
+    public File getBlastExportFile() {
+        return blastExportFile;
+    }
+
+    /**
+     * Returns the de novo score threshold.
+     *
+     * @return the de novo score threshold
+     */
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Indicates whether the scores have to be greater than the threshold.
+     *
+     * @return true if the scores have to be greater than the threshold
+     */
+    public boolean isGreaterThan() {
+        return greaterThan;
+    }
+
+    /**
+     * Returns the maximum number of matches exported per spectrum.
+     *
+     * @return the maximum number of matches exported per spectrum
+     */
+    public int getNumberOfMatches() {
+        return numberOfMatches;
+    }
+
+    /**
+     * Returns the path settings provided by the user.
+     *
+     * @return the path settings provided by the user
+     */
+    public PathSettingsCLIInputBean getPathSettingsCLIInputBean() {
+        return pathSettingsCLIInputBean;
+    }
+
+    /**
+     * Returns a list of result files as imported from the command line
+     * option.
+     *
+     * @param optionInput the command line option
+     * @return a list of file candidates
+     * @throws FileNotFoundException exception thrown whenever a file is not
+     * found
+     */
+    public static ArrayList<File> getResultFiles(String optionInput) throws FileNotFoundException {
+        ArrayList<String> extentions = new ArrayList<String>();
+        extentions.add(".out");
+        extentions.add(".tags");
+        extentions.add(".pnovo.txt");
+        extentions.add(".novor.csv");
+        return CommandLineUtils.getFiles(optionInput, extentions);
+    }
+
+    /**
+     * Returns a list of spectrum files as imported from the command line
+     * option.
+     *
+     * @param optionInput the command line option
+     * @return a list of file candidates
+     * @throws FileNotFoundException exception thrown whenever a file is not
+     * found
+     */
+    public static ArrayList<File> getSpectrumFiles(String optionInput) throws FileNotFoundException {
+        ArrayList<String> extentions = new ArrayList<String>();
+        extentions.add(".mgf");
+        return CommandLineUtils.getFiles(optionInput, extentions);
+    }
+
+    /**
+     * Verifies the command line start parameters.
+     *
+     * @param aLine the command line to validate
+     *
+     * @return true if the startup was valid
+     *
+     * @throws IOException if the result or spectrum files cannot be found
+     */
+    public static boolean isValidStartup(CommandLine aLine) throws IOException {
+
+        if (aLine.getOptions().length == 0) {
+            return false;
+        }
+
+        if (!aLine.hasOption(PostProcessingCLIParams.RESULT_FILES.id) || aLine.getOptionValue(PostProcessingCLIParams.RESULT_FILES.id).equals("")) {
+            System.out.println(System.getProperty("line.separator") + "Result files not specified." + System.getProperty("line.separator"));
+            return false;
+        } else {
+            for (File file : getResultFiles(aLine.getOptionValue(PostProcessingCLIParams.RESULT_FILES.id))) {
+                if (!file.exists()) {
+                    System.out.println(System.getProperty("line.separator") + "File \'" + file.getName() + "\' not found." + System.getProperty("line.separator"));
+                    return false;
+                }
+            }
+        }
+
+        if (!aLine.hasOption(PostProcessingCLIParams.SPECTRUM_FILES.id) || aLine.getOptionValue(PostProcessingCLIParams.SPECTRUM_FILES.id).equals("")) {
+            System.out.println(System.getProperty("line.separator") + "Spectrum files not specified." + System.getProperty("line.separator"));
+            return false;
+        } else {
+            for (File file : getSpectrumFiles(aLine.getOptionValue(PostProcessingCLIParams.SPECTRUM_FILES.id))) {
+                if (!file.exists()) {
+                    System.out.println(System.getProperty("line.separator") + "File \'" + file.getName() + "\' not found." + System.getProperty("line.separator"));
+                    return false;
+                }
+            }
+        }
+
+        if (!aLine.hasOption(PostProcessingCLIParams.IDENTIFICATION_PARAMETERS.id)) {
+            System.out.println(System.getProperty("line.separator") + "Search parameters file not specified." + System.getProperty("line.separator"));
+            return false;
+        } else {
+            try {
+                SearchParameters.getIdentificationParameters(new File(aLine.getOptionValue(PostProcessingCLIParams.IDENTIFICATION_PARAMETERS.id)));
+            } catch (Exception e) {
+                System.out.println(System.getProperty("line.separator") + "An error occurred while reading the search parameters:"
+                        + System.getProperty("line.separator") + e.getLocalizedMessage() + System.getProperty("line.separator"));
+                e.printStackTrace();
+                return false;
+            }
+        }
+
+        if (aLine.hasOption(PostProcessingCLIParams.FASTA.id)) {
+            File file = new File(aLine.getOptionValue(PostProcessingCLIParams.FASTA.id));
+            if (!file.exists()) {
+                System.out.println(System.getProperty("line.separator") + "FASTA file \'" + file.getName() + "\' not found." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        if (!aLine.hasOption(PostProcessingCLIParams.PEPTIDES_EXPORT.id) && !aLine.hasOption(PostProcessingCLIParams.TAGS_EXPORT.id)
+                && !aLine.hasOption(PostProcessingCLIParams.BLAST_EXPORT.id)) {
+            System.out.println(System.getProperty("line.separator") + "No export file specified." + System.getProperty("line.separator"));
+            return false;
+        }
+
+        try {
+            if (aLine.hasOption(PostProcessingCLIParams.THRESHOLD.id)) {
+                Double.parseDouble(aLine.getOptionValue(PostProcessingCLIParams.THRESHOLD.id));
+            }
+        } catch (NumberFormatException e) {
+            System.out.println(System.getProperty("line.separator") + "Could not parse the threshold as a number." + System.getProperty("line.separator"));
+            return false;
+        }
+
+        if (aLine.hasOption(PostProcessingCLIParams.NUMBER_OF_MATCHES.id)) {
+            try {
+                int numberOfMatches = Integer.parseInt(aLine.getOptionValue(PostProcessingCLIParams.NUMBER_OF_MATCHES.id));
+                if (numberOfMatches <= 0) {
+                    System.out.println(System.getProperty("line.separator") + "The number of matches has to be a positive number." + System.getProperty("line.separator"));
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                System.out.println(System.getProperty("line.separator") + "Could not parse the number of matches as an integer." + System.getProperty("line.separator"));
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,96 @@
+package com.compomics.denovogui.cmd;
+
+import org.apache.commons.cli.Options;
+
+/**
+ * Parameters for the post-processing command line.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public enum PostProcessingCLIParams {
+
+    RESULT_FILES("result_files", "De novo result files (.out, .tags, .pnovo.txt or .novor.csv), comma separated list or an entire folder.", true),
+    SPECTRUM_FILES("spectrum_files", "The mgf files of the results, comma separated list or an entire folder. For mzML, mzXML and compressed mgf files use the mgf files written in the sequencing output folder.", true),
+    IDENTIFICATION_PARAMETERS("id_params", "The search parameters file used for the sequencing.", true),
+    FASTA("fasta", "A FASTA file to map the tags and peptides to. Needed to export peptides from the tags.", false),
+    PEPTIDES_EXPORT("peptides_export", "The file where to export the peptide matches.", false),
+    TAGS_EXPORT("tags_export", "The file where to export the de novo matches.", false),
+    BLAST_EXPORT("blast_export", "The file where to export the de novo matches in a BLAST-compatible format.", false),
+    THRESHOLD("threshold", "The de novo score threshold, default is '0'.", false),
+    GREATER_THAN("greater_than", "Keep the matches with a score greater than the threshold (1) or lower than the threshold (0), default is '1'.", false),
+    NUMBER_OF_MATCHES("number_of_matches", "The maximum number of matches exported per spectrum, default is '5'.", false);
+    /**
+     * Short Id for the CLI parameter.
+     */
+    public String id;
+    /**
+     * Explanation for the CLI parameter.
+     */
+    public String description;
+    /**
+     * Boolean indicating whether the parameter is mandatory.
+     */
+    public boolean mandatory;
+
+    /**
+     * Private constructor managing the various variables for the enum
+     * instances.
+     *
+     * @param id the id
+     * @param description the description
+     * @param mandatory is the parameter mandatory
+     */
+    private PostProcessingCLIParams(String id, String description, boolean mandatory) {
+        this.id = id;
+        this.description = description;
+        this.mandatory = mandatory;
+    }
+
+    /**
+     * Creates the options for the command line interface based on the possible
+     * values.
+     *
+     * @param aOptions the options object where the options will be added
+     */
+    public static void createOptionsCLI(Options aOptions) {
+        for (PostProcessingCLIParams postProcessingCLIParams : values()) {
+            aOptions.addOption(postProcessingCLIParams.id, true, postProcessingCLIParams.description);
+        }
+
+        // Path setup
+        PathSettingsCLIParams.createOptionsCLI(aOptions);
+    }
+
+    /**
+     * Returns the options as a string.
+     *
+     * @return the options as a string
+     */
+    public static String getOptionsAsString() {
+
+        String output = "";
+        String formatter = "%-35s";
+
+        output += "Mandatory Parameters:\n\n";
+        output += "-" + String.format(formatter, RESULT_FILES.id) + " " + RESULT_FILES.description + "\n";
+        output += "-" + String.format(formatter, SPECTRUM_FILES.id) + " " + SPECTRUM_FILES.description + "\n";
+        output += "-" + String.format(formatter, IDENTIFICATION_PARAMETERS.id) + " " + IDENTIFICATION_PARAMETERS.description + "\n";
+
+        output += "\n\nExports (at least one):\n\n";
+        output += "-" + String.format(formatter, PEPTIDES_EXPORT.id) + " " + PEPTIDES_EXPORT.description + "\n";
+        output += "-" + String.format(formatter, TAGS_EXPORT.id) + " " + TAGS_EXPORT.description + "\n";
+        output += "-" + String.format(formatter, BLAST_EXPORT.id) + " " + BLAST_EXPORT.description + "\n";
+
+        output += "\n\nOptional Parameters:\n\n";
+        output += "-" + String.format(formatter, FASTA.id) + " " + FASTA.description + "\n";
+        output += "-" + String.format(formatter, THRESHOLD.id) + " " + THRESHOLD.description + "\n";
+        output += "-" + String.format(formatter, GREATER_THAN.id) + " " + GREATER_THAN.description + "\n";
+        output += "-" + String.format(formatter, NUMBER_OF_MATCHES.id) + " " + NUMBER_OF_MATCHES.description + "\n";
+
+        output += "\n\nOptional Temporary Folder:\n\n";
+        output += "-" + String.format(formatter, PathSettingsCLIParams.ALL.id) + " " + PathSettingsCLIParams.ALL.description + "\n";
+
+        return output;
+    }
+}
@@ -0,0 +1,183 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.SpectrumIndex;
+import com.compomics.denovogui.workload.WorkloadGenerator;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import org.apache.commons.cli.BasicParser;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+
+/**
+ * Command line generating synthetic workloads for performance testing: mgf
+ * files, results of the algorithms and stub executables of the algorithms.
+ *
+ * @author Marc Vaudel
+ */
+public class WorkloadGeneratorCLI {
+
+    /**
+     * The input bean containing the user parameters.
+     */
+    private WorkloadGeneratorCLIInputBean workloadGeneratorCLIInputBean;
+
+    /**
+     * Constructor.
+     *
+     * @param workloadGeneratorCLIInputBean an input bean containing the user
+     * parameters
+     */
+    public WorkloadGeneratorCLI(WorkloadGeneratorCLIInputBean workloadGeneratorCLIInputBean) {
+        this.workloadGeneratorCLIInputBean = workloadGeneratorCLIInputBean;
+    }
+
+    /**
+     * Generates the workload.
+     *
+     * @throws IOException thrown if a file cannot be written
+     */
+    public void generate() throws IOException {
+
+        File outputFolder = workloadGeneratorCLIInputBean.getOutputFolder();
+        if (!outputFolder.exists() && !outputFolder.mkdirs()) {
+            throw new IOException("Impossible to create folder " + outputFolder.getAbsolutePath() + ".");
+        }
+
+        WorkloadGenerator workloadGenerator = new WorkloadGenerator(workloadGeneratorCLIInputBean.getSeed());
+        workloadGenerator.setNPeaks(workloadGeneratorCLIInputBean.getNPeaks());
+        workloadGenerator.setChargeDistribution(workloadGeneratorCLIInputBean.getChargeDistribution());
+
+        int nMgfFiles = workloadGeneratorCLIInputBean.getNMgfFiles();
+        for (int i = 1; i <= nMgfFiles; i++) {
+
+            File mgfFile = new File(outputFolder, nMgfFiles == 1 ? "workload.mgf" : "workload_" + i + ".mgf");
+            System.out.println("Writing " + workloadGeneratorCLIInputBean.getNSpectra() + " spectra to " + mgfFile.getName() + ".");
+            workloadGenerator.writeMgf(mgfFile, workloadGeneratorCLIInputBean.getNSpectra());
+
+            if (!workloadGeneratorCLIInputBean.getResults().isEmpty()) {
+                SpectrumIndex spectrumIndex = SpectrumIndex.index(mgfFile);
+                for (String algorithm : workloadGeneratorCLIInputBean.getResults()) {
+                    writeResults(workloadGenerator, algorithm, mgfFile, spectrumIndex, outputFolder);
+                }
+            }
+        }
+
+        if (workloadGeneratorCLIInputBean.isStubEngines()) {
+            File stubFolder = new File(outputFolder, "stubs");
+            System.out.println("Writing the stub executables to " + stubFolder.getAbsolutePath() + ".");
+            WorkloadGenerator.writeStubEngines(stubFolder, workloadGeneratorCLIInputBean.getStubRate());
+        }
+
+        System.out.println("Workload written to " + outputFolder.getAbsolutePath() + ".");
+    }
+
+    /**
+     * Writes the results of an algorithm for an mgf file, named as by
+     * DeNovoGUI.
+     *
+     * @param workloadGenerator the workload generator
+     * @param algorithm the name of the algorithm
+     * @param mgfFile the mgf file
+     * @param spectrumIndex the index of the mgf file
+     * @param outputFolder the folder where to write the results
+     *
+     * @throws IOException thrown if the results cannot be written
+     */
+    private void writeResults(WorkloadGenerator workloadGenerator, String algorithm, File mgfFile, SpectrumIndex spectrumIndex, File outputFolder) throws IOException {
+
+        File resultFile;
+        if (algorithm.equals("pepnovo")) {
+            resultFile = FileProcessor.getOutFile(outputFolder, mgfFile);
+        } else if (algorithm.equals("directag")) {
+            resultFile = FileProcessor.getTagsFile(outputFolder, mgfFile);
+        } else if (algorithm.equals("pnovo")) {
+            resultFile = FileProcessor.getPNovoResultFile(outputFolder, mgfFile);
+        } else {
+            resultFile = FileProcessor.getNovorResultFile(outputFolder, mgfFile);
+        }
+
+        System.out.println("Writing " + resultFile.getName() + ".");
+        int nSolutions = workloadGeneratorCLIInputBean.getNSolutions();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(resultFile), 1 << 16);
+        try {
+            if (algorithm.equals("pepnovo")) {
+                workloadGenerator.writePepNovoResults(spectrumIndex, bw, nSolutions, 0);
+            } else if (algorithm.equals("directag")) {
+                workloadGenerator.writeDirecTagResults(spectrumIndex, bw, nSolutions, 0);
+            } else if (algorithm.equals("pnovo")) {
+                workloadGenerator.writePNovoResults(spectrumIndex, bw, nSolutions, 0);
+            } else {
+                workloadGenerator.writeNovorResults(spectrumIndex, mgfFile.getName(), bw, 0);
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Workload generator CLI header message when printing the usage.
+     */
+    private static String getHeader() {
+        return System.getProperty("line.separator")
+                + "The DeNovoGUI workload generator writes synthetic mgf files, algorithm results and stub executables for performance testing." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "The stub executables replace PepNovo+, DirecTag, pNovo+ and Novor: set the executable locations of DeNovoCLI to the stubs to run the whole pipeline without the algorithms." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "For further help see http://compomics.github.io/projects/denovogui.html and http://compomics.github.io/projects/denovogui/wiki/denovocli.html." + System.getProperty("line.separator")
+                + System.getProperty("line.separator")
+                + "----------------------"
+                + System.getProperty("line.separator")
+                + "OPTIONS"
+                + System.getProperty("line.separator")
+                + "----------------------" + System.getProperty("line.separator")
+                + System.getProperty("line.separator");
+    }
+
+    /**
+     * Starts the workload generator. Use this as the main class in the jar
+     * file.
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+
+        try {
+            Options lOptions = new Options();
+            WorkloadGeneratorCLIParams.createOptionsCLI(lOptions);
+            BasicParser parser = new BasicParser();
+            CommandLine line = parser.parse(lOptions, args);
+
+            if (args.length == 0) {
+                PrintWriter lPrintWriter = new PrintWriter(System.out);
+                lPrintWriter.print(System.getProperty("line.separator") + "========================================" + System.getProperty("line.separator"));
+                lPrintWriter.print("DeNovoGUI Workload Generator - Command Line" + System.getProperty("line.separator"));
+                lPrintWriter.print("========================================" + System.getProperty("line.separator"));
+                lPrintWriter.print(getHeader());
+                lPrintWriter.print(WorkloadGeneratorCLIParams.getOptionsAsString());
+                lPrintWriter.flush();
+                lPrintWriter.close();
+
+                System.exit(0);
+            } else {
+                WorkloadGeneratorCLIInputBean cliInputBean = new WorkloadGeneratorCLIInputBean(line);
+                WorkloadGeneratorCLI workloadGeneratorCLI = new WorkloadGeneratorCLI(cliInputBean);
+                workloadGeneratorCLI.generate();
+                System.exit(0);
+            }
+        } catch (OutOfMemoryError e) {
+            System.out.println("DeNovoGUI used up all the memory and had to be stopped. See the DeNovoGUI log for details.");
+            System.err.println("Ran out of memory!");
+            System.err.println("Memory given to the Java virtual machine: " + Runtime.getRuntime().maxMemory() + ".");
+            e.printStackTrace();
+            System.exit(1);
+        } catch (Exception e) {
+            System.out.println("Workload generation failed: " + e.getMessage());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
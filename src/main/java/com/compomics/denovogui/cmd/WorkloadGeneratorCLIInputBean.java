@@ -0,0 +1,195 @@
+package com.compomics.denovogui.cmd;
+
+import com.compomics.denovogui.workload.WorkloadGenerator;
+import java.io.File;
+import java.util.ArrayList;
+import org.apache.commons.cli.CommandLine;
+
+/**
+ * Parses the command line and retrieves the user input for the workload
+ * generator.
+ *
+ * @author Marc Vaudel
+ */
+public class WorkloadGeneratorCLIInputBean {
+
+    /**
+     * The folder where to write the workload.
+     */
+    private File outputFolder;
+    /**
+     * The number of spectra per mgf file.
+     */
+    private int nSpectra = 1000;
+    /**
+     * The average number of peaks per spectrum.
+     */
+    private int nPeaks = 200;
+    /**
+     * The charge distribution.
+     */
+    private double[] chargeDistribution = WorkloadGenerator.DEFAULT_CHARGE_DISTRIBUTION;
+    /**
+     * The number of mgf files.
+     */
+    private int nMgfFiles = 1;
+    /**
+     * The algorithms to write results for.
+     */
+    private ArrayList<String> results = new ArrayList<String>();
+    /**
+     * The number of solutions per spectrum.
+     */
+    private int nSolutions = 10;
+    /**
+     * Indicates whether the stub executables should be written.
+     */
+    private boolean stubEngines = false;
+    /**
+     * The number of spectra processed per second by the stubs.
+     */
+    private double stubRate = 0;
+    /**
+     * The seed of the random generator.
+     */
+    private long seed = 0;
+
+    /**
+     * Takes all the arguments from a command line.
+     *
+     * @param aLine the command line
+     *
+     * @throws IllegalArgumentException thrown if an argument is not valid
+     */
+    public WorkloadGeneratorCLIInputBean(CommandLine aLine) throws IllegalArgumentException {
+
+        if (!aLine.hasOption(WorkloadGeneratorCLIParams.OUTPUT_FOLDER.id)) {
+            throw new IllegalArgumentException("Output folder not specified.");
+        }
+        outputFolder = new File(aLine.getOptionValue(WorkloadGeneratorCLIParams.OUTPUT_FOLDER.id));
+
+        if (aLine.hasOption(WorkloadGeneratorCLIParams.SPECTRA.id)) {
+            nSpectra = Integer.parseInt(aLine.getOptionValue(WorkloadGeneratorCLIParams.SPECTRA.id).trim());
+        }
+        if (aLine.hasOption(WorkloadGeneratorCLIParams.PEAKS.id)) {
+            nPeaks = Integer.parseInt(aLine.getOptionValue(WorkloadGeneratorCLIParams.PEAKS.id).trim());
+        }
+        if (aLine.hasOption(WorkloadGeneratorCLIParams.CHARGES.id)) {
+            chargeDistribution = WorkloadGenerator.parseChargeDistribution(aLine.getOptionValue(WorkloadGeneratorCLIParams.CHARGES.id));
+        }
+        if (aLine.hasOption(WorkloadGeneratorCLIParams.MGF_FILES.id)) {
+            nMgfFiles = Integer.parseInt(aLine.getOptionValue(WorkloadGeneratorCLIParams.MGF_FILES.id).trim());
+        }
+        if (aLine.hasOption(WorkloadGeneratorCLIParams.RESULTS.id)) {
+            for (String algorithm : aLine.getOptionValue(WorkloadGeneratorCLIParams.RESULTS.id).split(",")) {
+                String name = algorithm.trim().toLowerCase();
+                if (!name.equals("pepnovo") && !name.equals("directag") && !name.equals("pnovo") && !name.equals("novor")) {
+                    throw new IllegalArgumentException("Algorithm " + algorithm + " not recognized.");
+                }
+                results.add(name);
+            }
+        }
+        if (aLine.hasOption(WorkloadGeneratorCLIParams.SOLUTIONS.id)) {
+            nSolutions = Integer.parseInt(aLine.getOptionValue(WorkloadGeneratorCLIParams.SOLUTIONS.id).trim());
+        }
+        if (aLine.hasOption(WorkloadGeneratorCLIParams.STUB_ENGINES.id)) {
+            stubEngines = aLine.getOptionValue(WorkloadGeneratorCLIParams.STUB_ENGINES.id).trim().equals("1");
+        }
+        if (aLine.hasOption(WorkloadGeneratorCLIParams.STUB_RATE.id)) {
+            stubRate = Double.parseDouble(aLine.getOptionValue(WorkloadGeneratorCLIParams.STUB_RATE.id).trim());
+        }
+        if (aLine.hasOption(WorkloadGeneratorCLIParams.SEED.id)) {
+            seed = Long.parseLong(aLine.getOptionValue(WorkloadGeneratorCLIParams.SEED.id).trim());
+        }
+    }
+
+    /**
+     * Returns the folder where to write the workload.
+     *
+     * @return the folder where to write the workload
+     */
+    public File getOutputFolder() {
+        return outputFolder;
+    }
+
+    /**
+     * Returns the number of spectra per mgf file.
+     *
+     * @return the number of spectra per mgf file
+     */
+    public int getNSpectra() {
+        return nSpectra;
+    }
+
+    /**
+     * Returns the average number of peaks per spectrum.
+     *
+     * @return the average number of peaks per spectrum
+     */
+    public int getNPeaks() {
+        return nPeaks;
+    }
+
+    /**
+     * Returns the charge distribution, index 0 for charge 1.
+     *
+     * @return the charge distribution
+     */
+    public double[] getChargeDistribution() {
+        return chargeDistribution;
+    }
+
+    /**
+     * Returns the number of mgf files.
+     *
+     * @return the number of mgf files
+     */
+    public int getNMgfFiles() {
+        return nMgfFiles;
+    }
+
+    /**
+     * Returns the algorithms to write results for.
+     *
+     * @return the algorithms to write results for
+     */
+    public ArrayList<String> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the number of solutions per spectrum.
+     *
+     * @return the number of solutions per spectrum
+     */
+    public int getNSolutions() {
+        return nSolutions;
+    }
+
+    /**
+     * Indicates whether the stub executables should be written.
+     *
+     * @return true if the stub executables should be written
+     */
+    public boolean isStubEngines() {
+        return stubEngines;
+    }
+
+    /**
+     * Returns the number of spectra processed per second by the stubs.
+     *
+     * @return the number of spectra processed per second by the stubs
+     */
+    public double getStubRate() {
+        return stubRate;
+    }
+
+    /**
+     * Returns the seed of the random generator.
+     *
+     * @return the seed of the random generator
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
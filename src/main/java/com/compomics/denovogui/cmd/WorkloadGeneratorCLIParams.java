@@ -0,0 +1,88 @@
+package com.compomics.denovogui.cmd;
+
+import org.apache.commons.cli.Options;
+
+/**
+ * Parameters for the workload generator command line.
+ *
+ * @author Marc Vaudel
+ */
+public enum WorkloadGeneratorCLIParams {
+
+    OUTPUT_FOLDER("output_folder", "The folder where to write the workload.", true),
+    SPECTRA("spectra", "The number of spectra per mgf file (default 1000).", false),
+    PEAKS("peaks", "The average number of peaks per spectrum (default 200).", false),
+    CHARGES("charges", "The charge distribution as comma separated charge:frequency pairs (default 1:0.05,2:0.6,3:0.3,4:0.05).", false),
+    MGF_FILES("mgf_files", "The number of mgf files (default 1).", false),
+    RESULTS("results", "Comma separated list of the algorithms to write results for: pepnovo, directag, pnovo and/or novor (default none).", false),
+    SOLUTIONS("solutions", "The number of solutions per spectrum in the results (default 10).", false),
+    STUB_ENGINES("stub_engines", "Write stub executables of the algorithms, 1: true, 0: false (default 0).", false),
+    STUB_RATE("stub_rate", "The number of spectra processed per second by the stub executables, 0 for unlimited (default 0).", false),
+    SEED("seed", "The seed of the random generator (default 0).", false);
+    /**
+     * The id of the command line option.
+     */
+    public String id;
+    /**
+     * The description of the command line option.
+     */
+    public String description;
+    /**
+     * Boolean indicating whether the option is mandatory.
+     */
+    public boolean mandatory;
+
+    /**
+     * Constructor.
+     *
+     * @param id the id of the command line option
+     * @param description the description of the command line option
+     * @param mandatory is the option mandatory
+     */
+    private WorkloadGeneratorCLIParams(String id, String description, boolean mandatory) {
+        this.id = id;
+        this.description = description;
+        this.mandatory = mandatory;
+    }
+
+    /**
+     * Creates the options for the command line interface based on the possible
+     * values.
+     *
+     * @param aOptions the options object where the options will be added
+     */
+    public static void createOptionsCLI(Options aOptions) {
+        for (WorkloadGeneratorCLIParams workloadGeneratorCLIParam : values()) {
+            aOptions.addOption(workloadGeneratorCLIParam.id, true, workloadGeneratorCLIParam.description);
+        }
+    }
+
+    /**
+     * Returns the options as a string.
+     *
+     * @return the options as a string
+     */
+    public static String getOptionsAsString() {
+
+        String output = "";
+        String formatter = "%-35s";
+
+        output += "Mandatory Parameters:\n\n";
+        output += "-" + String.format(formatter, OUTPUT_FOLDER.id) + " " + OUTPUT_FOLDER.description + "\n";
+
+        output += "\n\nSpectra:\n\n";
+        output += "-" + String.format(formatter, SPECTRA.id) + " " + SPECTRA.description + "\n";
+        output += "-" + String.format(formatter, PEAKS.id) + " " + PEAKS.description + "\n";
+        output += "-" + String.format(formatter, CHARGES.id) + " " + CHARGES.description + "\n";
+        output += "-" + String.format(formatter, MGF_FILES.id) + " " + MGF_FILES.description + "\n";
+        output += "-" + String.format(formatter, SEED.id) + " " + SEED.description + "\n";
+
+        output += "\n\nResults and Stub Executables:\n\n";
+        output += "-" + String.format(formatter, RESULTS.id) + " " + RESULTS.description + "\n";
+        output += "-" + String.format(formatter, SOLUTIONS.id) + " " + SOLUTIONS.description + "\n";
+        output += "-" + String.format(formatter, STUB_ENGINES.id) + " " + STUB_ENGINES.description + "\n";
+        output += "-" + String.format(formatter, STUB_RATE.id) + " " + STUB_RATE.description + "\n";
+
+        return output;
+    }
+}
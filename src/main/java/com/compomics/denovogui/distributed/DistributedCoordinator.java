@@ -0,0 +1,258 @@
+package com.compomics.denovogui.distributed;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.io.CompressedMgfFile;
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.XmlSpectrumFile;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Coordinates a sequencing run distributed over several DeNovoCLI workers.
+ * The spectrum files are split in shards of similar cost which are queued in
+ * a shared folder together with the search parameters loaded by the
+ * workers. Shards held by dead workers are put back in the queue and
+ * shards held by slow workers are duplicated so that an idle worker can
+ * process them too, the first result being kept. Shards failing on every
+ * attempt are reported and left out. Once all shards are done or failed the
+ * results of every algorithm are merged per spectrum file and the search
+ * parameters are saved next to the merged results. The shards, tasks
+ * and results of a previous run in the same shared folder are deleted when a
+ * run starts.
+ *
+ * @author Marc Vaudel
+ */
+public class DistributedCoordinator {
+
+    /**
+     * The interval in milliseconds between two checks of the queue.
+     */
+    private static final long POLLING_INTERVAL = 2000;
+    /**
+     * A shard is considered slow when running for longer than this factor
+     * times the median shard duration.
+     */
+    private static final double SLOW_FACTOR = 3;
+    /**
+     * The shard queue.
+     */
+    private final ShardQueue shardQueue;
+    /**
+     * The number of shards per spectrum file.
+     */
+    private final int nShards;
+    /**
+     * Time in milliseconds without heartbeat after which a worker is
+     * considered dead.
+     */
+    private final long workerTimeout;
+
+    /**
+     * Constructor.
+     *
+     * @param sharedFolder the folder shared with the workers
+     * @param nShards the number of shards per spectrum file
+     * @param workerTimeout time in milliseconds without heartbeat after which
+     * a worker is considered dead
+     */
+    public DistributedCoordinator(File sharedFolder, int nShards, long workerTimeout) {
+        this.shardQueue = new ShardQueue(sharedFolder);
+        this.nShards = nShards;
+        this.workerTimeout = workerTimeout;
+    }
+
+    /**
+     * Distributes the sequencing of the given spectrum files and merges the
+     * results in the output folder.
+     *
+     * @param spectrumFiles the spectrum files
+     * @param searchParameters the search parameters
+     * @param searchParametersFile the search parameters file, its name is
+     * used to save the search parameters in the output folder, can be null
+     * @param outputFolder the output folder
+     * @param enablePepNovo merge PepNovo+ results
+     * @param enableDirecTag merge DirecTag results
+     * @param enablePNovo merge pNovo+ results
+     * @param enableNovor merge Novor results
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if the shared folder cannot be accessed
+     * @throws InterruptedException thrown if the thread is interrupted while
+     * waiting for the workers
+     */
+    public void run(List<File> spectrumFiles, SearchParameters searchParameters, File searchParametersFile, File outputFolder, boolean enablePepNovo, boolean enableDirecTag, boolean enablePNovo, boolean enableNovor,
+            WaitingHandler waitingHandler) throws IOException, InterruptedException {
+
+        shardQueue.resetFinished();
+        shardQueue.clear();
+        shardQueue.createFolders();
+
+        // the workers load the search parameters and the PepNovo+ modification mapping of the run
+        DeNovoSequencingHandler.saveSearchParameters(searchParameters, shardQueue.getSearchParametersFile());
+
+        // split the spectrum files in shards and queue them
+        LinkedHashMap<File, ArrayList<String>> shardsMap = new LinkedHashMap<File, ArrayList<String>>();
+        HashMap<String, Integer> offsets = new HashMap<String, Integer>();
+        int nShardsTotal = 0;
+        for (int i = 0; i < spectrumFiles.size(); i++) {
+            File spectrumFile = spectrumFiles.get(i);
+            waitingHandler.appendReport("Splitting " + spectrumFile.getName() + " in " + nShards + " shards.", true, true);
+
+            // the shards are written in a folder per file and prefixed with the
+            // index of the file, files with the same name would collide otherwise
+            File fileShardsFolder = new File(shardQueue.getShardsFolder(), String.valueOf(i));
+            fileShardsFolder.mkdirs();
+            ArrayList<File> shardFiles;
+            if (XmlSpectrumFile.isXmlSpectrumFile(spectrumFile)) {
+                XmlSpectrumFile xmlSpectrumFile = new XmlSpectrumFile(spectrumFile, waitingHandler);
+                shardFiles = xmlSpectrumFile.writeMgfChunks(nShards, fileShardsFolder, waitingHandler);
+            } else if (CompressedMgfFile.isCompressedMgfFile(spectrumFile)) {
+                CompressedMgfFile compressedMgfFile = new CompressedMgfFile(spectrumFile, Runtime.getRuntime().availableProcessors());
+                shardFiles = compressedMgfFile.writeMgfChunks(nShards, fileShardsFolder, waitingHandler);
+            } else {
+                shardFiles = FileProcessor.chunkFileByCost(spectrumFile, nShards, fileShardsFolder, waitingHandler);
+            }
+            ArrayList<String> shardNames = new ArrayList<String>(shardFiles.size());
+            int offset = 0;
+            for (File shardFile : shardFiles) {
+                String shardName = i + "_" + shardFile.getName();
+                if (!shardFile.renameTo(shardQueue.getShardFile(shardName))) {
+                    throw new IOException("Impossible to move shard " + shardFile.getAbsolutePath() + " to " + shardQueue.getShardsFolder().getAbsolutePath() + ".");
+                }
+                shardNames.add(shardName);
+                offsets.put(shardName, offset);
+                shardQueue.submit(shardName, spectrumFile.getName(), offset);
+                offset += FileProcessor.countSpectra(shardQueue.getShardFile(shardName));
+            }
+            fileShardsFolder.delete();
+            shardsMap.put(spectrumFile, shardNames);
+            nShardsTotal += shardNames.size();
+            if (waitingHandler.isRunCanceled()) {
+                shardQueue.setFinished();
+                return;
+            }
+        }
+
+        waitingHandler.appendReport(nShardsTotal + " shards queued in " + shardQueue.getShardsFolder().getParent() + ", waiting for the workers.", true, true);
+
+        // supervise the workers
+        ArrayList<Long> durations = new ArrayList<Long>();
+        HashSet<String> doneShards = new HashSet<String>();
+        HashSet<String> failedShards = new HashSet<String>();
+        HashSet<String> duplicatedShards = new HashSet<String>();
+        while (doneShards.size() + failedShards.size() < nShardsTotal && !waitingHandler.isRunCanceled()) {
+
+            Thread.sleep(POLLING_INTERVAL);
+
+            for (ArrayList<String> shardNames : shardsMap.values()) {
+                for (String shardName : shardNames) {
+                    if (!doneShards.contains(shardName) && shardQueue.isDone(shardName)) {
+                        doneShards.add(shardName);
+                        failedShards.remove(shardName);
+                        Properties task = shardQueue.getDoneTask(shardName);
+                        durations.add(Long.parseLong(task.getProperty(ShardQueue.DURATION, "0")));
+                        waitingHandler.appendReport("Shard " + shardName + " completed by " + task.getProperty(ShardQueue.WORKER)
+                                + " (" + doneShards.size() + "/" + nShardsTotal + ").", true, true);
+                    } else if (!doneShards.contains(shardName) && !failedShards.contains(shardName) && shardQueue.isFailed(shardName)) {
+                        failedShards.add(shardName);
+                        waitingHandler.appendReport("Shard " + shardName + " failed " + ShardQueue.MAX_ATTEMPTS + " times, its spectra will not be sequenced.", true, true);
+                    }
+                }
+            }
+
+            long slowThreshold = Long.MAX_VALUE;
+            if (!durations.isEmpty()) {
+                ArrayList<Long> sortedDurations = new ArrayList<Long>(durations);
+                Collections.sort(sortedDurations);
+                slowThreshold = (long) (SLOW_FACTOR * sortedDurations.get(sortedDurations.size() / 2));
+            }
+
+            for (File claimedFile : shardQueue.getClaimedTasks()) {
+                String shardName = ShardQueue.getShardName(claimedFile);
+                String workerId = claimedFile.getParentFile().getName();
+                if (doneShards.contains(shardName) || failedShards.contains(shardName)) {
+                    continue;
+                }
+                if (shardQueue.getTimeSinceHeartbeat(workerId) > workerTimeout) {
+                    if (shardQueue.release(shardName, workerId)) {
+                        waitingHandler.appendReport("Worker " + workerId + " not responding, shard " + shardName + " put back in the queue.", true, true);
+                    }
+                } else if (System.currentTimeMillis() - claimedFile.lastModified() > slowThreshold
+                        && shardQueue.getQueueSize() == 0 && !duplicatedShards.contains(shardName)) {
+                    shardQueue.duplicate(shardName, workerId);
+                    duplicatedShards.add(shardName);
+                    waitingHandler.appendReport("Shard " + shardName + " is slow on worker " + workerId + ", queued for speculative execution.", true, true);
+                }
+            }
+        }
+
+        shardQueue.setFinished();
+
+        if (waitingHandler.isRunCanceled()) {
+            return;
+        }
+
+        // merge the results
+        waitingHandler.appendReport("Merging the results.", true, true);
+        for (File spectrumFile : shardsMap.keySet()) {
+            File resultSpectrumFile = FileProcessor.getResultSpectrumFile(spectrumFile, outputFolder);
+            ArrayList<File> outFiles = new ArrayList<File>(), tagsFiles = new ArrayList<File>(), pNovoFiles = new ArrayList<File>(), novorFiles = new ArrayList<File>();
+            ArrayList<Integer> tagsOffsets = new ArrayList<Integer>(), novorOffsets = new ArrayList<Integer>();
+            for (String shardName : shardsMap.get(spectrumFile)) {
+                if (!doneShards.contains(shardName)) {
+                    continue;
+                }
+                String workerId = shardQueue.getDoneTask(shardName).getProperty(ShardQueue.WORKER);
+                File resultFolder = shardQueue.getResultFolder(shardName, workerId);
+                File shardFile = shardQueue.getShardFile(shardName);
+                File outFile = FileProcessor.getOutFile(resultFolder, shardFile);
+                if (enablePepNovo && outFile.exists()) {
+                    outFiles.add(outFile);
+                }
+                File tagsFile = FileProcessor.getTagsFile(resultFolder, shardFile);
+                if (enableDirecTag && tagsFile.exists()) {
+                    tagsFiles.add(tagsFile);
+                    tagsOffsets.add(offsets.get(shardName));
+                }
+                File pNovoFile = FileProcessor.getPNovoResultFile(resultFolder, shardFile);
+                if (enablePNovo && pNovoFile.exists()) {
+                    pNovoFiles.add(pNovoFile);
+                }
+                File novorFile = FileProcessor.getNovorResultFile(resultFolder, shardFile);
+                if (enableNovor && novorFile.exists()) {
+                    novorFiles.add(novorFile);
+                    novorOffsets.add(offsets.get(shardName));
+                }
+            }
+            if (!outFiles.isEmpty()) {
+                FileProcessor.mergeOutputFiles(outFiles, FileProcessor.getOutFile(outputFolder, resultSpectrumFile), false);
+            }
+            if (!tagsFiles.isEmpty()) {
+                FileProcessor.mergeTagsFiles(tagsFiles, tagsOffsets, FileProcessor.getTagsFile(outputFolder, resultSpectrumFile));
+            }
+            if (!pNovoFiles.isEmpty()) {
+                FileProcessor.concatenateFiles(pNovoFiles, FileProcessor.getPNovoResultFile(outputFolder, resultSpectrumFile));
+            }
+            if (!novorFiles.isEmpty()) {
+                FileProcessor.mergeNovorFiles(novorFiles, novorOffsets, FileProcessor.getNovorResultFile(outputFolder, resultSpectrumFile));
+            }
+        }
+        if (searchParametersFile != null) {
+            DeNovoSequencingHandler.saveSearchParameters(searchParameters, new File(outputFolder, searchParametersFile.getName()));
+        }
+        if (failedShards.isEmpty()) {
+            waitingHandler.appendReport("Distributed sequencing completed.", true, true);
+        } else {
+            waitingHandler.appendReport("Distributed sequencing completed, " + failedShards.size() + " of " + nShardsTotal + " shards failed: " + failedShards + ".", true, true);
+        }
+    }
+}
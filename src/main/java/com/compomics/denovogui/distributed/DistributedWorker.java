@@ -0,0 +1,170 @@
+package com.compomics.denovogui.distributed;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.util.Util;
+import com.compomics.util.exceptions.ExceptionHandler;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Worker of a distributed sequencing run. The worker claims shards from the
+ * shared folder, sequences them using its own DeNovoSequencingHandler with
+ * the search parameters saved by the coordinator and signals the coordinator
+ * when done. The worker stops when the coordinator
+ * signals that the run is finished.
+ *
+ * @author Marc Vaudel
+ */
+public class DistributedWorker {
+
+    /**
+     * The interval in milliseconds between two checks of an empty queue.
+     */
+    private static final long POLLING_INTERVAL = 2000;
+    /**
+     * The interval in milliseconds between two heartbeats.
+     */
+    private static final long HEARTBEAT_INTERVAL = 5000;
+    /**
+     * The shard queue.
+     */
+    private final ShardQueue shardQueue;
+    /**
+     * The id of this worker.
+     */
+    private final String workerId;
+    /**
+     * The sequencing handler.
+     */
+    private final DeNovoSequencingHandler deNovoSequencingHandler;
+    /**
+     * The waiting handler reporting the activity of the worker.
+     */
+    private final WaitingHandlerCLIImpl workerWaitingHandler = new WaitingHandlerCLIImpl();
+
+    /**
+     * Constructor.
+     *
+     * @param sharedFolder the folder shared with the coordinator
+     * @param deNovoSequencingHandler the sequencing handler to use
+     */
+    public DistributedWorker(File sharedFolder, DeNovoSequencingHandler deNovoSequencingHandler) {
+        this.shardQueue = new ShardQueue(sharedFolder);
+        this.deNovoSequencingHandler = deNovoSequencingHandler;
+        this.workerId = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    /**
+     * Processes shards until the coordinator signals that the run is finished.
+     *
+     * @param pepNovoExeTitle the name of the PepNovo+ executable
+     * @param direcTagExeTitle the name of the DirecTag executable
+     * @param pNovoExeTitle the name of the pNovo+ executable
+     * @param novorExeTitle the name of the Novor executable
+     * @param enablePepNovo run PepNovo?
+     * @param enableDirecTag run DirecTag?
+     * @param enablePNovo run pNovo?
+     * @param enableNovor run Novor?
+     * @param exceptionHandler the exception handler
+     *
+     * @throws IOException thrown if the shared folder cannot be accessed
+     * @throws InterruptedException thrown if the thread is interrupted while
+     * waiting for shards
+     * @throws ClassNotFoundException thrown if the search parameters cannot
+     * be processed
+     */
+    public void run(String pepNovoExeTitle, String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle,
+            boolean enablePepNovo, boolean enableDirecTag, boolean enablePNovo, boolean enableNovor, ExceptionHandler exceptionHandler)
+            throws IOException, InterruptedException, ClassNotFoundException {
+
+        shardQueue.createFolders();
+        shardQueue.heartbeat(workerId);
+
+        Timer heartbeatTimer = new Timer("DeNovoGUI worker heartbeat", true);
+        heartbeatTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    shardQueue.heartbeat(workerId);
+                } catch (IOException e) {
+                    workerWaitingHandler.appendReport("Worker " + workerId + " could not signal that it is alive: " + e.getMessage(), true, true);
+                }
+            }
+        }, HEARTBEAT_INTERVAL, HEARTBEAT_INTERVAL);
+
+        workerWaitingHandler.appendReport("Worker " + workerId + " started.", true, true);
+
+        SearchParameters searchParameters = null;
+        long searchParametersTime = -1;
+
+        try {
+            while (true) {
+
+                String shardName = shardQueue.claim(workerId);
+
+                if (shardName == null) {
+                    if (shardQueue.isFinished()) {
+                        break;
+                    }
+                    Thread.sleep(POLLING_INTERVAL);
+                    continue;
+                }
+
+                workerWaitingHandler.appendReport("Worker " + workerId + " processing shard " + shardName + ".", true, true);
+                long start = System.currentTimeMillis();
+
+                File shardFile = shardQueue.getShardFile(shardName);
+                File resultFolder = shardQueue.getResultFolder(shardName, workerId);
+                resultFolder.mkdirs();
+
+                WaitingHandlerCLIImpl waitingHandler = new WaitingHandlerCLIImpl();
+                ArrayList<File> shardFiles = new ArrayList<File>(1);
+                shardFiles.add(shardFile);
+                try {
+
+                    // the search parameters are reloaded only when the coordinator saved new ones
+                    File searchParametersFile = shardQueue.getSearchParametersFile();
+                    if (searchParameters == null || searchParametersFile.lastModified() != searchParametersTime) {
+                        searchParametersTime = searchParametersFile.lastModified();
+                        searchParameters = SearchParameters.getIdentificationParameters(searchParametersFile);
+                        String error = DeNovoSequencingHandler.loadModifications(searchParameters);
+                        if (error != null) {
+                            workerWaitingHandler.appendReport(error, true, true);
+                        }
+                    }
+
+                    deNovoSequencingHandler.startSequencing(shardFiles, searchParameters, resultFolder, new File(resultFolder, searchParametersFile.getName()), pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle,
+                            enablePepNovo, enableDirecTag, enablePNovo, enableNovor, waitingHandler, exceptionHandler);
+                } catch (IOException e) {
+                    workerWaitingHandler.appendReport("Worker " + workerId + " could not process shard " + shardName + ": " + e.getMessage(), true, true);
+                    waitingHandler.setRunCanceled();
+                }
+
+                if (waitingHandler.isRunCanceled()) {
+                    Util.deleteDir(resultFolder);
+                    shardQueue.release(shardName, workerId);
+                    if (shardQueue.isFailed(shardName)) {
+                        workerWaitingHandler.appendReport("Worker " + workerId + " failed to process shard " + shardName + ", shard marked as failed after " + ShardQueue.MAX_ATTEMPTS + " attempts.", true, true);
+                    } else {
+                        workerWaitingHandler.appendReport("Worker " + workerId + " failed to process shard " + shardName + ", shard released for another attempt.", true, true);
+                    }
+                } else if (shardQueue.complete(shardName, workerId, System.currentTimeMillis() - start)) {
+                    workerWaitingHandler.appendReport("Worker " + workerId + " completed shard " + shardName + ".", true, true);
+                } else {
+                    Util.deleteDir(resultFolder);
+                    workerWaitingHandler.appendReport("Shard " + shardName + " was completed by another worker first, results of " + workerId + " discarded.", true, true);
+                }
+            }
+        } finally {
+            heartbeatTimer.cancel();
+        }
+
+        workerWaitingHandler.appendReport("Worker " + workerId + " stopped.", true, true);
+    }
+}
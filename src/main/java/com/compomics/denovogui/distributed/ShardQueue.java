@@ -0,0 +1,562 @@
+package com.compomics.denovogui.distributed;
+
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * Queue of spectrum shards shared between a coordinator and its workers
+ * through a shared folder. Every shard has a task file which is moved between
+ * the queue, claimed and done folders using atomic renames:
+ * <p>
+ * queue/shard.task - shard waiting for a worker.
+ * <p>
+ * claimed/worker/shard.task - shard being processed by the given worker.
+ * <p>
+ * done/shard.task - shard completed, contains the id of the worker whose
+ * results are kept.
+ * <p>
+ * failed/shard.task - shard which failed on every attempt.
+ * <p>
+ * The search parameters of the run are saved in the shared folder by the
+ * coordinator and loaded by the workers.
+ * <p>
+ * Workers signal that they are alive by touching a heartbeat file in the
+ * workers folder. The results of a shard are written to
+ * results/shard/worker. A shard returned to the queue more than
+ * MAX_ATTEMPTS times is moved to the failed folder, unless a copy of the
+ * shard is still queued or processed by another worker.
+ *
+ * @author Marc Vaudel
+ */
+public class ShardQueue {
+
+    /**
+     * The extension of the task files.
+     */
+    public static final String TASK_EXTENSION = ".task";
+    /**
+     * Task property: name of the spectrum file the shard was taken from.
+     */
+    public static final String SPECTRUM_FILE = "spectrum_file";
+    /**
+     * Task property: number of spectra in the preceding shards of the same
+     * spectrum file.
+     */
+    public static final String OFFSET = "offset";
+    /**
+     * Task property: id of the worker which completed the task.
+     */
+    public static final String WORKER = "worker";
+    /**
+     * Task property: time in milliseconds needed to process the shard.
+     */
+    public static final String DURATION = "duration";
+    /**
+     * Task property: number of attempts which failed to process the shard.
+     */
+    public static final String ATTEMPTS = "attempts";
+    /**
+     * The maximal number of attempts per shard.
+     */
+    public static final int MAX_ATTEMPTS = 3;
+    /**
+     * The extension of the lock files of the completed tasks.
+     */
+    private static final String LOCK_EXTENSION = ".lock";
+    /**
+     * The name of the search parameters file of the run.
+     */
+    private static final String SEARCH_PARAMETERS_FILE = "search_parameters.par";
+    /**
+     * The shared folder.
+     */
+    private final File sharedFolder;
+    /**
+     * The folder containing the shard spectrum files.
+     */
+    private final File shardsFolder;
+    /**
+     * The folder of the queued tasks.
+     */
+    private final File queueFolder;
+    /**
+     * The folder of the claimed tasks.
+     */
+    private final File claimedFolder;
+    /**
+     * The folder of the completed tasks.
+     */
+    private final File doneFolder;
+    /**
+     * The folder of the failed tasks.
+     */
+    private final File failedFolder;
+    /**
+     * The folder of the worker heartbeats.
+     */
+    private final File workersFolder;
+    /**
+     * The folder of the shard results.
+     */
+    private final File resultsFolder;
+    /**
+     * File indicating that the run is finished and that the workers can stop.
+     */
+    private final File finishedFile;
+    /**
+     * The search parameters file of the run.
+     */
+    private final File searchParametersFile;
+
+    /**
+     * Constructor.
+     *
+     * @param sharedFolder the folder shared between the coordinator and the
+     * workers
+     */
+    public ShardQueue(File sharedFolder) {
+        this.sharedFolder = sharedFolder;
+        shardsFolder = new File(sharedFolder, "shards");
+        queueFolder = new File(sharedFolder, "queue");
+        claimedFolder = new File(sharedFolder, "claimed");
+        doneFolder = new File(sharedFolder, "done");
+        failedFolder = new File(sharedFolder, "failed");
+        workersFolder = new File(sharedFolder, "workers");
+        resultsFolder = new File(sharedFolder, "results");
+        finishedFile = new File(sharedFolder, "finished");
+        searchParametersFile = new File(sharedFolder, SEARCH_PARAMETERS_FILE);
+    }
+
+    /**
+     * Creates the folders of the queue.
+     *
+     * @throws IOException thrown if a folder cannot be created
+     */
+    public void createFolders() throws IOException {
+        for (File folder : new File[]{sharedFolder, shardsFolder, queueFolder, claimedFolder, doneFolder, failedFolder, workersFolder, resultsFolder}) {
+            if (!folder.exists() && !folder.mkdirs()) {
+                throw new IOException("Impossible to create folder " + folder.getAbsolutePath() + ".");
+            }
+        }
+    }
+
+    /**
+     * Deletes the shards, tasks, results and search parameters left by a
+     * previous run.
+     *
+     * @throws IOException thrown if a folder cannot be deleted
+     */
+    public void clear() throws IOException {
+        for (File folder : new File[]{shardsFolder, queueFolder, claimedFolder, doneFolder, failedFolder, resultsFolder}) {
+            if (folder.exists() && !Util.deleteDir(folder)) {
+                throw new IOException("Impossible to delete folder " + folder.getAbsolutePath() + ".");
+            }
+        }
+        if (searchParametersFile.exists() && !searchParametersFile.delete()) {
+            throw new IOException("Impossible to delete file " + searchParametersFile.getAbsolutePath() + ".");
+        }
+    }
+
+    /**
+     * Returns the file where the coordinator saves the search parameters of
+     * the run.
+     *
+     * @return the search parameters file
+     */
+    public File getSearchParametersFile() {
+        return searchParametersFile;
+    }
+
+    /**
+     * Returns the folder where the shard spectrum files are written.
+     *
+     * @return the folder where the shard spectrum files are written
+     */
+    public File getShardsFolder() {
+        return shardsFolder;
+    }
+
+    /**
+     * Returns the shard spectrum file of a task.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return the shard spectrum file
+     */
+    public File getShardFile(String shardName) {
+        return new File(shardsFolder, shardName);
+    }
+
+    /**
+     * Returns the folder where the given worker writes the results of a shard.
+     *
+     * @param shardName the name of the shard
+     * @param workerId the id of the worker
+     *
+     * @return the result folder
+     */
+    public File getResultFolder(String shardName, String workerId) {
+        return new File(new File(resultsFolder, shardName), workerId);
+    }
+
+    /**
+     * Adds a shard to the queue.
+     *
+     * @param shardName the name of the shard spectrum file
+     * @param spectrumFileName the name of the spectrum file the shard was
+     * taken from
+     * @param offset the number of spectra in the preceding shards of the same
+     * spectrum file
+     *
+     * @throws IOException thrown if the task file cannot be written
+     */
+    public void submit(String shardName, String spectrumFileName, int offset) throws IOException {
+        Properties task = new Properties();
+        task.setProperty(SPECTRUM_FILE, spectrumFileName);
+        task.setProperty(OFFSET, String.valueOf(offset));
+        submit(shardName, task);
+    }
+
+    /**
+     * Adds a task to the queue.
+     *
+     * @param shardName the name of the shard spectrum file
+     * @param task the task properties
+     *
+     * @throws IOException thrown if the task file cannot be written
+     */
+    private void submit(String shardName, Properties task) throws IOException {
+        File tempFile = new File(sharedFolder, shardName + TASK_EXTENSION + ".tmp");
+        writeTask(task, tempFile);
+        if (!tempFile.renameTo(new File(queueFolder, shardName + TASK_EXTENSION))) {
+            throw new IOException("Impossible to queue shard " + shardName + ".");
+        }
+    }
+
+    /**
+     * Claims the next shard of the queue for the given worker.
+     *
+     * @param workerId the id of the worker
+     *
+     * @return the name of the shard claimed, null if the queue is empty
+     */
+    public String claim(String workerId) {
+        File workerFolder = new File(claimedFolder, workerId);
+        workerFolder.mkdirs();
+        File[] queued = queueFolder.listFiles();
+        if (queued != null) {
+            Arrays.sort(queued);
+            for (File taskFile : queued) {
+                String shardName = getShardName(taskFile);
+                File claimedFile = new File(workerFolder, taskFile.getName());
+
+                // the rename fails if another worker claimed the task first
+                if (taskFile.renameTo(claimedFile)) {
+                    claimedFile.setLastModified(System.currentTimeMillis());
+                    if (isDone(shardName) || isFailed(shardName)) {
+                        claimedFile.delete();
+                    } else {
+                        return shardName;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks a shard as completed by the given worker. Only the first worker
+     * completing a shard wins, the results of the others should be discarded.
+     * The winner is the worker creating the lock file, the task file is then
+     * written to a temporary file and renamed so that the coordinator never
+     * reads a partial task.
+     *
+     * @param shardName the name of the shard
+     * @param workerId the id of the worker
+     * @param duration the time in milliseconds needed to process the shard
+     *
+     * @return true if the results of this worker are kept
+     *
+     * @throws IOException thrown if the task file cannot be written
+     */
+    public boolean complete(String shardName, String workerId, long duration) throws IOException {
+        File claimedFile = new File(new File(claimedFolder, workerId), shardName + TASK_EXTENSION);
+        File lockFile = new File(doneFolder, shardName + LOCK_EXTENSION);
+        boolean won = lockFile.createNewFile();
+        if (won) {
+            Properties task = claimedFile.exists() ? readTask(claimedFile) : new Properties();
+            task.setProperty(WORKER, workerId);
+            task.setProperty(DURATION, String.valueOf(duration));
+            File tempFile = new File(sharedFolder, shardName + "." + workerId + TASK_EXTENSION + ".tmp");
+            writeTask(task, tempFile);
+            if (!tempFile.renameTo(new File(doneFolder, shardName + TASK_EXTENSION))) {
+                tempFile.delete();
+                throw new IOException("Impossible to complete shard " + shardName + ".");
+            }
+        }
+        claimedFile.delete();
+        return won;
+    }
+
+    /**
+     * Returns a shard claimed by a worker to the queue after a failed
+     * attempt. After MAX_ATTEMPTS failed attempts the shard is moved to the
+     * failed folder instead. If a speculative copy of the shard is still
+     * queued or processed by another worker, only the claim of this worker is
+     * dropped and the copy decides the fate of the shard.
+     *
+     * @param shardName the name of the shard
+     * @param workerId the id of the worker
+     *
+     * @return true if the claim of the worker was released
+     *
+     * @throws IOException thrown if the task file cannot be read or written
+     */
+    public boolean release(String shardName, String workerId) throws IOException {
+        File claimedFile = new File(new File(claimedFolder, workerId), shardName + TASK_EXTENSION);
+        if (!claimedFile.exists()) {
+            return false;
+        }
+        Properties task = readTask(claimedFile);
+        int attempts = Integer.parseInt(task.getProperty(ATTEMPTS, "0")) + 1;
+        task.setProperty(ATTEMPTS, String.valueOf(attempts));
+        File tempFile = new File(sharedFolder, shardName + "." + workerId + TASK_EXTENSION + ".tmp");
+        writeTask(task, tempFile);
+
+        // the claim is dropped before looking for copies so that two workers
+        // failing together cannot both leave the shard to the other
+        if (!claimedFile.delete()) {
+            tempFile.delete();
+            return false;
+        }
+        if (isDone(shardName) || hasCopy(shardName)) {
+            tempFile.delete();
+            return true;
+        }
+
+        File destinationFolder = attempts >= MAX_ATTEMPTS ? failedFolder : queueFolder;
+        if (!tempFile.renameTo(new File(destinationFolder, shardName + TASK_EXTENSION))) {
+
+            // keep the claim so that the shard is released again later
+            tempFile.renameTo(claimedFile);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether a copy of the given shard is waiting in the queue or
+     * claimed by a worker.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return true if a copy of the shard is queued or claimed
+     */
+    public boolean hasCopy(String shardName) {
+        String taskName = shardName + TASK_EXTENSION;
+        if (new File(queueFolder, taskName).exists()) {
+            return true;
+        }
+        for (File claimedFile : getClaimedTasks()) {
+            if (claimedFile.getName().equals(taskName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether a shard failed on every attempt.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return true if the shard failed
+     */
+    public boolean isFailed(String shardName) {
+        return new File(failedFolder, shardName + TASK_EXTENSION).exists();
+    }
+
+    /**
+     * Puts a copy of a claimed shard back in the queue so that another worker
+     * can process it speculatively while the first worker is still running.
+     *
+     * @param shardName the name of the shard
+     * @param workerId the id of the worker holding the shard
+     *
+     * @throws IOException thrown if the task files cannot be read or written
+     */
+    public void duplicate(String shardName, String workerId) throws IOException {
+        File claimedFile = new File(new File(claimedFolder, workerId), shardName + TASK_EXTENSION);
+        if (claimedFile.exists()) {
+            submit(shardName, readTask(claimedFile));
+        }
+    }
+
+    /**
+     * Indicates whether a shard was completed.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return true if the shard was completed
+     */
+    public boolean isDone(String shardName) {
+        return new File(doneFolder, shardName + TASK_EXTENSION).exists();
+    }
+
+    /**
+     * Returns the properties of a completed task.
+     *
+     * @param shardName the name of the shard
+     *
+     * @return the properties of the completed task
+     *
+     * @throws IOException thrown if the task file cannot be read
+     */
+    public Properties getDoneTask(String shardName) throws IOException {
+        return readTask(new File(doneFolder, shardName + TASK_EXTENSION));
+    }
+
+    /**
+     * Returns the number of shards waiting in the queue.
+     *
+     * @return the number of shards waiting in the queue
+     */
+    public int getQueueSize() {
+        String[] queued = queueFolder.list();
+        return queued == null ? 0 : queued.length;
+    }
+
+    /**
+     * Returns the claimed task files per worker.
+     *
+     * @return the claimed task files, the parent folder is named after the
+     * worker
+     */
+    public ArrayList<File> getClaimedTasks() {
+        ArrayList<File> result = new ArrayList<File>();
+        File[] workerFolders = claimedFolder.listFiles();
+        if (workerFolders != null) {
+            for (File workerFolder : workerFolders) {
+                File[] claimed = workerFolder.listFiles();
+                if (claimed != null) {
+                    result.addAll(Arrays.asList(claimed));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the name of the shard of a task file.
+     *
+     * @param taskFile the task file
+     *
+     * @return the name of the shard
+     */
+    public static String getShardName(File taskFile) {
+        String name = taskFile.getName();
+        return name.substring(0, name.length() - TASK_EXTENSION.length());
+    }
+
+    /**
+     * Signals that the given worker is alive.
+     *
+     * @param workerId the id of the worker
+     *
+     * @throws IOException thrown if the heartbeat file cannot be written
+     */
+    public void heartbeat(String workerId) throws IOException {
+        File heartbeatFile = new File(workersFolder, workerId);
+        if (!heartbeatFile.exists()) {
+            heartbeatFile.createNewFile();
+        }
+        heartbeatFile.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the time in milliseconds since the last heartbeat of the given
+     * worker.
+     *
+     * @param workerId the id of the worker
+     *
+     * @return the time since the last heartbeat, Long.MAX_VALUE if the worker
+     * never signaled
+     */
+    public long getTimeSinceHeartbeat(String workerId) {
+        File heartbeatFile = new File(workersFolder, workerId);
+        if (!heartbeatFile.exists()) {
+            return Long.MAX_VALUE;
+        }
+        return System.currentTimeMillis() - heartbeatFile.lastModified();
+    }
+
+    /**
+     * Signals that the run is finished.
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public void setFinished() throws IOException {
+        finishedFile.createNewFile();
+    }
+
+    /**
+     * Resets the finished signal of a previous run.
+     */
+    public void resetFinished() {
+        finishedFile.delete();
+    }
+
+    /**
+     * Indicates whether the run is finished.
+     *
+     * @return true if the run is finished
+     */
+    public boolean isFinished() {
+        return finishedFile.exists();
+    }
+
+    /**
+     * Reads a task file.
+     *
+     * @param taskFile the task file
+     *
+     * @return the task properties
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    private static Properties readTask(File taskFile) throws IOException {
+        Properties task = new Properties();
+        InputStream is = new FileInputStream(taskFile);
+        try {
+            task.load(is);
+        } finally {
+            is.close();
+        }
+        return task;
+    }
+
+    /**
+     * Writes a task file.
+     *
+     * @param task the task properties
+     * @param taskFile the task file
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    private static void writeTask(Properties task, File taskFile) throws IOException {
+        OutputStream os = new FileOutputStream(taskFile);
+        try {
+            task.store(os, null);
+        } finally {
+            os.close();
+        }
+    }
+}
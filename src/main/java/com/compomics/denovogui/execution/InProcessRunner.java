@@ -0,0 +1,663 @@
+package com.compomics.denovogui.execution;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Permission;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Runs the main class of an executable jar file in the DeNovoGUI process
+ * instead of a separate Java process. The jar is loaded in class loaders
+ * isolated from DeNovoGUI which are kept and reused by the following runs, so
+ * that the classes are loaded and compiled only once. A class loader is only
+ * used by one run at a time as the main class may keep static state. Every
+ * run has its own thread group, the threads started by the run belong to it:
+ * their standard output and error are redirected to the stream of the run,
+ * their System.exit calls only end the run, and the run ends when its main
+ * method returned and its non-daemon threads ended, as a separate Java
+ * process would. The stream redirection and the exit guard are only installed
+ * while runs are in progress or threads of ended runs are still alive.
+ * <p>
+ * The exit calls are intercepted with a security manager, which is only
+ * supported from Java 8 to 17, and to 23 with -Djava.security.manager=allow.
+ *
+ * @author Marc Vaudel
+ */
+@SuppressWarnings("removal")
+public class InProcessRunner {
+
+    /**
+     * The runners of the different jar files, indexed by path.
+     */
+    private static final HashMap<String, InProcessRunner> runners = new HashMap<String, InProcessRunner>();
+    /**
+     * The interval in milliseconds between two checks of the threads of a
+     * run.
+     */
+    private static final long POLLING_INTERVAL = 100;
+    /**
+     * The time in milliseconds given to the threads of a run to stop after
+     * System.exit was called.
+     */
+    private static final long EXIT_TIMEOUT = 1000;
+    /**
+     * Indicates whether the standard streams and the exit guard are
+     * installed.
+     */
+    private static boolean installed = false;
+    /**
+     * The number of runs in progress.
+     */
+    private static int nActiveRuns = 0;
+    /**
+     * The thread groups of the ended runs with threads still alive.
+     */
+    private static final ArrayList<RunGroup> lingeringRuns = new ArrayList<RunGroup>();
+    /**
+     * The standard output before installation.
+     */
+    private static PrintStream originalOut = null;
+    /**
+     * The standard error before installation.
+     */
+    private static PrintStream originalErr = null;
+    /**
+     * The redirected standard output.
+     */
+    private static PrintStream redirectedOut = null;
+    /**
+     * The redirected standard error.
+     */
+    private static PrintStream redirectedErr = null;
+    /**
+     * The jar file.
+     */
+    private final File jarFile;
+    /**
+     * The name of the main class of the jar file.
+     */
+    private final String mainClassName;
+    /**
+     * The class loaders not used by a run.
+     */
+    private final ArrayDeque<URLClassLoader> idleClassLoaders = new ArrayDeque<URLClassLoader>();
+
+    /**
+     * Constructor.
+     *
+     * @param jarFile the jar file
+     * @param mainClassName the name of the main class of the jar file
+     */
+    private InProcessRunner(File jarFile, String mainClassName) {
+        this.jarFile = jarFile;
+        this.mainClassName = mainClassName;
+    }
+
+    /**
+     * Returns the runner of the given executable jar file.
+     *
+     * @param jarFile the jar file
+     *
+     * @return the runner of the jar file
+     *
+     * @throws IOException thrown if the jar file cannot be read, has no main
+     * class or if the exit calls cannot be intercepted in this JVM
+     */
+    public static synchronized InProcessRunner getRunner(File jarFile) throws IOException {
+
+        checkSupported();
+        String path = jarFile.getCanonicalPath();
+        InProcessRunner runner = runners.get(path);
+
+        if (runner == null) {
+            String mainClassName = null;
+            JarFile jar = new JarFile(jarFile);
+            try {
+                Manifest manifest = jar.getManifest();
+                if (manifest != null) {
+                    mainClassName = manifest.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS);
+                }
+            } finally {
+                jar.close();
+            }
+            if (mainClassName == null) {
+                throw new IOException("No main class found in " + jarFile.getName() + ".");
+            }
+            runner = new InProcessRunner(jarFile, mainClassName.trim());
+            runners.put(path, runner);
+        }
+
+        return runner;
+    }
+
+    /**
+     * Runs the main class with the given arguments in a thread group of the
+     * run and waits for the end of the run: the main method returned and the
+     * non-daemon threads it started ended, or a thread of the run called
+     * System.exit. When the waiting thread is interrupted, the threads of the
+     * run are interrupted.
+     *
+     * @param arguments the command line arguments
+     * @param output the stream where to write the standard output and error
+     *
+     * @return the exit status, 0 if the main method returned normally
+     *
+     * @throws Exception exception thrown by the main method
+     */
+    public int run(String[] arguments, OutputStream output) throws Exception {
+
+        beginRun();
+        URLClassLoader classLoader = null;
+        RunGroup runGroup = null;
+        PrintStream printStream = new PrintStream(output, true);
+        boolean reusable = false;
+
+        try {
+            classLoader = borrowClassLoader();
+            Method main = classLoader.loadClass(mainClassName).getMethod("main", String[].class);
+            runGroup = new RunGroup(jarFile.getName(), main, arguments, printStream);
+            // the threads started by the run inherit its group and class loader
+            Thread mainThread = new Thread(runGroup, runGroup, jarFile.getName() + " main");
+            mainThread.setContextClassLoader(classLoader);
+            mainThread.setDaemon(false);
+            try {
+                mainThread.start();
+                runGroup.awaitEnd(mainThread);
+            } catch (InterruptedException e) {
+                runGroup.interrupt();
+                throw e;
+            } finally {
+                runGroup.end();
+            }
+
+            Integer exitStatus = runGroup.getExitStatus();
+            Throwable failure = runGroup.getFailure();
+            if (exitStatus != null) {
+                // the other threads of the run are stopped as by the exit of a process
+                runGroup.interrupt();
+                reusable = exitStatus == 0 && runGroup.awaitThreads(EXIT_TIMEOUT);
+                return exitStatus;
+            } else if (failure instanceof Exception) {
+                throw (Exception) failure;
+            } else if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            reusable = !runGroup.hasLiveThreads();
+            return 0;
+        } finally {
+            printStream.flush();
+            endRun(runGroup);
+            if (classLoader != null) {
+                // the static state of a failed run, or used by threads left running, is not reused
+                returnClassLoader(classLoader, reusable);
+            }
+        }
+    }
+
+    /**
+     * Returns an idle class loader or a new one if none.
+     *
+     * @return a class loader
+     *
+     * @throws IOException thrown if the jar file cannot be converted to an URL
+     */
+    private URLClassLoader borrowClassLoader() throws IOException {
+        synchronized (idleClassLoaders) {
+            URLClassLoader classLoader = idleClassLoaders.poll();
+            if (classLoader != null) {
+                return classLoader;
+            }
+        }
+        // the parent is the extension class loader so that the classes of DeNovoGUI are not visible
+        return new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, ClassLoader.getSystemClassLoader().getParent());
+    }
+
+    /**
+     * Returns a class loader to the idle class loaders or closes it.
+     *
+     * @param classLoader the class loader
+     * @param reusable indicates whether the class loader can be used again
+     */
+    private void returnClassLoader(URLClassLoader classLoader, boolean reusable) {
+        if (reusable) {
+            synchronized (idleClassLoaders) {
+                idleClassLoaders.push(classLoader);
+            }
+        } else {
+            try {
+                classLoader.close();
+            } catch (IOException e) {
+                // the class loader is not used anymore
+            }
+        }
+    }
+
+    /**
+     * Checks that the exit calls can be intercepted in this JVM.
+     *
+     * @throws IOException thrown if another security manager is installed or
+     * if security managers are not supported by the JVM
+     */
+    private static void checkSupported() throws IOException {
+        if (System.getSecurityManager() != null && !(System.getSecurityManager() instanceof ExitGuard)) {
+            throw new IOException("System.exit cannot be intercepted, a security manager is already installed.");
+        }
+        String securityManagerProperty = System.getProperty("java.security.manager");
+        String specificationVersion = System.getProperty("java.specification.version", "");
+        int javaVersion;
+        try {
+            javaVersion = Integer.parseInt(specificationVersion.startsWith("1.") ? specificationVersion.substring(2) : specificationVersion);
+        } catch (NumberFormatException e) {
+            javaVersion = 8;
+        }
+        if ("disallow".equals(securityManagerProperty) || javaVersion >= 24
+                || javaVersion >= 18 && !"allow".equals(securityManagerProperty)) {
+            throw new IOException("System.exit cannot be intercepted, security managers are disabled in this JVM (Java 8 to 17 are supported, up to 23 with -Djava.security.manager=allow).");
+        }
+    }
+
+    /**
+     * Registers the start of a run, the standard streams and the exit guard
+     * are installed for the first run.
+     *
+     * @throws IOException thrown if another security manager is installed or
+     * if security managers are not supported by the JVM
+     */
+    private static synchronized void beginRun() throws IOException {
+        install();
+        nActiveRuns++;
+    }
+
+    /**
+     * Registers the end of a run, the standard streams and the exit guard are
+     * uninstalled when no run is in progress and no thread of an ended run is
+     * alive.
+     *
+     * @param runGroup the thread group of the run, null if not started
+     */
+    private static synchronized void endRun(RunGroup runGroup) {
+        nActiveRuns--;
+        if (runGroup != null && runGroup.hasLiveThreads()) {
+            lingeringRuns.add(runGroup);
+        }
+        for (int i = lingeringRuns.size() - 1; i >= 0; i--) {
+            if (!lingeringRuns.get(i).hasLiveThreads()) {
+                lingeringRuns.remove(i);
+            }
+        }
+        if (nActiveRuns == 0 && lingeringRuns.isEmpty()) {
+            uninstall();
+        }
+    }
+
+    /**
+     * Redirects the standard streams to the streams of the runs and installs
+     * the exit guard.
+     *
+     * @throws IOException thrown if another security manager is installed or
+     * if security managers are not supported by the JVM
+     */
+    private static void install() throws IOException {
+        if (installed) {
+            return;
+        }
+        if (System.getSecurityManager() != null) {
+            throw new IOException("System.exit cannot be intercepted, a security manager is already installed.");
+        }
+        try {
+            System.setSecurityManager(new ExitGuard());
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("System.exit cannot be intercepted, security managers are disabled in this JVM.");
+        }
+        originalOut = System.out;
+        originalErr = System.err;
+        redirectedOut = new PrintStream(new ThreadOutputStream(originalOut), true);
+        redirectedErr = new PrintStream(new ThreadOutputStream(originalErr), true);
+        System.setOut(redirectedOut);
+        System.setErr(redirectedErr);
+        installed = true;
+    }
+
+    /**
+     * Restores the standard streams and removes the exit guard. The streams
+     * replaced by another component in the meantime are left as they are.
+     */
+    private static void uninstall() {
+        if (!installed) {
+            return;
+        }
+        redirectedOut.flush();
+        redirectedErr.flush();
+        if (System.out == redirectedOut) {
+            System.setOut(originalOut);
+        }
+        if (System.err == redirectedErr) {
+            System.setErr(originalErr);
+        }
+        if (System.getSecurityManager() instanceof ExitGuard) {
+            System.setSecurityManager(null);
+        }
+        originalOut = null;
+        originalErr = null;
+        redirectedOut = null;
+        redirectedErr = null;
+        installed = false;
+    }
+
+    /**
+     * Returns the thread group of the run of the given thread.
+     *
+     * @param thread the thread
+     *
+     * @return the thread group of the run of the thread, null if the thread
+     * does not belong to a run
+     */
+    private static RunGroup getRunGroup(Thread thread) {
+        ThreadGroup group = thread.getThreadGroup();
+        while (group != null) {
+            if (group instanceof RunGroup) {
+                return (RunGroup) group;
+            }
+            group = group.getParent();
+        }
+        return null;
+    }
+
+    /**
+     * Stream writing to the stream of the run of the current thread, or to the
+     * original stream if the thread does not belong to a run in progress.
+     */
+    private static class ThreadOutputStream extends OutputStream {
+
+        /**
+         * The original stream.
+         */
+        private final PrintStream original;
+
+        /**
+         * Constructor.
+         *
+         * @param original the original stream
+         */
+        public ThreadOutputStream(PrintStream original) {
+            this.original = original;
+        }
+
+        /**
+         * Returns the stream of the current thread.
+         *
+         * @return the stream of the current thread
+         */
+        private PrintStream getStream() {
+            RunGroup runGroup = getRunGroup(Thread.currentThread());
+            PrintStream stream = runGroup != null ? runGroup.getOutput() : null;
+            return stream != null ? stream : original;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            getStream().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            getStream().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            getStream().flush();
+        }
+    }
+
+    /**
+     * Security manager allowing everything but the exit of the JVM from the
+     * threads of the runs, including the threads left running by a run which
+     * ended.
+     */
+    private static class ExitGuard extends SecurityManager {
+
+        @Override
+        public void checkPermission(Permission perm) {
+            // everything is allowed
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+            // everything is allowed
+        }
+
+        @Override
+        public void checkExit(int status) {
+            RunGroup runGroup = getRunGroup(Thread.currentThread());
+            if (runGroup != null) {
+                runGroup.exit(status);
+                throw new ExitException(status);
+            }
+        }
+    }
+
+    /**
+     * The thread group of a run, running the main method in its first thread
+     * and collecting the end of the run.
+     */
+    private static class RunGroup extends ThreadGroup implements Runnable {
+
+        /**
+         * The main method.
+         */
+        private final Method main;
+        /**
+         * The command line arguments.
+         */
+        private final String[] arguments;
+        /**
+         * The stream where the output of the threads of the run is
+         * redirected, null once the run ended.
+         */
+        private volatile PrintStream output;
+        /**
+         * The status of the first System.exit call of the run, null if not
+         * called.
+         */
+        private volatile Integer exitStatus = null;
+        /**
+         * The exception thrown by the main method, null if none.
+         */
+        private volatile Throwable failure = null;
+
+        /**
+         * Constructor.
+         *
+         * @param name the name of the run
+         * @param main the main method
+         * @param arguments the command line arguments
+         * @param output the stream where to redirect the output of the
+         * threads of the run
+         */
+        public RunGroup(String name, Method main, String[] arguments, PrintStream output) {
+            super("In-process " + name);
+            // the group is destroyed with its last thread
+            setDaemon(true);
+            this.main = main;
+            this.arguments = arguments;
+            this.output = output;
+        }
+
+        @Override
+        public void run() {
+            try {
+                main.invoke(null, (Object) arguments);
+            } catch (InvocationTargetException e) {
+                if (!(e.getCause() instanceof ExitException)) {
+                    failure = e.getCause();
+                }
+            } catch (Exception e) {
+                failure = e;
+            }
+        }
+
+        @Override
+        public void uncaughtException(Thread t, Throwable e) {
+            // the exit of a thread of the run is not an error
+            if (!(e instanceof ExitException)) {
+                super.uncaughtException(t, e);
+            }
+        }
+
+        /**
+         * Waits until the main method returned and the non-daemon threads of
+         * the run ended, until a thread of the run called System.exit, or
+         * until the main method failed.
+         *
+         * @param mainThread the thread running the main method
+         *
+         * @throws InterruptedException thrown if the thread is interrupted
+         * while waiting
+         */
+        public void awaitEnd(Thread mainThread) throws InterruptedException {
+            while (exitStatus == null) {
+                mainThread.join(POLLING_INTERVAL);
+                if (!mainThread.isAlive() && (failure != null || !hasLiveThreads(false))) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Waits for the threads of the run to end.
+         *
+         * @param timeout the maximal time to wait in milliseconds
+         *
+         * @return true if all threads of the run ended
+         *
+         * @throws InterruptedException thrown if the thread is interrupted
+         * while waiting
+         */
+        public boolean awaitThreads(long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (hasLiveThreads()) {
+                if (System.currentTimeMillis() >= deadline) {
+                    return false;
+                }
+                Thread.sleep(POLLING_INTERVAL);
+            }
+            return true;
+        }
+
+        /**
+         * Records the call of System.exit by a thread of the run.
+         *
+         * @param status the exit status
+         */
+        public synchronized void exit(int status) {
+            if (exitStatus == null && output != null) {
+                exitStatus = status;
+            }
+        }
+
+        /**
+         * Marks the run as ended, the output of the threads left running is
+         * no longer redirected to the stream of the run.
+         */
+        public synchronized void end() {
+            output = null;
+        }
+
+        /**
+         * Indicates whether threads of the run are still alive.
+         *
+         * @return true if threads of the run are still alive
+         */
+        public boolean hasLiveThreads() {
+            return hasLiveThreads(true);
+        }
+
+        /**
+         * Indicates whether threads of the run are still alive.
+         *
+         * @param includeDaemons if true, the daemon threads are included
+         *
+         * @return true if threads of the run are still alive
+         */
+        private boolean hasLiveThreads(boolean includeDaemons) {
+            Thread[] threads = new Thread[activeCount() + 16];
+            int nThreads = enumerate(threads, true);
+            for (int i = 0; i < nThreads; i++) {
+                if (threads[i].isAlive() && (includeDaemons || !threads[i].isDaemon())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns the stream where the output of the threads of the run is
+         * redirected.
+         *
+         * @return the stream of the run, null if the run ended
+         */
+        public PrintStream getOutput() {
+            return output;
+        }
+
+        /**
+         * Returns the status of the first System.exit call of the run.
+         *
+         * @return the exit status, null if System.exit was not called
+         */
+        public Integer getExitStatus() {
+            return exitStatus;
+        }
+
+        /**
+         * Returns the exception thrown by the main method.
+         *
+         * @return the exception thrown by the main method, null if none
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+    }
+
+    /**
+     * Exception thrown when a run calls System.exit.
+     */
+    private static class ExitException extends SecurityException {
+
+        /**
+         * The exit status.
+         */
+        private final int status;
+
+        /**
+         * Constructor.
+         *
+         * @param status the exit status
+         */
+        public ExitException(int status) {
+            super("System.exit(" + status + ") intercepted.");
+            this.status = status;
+        }
+
+        /**
+         * Returns the exit status.
+         *
+         * @return the exit status
+         */
+        public int getStatus() {
+            return status;
+        }
+    }
+}
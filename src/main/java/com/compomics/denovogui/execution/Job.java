@@ -1,10 +1,11 @@
 package com.compomics.denovogui.execution;
 
 import com.compomics.util.exceptions.ExceptionHandler;
-import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
 import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -51,7 +52,26 @@ public abstract class Job implements Executable, Runnable {
     /**
      * The Process object.
      */
-    protected Process proc;
+    protected volatile Process proc;
+    /**
+     * True if the job was canceled.
+     */
+    private volatile boolean canceled = false;
+    /**
+     * The thread stopping the process of the canceled job, null if the
+     * process is not being stopped.
+     */
+    private volatile Thread killer = null;
+    /**
+     * If true, the spectra processed by the job are displayed in the
+     * secondary progress of the waiting handler.
+     */
+    private volatile boolean progressDisplayed = true;
+    /**
+     * The number of spectra processed by the job so far, only counted for
+     * the jobs reporting their progress per spectrum.
+     */
+    private volatile int nSpectraProcessed = 0;
     /**
      * List of process commands.
      */
@@ -69,9 +89,14 @@ public abstract class Job implements Executable, Runnable {
      */
     protected ExceptionHandler exceptionHandler;
     /**
-     * The spectrum factory.
+     * The number of spectra of the spectrum file sequenced, used to display
+     * the progress.
+     */
+    private int totalSpectrumCount = -1;
+    /**
+     * The execution metrics of the job.
      */
-    private SpectrumFactory spectrumFactory = SpectrumFactory.getInstance();
+    private final JobMetrics metrics = new JobMetrics();
 
     /**
      * Executes a job.
@@ -79,9 +104,18 @@ public abstract class Job implements Executable, Runnable {
     @Override
     public void run() {
         proc = null;
+        if (canceled) {
+            return;
+        }
         try {
             proc = procBuilder.start();
-            setStatus(JobStatus.RUNNING);
+            metrics.processStarted(proc);
+            if (canceled) {
+                // canceled while starting
+                killer = ProcessTreeKiller.killAsync(proc);
+            } else {
+                setStatus(JobStatus.RUNNING);
+            }
         } catch (IOException ioe) {
             setStatus(JobStatus.ERROR);
             setError(ioe.getMessage());
@@ -89,6 +123,7 @@ public abstract class Job implements Executable, Runnable {
             waitingHandler.appendReportEndLine();
             waitingHandler.setRunCanceled();
             exceptionHandler.catchException(ioe);
+            return;
         }
 
         // Retrieve input stream from process.
@@ -117,12 +152,11 @@ public abstract class Job implements Executable, Runnable {
                 BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
 
                 // set the progress dialog update count
-                int totalSpectrumCount = spectrumFactory.getNSpectra();
                 int spectrumCount = 1000;
-                if (totalSpectrumCount <= 1000) {
+                if (totalSpectrumCount >= 0 && totalSpectrumCount <= 1000) {
                     spectrumCount = 100;
                 }
-                if (totalSpectrumCount <= 100) {
+                if (totalSpectrumCount >= 0 && totalSpectrumCount <= 100) {
                     spectrumCount = 10;
                 }
 
@@ -136,14 +170,23 @@ public abstract class Job implements Executable, Runnable {
                         waitingHandler.appendReport(temp, false, true);
                     } else {
                         if (temp.startsWith(">>")) { // PepNovo+
+                            nSpectraProcessed++;
+                            if (!progressDisplayed) {
+                                continue;
+                            }
                             int progressCounter = waitingHandler.getSecondaryProgressCounter();
                             if (progressCounter % spectrumCount == 0 || progressCounter == 1) {
                                 if (progressCounter == 1) {
                                     progressCounter = 0;
                                 }
-                                waitingHandler.appendReport("Processing spectrum " + (progressCounter + 1)
-                                        + "-" + Math.min(progressCounter + spectrumCount, totalSpectrumCount)
-                                        + " of " + totalSpectrumCount + ".", true, true);
+                                if (totalSpectrumCount >= 0) {
+                                    waitingHandler.appendReport("Processing spectrum " + (progressCounter + 1)
+                                            + "-" + Math.min(progressCounter + spectrumCount, totalSpectrumCount)
+                                            + " of " + totalSpectrumCount + ".", true, true);
+                                } else {
+                                    waitingHandler.appendReport("Processing spectrum " + (progressCounter + 1)
+                                            + "-" + (progressCounter + spectrumCount) + ".", true, true);
+                                }
                             }
                             waitingHandler.increaseSecondaryProgressCounter();
                         }
@@ -159,8 +202,22 @@ public abstract class Job implements Executable, Runnable {
             scan.close();
         }
 
+        // last sample of the process resources before the process is reaped
+        metrics.sample();
+
         try {
-            proc.waitFor();
+            int exitValue = proc.waitFor();
+            metrics.processEnded();
+            if (canceled) {
+                return;
+            }
+
+            // a crashed process leaves partial results, the job is retried or reported
+            if (exitValue != 0) {
+                setError(description + " exited with status " + exitValue + ".");
+                setStatus(JobStatus.ERROR);
+                return;
+            }
             setStatus(JobStatus.FINISHED);
 
             // rename the pnovo result file
@@ -172,14 +229,17 @@ public abstract class Job implements Executable, Runnable {
                 }
                 outputFile.renameTo(temp);
             }
+
+            metrics.setSpectraOut(countResultSpectra());
         } catch (InterruptedException e) {
+            metrics.processEnded();
             if (!waitingHandler.isRunCanceled()) {
                 setError(e.getMessage());
                 setStatus(JobStatus.ERROR);
                 exceptionHandler.catchException(e);
                 if (proc != null) {
                     log.warn("SUBPROCESS KILLED!");
-                    proc.destroy();
+                    ProcessTreeKiller.killAsync(proc);
                 }
                 waitingHandler.setRunCanceled();
             }
@@ -212,6 +272,7 @@ public abstract class Job implements Executable, Runnable {
      */
     public void setStatus(JobStatus status) {
         this.status = status;
+        metrics.setStatus(status);
     }
 
     @Override
@@ -251,11 +312,132 @@ public abstract class Job implements Executable, Runnable {
      */
     public abstract void writeCommand();
 
+    /**
+     * Sets the number of spectra of the spectrum file sequenced, used to
+     * display the progress.
+     *
+     * @param totalSpectrumCount the number of spectra of the spectrum file
+     * sequenced, -1 if not known
+     */
+    public void setTotalSpectrumCount(int totalSpectrumCount) {
+        this.totalSpectrumCount = totalSpectrumCount;
+    }
+
+    /**
+     * Returns the execution metrics of the job.
+     *
+     * @return the execution metrics of the job
+     */
+    public JobMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Samples the resources used by the process of the job.
+     */
+    public void sampleProcessMetrics() {
+        metrics.sample();
+    }
+
+    /**
+     * Returns the number of spectra with results once the job is finished.
+     *
+     * @return the number of spectra with results, -1 if not known
+     */
+    protected int countResultSpectra() {
+        return -1;
+    }
+
+    /**
+     * Counts the lines of a result file starting with the given prefix.
+     *
+     * @param resultFile the result file
+     * @param prefix the prefix
+     *
+     * @return the number of lines starting with the prefix, -1 if the file
+     * cannot be read
+     */
+    protected static int countLines(File resultFile, String prefix) {
+        if (!resultFile.exists()) {
+            return -1;
+        }
+        int result = 0;
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(resultFile));
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith(prefix)) {
+                        result++;
+                    }
+                }
+            } finally {
+                br.close();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return result;
+    }
+
+    /**
+     * Indicates whether the job was canceled.
+     *
+     * @return true if the job was canceled
+     */
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Cancels the job. The process of the job and its descendants are stopped
+     * in the background, the method returns immediately.
+     */
     @Override
     public void cancel() {
+        canceled = true;
+        setStatus(JobStatus.CANCELED);
+        metrics.sample();
         if (proc != null) {
-            proc.destroy();
+            killer = ProcessTreeKiller.killAsync(proc);
             log.info("PROCESS CANCELED.");
         }
     }
+
+    /**
+     * Sets whether the spectra processed by the job are displayed in the
+     * secondary progress of the waiting handler, for example not for a second
+     * attempt of a task whose first attempt already displayed its progress.
+     *
+     * @param progressDisplayed true if the progress should be displayed
+     */
+    public void setProgressDisplayed(boolean progressDisplayed) {
+        this.progressDisplayed = progressDisplayed;
+    }
+
+    /**
+     * Returns the number of spectra processed by the job so far. Only counted
+     * for the jobs reporting their progress per spectrum, 0 for the others.
+     *
+     * @return the number of spectra processed
+     */
+    public int getNSpectraProcessed() {
+        return nSpectraProcessed;
+    }
+
+    /**
+     * Waits for the process of the canceled job and its descendants to be
+     * stopped.
+     *
+     * @param timeout the maximal time to wait in milliseconds
+     *
+     * @throws InterruptedException thrown if the thread is interrupted while
+     * waiting
+     */
+    public void awaitStopped(long timeout) throws InterruptedException {
+        Thread currentKiller = killer;
+        if (currentKiller != null) {
+            currentKiller.join(timeout);
+        }
+    }
 }
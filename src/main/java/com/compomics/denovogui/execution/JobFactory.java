@@ -0,0 +1,22 @@
+package com.compomics.denovogui.execution;
+
+import java.io.File;
+
+/**
+ * Creates the jobs of a task. A factory is used so that the same task can be
+ * executed again, for example when a job hangs or to run a speculative copy
+ * of a slow job.
+ *
+ * @author Harald Barsnes
+ */
+public interface JobFactory {
+
+    /**
+     * Creates a new job writing its results to the given folder.
+     *
+     * @param outputFolder the folder where the results should be written
+     *
+     * @return a new job
+     */
+    public Job createJob(File outputFolder);
+}
@@ -0,0 +1,482 @@
+package com.compomics.denovogui.execution;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Execution metrics of a job: timing, resources used by the process of the
+ * job and number of spectra processed. The CPU time, peak memory and I/O of
+ * the process are sampled from /proc and are therefore only available on
+ * Linux, they are -1 otherwise.
+ *
+ * @author Harald Barsnes
+ */
+public class JobMetrics {
+
+    /**
+     * The number of clock ticks per second used in /proc/[pid]/stat. This is
+     * fixed to 100 by the Linux kernel ABI on all common architectures.
+     */
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    /**
+     * The name of the algorithm.
+     */
+    private String algorithm = "";
+    /**
+     * The name of the spectrum file processed.
+     */
+    private String spectrumFile = "";
+    /**
+     * The attempt number, 1 for the first attempt.
+     */
+    private int attempt = 1;
+    /**
+     * True if the job is a speculative copy.
+     */
+    private boolean speculative = false;
+    /**
+     * The final status of the job.
+     */
+    private volatile JobStatus status = JobStatus.WAITING;
+    /**
+     * The time in milliseconds when the task of the job was submitted.
+     */
+    private long submissionTime = -1;
+    /**
+     * The time in milliseconds when the process was started.
+     */
+    private volatile long startTime = -1;
+    /**
+     * The time in milliseconds when the process ended.
+     */
+    private volatile long endTime = -1;
+    /**
+     * The CPU time in milliseconds used by the process and its children.
+     */
+    private volatile long cpuTime = -1;
+    /**
+     * The peak resident set size of the process in bytes.
+     */
+    private volatile long peakRss = -1;
+    /**
+     * The number of bytes read by the process.
+     */
+    private volatile long bytesRead = -1;
+    /**
+     * The number of bytes written by the process.
+     */
+    private volatile long bytesWritten = -1;
+    /**
+     * The number of spectra given to the job, -1 if not known.
+     */
+    private int spectraIn = -1;
+    /**
+     * The number of spectra with results, -1 if not known.
+     */
+    private volatile int spectraOut = -1;
+    /**
+     * The id of the process, -1 if not known.
+     */
+    private volatile int pid = -1;
+
+    /**
+     * Sets the process of the job and the start time.
+     *
+     * @param process the process of the job, null if the job is run in the
+     * DeNovoGUI process
+     */
+    public void processStarted(Process process) {
+        startTime = System.currentTimeMillis();
+        pid = process != null ? getPid(process) : -1;
+    }
+
+    /**
+     * Sets the end time.
+     */
+    public void processEnded() {
+        if (startTime >= 0 && endTime < 0) {
+            endTime = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Samples the resources used by the process from /proc. Has no effect if
+     * the process is not known or not running or if /proc is not available.
+     * The values are cumulative, the last successful sample is kept.
+     */
+    public void sample() {
+
+        if (pid < 0 || endTime >= 0) {
+            return;
+        }
+
+        File processFolder = new File("/proc", Integer.toString(pid));
+
+        try {
+            String stat = readFirstLine(new File(processFolder, "stat"));
+            if (stat != null) {
+                // the command name in parentheses may contain spaces
+                String[] split = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                long ticks = Long.parseLong(split[11]) + Long.parseLong(split[12]) + Long.parseLong(split[13]) + Long.parseLong(split[14]);
+                cpuTime = Math.max(cpuTime, ticks * 1000 / CLOCK_TICKS_PER_SECOND);
+            }
+            Long hwm = readValue(new File(processFolder, "status"), "VmHWM:");
+            if (hwm != null) {
+                peakRss = Math.max(peakRss, hwm * 1024);
+            }
+            Long rchar = readValue(new File(processFolder, "io"), "rchar:");
+            if (rchar != null) {
+                bytesRead = Math.max(bytesRead, rchar);
+            }
+            Long wchar = readValue(new File(processFolder, "io"), "wchar:");
+            if (wchar != null) {
+                bytesWritten = Math.max(bytesWritten, wchar);
+            }
+        } catch (IOException e) {
+            // the process ended or /proc is not readable
+        } catch (RuntimeException e) {
+            // unexpected /proc format
+        }
+    }
+
+    /**
+     * Returns the first line of a file, null if the file does not exist.
+     *
+     * @param file the file
+     *
+     * @return the first line of the file
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    private static String readFirstLine(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try {
+            return br.readLine();
+        } finally {
+            br.close();
+        }
+    }
+
+    /**
+     * Returns the first number following the given key in a /proc file, null
+     * if not found.
+     *
+     * @param file the file
+     * @param key the key
+     *
+     * @return the number following the key
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    private static Long readValue(File file, String key) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith(key)) {
+                    return Long.parseLong(line.substring(key.length()).trim().split("\\s+")[0]);
+                }
+            }
+        } finally {
+            br.close();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the id of a process. Java 8 does not expose the process id, it
+     * is read from the private field of the Unix process implementation. On
+     * newer Java versions the public pid method is used.
+     *
+     * @param process the process
+     *
+     * @return the id of the process, -1 if not available
+     */
+    static int getPid(Process process) {
+        try {
+            Method method = Process.class.getMethod("pid");
+            return ((Long) method.invoke(process)).intValue();
+        } catch (Exception e) {
+            // Java 8
+        }
+        try {
+            Field field = process.getClass().getDeclaredField("pid");
+            field.setAccessible(true);
+            return field.getInt(process);
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the name of the algorithm.
+     *
+     * @return the name of the algorithm
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Sets the name of the algorithm.
+     *
+     * @param algorithm the name of the algorithm
+     */
+    public void setAlgorithm(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Returns the name of the spectrum file processed.
+     *
+     * @return the name of the spectrum file processed
+     */
+    public String getSpectrumFile() {
+        return spectrumFile;
+    }
+
+    /**
+     * Sets the name of the spectrum file processed.
+     *
+     * @param spectrumFile the name of the spectrum file processed
+     */
+    public void setSpectrumFile(String spectrumFile) {
+        this.spectrumFile = spectrumFile;
+    }
+
+    /**
+     * Returns the attempt number, 1 for the first attempt.
+     *
+     * @return the attempt number
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Sets the attempt number.
+     *
+     * @param attempt the attempt number
+     */
+    public void setAttempt(int attempt) {
+        this.attempt = attempt;
+    }
+
+    /**
+     * Indicates whether the job is a speculative copy.
+     *
+     * @return true if the job is a speculative copy
+     */
+    public boolean isSpeculative() {
+        return speculative;
+    }
+
+    /**
+     * Sets whether the job is a speculative copy.
+     *
+     * @param speculative true if the job is a speculative copy
+     */
+    public void setSpeculative(boolean speculative) {
+        this.speculative = speculative;
+    }
+
+    /**
+     * Returns the final status of the job.
+     *
+     * @return the final status of the job
+     */
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Sets the final status of the job.
+     *
+     * @param status the final status of the job
+     */
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * Sets the time in milliseconds when the task of the job was submitted.
+     *
+     * @param submissionTime the submission time
+     */
+    public void setSubmissionTime(long submissionTime) {
+        this.submissionTime = submissionTime;
+    }
+
+    /**
+     * Returns the time in milliseconds when the process was started, -1 if
+     * not started.
+     *
+     * @return the start time
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the time in milliseconds when the process ended, -1 if not
+     * ended.
+     *
+     * @return the end time
+     */
+    public long getEndTime() {
+        return endTime;
+    }
+
+    /**
+     * Returns the time in milliseconds spent waiting for a thread, -1 if not
+     * known.
+     *
+     * @return the queueing delay
+     */
+    public long getQueueingDelay() {
+        if (submissionTime < 0 || startTime < 0) {
+            return -1;
+        }
+        return startTime - submissionTime;
+    }
+
+    /**
+     * Returns the wall time of the process in milliseconds, up to now if
+     * still running, -1 if not started.
+     *
+     * @return the wall time
+     */
+    public long getWallTime() {
+        if (startTime < 0) {
+            return -1;
+        }
+        long end = endTime >= 0 ? endTime : System.currentTimeMillis();
+        return end - startTime;
+    }
+
+    /**
+     * Returns the CPU time in milliseconds used by the process and its
+     * children, -1 if not available.
+     *
+     * @return the CPU time
+     */
+    public long getCpuTime() {
+        return cpuTime;
+    }
+
+    /**
+     * Returns the peak resident set size of the process in bytes, -1 if not
+     * available.
+     *
+     * @return the peak resident set size
+     */
+    public long getPeakRss() {
+        return peakRss;
+    }
+
+    /**
+     * Returns the number of bytes read by the process, -1 if not available.
+     *
+     * @return the number of bytes read
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns the number of bytes written by the process, -1 if not
+     * available.
+     *
+     * @return the number of bytes written
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Returns the number of spectra given to the job, -1 if not known.
+     *
+     * @return the number of spectra given to the job
+     */
+    public int getSpectraIn() {
+        return spectraIn;
+    }
+
+    /**
+     * Sets the number of spectra given to the job.
+     *
+     * @param spectraIn the number of spectra given to the job, -1 if not
+     * known
+     */
+    public void setSpectraIn(int spectraIn) {
+        this.spectraIn = spectraIn;
+    }
+
+    /**
+     * Returns the number of spectra with results, -1 if not known.
+     *
+     * @return the number of spectra with results
+     */
+    public int getSpectraOut() {
+        return spectraOut;
+    }
+
+    /**
+     * Sets the number of spectra with results.
+     *
+     * @param spectraOut the number of spectra with results, -1 if not known
+     */
+    public void setSpectraOut(int spectraOut) {
+        this.spectraOut = spectraOut;
+    }
+
+    /**
+     * Returns the number of spectra processed per second, -1 if not known.
+     *
+     * @return the number of spectra processed per second
+     */
+    public double getSpectraPerSecond() {
+        long wallTime = getWallTime();
+        if (spectraIn < 0 || wallTime <= 0) {
+            return -1;
+        }
+        return 1000.0 * spectraIn / wallTime;
+    }
+
+    /**
+     * Returns the metrics as a JSON object.
+     *
+     * @return the metrics as a JSON object
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{");
+        json.append("\"algorithm\": ").append(RunMetrics.quote(algorithm)).append(", ");
+        json.append("\"spectrumFile\": ").append(RunMetrics.quote(spectrumFile)).append(", ");
+        json.append("\"attempt\": ").append(attempt).append(", ");
+        json.append("\"speculative\": ").append(speculative).append(", ");
+        json.append("\"status\": ").append(RunMetrics.quote(status.name())).append(", ");
+        json.append("\"startTime\": ").append(startTime).append(", ");
+        json.append("\"queueingDelayMs\": ").append(getQueueingDelay()).append(", ");
+        json.append("\"wallTimeMs\": ").append(getWallTime()).append(", ");
+        json.append("\"cpuTimeMs\": ").append(cpuTime).append(", ");
+        json.append("\"peakRssBytes\": ").append(peakRss).append(", ");
+        json.append("\"bytesRead\": ").append(bytesRead).append(", ");
+        json.append("\"bytesWritten\": ").append(bytesWritten).append(", ");
+        json.append("\"spectraIn\": ").append(spectraIn).append(", ");
+        json.append("\"spectraOut\": ").append(spectraOut).append(", ");
+        json.append("\"spectraPerSecond\": ").append(RunMetrics.format(getSpectraPerSecond()));
+        json.append("}");
+        return json.toString();
+    }
+}
@@ -0,0 +1,674 @@
+package com.compomics.denovogui.execution;
+
+import com.compomics.util.Util;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs jobs on a limited number of threads and supervises them. The expected
+ * duration of a job is estimated from the number of spectra processed per
+ * second by the jobs completed so far, a supervisor can therefore be reused
+ * for the jobs of the same algorithm on successive files. Jobs running for much longer than
+ * expected are canceled and started again, and when threads are idle, slow
+ * jobs are speculatively started a second time in a separate folder. The
+ * first attempt to finish wins and the other attempts are canceled. Only the
+ * first attempt of a task displays its progress, the progress of the winning
+ * attempt is completed when it wins.
+ *
+ * @author Harald Barsnes
+ */
+public class JobSupervisor {
+
+    /**
+     * The interval in milliseconds between two checks of the jobs.
+     */
+    private static final long POLLING_INTERVAL = 500;
+    /**
+     * The time in seconds given to a canceled job to stop.
+     */
+    private static final long CANCELLATION_TIMEOUT = 30;
+    /**
+     * Prefix of the folders where speculative attempts write their results.
+     */
+    public static final String SPECULATIVE_FOLDER_PREFIX = "speculative_";
+    /**
+     * A job is considered as straggling when running for longer than this
+     * factor times its expected duration.
+     */
+    private double speculationFactor = 2;
+    /**
+     * A job is considered as hanging when running for longer than this factor
+     * times its expected duration.
+     */
+    private double timeoutFactor = 5;
+    /**
+     * The minimal time in milliseconds before a job is considered as hanging.
+     */
+    private long minimalTimeout = 60000;
+    /**
+     * Time in milliseconds after which a job is considered as hanging when no
+     * duration estimate is available.
+     */
+    private long jobTimeout;
+    /**
+     * The maximal number of attempts per task.
+     */
+    private int maxAttempts = 2;
+    /**
+     * If true, slow jobs are speculatively started again on idle threads.
+     */
+    private boolean speculativeExecution;
+    /**
+     * The number of threads.
+     */
+    private final int nThreads;
+    /**
+     * The executor running the jobs.
+     */
+    private final ExecutorService executor;
+    /**
+     * The tasks waiting for a thread.
+     */
+    private final Deque<Task> pendingTasks = new ArrayDeque<Task>();
+    /**
+     * All tasks submitted.
+     */
+    private final ArrayList<Task> tasks = new ArrayList<Task>();
+    /**
+     * The attempts currently running.
+     */
+    private final ArrayList<Attempt> runningAttempts = new ArrayList<Attempt>();
+    /**
+     * The attempts canceled with the supervision.
+     */
+    private final ArrayList<Attempt> canceledAttempts = new ArrayList<Attempt>();
+    /**
+     * The number of spectra processed by the completed attempts.
+     */
+    private long spectraProcessed = 0;
+    /**
+     * The time in milliseconds spent by the completed attempts.
+     */
+    private long processingTime = 0;
+    /**
+     * True if the supervision was canceled.
+     */
+    private volatile boolean canceled = false;
+    /**
+     * The waiting handler.
+     */
+    private final WaitingHandler waitingHandler;
+    /**
+     * The metrics of the run where the metrics of the jobs are collected,
+     * null if not collected.
+     */
+    private RunMetrics runMetrics = null;
+    /**
+     * The monitor of the resources of the machine, null to always run
+     * nThreads jobs in parallel.
+     */
+    private ResourceMonitor resourceMonitor = null;
+    /**
+     * The memory in bytes estimated to be used by one job, not used if not
+     * positive.
+     */
+    private long jobMemory = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param nThreads the number of jobs to run in parallel
+     * @param jobTimeout time in milliseconds after which a job is considered
+     * as hanging when no duration estimate is available
+     * @param speculativeExecution if true, slow jobs are speculatively started
+     * again on idle threads
+     * @param waitingHandler the waiting handler
+     */
+    public JobSupervisor(int nThreads, long jobTimeout, boolean speculativeExecution, WaitingHandler waitingHandler) {
+        this.nThreads = nThreads;
+        this.jobTimeout = jobTimeout;
+        this.speculativeExecution = speculativeExecution;
+        this.waitingHandler = waitingHandler;
+        this.executor = Executors.newCachedThreadPool();
+    }
+
+    /**
+     * Submits a task.
+     *
+     * @param jobFactory the factory creating the jobs of the task
+     * @param outputFolder the folder where the results should be written
+     * @param nSpectra the number of spectra processed by the task, -1 if not
+     * known, in which case the job timeout is used
+     *
+     * @return the job of the first attempt
+     */
+    public synchronized Job submit(JobFactory jobFactory, File outputFolder, int nSpectra) {
+        Task task = new Task(tasks.size(), jobFactory, outputFolder, nSpectra);
+        tasks.add(task);
+        task.firstJob = jobFactory.createJob(outputFolder);
+        pendingTasks.add(task);
+        return task.firstJob;
+    }
+
+    /**
+     * Runs the submitted tasks and waits until all are completed, failed or
+     * canceled. New tasks can be submitted afterwards.
+     *
+     * @throws InterruptedException thrown if the thread is interrupted while
+     * waiting
+     */
+    public void awaitCompletion() throws InterruptedException {
+        try {
+            while (!canceled && !waitingHandler.isRunCanceled()) {
+                ArrayList<Attempt> winners = new ArrayList<Attempt>();
+                boolean completed;
+                synchronized (this) {
+                    checkAttempts(winners);
+                    startPendingTasks();
+                    completed = pendingTasks.isEmpty() && runningAttempts.isEmpty();
+                }
+                // the other attempts are stopped without holding the lock
+                for (Attempt winner : winners) {
+                    completeTask(winner);
+                }
+                if (completed) {
+                    break;
+                }
+                Thread.sleep(POLLING_INTERVAL);
+            }
+        } finally {
+            if (canceled || waitingHandler.isRunCanceled()) {
+                cancel();
+            }
+        }
+    }
+
+    /**
+     * Shuts down the threads of the supervisor once no more tasks are to be
+     * submitted.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Cancels all running and pending jobs. The processes of the jobs are
+     * stopped in the background within a bounded time, the method does not
+     * wait for them, see awaitTermination.
+     */
+    public void cancel() {
+        canceled = true;
+        ArrayList<Attempt> toCancel;
+        synchronized (this) {
+            pendingTasks.clear();
+            toCancel = new ArrayList<Attempt>(runningAttempts);
+            runningAttempts.clear();
+            canceledAttempts.addAll(toCancel);
+        }
+        for (Attempt attempt : toCancel) {
+            attempt.job.cancel();
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Waits for the jobs stopped by cancel to end and for their processes to
+     * be stopped, at most the cancellation timeout, and deletes the folders
+     * of their speculative attempts.
+     *
+     * @throws InterruptedException thrown if the thread is interrupted while
+     * waiting
+     */
+    public void awaitTermination() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + CANCELLATION_TIMEOUT * 1000;
+        executor.awaitTermination(CANCELLATION_TIMEOUT, TimeUnit.SECONDS);
+        ArrayList<Attempt> toAwait;
+        synchronized (this) {
+            toAwait = new ArrayList<Attempt>(canceledAttempts);
+        }
+        for (Attempt attempt : toAwait) {
+            attempt.job.awaitStopped(Math.max(1, deadline - System.currentTimeMillis()));
+            discard(attempt);
+        }
+    }
+
+    /**
+     * Returns the number of tasks which failed.
+     *
+     * @return the number of tasks which failed
+     */
+    public synchronized int getNFailedTasks() {
+        int result = 0;
+        for (Task task : tasks) {
+            if (task.failed) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds a previous measurement to the estimate of the job durations, for
+     * example from the sequencing of a sample of the spectra, so that the
+     * first jobs can already be supervised.
+     *
+     * @param nSpectra the number of spectra processed
+     * @param processingTime the processing time in milliseconds
+     */
+    public synchronized void addEstimate(long nSpectra, long processingTime) {
+        if (nSpectra > 0 && processingTime > 0) {
+            this.spectraProcessed += nSpectra;
+            this.processingTime += processingTime;
+        }
+    }
+
+    /**
+     * Starts pending tasks on the idle threads.
+     */
+    private void startPendingTasks() {
+        while (!pendingTasks.isEmpty() && runningAttempts.size() < getMaxRunningJobs()) {
+            Task task = pendingTasks.poll();
+            Job job;
+            if (task.attempts == 0) {
+                job = task.firstJob;
+            } else {
+                job = task.jobFactory.createJob(task.outputFolder);
+                job.setProgressDisplayed(false);
+            }
+            start(task, job, task.outputFolder);
+        }
+    }
+
+    /**
+     * Starts an attempt of a task.
+     *
+     * @param task the task
+     * @param job the job to run
+     * @param folder the folder where the job writes its results
+     */
+    private void start(Task task, Job job, File folder) {
+        Attempt attempt = new Attempt(task, job, folder);
+        task.attempts++;
+        task.running++;
+        JobMetrics metrics = job.getMetrics();
+        metrics.setAlgorithm(job.getDescription());
+        metrics.setAttempt(task.attempts);
+        metrics.setSpeculative(folder != task.outputFolder);
+        metrics.setSubmissionTime(folder != task.outputFolder ? attempt.startTime : task.queuingTime);
+        metrics.setSpectraIn(task.nSpectra);
+        if (runMetrics != null) {
+            runMetrics.add(metrics);
+        }
+        attempt.future = executor.submit(job);
+        runningAttempts.add(attempt);
+    }
+
+    /**
+     * Checks the running attempts for completion, timeouts and stragglers.
+     * The other attempts of the winning attempts are canceled, the tasks are
+     * then completed by completeTask.
+     *
+     * @param winners the list where to add the attempts which won their task
+     */
+    private void checkAttempts(ArrayList<Attempt> winners) {
+
+        long now = System.currentTimeMillis();
+
+        for (Attempt attempt : new ArrayList<Attempt>(runningAttempts)) {
+
+            Task task = attempt.task;
+
+            if (attempt.future.isDone()) {
+
+                runningAttempts.remove(attempt);
+                task.running--;
+
+                if (task.completed) {
+                    // another attempt won
+                    discard(attempt);
+                } else if (attempt.job.getStatus() == JobStatus.FINISHED) {
+                    task.completed = true;
+                    if (task.nSpectra >= 0) {
+                        spectraProcessed += task.nSpectra;
+                        processingTime += now - attempt.startTime;
+                    }
+                    cancelOtherAttempts(attempt);
+                    winners.add(attempt);
+                } else if (task.running == 0) {
+                    retryOrFail(task, attempt.job.getDescription() + " job failed" + (attempt.job.getError() != null ? ": " + attempt.job.getError() : "") + ".");
+                }
+
+            } else {
+
+                attempt.job.sampleProcessMetrics();
+
+                long runningTime = now - attempt.startTime;
+                Long expectedDuration = getExpectedDuration(task);
+                long timeout = expectedDuration == null ? jobTimeout : Math.max(minimalTimeout, (long) (timeoutFactor * expectedDuration));
+
+                if (runningTime > timeout) {
+                    waitingHandler.appendReport(attempt.job.getDescription() + " job not completed after " + (runningTime / 1000) + " seconds, canceling.", true, true);
+                    attempt.job.cancel();
+                } else if (speculativeExecution && expectedDuration != null && !task.speculated
+                        && attempt.folder == task.outputFolder && pendingTasks.isEmpty() && runningAttempts.size() < getMaxRunningJobs()
+                        && runningTime > speculationFactor * expectedDuration) {
+                    File speculativeFolder = new File(task.outputFolder, SPECULATIVE_FOLDER_PREFIX + task.index);
+                    speculativeFolder.mkdirs();
+                    task.speculated = true;
+                    waitingHandler.appendReport(attempt.job.getDescription() + " job slower than expected, starting a speculative copy.", true, true);
+                    Job speculativeJob = task.jobFactory.createJob(speculativeFolder);
+                    speculativeJob.setProgressDisplayed(false);
+                    start(task, speculativeJob, speculativeFolder);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts the task again or marks it as failed if the maximal number of
+     * attempts is reached.
+     *
+     * @param task the task
+     * @param message the reason of the failure
+     */
+    private void retryOrFail(Task task, String message) {
+        if (task.attempts < maxAttempts && !waitingHandler.isRunCanceled()) {
+            waitingHandler.appendReport(message + " Trying again.", true, true);
+            task.queuingTime = System.currentTimeMillis();
+            pendingTasks.add(task);
+        } else {
+            task.failed = true;
+            waitingHandler.appendReport(message, true, true);
+        }
+    }
+
+    /**
+     * Returns the expected duration of a task in milliseconds, null if no
+     * estimate is available yet or if the number of spectra of the task is not
+     * known.
+     *
+     * @param task the task
+     *
+     * @return the expected duration of the task
+     */
+    private Long getExpectedDuration(Task task) {
+        if (spectraProcessed == 0 || processingTime == 0 || task.nSpectra < 0) {
+            return null;
+        }
+        return (long) (((double) task.nSpectra) * processingTime / spectraProcessed);
+    }
+
+    /**
+     * Cancels the attempts of the task of the winning attempt other than the
+     * winner. The cancellation does not wait for the attempts to stop, they
+     * are kept in the losers of the winner.
+     *
+     * @param winner the attempt which finished first
+     */
+    private void cancelOtherAttempts(Attempt winner) {
+        for (Attempt attempt : new ArrayList<Attempt>(runningAttempts)) {
+            if (attempt.task == winner.task) {
+                attempt.job.cancel();
+                runningAttempts.remove(attempt);
+                attempt.task.running--;
+                winner.losers.add(attempt);
+            }
+        }
+    }
+
+    /**
+     * Completes the task of a winning attempt: waits for the other attempts
+     * of the task to stop and discards their results, moves the results of a
+     * speculative winner to the output folder, and completes the progress
+     * displayed for the task with the spectra of the winner. Called without
+     * holding the lock of the supervisor.
+     *
+     * @param winner the attempt which finished first
+     *
+     * @throws InterruptedException thrown if the thread is interrupted while
+     * waiting
+     */
+    private void completeTask(Attempt winner) throws InterruptedException {
+        for (Attempt loser : winner.losers) {
+            try {
+                loser.future.get(CANCELLATION_TIMEOUT, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // the job was canceled
+            } catch (TimeoutException e) {
+                // the job was canceled
+            }
+            loser.job.awaitStopped(CANCELLATION_TIMEOUT * 1000);
+            discard(loser);
+        }
+        Task task = winner.task;
+        if (winner.folder != task.outputFolder) {
+            waitingHandler.appendReport("Speculative " + winner.job.getDescription() + " job finished first.", true, true);
+            moveResults(winner.folder, task.outputFolder);
+        }
+        // only the first attempt displayed its progress
+        int missingProgress = winner.job.getNSpectraProcessed() - task.firstJob.getNSpectraProcessed();
+        if (winner.job != task.firstJob && missingProgress > 0) {
+            waitingHandler.increaseSecondaryProgressCounter(missingProgress);
+        }
+    }
+
+    /**
+     * Discards the results of an attempt which did not win.
+     *
+     * @param attempt the attempt
+     */
+    private void discard(Attempt attempt) {
+        if (attempt.folder != attempt.task.outputFolder) {
+            Util.deleteDir(attempt.folder);
+        }
+    }
+
+    /**
+     * Moves the results of a speculative attempt to the output folder.
+     *
+     * @param speculativeFolder the folder of the speculative attempt
+     * @param outputFolder the output folder
+     */
+    private void moveResults(File speculativeFolder, File outputFolder) {
+        File[] results = speculativeFolder.listFiles();
+        if (results != null) {
+            for (File result : results) {
+                File destination = new File(outputFolder, result.getName());
+                if (destination.exists()) {
+                    destination.delete();
+                }
+                if (!result.renameTo(destination)) {
+                    waitingHandler.appendReport("Failed to move " + result.getAbsolutePath() + " to the output folder.", true, true);
+                }
+            }
+        }
+        speculativeFolder.delete();
+    }
+
+    /**
+     * Sets the factor of the expected duration after which a job is
+     * speculatively started again.
+     *
+     * @param speculationFactor the speculation factor
+     */
+    public void setSpeculationFactor(double speculationFactor) {
+        this.speculationFactor = speculationFactor;
+    }
+
+    /**
+     * Sets the factor of the expected duration after which a job is
+     * considered as hanging.
+     *
+     * @param timeoutFactor the timeout factor
+     */
+    public void setTimeoutFactor(double timeoutFactor) {
+        this.timeoutFactor = timeoutFactor;
+    }
+
+    /**
+     * Sets the maximal number of attempts per task.
+     *
+     * @param maxAttempts the maximal number of attempts per task
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Sets the metrics of the run where the metrics of the jobs are
+     * collected.
+     *
+     * @param runMetrics the metrics of the run, null to not collect the
+     * metrics
+     */
+    public void setRunMetrics(RunMetrics runMetrics) {
+        this.runMetrics = runMetrics;
+    }
+
+    /**
+     * Sets the monitor used to reduce the number of jobs run in parallel
+     * when the CPU or the memory of the machine is used by other processes.
+     *
+     * @param resourceMonitor the resource monitor, null to always run
+     * nThreads jobs in parallel
+     * @param jobMemory the memory in bytes estimated to be used by one job,
+     * not used if not positive
+     */
+    public void setResourceMonitor(ResourceMonitor resourceMonitor, long jobMemory) {
+        this.resourceMonitor = resourceMonitor;
+        this.jobMemory = jobMemory;
+    }
+
+    /**
+     * Returns the maximal number of jobs to run in parallel. The running
+     * jobs are never stopped when the resources get scarce, new jobs are only
+     * started when possible.
+     *
+     * @return the maximal number of jobs to run in parallel
+     */
+    private int getMaxRunningJobs() {
+        if (resourceMonitor == null) {
+            return nThreads;
+        }
+        return resourceMonitor.getMaxJobs(nThreads, runningAttempts.size(), jobMemory);
+    }
+
+    /**
+     * A task to complete.
+     */
+    private static class Task {
+
+        /**
+         * The index of the task.
+         */
+        private final int index;
+        /**
+         * The job factory.
+         */
+        private final JobFactory jobFactory;
+        /**
+         * The output folder.
+         */
+        private final File outputFolder;
+        /**
+         * The number of spectra processed by the task.
+         */
+        private final int nSpectra;
+        /**
+         * The job of the first attempt.
+         */
+        private Job firstJob;
+        /**
+         * The time in milliseconds when the task was last queued.
+         */
+        private long queuingTime = System.currentTimeMillis();
+        /**
+         * The number of attempts started.
+         */
+        private int attempts = 0;
+        /**
+         * The number of attempts running.
+         */
+        private int running = 0;
+        /**
+         * True if a speculative attempt was started.
+         */
+        private boolean speculated = false;
+        /**
+         * True if an attempt completed.
+         */
+        private boolean completed = false;
+        /**
+         * True if the task failed.
+         */
+        private boolean failed = false;
+
+        /**
+         * Constructor.
+         *
+         * @param index the index of the task
+         * @param jobFactory the job factory
+         * @param outputFolder the output folder
+         * @param nSpectra the number of spectra processed by the task
+         */
+        private Task(int index, JobFactory jobFactory, File outputFolder, int nSpectra) {
+            this.index = index;
+            this.jobFactory = jobFactory;
+            this.outputFolder = outputFolder;
+            this.nSpectra = nSpectra;
+        }
+    }
+
+    /**
+     * An attempt to complete a task.
+     */
+    private static class Attempt {
+
+        /**
+         * The task.
+         */
+        private final Task task;
+        /**
+         * The job.
+         */
+        private final Job job;
+        /**
+         * The folder where the job writes its results.
+         */
+        private final File folder;
+        /**
+         * The start time in milliseconds.
+         */
+        private final long startTime = System.currentTimeMillis();
+        /**
+         * The future of the job.
+         */
+        private Future<?> future;
+        /**
+         * The other attempts of the task canceled when this attempt won.
+         */
+        private final ArrayList<Attempt> losers = new ArrayList<Attempt>();
+
+        /**
+         * Constructor.
+         *
+         * @param task the task
+         * @param job the job
+         * @param folder the folder where the job writes its results
+         */
+        private Attempt(Task task, Job job, File folder) {
+            this.task = task;
+            this.job = job;
+            this.folder = folder;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.compomics.denovogui.execution;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Stops a process and all its descendants, for example the JVM started by
+ * the Novor script or the worker processes of DirecTag. The processes are
+ * first asked to terminate and are killed if still running after a grace
+ * period. The descendants are found using the process handles of the JVM when
+ * available (Java 9 and newer) and from /proc on Linux otherwise. Processes
+ * are signaled using kill on Unix and taskkill on Windows.
+ *
+ * @author Harald Barsnes
+ */
+public class ProcessTreeKiller {
+
+    /**
+     * The time in milliseconds given to the processes to terminate before
+     * they are killed.
+     */
+    private static final long GRACE_PERIOD = 2000;
+    /**
+     * The time in milliseconds given to the killed processes to disappear.
+     */
+    private static final long KILL_TIMEOUT = 1000;
+    /**
+     * The interval in milliseconds between two checks of the processes.
+     */
+    private static final long POLLING_INTERVAL = 100;
+    /**
+     * Indicates whether the system is Windows.
+     */
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().startsWith("windows");
+
+    /**
+     * Empty constructor.
+     */
+    private ProcessTreeKiller() {
+    }
+
+    /**
+     * Stops the given process and its descendants in a background thread and
+     * returns immediately.
+     *
+     * @param process the process to stop
+     *
+     * @return the thread stopping the process, it ends once the processes are
+     * stopped
+     */
+    public static Thread killAsync(final Process process) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                kill(process);
+            }
+        }, "Process tree killer");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Stops the given process and its descendants. The processes are asked to
+     * terminate and are killed if still running after the grace period.
+     *
+     * @param process the process to stop
+     */
+    public static void kill(Process process) {
+
+        int pid = JobMetrics.getPid(process);
+
+        // the descendants are listed first as they are attached to init once their parent is gone
+        LinkedHashSet<Integer> descendants = new LinkedHashSet<Integer>();
+        if (pid > 0) {
+            descendants.addAll(getDescendants(process, pid));
+        }
+
+        // graceful
+        signal(descendants, false);
+        process.destroy();
+        long deadline = System.currentTimeMillis() + GRACE_PERIOD;
+        while (System.currentTimeMillis() < deadline && (process.isAlive() || anyAlive(descendants))) {
+            try {
+                process.waitFor(POLLING_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        // forced
+        if (process.isAlive() && pid > 0) {
+            // processes started during the grace period
+            descendants.addAll(getDescendants(process, pid));
+        }
+        ArrayList<Integer> alive = new ArrayList<Integer>();
+        for (int descendant : descendants) {
+            if (isAlive(descendant)) {
+                alive.add(descendant);
+            }
+        }
+        signal(alive, true);
+        if (process.isAlive()) {
+            process.destroyForcibly();
+            try {
+                process.waitFor(KILL_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                // the process is killed anyway
+            }
+        }
+    }
+
+    /**
+     * Returns the ids of the descendants of a process, children first.
+     *
+     * @param process the process
+     * @param pid the id of the process
+     *
+     * @return the ids of the descendants of the process
+     */
+    private static ArrayList<Integer> getDescendants(Process process, int pid) {
+        ArrayList<Integer> result = getHandleDescendants(process);
+        if (result == null) {
+            result = getProcDescendants(pid);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the ids of the descendants of a process using its process
+     * handle, available from Java 9.
+     *
+     * @param process the process
+     *
+     * @return the ids of the descendants of the process, null if process
+     * handles are not available
+     */
+    private static ArrayList<Integer> getHandleDescendants(Process process) {
+        try {
+            Method toHandle = Process.class.getMethod("toHandle");
+            Object handle = toHandle.invoke(process);
+            Method descendantsMethod = toHandle.getReturnType().getMethod("descendants");
+            Method pidMethod = toHandle.getReturnType().getMethod("pid");
+            ArrayList<Integer> result = new ArrayList<Integer>();
+            Iterator<?> iterator = ((Stream<?>) descendantsMethod.invoke(handle)).iterator();
+            while (iterator.hasNext()) {
+                result.add(((Long) pidMethod.invoke(iterator.next())).intValue());
+            }
+            return result;
+        } catch (Exception e) {
+            // Java 8
+            return null;
+        }
+    }
+
+    /**
+     * Returns the ids of the descendants of a process from /proc.
+     *
+     * @param pid the id of the process
+     *
+     * @return the ids of the descendants of the process, empty if /proc is not
+     * available
+     */
+    private static ArrayList<Integer> getProcDescendants(int pid) {
+
+        // children of every process
+        HashMap<Integer, ArrayList<Integer>> children = new HashMap<Integer, ArrayList<Integer>>();
+        File[] processFolders = new File("/proc").listFiles();
+        if (processFolders != null) {
+            for (File processFolder : processFolders) {
+                int childPid;
+                try {
+                    childPid = Integer.parseInt(processFolder.getName());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                String[] stat = readStat(childPid);
+                if (stat != null) {
+                    int parentPid = Integer.parseInt(stat[1]);
+                    ArrayList<Integer> parentChildren = children.get(parentPid);
+                    if (parentChildren == null) {
+                        parentChildren = new ArrayList<Integer>();
+                        children.put(parentPid, parentChildren);
+                    }
+                    parentChildren.add(childPid);
+                }
+            }
+        }
+
+        ArrayList<Integer> result = new ArrayList<Integer>();
+        ArrayDeque<Integer> toVisit = new ArrayDeque<Integer>();
+        toVisit.add(pid);
+        while (!toVisit.isEmpty()) {
+            ArrayList<Integer> processChildren = children.get(toVisit.poll());
+            if (processChildren != null) {
+                for (int child : processChildren) {
+                    if (!result.contains(child)) {
+                        result.add(child);
+                        toVisit.add(child);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the fields of /proc/[pid]/stat following the command name: the
+     * state, the parent id, etc.
+     *
+     * @param pid the id of the process
+     *
+     * @return the fields of the stat file following the command name, null if
+     * not available
+     */
+    private static String[] readStat(int pid) {
+        try {
+            String stat = new String(Files.readAllBytes(new File("/proc/" + pid + "/stat").toPath()), "US-ASCII");
+            // the command name is in parentheses and may contain spaces
+            return stat.substring(stat.lastIndexOf(')') + 1).trim().split("\\s+");
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Indicates whether one of the given processes is still running.
+     *
+     * @param pids the ids of the processes
+     *
+     * @return true if one of the processes is still running
+     */
+    private static boolean anyAlive(Iterable<Integer> pids) {
+        for (int pid : pids) {
+            if (isAlive(pid)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether a process is still running. The process handles are
+     * used when available, /proc otherwise where zombie processes are
+     * considered as stopped. Without both, the processes are considered as
+     * stopped once signaled.
+     *
+     * @param pid the id of the process
+     *
+     * @return true if the process is still running
+     */
+    private static boolean isAlive(int pid) {
+        Boolean alive = isHandleAlive(pid);
+        if (alive != null) {
+            return alive;
+        }
+        String[] stat = readStat(pid);
+        return stat != null && !stat[0].equals("Z");
+    }
+
+    /**
+     * Indicates whether a process is still running using its process handle,
+     * available from Java 9.
+     *
+     * @param pid the id of the process
+     *
+     * @return true if the process is still running, null if process handles
+     * are not available
+     */
+    private static Boolean isHandleAlive(int pid) {
+        try {
+            Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+            Optional<?> handle = (Optional<?>) handleClass.getMethod("of", long.class).invoke(null, (long) pid);
+            if (!handle.isPresent()) {
+                return false;
+            }
+            return (Boolean) handleClass.getMethod("isAlive").invoke(handle.get());
+        } catch (Exception e) {
+            // Java 8
+            return null;
+        }
+    }
+
+    /**
+     * Sends a termination signal to the given processes.
+     *
+     * @param pids the ids of the processes
+     * @param forced if true the processes are killed, otherwise they are
+     * asked to terminate
+     */
+    private static void signal(Collection<Integer> pids, boolean forced) {
+        if (pids.isEmpty()) {
+            return;
+        }
+        ArrayList<String> command = new ArrayList<String>();
+        if (WINDOWS) {
+            command.add("taskkill");
+            if (forced) {
+                command.add("/F");
+            }
+            for (int pid : pids) {
+                command.add("/PID");
+                command.add(Integer.toString(pid));
+            }
+        } else {
+            command.add("kill");
+            command.add(forced ? "-KILL" : "-TERM");
+            for (int pid : pids) {
+                command.add(Integer.toString(pid));
+            }
+        }
+        try {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            process.getInputStream().close();
+            process.waitFor(KILL_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            // the processes are stopped with their parent if possible
+        } catch (InterruptedException e) {
+            // the signal is sent anyway
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.compomics.denovogui.execution;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Monitors the CPU and memory available on the machine to size the number of
+ * jobs run in parallel and the heap of the child JVMs. On Linux, the load
+ * average and the available memory are read from /proc and the CPU and memory
+ * quotas of the cgroup (v1 or v2) are taken into account. On other systems,
+ * the load average of the operating system bean is used and the memory is not
+ * monitored.
+ *
+ * @author Marc Vaudel
+ */
+public class ResourceMonitor {
+
+    /**
+     * The minimal time in milliseconds between two readings of the system
+     * state.
+     */
+    private static final long REFRESH_INTERVAL = 2000;
+    /**
+     * The memory in bytes kept free for the system and DeNovoGUI.
+     */
+    private static final long MEMORY_RESERVE = 256L * 1024 * 1024;
+    /**
+     * The minimal heap size in bytes given to a child JVM.
+     */
+    private static final long MIN_CHILD_HEAP = 256L * 1024 * 1024;
+    /**
+     * The maximal heap size in bytes given to a child JVM.
+     */
+    private static final long MAX_CHILD_HEAP = 4L * 1024 * 1024 * 1024;
+    /**
+     * The share of the memory of a child JVM used by the heap.
+     */
+    private static final double HEAP_SHARE = 0.75;
+    /**
+     * The cgroup v2 CPU quota file.
+     */
+    private static final String CGROUP2_CPU_MAX = "/sys/fs/cgroup/cpu.max";
+    /**
+     * The cgroup v2 memory limit file.
+     */
+    private static final String CGROUP2_MEMORY_MAX = "/sys/fs/cgroup/memory.max";
+    /**
+     * The cgroup v2 memory usage file.
+     */
+    private static final String CGROUP2_MEMORY_CURRENT = "/sys/fs/cgroup/memory.current";
+    /**
+     * The cgroup v1 CPU quota file.
+     */
+    private static final String CGROUP1_CPU_QUOTA = "/sys/fs/cgroup/cpu/cpu.cfs_quota_us";
+    /**
+     * The cgroup v1 CPU period file.
+     */
+    private static final String CGROUP1_CPU_PERIOD = "/sys/fs/cgroup/cpu/cpu.cfs_period_us";
+    /**
+     * The cgroup v1 memory limit file.
+     */
+    private static final String CGROUP1_MEMORY_LIMIT = "/sys/fs/cgroup/memory/memory.limit_in_bytes";
+    /**
+     * The cgroup v1 memory usage file.
+     */
+    private static final String CGROUP1_MEMORY_USAGE = "/sys/fs/cgroup/memory/memory.usage_in_bytes";
+    /**
+     * The time of the last reading of the system state.
+     */
+    private long lastRefresh = 0;
+    /**
+     * The load average over the last minute, negative if not available.
+     */
+    private double loadAverage = -1;
+    /**
+     * The memory available in bytes, -1 if not available.
+     */
+    private long availableMemory = -1;
+
+    /**
+     * Returns the number of CPUs usable by DeNovoGUI: the number of
+     * processors, limited by the CPU quota of the cgroup if any.
+     *
+     * @return the number of CPUs usable by DeNovoGUI
+     */
+    public static int getCpuLimit() {
+        int nProcessors = Runtime.getRuntime().availableProcessors();
+        double quota = -1;
+        String[] cpuMax = readFirstLine(CGROUP2_CPU_MAX);
+        if (cpuMax != null && cpuMax.length == 2 && !cpuMax[0].equals("max")) {
+            quota = Double.parseDouble(cpuMax[0]) / Double.parseDouble(cpuMax[1]);
+        } else {
+            String[] cfsQuota = readFirstLine(CGROUP1_CPU_QUOTA);
+            String[] cfsPeriod = readFirstLine(CGROUP1_CPU_PERIOD);
+            if (cfsQuota != null && cfsPeriod != null && !cfsQuota[0].startsWith("-")) {
+                quota = Double.parseDouble(cfsQuota[0]) / Double.parseDouble(cfsPeriod[0]);
+            }
+        }
+        if (quota > 0) {
+            return Math.max(1, Math.min(nProcessors, (int) Math.ceil(quota)));
+        }
+        return nProcessors;
+    }
+
+    /**
+     * Returns the load average over the last minute, negative if not
+     * available.
+     *
+     * @return the load average over the last minute
+     */
+    public synchronized double getLoadAverage() {
+        refresh();
+        return loadAverage;
+    }
+
+    /**
+     * Returns the memory available in bytes: the memory available on the
+     * machine, limited by the memory left in the cgroup quota if any. Returns
+     * -1 if not available.
+     *
+     * @return the memory available in bytes
+     */
+    public synchronized long getAvailableMemory() {
+        refresh();
+        return availableMemory;
+    }
+
+    /**
+     * Returns the number of CPUs not used by other processes, between one
+     * and the given maximum.
+     *
+     * @param maxCpus the maximal number of CPUs
+     * @param usedCpus the number of CPUs already used by DeNovoGUI, these
+     * are counted in the load average
+     *
+     * @return the number of CPUs not used by other processes
+     */
+    public synchronized int getAvailableCpus(int maxCpus, int usedCpus) {
+        refresh();
+        double cpus = getCpuLimit();
+        if (loadAverage >= 0) {
+            cpus -= Math.max(0, loadAverage - usedCpus);
+        }
+        return Math.max(1, Math.min(maxCpus, (int) Math.floor(cpus + 0.5)));
+    }
+
+    /**
+     * Returns the number of jobs which can run in parallel given the CPU and
+     * memory available, between one and the given maximum.
+     *
+     * @param maxJobs the maximal number of jobs
+     * @param runningJobs the number of jobs running
+     * @param jobMemory the memory in bytes estimated to be used by one job,
+     * not used if not positive
+     *
+     * @return the number of jobs which can run in parallel
+     */
+    public synchronized int getMaxJobs(int maxJobs, int runningJobs, long jobMemory) {
+        int result = getAvailableCpus(maxJobs, runningJobs);
+        if (availableMemory >= 0 && jobMemory > 0) {
+            long memoryJobs = runningJobs + Math.max(0, availableMemory - MEMORY_RESERVE) / jobMemory;
+            result = (int) Math.min(result, memoryJobs);
+        }
+        return Math.max(1, result);
+    }
+
+    /**
+     * Returns the heap size in bytes to give to child JVMs when the given
+     * number of them run in parallel, -1 if the memory is not monitored.
+     *
+     * @param nJobs the number of child JVMs running in parallel
+     *
+     * @return the heap size in bytes
+     */
+    public synchronized long getChildHeapSize(int nJobs) {
+        refresh();
+        if (availableMemory < 0) {
+            return -1;
+        }
+        long heap = (long) (Math.max(0, availableMemory - MEMORY_RESERVE) / Math.max(1, nJobs) * HEAP_SHARE);
+        return Math.max(MIN_CHILD_HEAP, Math.min(MAX_CHILD_HEAP, heap));
+    }
+
+    /**
+     * Returns the memory in bytes estimated to be used by a child JVM with the
+     * given heap size.
+     *
+     * @param heapSize the heap size in bytes
+     *
+     * @return the memory in bytes estimated to be used by the child JVM
+     */
+    public static long getChildMemory(long heapSize) {
+        return (long) (heapSize / HEAP_SHARE);
+    }
+
+    /**
+     * Reads the system state if the last reading is too old.
+     */
+    private void refresh() {
+
+        long now = System.currentTimeMillis();
+        if (now - lastRefresh < REFRESH_INTERVAL) {
+            return;
+        }
+        lastRefresh = now;
+
+        // load average
+        String[] loadavg = readFirstLine("/proc/loadavg");
+        if (loadavg != null) {
+            loadAverage = Double.parseDouble(loadavg[0]);
+        } else {
+            loadAverage = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+        }
+
+        // memory available on the machine
+        availableMemory = -1;
+        File meminfo = new File("/proc/meminfo");
+        if (meminfo.exists()) {
+            try {
+                BufferedReader br = new BufferedReader(new FileReader(meminfo));
+                try {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (line.startsWith("MemAvailable:")) {
+                            availableMemory = Long.parseLong(line.substring(13).trim().split("\\s+")[0]) * 1024;
+                            break;
+                        }
+                    }
+                } finally {
+                    br.close();
+                }
+            } catch (IOException e) {
+                // memory not monitored
+            } catch (NumberFormatException e) {
+                // memory not monitored
+            }
+        }
+
+        // memory left in the cgroup
+        long cgroupAvailable = getCgroupAvailableMemory(CGROUP2_MEMORY_MAX, CGROUP2_MEMORY_CURRENT);
+        if (cgroupAvailable < 0) {
+            cgroupAvailable = getCgroupAvailableMemory(CGROUP1_MEMORY_LIMIT, CGROUP1_MEMORY_USAGE);
+        }
+        if (cgroupAvailable >= 0 && (availableMemory < 0 || cgroupAvailable < availableMemory)) {
+            availableMemory = cgroupAvailable;
+        }
+    }
+
+    /**
+     * Returns the memory left in a cgroup quota, -1 if no quota.
+     *
+     * @param limitPath the path to the file containing the memory limit
+     * @param usagePath the path to the file containing the memory usage
+     *
+     * @return the memory left in the cgroup quota
+     */
+    private static long getCgroupAvailableMemory(String limitPath, String usagePath) {
+        String[] limit = readFirstLine(limitPath);
+        String[] usage = readFirstLine(usagePath);
+        if (limit == null || usage == null || limit[0].equals("max")) {
+            return -1;
+        }
+        try {
+            long limitBytes = Long.parseLong(limit[0]);
+            if (limitBytes >= Long.MAX_VALUE / 2) {
+                // cgroup v1 reports no limit as a very large number
+                return -1;
+            }
+            return Math.max(0, limitBytes - Long.parseLong(usage[0]));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the white space separated fields of the first line of a file,
+     * null if the file cannot be read.
+     *
+     * @param path the path to the file
+     *
+     * @return the fields of the first line of the file
+     */
+    private static String[] readFirstLine(String path) {
+        File file = new File(path);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(file));
+            try {
+                String line = br.readLine();
+                if (line == null || line.trim().isEmpty()) {
+                    return null;
+                }
+                return line.trim().split("\\s+");
+            } finally {
+                br.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
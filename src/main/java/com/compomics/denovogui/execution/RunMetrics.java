@@ -0,0 +1,342 @@
+package com.compomics.denovogui.execution;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+/**
+ * Collects the metrics of the jobs of a sequencing run. The metrics are
+ * exposed through JMX while the run is registered and can be saved as JSON
+ * summary at the end of the run.
+ *
+ * @author Harald Barsnes
+ */
+public class RunMetrics implements RunMetricsMBean {
+
+    /**
+     * The name under which the metrics are registered in JMX, followed by the
+     * id of the run.
+     */
+    public static final String OBJECT_NAME = "com.compomics.denovogui:type=RunMetrics";
+    /**
+     * The id of the next run.
+     */
+    private static final AtomicInteger NEXT_RUN_ID = new AtomicInteger(1);
+    /**
+     * The id of the run, distinguishes the runs of concurrent sessions in
+     * JMX.
+     */
+    private final int runId = NEXT_RUN_ID.getAndIncrement();
+    /**
+     * The metrics of the jobs.
+     */
+    private final ArrayList<JobMetrics> jobMetrics = new ArrayList<JobMetrics>();
+    /**
+     * The start time of the run in milliseconds.
+     */
+    private final long startTime = System.currentTimeMillis();
+    /**
+     * The end time of the run in milliseconds, -1 while running.
+     */
+    private long endTime = -1;
+    /**
+     * The number of threads of the run.
+     */
+    private final int nThreads;
+
+    /**
+     * Constructor.
+     *
+     * @param nThreads the number of threads of the run
+     */
+    public RunMetrics(int nThreads) {
+        this.nThreads = nThreads;
+    }
+
+    /**
+     * Adds the metrics of a job.
+     *
+     * @param metrics the metrics of a job
+     */
+    public synchronized void add(JobMetrics metrics) {
+        jobMetrics.add(metrics);
+    }
+
+    /**
+     * Returns a copy of the metrics of the jobs.
+     *
+     * @return a copy of the metrics of the jobs
+     */
+    public synchronized ArrayList<JobMetrics> getJobMetrics() {
+        return new ArrayList<JobMetrics>(jobMetrics);
+    }
+
+    /**
+     * Sets the end of the run.
+     */
+    public synchronized void end() {
+        endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server under the id of the
+     * run. Failing to register does not prevent collecting the metrics.
+     */
+    public void register() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+            mBeanServer.registerMBean(this, objectName);
+        } catch (JMException e) {
+            System.out.println("The run metrics could not be registered in JMX: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server if registered.
+     */
+    public void unregister() {
+        try {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = getObjectName();
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            // already unregistered
+        }
+    }
+
+    /**
+     * Returns the name under which the metrics are registered in JMX.
+     *
+     * @return the name under which the metrics are registered in JMX
+     *
+     * @throws MalformedObjectNameException thrown if the name is not valid
+     */
+    public ObjectName getObjectName() throws MalformedObjectNameException {
+        return new ObjectName(OBJECT_NAME + ",run=" + runId);
+    }
+
+    @Override
+    public synchronized long getElapsedTime() {
+        long end = endTime >= 0 ? endTime : System.currentTimeMillis();
+        return end - startTime;
+    }
+
+    @Override
+    public synchronized int getRunningJobs() {
+        int result = 0;
+        for (JobMetrics metrics : jobMetrics) {
+            if (metrics.getStartTime() >= 0 && metrics.getEndTime() < 0) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized int getFinishedJobs() {
+        int result = 0;
+        for (JobMetrics metrics : jobMetrics) {
+            if (metrics.getStatus() == JobStatus.FINISHED) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized int getFailedJobs() {
+        int result = 0;
+        for (JobMetrics metrics : jobMetrics) {
+            if (metrics.getStatus() == JobStatus.ERROR || metrics.getStatus() == JobStatus.CANCELED) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized long getSpectraIn() {
+        long result = 0;
+        for (JobMetrics metrics : jobMetrics) {
+            if (metrics.getStatus() == JobStatus.FINISHED && metrics.getSpectraIn() > 0) {
+                result += metrics.getSpectraIn();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized long getSpectraOut() {
+        long result = 0;
+        for (JobMetrics metrics : jobMetrics) {
+            if (metrics.getStatus() == JobStatus.FINISHED && metrics.getSpectraOut() > 0) {
+                result += metrics.getSpectraOut();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized double getSpectraPerSecond() {
+        long elapsedTime = getElapsedTime();
+        if (elapsedTime <= 0) {
+            return 0;
+        }
+        return 1000.0 * getSpectraIn() / elapsedTime;
+    }
+
+    @Override
+    public synchronized long getCpuTime() {
+        long result = 0;
+        for (JobMetrics metrics : jobMetrics) {
+            if (metrics.getCpuTime() > 0) {
+                result += metrics.getCpuTime();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized long getPeakRss() {
+        long result = -1;
+        for (JobMetrics metrics : jobMetrics) {
+            result = Math.max(result, metrics.getPeakRss());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized long getBytesRead() {
+        long result = 0;
+        for (JobMetrics metrics : jobMetrics) {
+            if (metrics.getBytesRead() > 0) {
+                result += metrics.getBytesRead();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized long getBytesWritten() {
+        long result = 0;
+        for (JobMetrics metrics : jobMetrics) {
+            if (metrics.getBytesWritten() > 0) {
+                result += metrics.getBytesWritten();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized long getAverageQueueingDelay() {
+        long total = 0;
+        int n = 0;
+        for (JobMetrics metrics : jobMetrics) {
+            if (metrics.getQueueingDelay() >= 0) {
+                total += metrics.getQueueingDelay();
+                n++;
+            }
+        }
+        return n == 0 ? 0 : total / n;
+    }
+
+    @Override
+    public synchronized String getJson() {
+        String lineBreak = System.getProperty("line.separator");
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+        StringBuilder json = new StringBuilder();
+        json.append("{").append(lineBreak);
+        json.append("  \"start\": ").append(quote(dateFormat.format(new Date(startTime)))).append(",").append(lineBreak);
+        json.append("  \"threads\": ").append(nThreads).append(",").append(lineBreak);
+        json.append("  \"elapsedTimeMs\": ").append(getElapsedTime()).append(",").append(lineBreak);
+        json.append("  \"finishedJobs\": ").append(getFinishedJobs()).append(",").append(lineBreak);
+        json.append("  \"failedJobs\": ").append(getFailedJobs()).append(",").append(lineBreak);
+        json.append("  \"spectraIn\": ").append(getSpectraIn()).append(",").append(lineBreak);
+        json.append("  \"spectraOut\": ").append(getSpectraOut()).append(",").append(lineBreak);
+        json.append("  \"spectraPerSecond\": ").append(format(getSpectraPerSecond())).append(",").append(lineBreak);
+        json.append("  \"cpuTimeMs\": ").append(getCpuTime()).append(",").append(lineBreak);
+        json.append("  \"peakRssBytes\": ").append(getPeakRss()).append(",").append(lineBreak);
+        json.append("  \"bytesRead\": ").append(getBytesRead()).append(",").append(lineBreak);
+        json.append("  \"bytesWritten\": ").append(getBytesWritten()).append(",").append(lineBreak);
+        json.append("  \"averageQueueingDelayMs\": ").append(getAverageQueueingDelay()).append(",").append(lineBreak);
+        json.append("  \"jobs\": [");
+        for (int i = 0; i < jobMetrics.size(); i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append(lineBreak).append("    ").append(jobMetrics.get(i).toJson());
+        }
+        json.append(lineBreak).append("  ]").append(lineBreak);
+        json.append("}").append(lineBreak);
+        return json.toString();
+    }
+
+    /**
+     * Writes the metrics as JSON to the given file.
+     *
+     * @param jsonFile the file
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public void writeJson(File jsonFile) throws IOException {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(jsonFile));
+        try {
+            bw.write(getJson());
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Returns the given text as a JSON string.
+     *
+     * @param text the text
+     *
+     * @return the text as a JSON string
+     */
+    public static String quote(String text) {
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /**
+     * Returns the given number in JSON format.
+     *
+     * @param number the number
+     *
+     * @return the number in JSON format
+     */
+    static String format(double number) {
+        if (Double.isNaN(number) || Double.isInfinite(number)) {
+            return "null";
+        }
+        return String.format(Locale.US, "%.3f", number);
+    }
+}
@@ -0,0 +1,104 @@
+package com.compomics.denovogui.execution;
+
+/**
+ * Management interface of the run metrics, exposed through JMX while
+ * sequencing.
+ *
+ * @author Harald Barsnes
+ */
+public interface RunMetricsMBean {
+
+    /**
+     * Returns the time in milliseconds since the start of the run.
+     *
+     * @return the time since the start of the run
+     */
+    public long getElapsedTime();
+
+    /**
+     * Returns the number of jobs currently running.
+     *
+     * @return the number of jobs currently running
+     */
+    public int getRunningJobs();
+
+    /**
+     * Returns the number of jobs finished successfully.
+     *
+     * @return the number of jobs finished successfully
+     */
+    public int getFinishedJobs();
+
+    /**
+     * Returns the number of jobs which failed or were canceled.
+     *
+     * @return the number of jobs which failed or were canceled
+     */
+    public int getFailedJobs();
+
+    /**
+     * Returns the number of spectra given to the jobs finished successfully.
+     *
+     * @return the number of spectra given to the finished jobs
+     */
+    public long getSpectraIn();
+
+    /**
+     * Returns the number of spectra with results of the jobs finished
+     * successfully.
+     *
+     * @return the number of spectra with results
+     */
+    public long getSpectraOut();
+
+    /**
+     * Returns the number of spectra processed per second since the start of
+     * the run.
+     *
+     * @return the number of spectra processed per second
+     */
+    public double getSpectraPerSecond();
+
+    /**
+     * Returns the CPU time in milliseconds used by the processes of all jobs.
+     *
+     * @return the CPU time used by the processes of all jobs
+     */
+    public long getCpuTime();
+
+    /**
+     * Returns the largest peak resident set size of the processes in bytes.
+     *
+     * @return the largest peak resident set size
+     */
+    public long getPeakRss();
+
+    /**
+     * Returns the number of bytes read by the processes of all jobs.
+     *
+     * @return the number of bytes read
+     */
+    public long getBytesRead();
+
+    /**
+     * Returns the number of bytes written by the processes of all jobs.
+     *
+     * @return the number of bytes written
+     */
+    public long getBytesWritten();
+
+    /**
+     * Returns the average time in milliseconds spent by the jobs waiting for
+     * a thread.
+     *
+     * @return the average queueing delay
+     */
+    public long getAverageQueueingDelay();
+
+    /**
+     * Returns the metrics of the run and of all jobs as a JSON document.
+     *
+     * @return the metrics as a JSON document
+     */
+    public String getJson();
+}
@@ -0,0 +1,633 @@
+package com.compomics.denovogui.execution;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Plan of a sequencing run estimated from the sequencing of a sample of the
+ * spectra. The duration of the jobs of every algorithm is modeled as a fixed
+ * start time plus a time per spectrum, fitted on the jobs of the sample. The
+ * wall time, CPU time, memory and disk needed by the complete run are then
+ * extrapolated for a given number of threads. The plan is saved in the output
+ * folder so that the following run can use the sample to estimate the
+ * duration of its first jobs.
+ *
+ * @author Harald Barsnes
+ */
+public class RunPlan {
+
+    /**
+     * The name of the plan file in the output folder.
+     */
+    public static final String PLAN_FILE = "DeNovoGUI_plan.properties";
+    /**
+     * The names of the algorithms as given by the jobs, in the order of the
+     * run.
+     */
+    public static final String[] ALGORITHMS = {"Novor", "DirecTag", "PepNovo+", "pNovo+"};
+    /**
+     * The algorithm using all threads in a single job.
+     */
+    private static final String MULTI_THREADED_ALGORITHM = "DirecTag";
+    /**
+     * The number of spectra per shard below which the spectrum files are
+     * better sequenced in batches.
+     */
+    private static final int MIN_SHARD_SPECTRA = 100;
+    /**
+     * The number of spectra of the run.
+     */
+    private final long nSpectra;
+    /**
+     * The number of spectra of the sample.
+     */
+    private final long nSampleSpectra;
+    /**
+     * The number of spectrum files.
+     */
+    private final int nFiles;
+    /**
+     * The number of spectra of the smallest spectrum file.
+     */
+    private final long minFileSpectra;
+    /**
+     * The size in bytes of the spectra in the mgf format.
+     */
+    private final long mgfBytes;
+    /**
+     * The number of temporary copies of the spectra written during the run:
+     * the shards, the preprocessed spectra and the selected spectra.
+     */
+    private final int nTemporaryCopies;
+    /**
+     * The number of threads of the sample run.
+     */
+    private final int sampleThreads;
+    /**
+     * The estimates of every algorithm run, in the order of the run.
+     */
+    private final LinkedHashMap<String, AlgorithmEstimate> estimates;
+
+    /**
+     * Constructor.
+     *
+     * @param nSpectra the number of spectra of the run
+     * @param nSampleSpectra the number of spectra of the sample
+     * @param nFiles the number of spectrum files
+     * @param minFileSpectra the number of spectra of the smallest spectrum
+     * file
+     * @param mgfBytes the size in bytes of the spectra in the mgf format
+     * @param nTemporaryCopies the number of temporary copies of the spectra
+     * written during the run
+     * @param sampleThreads the number of threads of the sample run
+     * @param estimates the estimates of every algorithm run
+     */
+    private RunPlan(long nSpectra, long nSampleSpectra, int nFiles, long minFileSpectra, long mgfBytes, int nTemporaryCopies, int sampleThreads,
+            LinkedHashMap<String, AlgorithmEstimate> estimates) {
+        this.nSpectra = nSpectra;
+        this.nSampleSpectra = nSampleSpectra;
+        this.nFiles = nFiles;
+        this.minFileSpectra = minFileSpectra;
+        this.mgfBytes = mgfBytes;
+        this.nTemporaryCopies = nTemporaryCopies;
+        this.sampleThreads = sampleThreads;
+        this.estimates = estimates;
+    }
+
+    /**
+     * Creates the plan of a run from the metrics of the sequencing of a
+     * sample of its spectra.
+     *
+     * @param sampleMetrics the metrics of the sample run
+     * @param sampleThreads the number of threads of the sample run
+     * @param resultBytes the size in bytes of the results of the sample,
+     * indexed by algorithm name
+     * @param nSampleSpectra the number of spectra of the sample
+     * @param nSpectra the number of spectra of the run
+     * @param nFiles the number of spectrum files
+     * @param minFileSpectra the number of spectra of the smallest spectrum
+     * file
+     * @param mgfBytes the size in bytes of the spectra in the mgf format
+     * @param nTemporaryCopies the number of temporary copies of the spectra
+     * written during the run
+     *
+     * @return the plan of the run
+     */
+    public static RunPlan create(RunMetrics sampleMetrics, int sampleThreads, HashMap<String, Long> resultBytes, long nSampleSpectra, long nSpectra, int nFiles,
+            long minFileSpectra, long mgfBytes, int nTemporaryCopies) {
+
+        // the completed jobs of every algorithm, speculative copies excluded
+        HashMap<String, ArrayList<JobMetrics>> algorithmJobs = new HashMap<String, ArrayList<JobMetrics>>();
+        for (JobMetrics jobMetrics : sampleMetrics.getJobMetrics()) {
+            if (jobMetrics.getStatus() == JobStatus.FINISHED && !jobMetrics.isSpeculative() && jobMetrics.getWallTime() > 0) {
+                ArrayList<JobMetrics> jobs = algorithmJobs.get(jobMetrics.getAlgorithm());
+                if (jobs == null) {
+                    jobs = new ArrayList<JobMetrics>();
+                    algorithmJobs.put(jobMetrics.getAlgorithm(), jobs);
+                }
+                jobs.add(jobMetrics);
+            }
+        }
+
+        LinkedHashMap<String, AlgorithmEstimate> estimates = new LinkedHashMap<String, AlgorithmEstimate>();
+        for (String algorithm : ALGORITHMS) {
+            ArrayList<JobMetrics> jobs = algorithmJobs.get(algorithm);
+            if (jobs != null) {
+                Long algorithmResultBytes = resultBytes.get(algorithm);
+                estimates.put(algorithm, AlgorithmEstimate.fit(jobs, nSampleSpectra, algorithmResultBytes == null ? 0 : algorithmResultBytes));
+            }
+        }
+
+        return new RunPlan(nSpectra, nSampleSpectra, nFiles, minFileSpectra, mgfBytes, nTemporaryCopies, sampleThreads, estimates);
+    }
+
+    /**
+     * Returns the names of the algorithms of the plan, in the order of the
+     * run.
+     *
+     * @return the names of the algorithms of the plan
+     */
+    public ArrayList<String> getAlgorithms() {
+        return new ArrayList<String>(estimates.keySet());
+    }
+
+    /**
+     * Returns the number of spectra sequenced by the given algorithm in the
+     * sample, 0 if the algorithm was not run.
+     *
+     * @param algorithm the name of the algorithm
+     *
+     * @return the number of spectra sequenced in the sample
+     */
+    public long getSampleSpectra(String algorithm) {
+        AlgorithmEstimate estimate = estimates.get(algorithm);
+        return estimate == null ? 0 : estimate.spectra;
+    }
+
+    /**
+     * Returns the wall time in milliseconds of the jobs of the given
+     * algorithm in the sample, 0 if the algorithm was not run.
+     *
+     * @param algorithm the name of the algorithm
+     *
+     * @return the wall time of the jobs of the sample
+     */
+    public long getSampleTime(String algorithm) {
+        AlgorithmEstimate estimate = estimates.get(algorithm);
+        return estimate == null ? 0 : estimate.wallTime;
+    }
+
+    /**
+     * Returns the number of spectra processed per second and per core by the
+     * given algorithm, the start time of the jobs excluded.
+     *
+     * @param algorithm the name of the algorithm
+     *
+     * @return the number of spectra processed per second and per core, -1 if
+     * the algorithm was not run
+     */
+    public double getSpectraPerSecondPerCore(String algorithm) {
+        AlgorithmEstimate estimate = estimates.get(algorithm);
+        if (estimate == null || estimate.spectrumTime <= 0) {
+            return -1;
+        }
+        return 1000 / (estimate.spectrumTime * getJobThreads(algorithm, sampleThreads));
+    }
+
+    /**
+     * Returns the estimated wall time of the run in milliseconds.
+     *
+     * @param nThreads the number of threads of the run
+     *
+     * @return the estimated wall time
+     */
+    public long getWallTime(int nThreads) {
+        double wallTime = 0;
+        // every spectrum file is split in one shard per thread
+        long nJobs = nThreads > 1 ? (long) nFiles * nThreads : nFiles;
+        for (String algorithm : estimates.keySet()) {
+            AlgorithmEstimate estimate = estimates.get(algorithm);
+            double algorithmSpectra = getRunSpectra(estimate);
+            double speedUp = ((double) getJobThreads(algorithm, nThreads)) / getJobThreads(algorithm, sampleThreads);
+            int parallelJobs = algorithm.equals(MULTI_THREADED_ALGORITHM) ? 1 : nThreads;
+            wallTime += (nJobs * estimate.jobStartTime + algorithmSpectra * estimate.spectrumTime / speedUp) / parallelJobs;
+        }
+        return (long) wallTime;
+    }
+
+    /**
+     * Returns the estimated CPU time of the run in hours.
+     *
+     * @return the estimated CPU time in hours
+     */
+    public double getCpuHours() {
+        double cpuTime = 0;
+        for (String algorithm : estimates.keySet()) {
+            AlgorithmEstimate estimate = estimates.get(algorithm);
+            if (estimate.spectra > 0) {
+                // without CPU time, the cores are considered busy during the jobs
+                double sampleCpuTime = estimate.cpuTime >= 0 ? estimate.cpuTime : estimate.wallTime * getJobThreads(algorithm, sampleThreads);
+                cpuTime += sampleCpuTime * getRunSpectra(estimate) / estimate.spectra;
+            }
+        }
+        return cpuTime / 3600000;
+    }
+
+    /**
+     * Returns the estimated peak memory of the processes of the run in bytes.
+     *
+     * @param nThreads the number of threads of the run
+     *
+     * @return the estimated peak memory, -1 if not available
+     */
+    public long getPeakMemory(int nThreads) {
+        long result = -1;
+        for (String algorithm : estimates.keySet()) {
+            AlgorithmEstimate estimate = estimates.get(algorithm);
+            if (estimate.peakRss > 0) {
+                int parallelJobs = algorithm.equals(MULTI_THREADED_ALGORITHM) ? 1 : nThreads;
+                result = Math.max(result, estimate.peakRss * parallelJobs);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the estimated size of the temporary files of the run in bytes.
+     *
+     * @return the estimated size of the temporary files
+     */
+    public long getTemporaryDisk() {
+        return mgfBytes * nTemporaryCopies;
+    }
+
+    /**
+     * Returns the estimated size of the results of the run in bytes.
+     *
+     * @return the estimated size of the results
+     */
+    public long getResultDisk() {
+        double result = 0;
+        for (AlgorithmEstimate estimate : estimates.values()) {
+            result += ((double) estimate.resultBytes) * nSpectra / nSampleSpectra;
+        }
+        return (long) result;
+    }
+
+    /**
+     * Returns the recommended number of threads: the given maximum, limited
+     * by the memory available for the jobs running in parallel.
+     *
+     * @param maxThreads the maximal number of threads
+     * @param availableMemory the memory available in bytes, not used if not
+     * positive
+     *
+     * @return the recommended number of threads
+     */
+    public int getRecommendedThreads(int maxThreads, long availableMemory) {
+        int result = Math.max(1, maxThreads);
+        if (availableMemory > 0) {
+            for (String algorithm : estimates.keySet()) {
+                AlgorithmEstimate estimate = estimates.get(algorithm);
+                if (estimate.peakRss > 0 && !algorithm.equals(MULTI_THREADED_ALGORITHM)) {
+                    result = (int) Math.max(1, Math.min(result, availableMemory / estimate.peakRss));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the recommended batch size: the small spectrum files are
+     * sequenced in batches so that the shards keep enough spectra to make up
+     * for the start time of the jobs.
+     *
+     * @param nThreads the number of threads of the run
+     *
+     * @return the recommended batch size, 0 to sequence every file separately
+     */
+    public int getRecommendedBatchSize(int nThreads) {
+        int minSpectra = nThreads * MIN_SHARD_SPECTRA;
+        return nFiles > 1 && minFileSpectra < minSpectra ? minSpectra : 0;
+    }
+
+    /**
+     * Returns the plan as text.
+     *
+     * @param nThreads the number of threads of the run
+     * @param maxThreads the number of threads available
+     * @param availableMemory the memory available in bytes, not used if not
+     * positive
+     *
+     * @return the plan as text
+     */
+    public String getReport(int nThreads, int maxThreads, long availableMemory) {
+
+        String lineBreak = System.getProperty("line.separator");
+        StringBuilder report = new StringBuilder();
+        report.append("Run plan estimated on ").append(nSampleSpectra).append(" of ").append(nSpectra).append(" spectra (")
+                .append(String.format(Locale.US, "%.2f", 100.0 * nSampleSpectra / nSpectra)).append("%):").append(lineBreak);
+        for (String algorithm : estimates.keySet()) {
+            AlgorithmEstimate estimate = estimates.get(algorithm);
+            report.append("- ").append(algorithm).append(": ")
+                    .append(String.format(Locale.US, "%.2f", getSpectraPerSecondPerCore(algorithm))).append(" spectra/s per core, ")
+                    .append(formatDuration((long) estimate.jobStartTime)).append(" to start a job, ")
+                    .append(String.format(Locale.US, "%.0f", 100.0 * estimate.spectra / nSampleSpectra)).append("% of the spectra.").append(lineBreak);
+        }
+
+        report.append("Estimated wall time:");
+        for (int threads = 1; threads < maxThreads; threads *= 2) {
+            report.append(" ").append(threads).append(threads == 1 ? " thread " : " threads ").append(formatDuration(getWallTime(threads))).append(",");
+        }
+        report.append(" ").append(maxThreads).append(maxThreads == 1 ? " thread " : " threads ").append(formatDuration(getWallTime(maxThreads))).append(".").append(lineBreak);
+
+        report.append("Estimated for ").append(nThreads).append(nThreads == 1 ? " thread: " : " threads: ")
+                .append(formatDuration(getWallTime(nThreads))).append(" wall time, ")
+                .append(String.format(Locale.US, "%.1f", getCpuHours())).append(" CPU hours, ");
+        long peakMemory = getPeakMemory(nThreads);
+        report.append(peakMemory > 0 ? formatBytes(peakMemory) : "unknown").append(" peak memory, ")
+                .append(formatBytes(getTemporaryDisk())).append(" temporary files, ")
+                .append(formatBytes(getResultDisk())).append(" results.").append(lineBreak);
+
+        int recommendedThreads = getRecommendedThreads(maxThreads, availableMemory);
+        report.append("Recommended: ").append(recommendedThreads).append(recommendedThreads == 1 ? " thread" : " threads");
+        if (recommendedThreads > 1) {
+            report.append(", ").append(recommendedThreads).append(" shards of about ").append(nSpectra / nFiles / recommendedThreads).append(" spectra per file");
+        }
+        int batchSize = getRecommendedBatchSize(recommendedThreads);
+        if (batchSize > 0) {
+            report.append(", files of less than ").append(batchSize).append(" spectra sequenced in batches (batch size ").append(batchSize).append(")");
+        }
+        report.append(".");
+        return report.toString();
+    }
+
+    /**
+     * Returns the number of spectra of the run sequenced by an algorithm.
+     *
+     * @param estimate the estimate of the algorithm
+     *
+     * @return the number of spectra of the run sequenced by the algorithm
+     */
+    private double getRunSpectra(AlgorithmEstimate estimate) {
+        return ((double) estimate.spectra) * nSpectra / nSampleSpectra;
+    }
+
+    /**
+     * Returns the number of threads used by a job of the given algorithm.
+     *
+     * @param algorithm the name of the algorithm
+     * @param nThreads the number of threads of the run
+     *
+     * @return the number of threads used by a job
+     */
+    private static int getJobThreads(String algorithm, int nThreads) {
+        return algorithm.equals(MULTI_THREADED_ALGORITHM) ? Math.max(1, nThreads) : 1;
+    }
+
+    /**
+     * Formats a duration.
+     *
+     * @param duration the duration in milliseconds
+     *
+     * @return the formatted duration
+     */
+    private static String formatDuration(long duration) {
+        long seconds = duration / 1000;
+        if (seconds < 60) {
+            return String.format(Locale.US, "%.1f s", duration / 1000.0);
+        } else if (seconds < 3600) {
+            return (seconds / 60) + " min " + (seconds % 60) + " s";
+        }
+        return (seconds / 3600) + " h " + (seconds % 3600 / 60) + " min";
+    }
+
+    /**
+     * Formats a size in bytes.
+     *
+     * @param bytes the size in bytes
+     *
+     * @return the formatted size
+     */
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024L * 1024) {
+            return String.format(Locale.US, "%.1f kB", bytes / 1024.0);
+        } else if (bytes < 1024L * 1024 * 1024) {
+            return String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024));
+        }
+        return String.format(Locale.US, "%.1f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    /**
+     * Writes the plan to the given file.
+     *
+     * @param planFile the plan file
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public void write(File planFile) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("spectra", String.valueOf(nSpectra));
+        properties.setProperty("sample_spectra", String.valueOf(nSampleSpectra));
+        properties.setProperty("files", String.valueOf(nFiles));
+        properties.setProperty("min_file_spectra", String.valueOf(minFileSpectra));
+        properties.setProperty("mgf_bytes", String.valueOf(mgfBytes));
+        properties.setProperty("temporary_copies", String.valueOf(nTemporaryCopies));
+        properties.setProperty("sample_threads", String.valueOf(sampleThreads));
+        for (int i = 0; i < ALGORITHMS.length; i++) {
+            AlgorithmEstimate estimate = estimates.get(ALGORITHMS[i]);
+            if (estimate != null) {
+                String prefix = "algorithm." + i + ".";
+                properties.setProperty(prefix + "spectra", String.valueOf(estimate.spectra));
+                properties.setProperty(prefix + "wall_time", String.valueOf(estimate.wallTime));
+                properties.setProperty(prefix + "job_start_time", String.valueOf(estimate.jobStartTime));
+                properties.setProperty(prefix + "spectrum_time", String.valueOf(estimate.spectrumTime));
+                properties.setProperty(prefix + "cpu_time", String.valueOf(estimate.cpuTime));
+                properties.setProperty(prefix + "peak_rss", String.valueOf(estimate.peakRss));
+                properties.setProperty(prefix + "result_bytes", String.valueOf(estimate.resultBytes));
+            }
+        }
+        OutputStream out = new FileOutputStream(planFile);
+        try {
+            properties.store(out, "DeNovoGUI run plan");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Loads a plan from the given file.
+     *
+     * @param planFile the plan file
+     *
+     * @return the plan, null if the file does not exist or cannot be read
+     */
+    public static RunPlan load(File planFile) {
+
+        if (!planFile.exists()) {
+            return null;
+        }
+
+        try {
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream(planFile);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+
+            LinkedHashMap<String, AlgorithmEstimate> estimates = new LinkedHashMap<String, AlgorithmEstimate>();
+            for (int i = 0; i < ALGORITHMS.length; i++) {
+                String prefix = "algorithm." + i + ".";
+                if (properties.getProperty(prefix + "spectra") != null) {
+                    estimates.put(ALGORITHMS[i], new AlgorithmEstimate(
+                            Long.parseLong(properties.getProperty(prefix + "spectra")),
+                            Long.parseLong(properties.getProperty(prefix + "wall_time")),
+                            Double.parseDouble(properties.getProperty(prefix + "job_start_time")),
+                            Double.parseDouble(properties.getProperty(prefix + "spectrum_time")),
+                            Long.parseLong(properties.getProperty(prefix + "cpu_time")),
+                            Long.parseLong(properties.getProperty(prefix + "peak_rss")),
+                            Long.parseLong(properties.getProperty(prefix + "result_bytes"))));
+                }
+            }
+
+            return new RunPlan(Long.parseLong(properties.getProperty("spectra")),
+                    Long.parseLong(properties.getProperty("sample_spectra")),
+                    Integer.parseInt(properties.getProperty("files")),
+                    Long.parseLong(properties.getProperty("min_file_spectra")),
+                    Long.parseLong(properties.getProperty("mgf_bytes")),
+                    Integer.parseInt(properties.getProperty("temporary_copies")),
+                    Integer.parseInt(properties.getProperty("sample_threads")),
+                    estimates);
+
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // incomplete or corrupted plan
+            return null;
+        }
+    }
+
+    /**
+     * The estimates of an algorithm.
+     */
+    private static class AlgorithmEstimate {
+
+        /**
+         * The number of spectra sequenced in the sample.
+         */
+        private final long spectra;
+        /**
+         * The wall time in milliseconds of the jobs of the sample.
+         */
+        private final long wallTime;
+        /**
+         * The time in milliseconds needed to start a job.
+         */
+        private final double jobStartTime;
+        /**
+         * The time in milliseconds needed per spectrum by a job.
+         */
+        private final double spectrumTime;
+        /**
+         * The CPU time in milliseconds of the jobs of the sample, -1 if not
+         * available.
+         */
+        private final long cpuTime;
+        /**
+         * The peak resident set size of a job in bytes, -1 if not available.
+         */
+        private final long peakRss;
+        /**
+         * The size in bytes of the results of the sample.
+         */
+        private final long resultBytes;
+
+        /**
+         * Constructor.
+         *
+         * @param spectra the number of spectra sequenced in the sample
+         * @param wallTime the wall time of the jobs of the sample
+         * @param jobStartTime the time needed to start a job
+         * @param spectrumTime the time needed per spectrum by a job
+         * @param cpuTime the CPU time of the jobs of the sample
+         * @param peakRss the peak resident set size of a job
+         * @param resultBytes the size of the results of the sample
+         */
+        private AlgorithmEstimate(long spectra, long wallTime, double jobStartTime, double spectrumTime, long cpuTime, long peakRss, long resultBytes) {
+            this.spectra = spectra;
+            this.wallTime = wallTime;
+            this.jobStartTime = jobStartTime;
+            this.spectrumTime = spectrumTime;
+            this.cpuTime = cpuTime;
+            this.peakRss = peakRss;
+            this.resultBytes = resultBytes;
+        }
+
+        /**
+         * Estimates the start time of the jobs and the time per spectrum by
+         * linear regression of the wall time of the jobs on their number of
+         * spectra. When the jobs are too similar for a regression, the start
+         * time is neglected.
+         *
+         * @param jobs the completed jobs of the algorithm
+         * @param nSampleSpectra the number of spectra of the sample, used
+         * when the number of spectra of the jobs is not known
+         * @param resultBytes the size of the results of the sample
+         *
+         * @return the estimates of the algorithm
+         */
+        private static AlgorithmEstimate fit(ArrayList<JobMetrics> jobs, long nSampleSpectra, long resultBytes) {
+
+            double[] spectra = new double[jobs.size()];
+            double[] wallTimes = new double[jobs.size()];
+            long totalSpectra = 0;
+            long totalWallTime = 0;
+            long cpuTime = 0;
+            long peakRss = -1;
+            for (int i = 0; i < jobs.size(); i++) {
+                JobMetrics job = jobs.get(i);
+                // without number of spectra, the sample is considered evenly split
+                spectra[i] = job.getSpectraIn() >= 0 ? job.getSpectraIn() : ((double) nSampleSpectra) / jobs.size();
+                wallTimes[i] = job.getWallTime();
+                totalSpectra += Math.round(spectra[i]);
+                totalWallTime += job.getWallTime();
+                cpuTime = cpuTime >= 0 && job.getCpuTime() >= 0 ? cpuTime + job.getCpuTime() : -1;
+                peakRss = Math.max(peakRss, job.getPeakRss());
+            }
+
+            double meanSpectra = ((double) totalSpectra) / jobs.size();
+            double meanWallTime = ((double) totalWallTime) / jobs.size();
+            double covariance = 0;
+            double variance = 0;
+            double minWallTime = Double.MAX_VALUE;
+            for (int i = 0; i < jobs.size(); i++) {
+                covariance += (spectra[i] - meanSpectra) * (wallTimes[i] - meanWallTime);
+                variance += (spectra[i] - meanSpectra) * (spectra[i] - meanSpectra);
+                minWallTime = Math.min(minWallTime, wallTimes[i]);
+            }
+            double spectrumTime = totalSpectra > 0 ? ((double) totalWallTime) / totalSpectra : 0;
+            double jobStartTime = 0;
+            if (variance > 0 && covariance > 0) {
+                double slope = covariance / variance;
+                double intercept = meanWallTime - slope * meanSpectra;
+                if (intercept >= 0 && intercept <= minWallTime) {
+                    spectrumTime = slope;
+                    jobStartTime = intercept;
+                }
+            }
+
+            return new AlgorithmEstimate(totalSpectra, totalWallTime, jobStartTime, spectrumTime, cpuTime, peakRss, resultBytes);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.compomics.denovogui.execution.jobs;
 
 import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.io.FileProcessor;
 import com.compomics.software.cli.CommandLineUtils;
 import com.compomics.util.Util;
 import com.compomics.util.exceptions.ExceptionHandler;
@@ -58,6 +59,12 @@ public class DirecTagJob extends Job {
      * The DirecTag modification index.
      */
     private int modIndex = 0;
+    /**
+     * If true, the charges of the spectra are used even if DirecTag is set
+     * to try every charge, for example when the charges were assigned before
+     * sequencing.
+     */
+    private boolean useSpectrumCharge;
 
     /**
      * Constructor for the DirecTag algorithm job.
@@ -72,7 +79,26 @@ public class DirecTagJob extends Job {
      * @param exceptionHandler the exception handler
      */
     public DirecTagJob(File exeFolder, String exeTitle, File spectrumFile, int nThreads, File outputFolder, SearchParameters searchParameters, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+        this(exeFolder, exeTitle, spectrumFile, nThreads, outputFolder, false, searchParameters, waitingHandler, exceptionHandler);
+    }
+
+    /**
+     * Constructor for the DirecTag algorithm job.
+     *
+     * @param exeFolder the path to the algorithm executable
+     * @param exeTitle title of the algorithm executable
+     * @param spectrumFile the spectrum file
+     * @param nThreads the number of threads
+     * @param outputFolder the output folder
+     * @param useSpectrumCharge if true, the charges of the spectra are used
+     * even if DirecTag is set to try every charge
+     * @param searchParameters the search parameters
+     * @param waitingHandler the waiting handler
+     * @param exceptionHandler the exception handler
+     */
+    public DirecTagJob(File exeFolder, String exeTitle, File spectrumFile, int nThreads, File outputFolder, boolean useSpectrumCharge, SearchParameters searchParameters, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
         this.exeFolder = exeFolder;
+        this.useSpectrumCharge = useSpectrumCharge;
         this.exeTitle = exeTitle;
         this.spectrumFile = spectrumFile;
         this.nThreads = nThreads;
@@ -199,7 +225,7 @@ public class DirecTagJob extends Job {
 
             // use charge state from spectrum
             procCommands.add("-UseChargeStateFromMS");
-            procCommands.add(String.valueOf(direcTagParameters.isUseChargeStateFromMS()));
+            procCommands.add(String.valueOf(direcTagParameters.isUseChargeStateFromMS() || useSpectrumCharge));
 
             // duplicate spectra per charge
             procCommands.add("-DuplicateSpectra");
@@ -272,10 +298,8 @@ public class DirecTagJob extends Job {
      */
     @Override
     public void cancel() {
-        if (proc != null) {
-            proc.destroy();
-            log.info(">> De novo sequencing has been canceled.");
-        }
+        super.cancel();
+        log.info(">> De novo sequencing has been canceled.");
     }
 
     @Override
@@ -283,6 +307,11 @@ public class DirecTagJob extends Job {
         super.run();
     }
 
+    @Override
+    protected int countResultSpectra() {
+        return countLines(FileProcessor.getTagsFile(outputFolder, spectrumFile), "S");
+    }
+
     /**
      * Get the given modification as a string in the DirecTag format.
      *
@@ -1,6 +1,8 @@
 package com.compomics.denovogui.execution.jobs;
 
+import com.compomics.denovogui.execution.InProcessRunner;
 import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.execution.JobStatus;
 import com.compomics.software.cli.CommandLineUtils;
 import com.compomics.software.CompomicsWrapper;
 import com.compomics.util.exceptions.ExceptionHandler;
@@ -13,9 +15,11 @@ import com.compomics.util.preferences.IdentificationParameters;
 import com.compomics.util.preferences.UtilitiesUserPreferences;
 import com.compomics.util.waiting.WaitingHandler;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
 import java.util.ArrayList;
@@ -71,6 +75,24 @@ public class NovorJob extends Job {
      * utilities PTM name.
      */
     private HashMap<String, String> novorPtmMap;
+    /**
+     * The maximal heap size in bytes of the Novor JVM, the memory options of
+     * DeNovoGUI are used if not positive.
+     */
+    private long maxHeapSize;
+    /**
+     * If true, Novor is run in the DeNovoGUI process instead of a separate
+     * Java process.
+     */
+    private boolean inProcess = false;
+    /**
+     * The arguments given to Novor.
+     */
+    private ArrayList<String> novorArguments = new ArrayList<String>();
+    /**
+     * The thread running Novor in the DeNovoGUI process, null if not running.
+     */
+    private Thread runnerThread = null;
 
     /**
      * Constructor for the NovorJob.
@@ -80,10 +102,13 @@ public class NovorJob extends Job {
      * @param outputFolder the output folder
      * @param searchParameters the search parameters
      * @param isCommandLine true if run from the command line, false if GUI
+     * @param maxHeapSize the maximal heap size in bytes of the Novor JVM, the
+     * memory options of DeNovoGUI are used if not positive
      * @param waitingHandler the waiting handler
      * @param exceptionHandler the exception handler
      */
-    public NovorJob(File novorFolder, File mgfFile, File outputFolder, SearchParameters searchParameters, boolean isCommandLine, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+    public NovorJob(File novorFolder, File mgfFile, File outputFolder, SearchParameters searchParameters, boolean isCommandLine, long maxHeapSize, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+        this.maxHeapSize = maxHeapSize;
         this.novorFolder = novorFolder;
         this.spectrumFile = mgfFile;
         this.outputFolder = outputFolder;
@@ -110,18 +135,22 @@ public class NovorJob extends Job {
             procCommands.add(javaHomeAndOptions.get(0)); // set java home
 
             // set java options
+            List<String> javaOptions;
             if (!isCommandLine) {
-                for (int i = 1; i < javaHomeAndOptions.size(); i++) {
-                    procCommands.add(javaHomeAndOptions.get(i));
-                }
+                javaOptions = javaHomeAndOptions.subList(1, javaHomeAndOptions.size());
             } else {
                 // add the jvm arguments for denovogui to novor
                 RuntimeMXBean bean = ManagementFactory.getRuntimeMXBean();
-                List<String> aList = bean.getInputArguments();
-                for (String element : aList) {
+                javaOptions = bean.getInputArguments();
+            }
+            for (String element : javaOptions) {
+                if (maxHeapSize <= 0 || !element.startsWith("-Xmx") && !element.startsWith("-Xms")) {
                     procCommands.add(element);
                 }
             }
+            if (maxHeapSize > 0) {
+                procCommands.add("-Xmx" + (maxHeapSize / (1024 * 1024)) + "M");
+            }
 
             // add novor.jar
             procCommands.add("-jar");
@@ -131,24 +160,29 @@ public class NovorJob extends Job {
             createParameterFile();
 
             // add the parameters
-            procCommands.add("-p");
-            procCommands.add(novorFolder.getAbsolutePath() + File.separator + parameterFileName);
+            novorArguments.add("-p");
+            novorArguments.add(novorFolder.getAbsolutePath() + File.separator + parameterFileName);
 
             // add the custom modifications
-            procCommands.add("-m");
-            procCommands.add(novorFolder.getAbsolutePath() + File.separator + modsFileName);
+            novorArguments.add("-m");
+            novorArguments.add(novorFolder.getAbsolutePath() + File.separator + modsFileName);
 
             // add output folder
             String txtFileName = spectrumFile.getName().substring(0, spectrumFile.getName().lastIndexOf("."));
             outputFile = new File(outputFolder, txtFileName + ".novor.csv");
+            procCommands.addAll(novorArguments);
             procCommands.add("-o");
             procCommands.add(CommandLineUtils.getCommandLineArgument(outputFile));
+            novorArguments.add("-o");
+            novorArguments.add(outputFile.getAbsolutePath());
 
             // force overwrite of output file
             procCommands.add("-f");
+            novorArguments.add("-f");
 
             // add the spectrum file
             procCommands.add(CommandLineUtils.getCommandLineArgument(spectrumFile));
+            novorArguments.add(spectrumFile.getAbsolutePath());
 
             procCommands.trimToSize();
 
@@ -178,19 +212,102 @@ public class NovorJob extends Job {
     }
 
     /**
-     * Cancels the job by destroying the process.
+     * Cancels the job by destroying the process. When run in the DeNovoGUI
+     * process, the thread running Novor is interrupted.
      */
     @Override
     public void cancel() {
-        if (proc != null) {
-            proc.destroy();
-            log.info(">> De novo sequencing has been canceled.");
+        super.cancel();
+        synchronized (this) {
+            if (runnerThread != null) {
+                runnerThread.interrupt();
+            }
         }
+        log.info(">> De novo sequencing has been canceled.");
     }
 
     @Override
     public void run() {
-        super.run();
+        if (inProcess) {
+            runInProcess();
+        } else {
+            super.run();
+        }
+    }
+
+    /**
+     * Runs Novor in the DeNovoGUI process. Falls back to a separate Java
+     * process if novor.jar cannot be run in the DeNovoGUI process.
+     */
+    private void runInProcess() {
+
+        if (isCanceled()) {
+            return;
+        }
+
+        InProcessRunner runner;
+        try {
+            runner = InProcessRunner.getRunner(new File(novorFolder, EXECUTABLE_FILE_NAME));
+        } catch (IOException e) {
+            waitingHandler.appendReport("Novor cannot be run in DeNovoGUI (" + e.getMessage() + "), a separate process is used.", true, true);
+            super.run();
+            return;
+        }
+
+        synchronized (this) {
+            runnerThread = Thread.currentThread();
+        }
+        getMetrics().processStarted(null);
+        setStatus(JobStatus.RUNNING);
+
+        try {
+            int exitStatus = runner.run(novorArguments.toArray(new String[novorArguments.size()]), new ReportOutputStream());
+            getMetrics().processEnded();
+            if (isCanceled()) {
+                return;
+            }
+            if (exitStatus != 0) {
+                setError("Novor exited with status " + exitStatus + ".");
+                setStatus(JobStatus.ERROR);
+            } else {
+                setStatus(JobStatus.FINISHED);
+                getMetrics().setSpectraOut(countResultSpectra());
+            }
+        } catch (Exception e) {
+            getMetrics().processEnded();
+            if (!isCanceled()) {
+                setError(e.getMessage());
+                setStatus(JobStatus.ERROR);
+                exceptionHandler.catchException(e);
+            }
+        } finally {
+            synchronized (this) {
+                runnerThread = null;
+            }
+            // the interruption of a canceled job is not passed to the next job of the thread
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Sets whether Novor is run in the DeNovoGUI process instead of a
+     * separate Java process. The class loader of novor.jar is then reused by
+     * the following jobs and the heap of DeNovoGUI is used.
+     *
+     * @param inProcess true if Novor should be run in the DeNovoGUI process
+     */
+    public void setInProcess(boolean inProcess) {
+        this.inProcess = inProcess;
+    }
+
+    @Override
+    protected int countResultSpectra() {
+        int nLines = countLines(outputFile, "");
+        if (nLines < 0) {
+            return -1;
+        }
+        // the header lines start with #
+        return nLines - countLines(outputFile, "#");
     }
 
     @Override
@@ -368,4 +485,28 @@ public class NovorJob extends Job {
         // add new line
         bufferedModsWriter.write(System.getProperty("line.separator"));
     }
+
+    /**
+     * Stream sending the output of Novor line by line to the waiting handler.
+     */
+    private class ReportOutputStream extends OutputStream {
+
+        /**
+         * The current line.
+         */
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (b == '\n') {
+                String text = line.toString().trim();
+                line.reset();
+                if (!text.isEmpty() && !waitingHandler.isRunCanceled()) {
+                    waitingHandler.appendReport(text, false, true);
+                }
+            } else {
+                line.write(b);
+            }
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.compomics.denovogui.execution.jobs;
 
 import com.compomics.denovogui.execution.Job;
+import com.compomics.denovogui.io.FileProcessor;
 import com.compomics.util.exceptions.ExceptionHandler;
 import com.compomics.util.experiment.biology.AminoAcid;
 import com.compomics.util.experiment.biology.Enzyme;
@@ -140,10 +141,8 @@ public class PNovoJob extends Job {
      */
     @Override
     public void cancel() {
-        if (proc != null) {
-            proc.destroy();
-            log.info(">> De novo sequencing has been canceled.");
-        }
+        super.cancel();
+        log.info(">> De novo sequencing has been canceled.");
     }
 
     @Override
@@ -151,6 +150,11 @@ public class PNovoJob extends Job {
         super.run();
     }
 
+    @Override
+    protected int countResultSpectra() {
+        return countLines(FileProcessor.getPNovoResultFile(outputFolder, spectrumFile), "S");
+    }
+
     @Override
     public void writeCommand() {
         System.out.println(System.getProperty("line.separator") + System.getProperty("line.separator") + "pNovo+ command: " + command + System.getProperty("line.separator"));
@@ -39,6 +39,17 @@ public class PepNovoJob extends Job {
      * The output path.
      */
     private File outputFolder;
+    /**
+     * The folder of the models and modifications, null to use the Models
+     * folder of PepNovo+.
+     */
+    private File modelFolder;
+    /**
+     * If true, the charges of the spectra are used even if PepNovo+ is set to
+     * estimate the charges, for example when the charges were assigned
+     * before sequencing.
+     */
+    private boolean useSpectrumCharge;
     /**
      * The command executed.
      */
@@ -64,7 +75,28 @@ public class PepNovoJob extends Job {
      * @param exceptionHandler the exception handler
      */
     public PepNovoJob(File pepNovoFolder, String exeTitle, File mgfFile, File outputFolder, SearchParameters searchParameters, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
+        this(pepNovoFolder, exeTitle, mgfFile, outputFolder, null, false, searchParameters, waitingHandler, exceptionHandler);
+    }
+
+    /**
+     * Constructor for the PepNovoJob using the given model folder.
+     *
+     * @param pepNovoFolder The path to the PepNovo executable
+     * @param exeTitle Title of the PepNovo executable
+     * @param mgfFile The spectrum MGF file
+     * @param outputFolder The output folder
+     * @param modelFolder The folder of the models and modifications, null to
+     * use the Models folder of PepNovo+
+     * @param useSpectrumCharge If true, the charges of the spectra are used
+     * even if PepNovo+ is set to estimate the charges
+     * @param searchParameters The search parameters
+     * @param waitingHandler the waiting handler
+     * @param exceptionHandler the exception handler
+     */
+    public PepNovoJob(File pepNovoFolder, String exeTitle, File mgfFile, File outputFolder, File modelFolder, boolean useSpectrumCharge, SearchParameters searchParameters, WaitingHandler waitingHandler, ExceptionHandler exceptionHandler) {
         this.pepNovoFolder = pepNovoFolder;
+        this.modelFolder = modelFolder;
+        this.useSpectrumCharge = useSpectrumCharge;
         this.exeTitle = exeTitle;
         this.spectrumFile = mgfFile;
         this.outputFolder = outputFolder;
@@ -94,6 +126,10 @@ public class PepNovoJob extends Job {
             // Add Model
             procCommands.add("-model");
             procCommands.add(pepNovoParameters.getFragmentationModel());
+            if (modelFolder != null) {
+                procCommands.add("-model_dir");
+                procCommands.add(modelFolder.getAbsolutePath());
+            }
 
             // Add modifications
             ArrayList<String> modifications = searchParameters.getPtmSettings().getAllModifications();
@@ -131,7 +167,7 @@ public class PepNovoJob extends Job {
             procCommands.add(String.valueOf(tolerance));
 
             // Use spectrum charge: no by default
-            if (!pepNovoParameters.isEstimateCharge()) {
+            if (!pepNovoParameters.isEstimateCharge() || useSpectrumCharge) {
                 procCommands.add("-use_spectrum_charge");
             }
 
@@ -186,10 +222,8 @@ public class PepNovoJob extends Job {
      */
     @Override
     public void cancel() {
-        if (proc != null) {
-            proc.destroy();
-            log.info(">> De novo sequencing has been canceled.");
-        }
+        super.cancel();
+        log.info(">> De novo sequencing has been canceled.");
     }
 
     @Override
@@ -197,6 +231,11 @@ public class PepNovoJob extends Job {
         super.run();
     }
 
+    @Override
+    protected int countResultSpectra() {
+        return countLines(outputFile, ">>");
+    }
+
     @Override
     public void writeCommand() {
         System.out.println(System.getProperty("line.separator") + System.getProperty("line.separator") + "PepNovo+ command: " + command + System.getProperty("line.separator"));
@@ -2,6 +2,9 @@ package com.compomics.denovogui.gui;
 
 import com.compomics.denovogui.DeNovoSequencingHandler;
 import com.compomics.denovogui.DeNovoGUIWrapper;
+import com.compomics.denovogui.execution.ResourceMonitor;
+import com.compomics.denovogui.execution.RunMetrics;
+import com.compomics.denovogui.execution.RunPlan;
 import com.compomics.denovogui.execution.jobs.PepNovoJob;
 import com.compomics.denovogui.util.Properties;
 import com.compomics.software.cli.CommandLineUtils;
@@ -9,7 +12,10 @@ import com.compomics.software.ToolFactory;
 import com.compomics.util.experiment.biology.EnzymeFactory;
 import com.compomics.util.experiment.biology.PTMFactory;
 import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.denovogui.io.CompressedMgfFile;
 import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.SpectrumIndexCache;
+import com.compomics.denovogui.io.XmlSpectrumFile;
 import com.compomics.denovogui.preferences.DeNovoGUIPathPreferences;
 import com.compomics.denovogui.preferences.DeNovoGUIPathPreferences.DeNovoGUIPathKey;
 import com.compomics.denovogui.util.BareBonesBrowserLaunch;
@@ -76,6 +82,7 @@ import java.util.Set;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.LookAndFeel;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.UIDefaults;
 import javax.swing.UIManager;
@@ -220,6 +227,15 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
      * The sequence matching preferences.
      */
     private SequenceMatchingPreferences sequenceMatchingPreferences;
+    /**
+     * The size in bytes of the spectrum files above which planning the run
+     * on a sample of the spectra is proposed.
+     */
+    private static final long PLAN_SPECTRUM_FILES_SIZE = 1024L * 1024 * 1024;
+    /**
+     * The fraction of the spectra sequenced to plan a run.
+     */
+    private static final double PLAN_SAMPLE_FRACTION = 0.005;
 
     /**
      * Creates a new DeNovoGUI.
@@ -1408,31 +1424,126 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
             sequenceMatchingPreferences = SequenceMatchingPreferences.getDefaultSequenceMatching();
             saveModificationUsage(); // save the ptms usage
 
-            waitingDialog = new WaitingDialog(this,
-                    Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/denovogui.png")),
-                    Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/denovogui_orange.png")), false,
-                    getTips(),
-                    "De Novo Sequencing",
-                    "DeNovoGUI",
-                    new Properties().getVersion(),
-                    true);
-            waitingDialog.addWaitingActionListener(new WaitingActionListener() {
-                @Override
-                public void cancelPressed() {
-                    cancelSequencing();
+            // propose to plan the large runs on a sample of the spectra
+            long spectrumFilesSize = 0;
+            for (File spectrumFile : spectrumFiles) {
+                spectrumFilesSize += spectrumFile.length();
+            }
+            if (spectrumFilesSize > PLAN_SPECTRUM_FILES_SIZE) {
+                Object[] options = {"Start", "Plan First", "Cancel"};
+                int option = JOptionPane.showOptionDialog(this,
+                        "The spectrum files are large. Do you want to estimate the duration and\n"
+                        + "resources of the run on a sample of the spectra first?",
+                        "Plan the Run?", JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE, null, options, options[0]);
+                if (option == 1) {
+                    planSequencing();
+                    return;
+                } else if (option != 0) {
+                    return;
                 }
-            });
-            waitingDialog.setCloseDialogWhenImportCompletes(true, true);
-            waitingDialog.setLocationRelativeTo(this);
-
-            // incrementing the counter for a new DenovoGUI run
-            if (utilitiesUserPreferences.isAutoUpdate()) {
-                Util.sendGAUpdate("UA-36198780-4", "startrun-gui", "denovogui-" + getVersion());
             }
-            startSequencing(waitingDialog);
+
+            startSequencingRun();
         }
     }//GEN-LAST:event_startButtonActionPerformed
 
+    /**
+     * Plans the run on a sample of the spectra in a background thread,
+     * displays the plan and starts the run if the user wants to.
+     */
+    private void planSequencing() {
+
+        progressDialog = new ProgressDialogX(this,
+                Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/denovogui.png")),
+                Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/denovogui_orange.png")),
+                true);
+        progressDialog.setPrimaryProgressCounterIndeterminate(true);
+        progressDialog.setTitle("Planning the Run. Please Wait...");
+
+        new Thread(new Runnable() {
+            public void run() {
+                try {
+                    progressDialog.setVisible(true);
+                } catch (IndexOutOfBoundsException e) {
+                    // ignore
+                }
+            }
+        }, "ProgressDialog").start();
+
+        new Thread("PlanThread") {
+            @Override
+            public void run() {
+
+                try {
+                    final RunPlan runPlan = deNovoSequencingHandler.planSequencing(spectrumFiles, PLAN_SAMPLE_FRACTION, searchParameters, outputFolder,
+                            pepNovoExecutable, direcTagExecutable, pNovoExecutable, novorExecutable,
+                            pepNovoCheckBox.isSelected(), direcTagCheckBox.isSelected(), pNovoCheckBox.isSelected(), novorCheckBox.isSelected(), progressDialog, exceptionHandler);
+                    final boolean canceled = progressDialog.isRunCanceled();
+                    progressDialog.setRunFinished();
+
+                    // the dialogs and the run are started on the event dispatch thread
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+
+                            if (runPlan == null) {
+                                if (!canceled) {
+                                    JOptionPane.showMessageDialog(DeNovoGUI.this, "The run could not be planned, see the log for details.", "Plan Error", JOptionPane.WARNING_MESSAGE);
+                                }
+                                return;
+                            }
+
+                            int nThreads = deNovoSequencingHandler.getNThreads();
+                            String report = runPlan.getReport(nThreads, ResourceMonitor.getCpuLimit(), -1);
+                            int option = JOptionPane.showConfirmDialog(DeNovoGUI.this, report + "\n\nStart the de novo sequencing?", "Run Plan", JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE);
+                            if (option == JOptionPane.YES_OPTION) {
+                                startSequencingRun();
+                            }
+                        }
+                    });
+                } catch (ClassNotFoundException e) {
+                    progressDialog.setRunFinished();
+                    catchException(e);
+                } catch (IOException e) {
+                    progressDialog.setRunFinished();
+                    catchException(e);
+                }
+            }
+        }.start();
+    }
+
+    /**
+     * Opens the waiting dialog and starts the sequencing. The plan of the
+     * output folder, if any, is used to estimate the duration of the first
+     * jobs.
+     */
+    private void startSequencingRun() {
+
+        deNovoSequencingHandler.setRunPlan(RunPlan.load(new File(outputFolder, RunPlan.PLAN_FILE)));
+
+        waitingDialog = new WaitingDialog(this,
+                Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/denovogui.png")),
+                Toolkit.getDefaultToolkit().getImage(getClass().getResource("/icons/denovogui_orange.png")), false,
+                getTips(),
+                "De Novo Sequencing",
+                "DeNovoGUI",
+                new Properties().getVersion(),
+                true);
+        waitingDialog.addWaitingActionListener(new WaitingActionListener() {
+            @Override
+            public void cancelPressed() {
+                cancelSequencing();
+            }
+        });
+        waitingDialog.setCloseDialogWhenImportCompletes(true, true);
+        waitingDialog.setLocationRelativeTo(this);
+
+        // incrementing the counter for a new DenovoGUI run
+        if (utilitiesUserPreferences.isAutoUpdate()) {
+            Util.sendGAUpdate("UA-36198780-4", "startrun-gui", "denovogui-" + getVersion());
+        }
+        startSequencing(waitingDialog);
+    }
+
     /**
      * Edit the modifications.
      *
@@ -1537,12 +1648,14 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
             public boolean accept(File myFile) {
 
                 return myFile.getName().toLowerCase().endsWith(".mgf")
+                        || XmlSpectrumFile.isXmlSpectrumFile(myFile)
+                        || CompressedMgfFile.isCompressedMgfFile(myFile)
                         || myFile.isDirectory();
             }
 
             @Override
             public String getDescription() {
-                return "Peak list (.mgf)";
+                return "Peak list (.mgf, .mgf.gz, .mzML, .mzXML)";
             }
         };
         fc.setAcceptAllFileFilterUsed(false);
@@ -1791,7 +1904,7 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
                     spectrumFiles = new ArrayList<File>();
                     File tempSpectrumFile = new File(getJarFilePath(), exampleMgf);
                     spectrumFiles.add(tempSpectrumFile);
-                    spectrumFactory.addSpectra(tempSpectrumFile, progressDialog);
+                    SpectrumIndexCache.addSpectra(spectrumFactory, tempSpectrumFile, progressDialog);
 
                     ArrayList<File> outFiles = new ArrayList<File>();
                     outFiles.add(new File(getJarFilePath(), exampleOutFile));
@@ -2400,6 +2513,10 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
                 try {
                     ArrayList<String> extensions = new ArrayList<String>();
                     extensions.add(".mgf");
+                    extensions.add(".mzml");
+                    extensions.add(".mzxml");
+                    extensions.add(CompressedMgfFile.GZIP_EXTENSION);
+                    extensions.add(CompressedMgfFile.BGZF_EXTENSION);
                     spectrumFiles = CommandLineUtils.getFiles(arg, extensions);
                 } catch (Exception e) {
                     JOptionPane.showMessageDialog(null,
@@ -2508,10 +2625,6 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
      */
     public void startSequencing(WaitingHandler waitingHandler) {
 
-        int nThreads = deNovoSequencingHandler.getNThreads();
-        deNovoSequencingHandler = new DeNovoSequencingHandler(pepNovoFolder, direcTagFolder, pNovoFolder, novorFolder);
-        deNovoSequencingHandler.setNThreads(nThreads); // @TODO: find a better fix!!
-
         sequencingWorker = new SequencingWorker(waitingHandler, true);
         sequencingWorker.execute();
 
@@ -2587,6 +2700,10 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
          * Exception handler making use of the waiting dialog.
          */
         private WaitingDialogExceptionHandler workerExceptionHandler;
+        /**
+         * The metrics of the run, null if the run could not be started.
+         */
+        private RunMetrics runMetrics = null;
 
         /**
          * Constructor.
@@ -2606,12 +2723,17 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
             waitingHandler.appendReportEndLine();
 
             try {
-                waitingHandler.appendReport("Loading the spectra.", true, true);
-                loadSpectra(spectrumFiles, waitingHandler);
-                waitingHandler.appendReport("Done loading the spectra.", true, true);
-                waitingHandler.appendReportEndLine();
-                deNovoSequencingHandler.startSequencing(spectrumFiles, searchParameters, outputFolder, parametersFile, pepNovoExecutable, direcTagExecutable, pNovoExecutable, novorExecutable,
+                runMetrics = deNovoSequencingHandler.startSequencing(spectrumFiles, searchParameters, outputFolder, parametersFile, pepNovoExecutable, direcTagExecutable, pNovoExecutable, novorExecutable,
                         pepNovoCheckBox.isSelected(), direcTagCheckBox.isSelected(), pNovoCheckBox.isSelected(), novorCheckBox.isSelected(), waitingHandler, exceptionHandler);
+                // the spectrum factory is only needed to display the results, its
+                // indexes are kept in the index cache so that the spectra are
+                // only parsed the first time a file is displayed
+                if (displayResults && !waitingHandler.isRunCanceled()) {
+                    waitingHandler.appendReport("Loading the spectra.", true, true);
+                    loadSpectra(spectrumFiles, waitingHandler);
+                    loadConvertedSpectra(spectrumFiles, waitingHandler);
+                    waitingHandler.appendReport("Done loading the spectra.", true, true);
+                }
             } catch (Exception e) {
                 workerExceptionHandler.catchException(e);
             }
@@ -2650,9 +2772,20 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
                     catchException(e);
                 }
 
+                // save the metrics of the run next to the report
+                if (runMetrics != null) {
+                    String metricsFileName = fileName.substring(0, fileName.lastIndexOf('.')) + ".json";
+                    try {
+                        runMetrics.writeJson(new File(outputFolder, metricsFileName));
+                    } catch (IOException e) {
+                        waitingHandler.appendReport("Failed to write the run metrics!", true, true);
+                        catchException(e);
+                    }
+                }
+
                 // check if there are any output files to open
                 ArrayList<File> resultFiles = FileProcessor.getAllResultFiles(
-                        outputFolder, spectrumFiles,
+                        outputFolder, FileProcessor.getResultSpectrumFiles(spectrumFiles, outputFolder),
                         pepNovoCheckBox.isSelected(), direcTagCheckBox.isSelected(),
                         pNovoCheckBox.isSelected(), novorCheckBox.isSelected());
 
@@ -2699,15 +2832,44 @@ public class DeNovoGUI extends javax.swing.JFrame implements JavaHomeOrMemoryDia
      * Loads the mgf files in the spectrum factory.
      *
      * @param mgfFiles loads the mgf files in the spectrum factory
-     * @param waitingHandler the waiting handler
+     * @param waitingHandler the waiting handler, can be null
      * @throws FileNotFoundException
      * @throws IOException
      * @throws ClassNotFoundException
      */
     private void loadSpectra(List<File> mgfFiles, WaitingHandler waitingHandler) throws FileNotFoundException, IOException, ClassNotFoundException {
-        // Add spectrum files to the spectrum factory
+        // Add spectrum files to the spectrum factory, the mzML, mzXML and compressed mgf files are processed when sequencing
         for (File spectrumFile : mgfFiles) {
-            spectrumFactory.addSpectra(spectrumFile, waitingHandler);
+            if (!XmlSpectrumFile.isXmlSpectrumFile(spectrumFile) && !CompressedMgfFile.isCompressedMgfFile(spectrumFile)) {
+                SpectrumIndexCache.addSpectra(spectrumFactory, spectrumFile, waitingHandler);
+            }
+        }
+    }
+
+    /**
+     * Writes the spectra of the mzML, mzXML and compressed mgf files to mgf
+     * files in the output folder and loads them in the spectrum factory so that they can
+     * be displayed with the results.
+     *
+     * @param spectrumFiles the spectrum files
+     * @param waitingHandler the waiting handler
+     * @throws IOException thrown if the files cannot be read or written
+     * @throws ClassNotFoundException thrown if the mgf files cannot be
+     * indexed
+     */
+    private void loadConvertedSpectra(List<File> spectrumFiles, WaitingHandler waitingHandler) throws IOException, ClassNotFoundException {
+        for (File spectrumFile : spectrumFiles) {
+            boolean xmlFile = XmlSpectrumFile.isXmlSpectrumFile(spectrumFile);
+            if (xmlFile || CompressedMgfFile.isCompressedMgfFile(spectrumFile)) {
+                File mgfFile = FileProcessor.getResultSpectrumFile(spectrumFile, outputFolder);
+                waitingHandler.appendReport("Writing the spectra of " + spectrumFile.getName() + " to " + mgfFile.getName() + " for display.", true, true);
+                if (xmlFile) {
+                    new XmlSpectrumFile(spectrumFile, waitingHandler).writeMgf(mgfFile, waitingHandler);
+                } else {
+                    new CompressedMgfFile(spectrumFile, deNovoSequencingHandler.getNThreads()).writeMgf(mgfFile, waitingHandler);
+                }
+                SpectrumIndexCache.addSpectra(spectrumFactory, mgfFile, waitingHandler);
+            }
         }
     }
 
@@ -4,6 +4,9 @@ import com.compomics.denovogui.DeNovoGUIWrapper;
 import com.compomics.denovogui.gui.tablemodels.AssumptionsTableModel;
 import com.compomics.denovogui.gui.tablemodels.SpectrumTableModel;
 import com.compomics.denovogui.io.ExportType;
+import com.compomics.denovogui.io.ProteinMapper;
+import com.compomics.denovogui.io.SpectrumIndexCache;
+import com.compomics.denovogui.io.StreamingExporter;
 import com.compomics.denovogui.io.TextExporter;
 import com.compomics.denovogui.util.BareBonesBrowserLaunch;
 import com.compomics.util.Util;
@@ -34,17 +37,14 @@ import com.compomics.util.experiment.identification.protein_sequences.SequenceFa
 import com.compomics.util.experiment.identification.spectrum_annotation.SpectrumAnnotator;
 import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
 import com.compomics.util.experiment.identification.spectrum_assumptions.TagAssumption;
-import com.compomics.util.experiment.identification.identification_parameters.tool_specific.PepnovoParameters;
 import com.compomics.util.experiment.identification.identifications.Ms2Identification;
 import com.compomics.util.experiment.identification.matches.IonMatch;
 import com.compomics.util.experiment.identification.matches.ModificationMatch;
 import com.compomics.util.experiment.identification.matches.SpectrumMatch;
 import com.compomics.util.experiment.identification.matches_iterators.PsmIterator;
-import com.compomics.util.experiment.identification.protein_inference.proteintree.ProteinTree;
 import com.compomics.util.experiment.identification.spectrum_annotation.spectrum_annotators.TagSpectrumAnnotator;
 import com.compomics.util.experiment.identification.amino_acid_tags.Tag;
 import com.compomics.util.experiment.identification.amino_acid_tags.TagComponent;
-import com.compomics.util.experiment.identification.amino_acid_tags.matchers.TagMatcher;
 import com.compomics.util.experiment.biology.MassGap;
 import com.compomics.util.experiment.biology.ions.PeptideFragmentIon;
 import com.compomics.util.experiment.io.identifications.IdfileReader;
@@ -66,7 +66,6 @@ import com.compomics.util.experiment.identification.spectrum_annotation.Annotati
 import com.compomics.util.experiment.identification.identification_parameters.PtmSettings;
 import com.compomics.util.experiment.identification.protein_inference.PeptideMapper;
 import com.compomics.util.experiment.identification.protein_inference.PeptideMapperType;
-import com.compomics.util.experiment.identification.protein_inference.PeptideProteinMapping;
 import com.compomics.util.preferences.SequenceMatchingPreferences;
 import com.compomics.util.experiment.identification.spectrum_annotation.SpecificAnnotationSettings;
 import com.compomics.util.experiment.identification.spectrum_annotation.spectrum_annotators.PeptideSpectrumAnnotator;
@@ -2008,10 +2007,6 @@ public class ResultsFrame extends javax.swing.JFrame {
             waitingHandler.setRunCanceled();
             return false;
         }
-        int treeKeyLength = 0;
-        if (sequenceMatchingPreferences.getPeptideMapperType() == PeptideMapperType.tree) {
-            treeKeyLength = ((ProteinTree) peptideMapper).getInitialTagSize();
-        }
 
         waitingHandler.setWaitingText("Mapping Tags (Step 2 of 2). Please Wait...");
         waitingHandler.resetSecondaryProgressCounter();
@@ -2019,7 +2014,8 @@ public class ResultsFrame extends javax.swing.JFrame {
         int total = identification.getSpectrumIdentificationSize();
         waitingHandler.setMaxSecondaryProgressCounter(total);
         ((SpectrumTableModel) querySpectraTable.getModel()).setUpdate(false); // @TODO: remove when the objectDB is stable
-        TagMatcher tagMatcher = new TagMatcher(fixedModifications, variableModifications, deNovoGUI.getSequenceMatchingPreferences());
+        ProteinMapper proteinMapper = new ProteinMapper(peptideMapper, fixedModifications, variableModifications,
+                deNovoGUI.getSequenceMatchingPreferences(), searchParameters.getFragmentIonAccuracy());
 
         int progress = 0;
         boolean peptideFound = false;
@@ -2033,75 +2029,8 @@ public class ResultsFrame extends javax.swing.JFrame {
                 String spectrumKey = spectrumMatch.getKey();
                 HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> allAssumptions = identification.getAssumptions(spectrumKey);
 
-                for (Advocate advocate : DeNovoGUI.implementedAlgorithms) {
-
-                    int advocateIndex = advocate.getIndex();
-                    HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> assumptionsMap = allAssumptions.get(advocateIndex);
-
-                    if (assumptionsMap != null) {
-                        ArrayList<Double> scores = new ArrayList<Double>(assumptionsMap.keySet());
-                        if (advocate.getIndex() == Advocate.pepnovo.getIndex()
-                                || advocate.getIndex() == Advocate.pNovo.getIndex()
-                                || advocate.getIndex() == Advocate.novor.getIndex()) {
-                            Collections.sort(scores, Collections.reverseOrder());
-                        } else {
-                            Collections.sort(scores);
-                        }
-
-                        for (int i = 0; i < scores.size() && i < numberOfMatches; i++) {
-
-                            double score = scores.get(i);
-                            ArrayList<SpectrumIdentificationAssumption> tempAssumptions = assumptionsMap.get(score);
-                            ArrayList<SpectrumIdentificationAssumption> denovoAssumptions = new ArrayList<SpectrumIdentificationAssumption>(tempAssumptions);
-
-                            for (SpectrumIdentificationAssumption assumption : denovoAssumptions) {
-
-                                boolean passesThreshold;
-
-                                if (greaterThan) {
-                                    passesThreshold = assumption.getScore() >= threshold;
-                                } else { // less than
-                                    passesThreshold = assumption.getScore() <= threshold;
-                                }
-
-                                if (passesThreshold) {
-                                    if (assumption instanceof TagAssumption) {
-                                        TagAssumption tagAssumption = (TagAssumption) assumption;
-                                        int longestAminoAcidSequence = tagAssumption.getTag().getLongestAminoAcidSequence().length();
-                                        if (longestAminoAcidSequence >= treeKeyLength) {
-                                            ArrayList<PeptideProteinMapping> proteinMapping = peptideMapper.getProteinMapping(
-                                                    tagAssumption.getTag(), tagMatcher, deNovoGUI.getSequenceMatchingPreferences(), searchParameters.getFragmentIonAccuracy());
-                                            for (Peptide peptide : PeptideProteinMapping.getPeptides(proteinMapping, deNovoGUI.getSequenceMatchingPreferences())) {
-                                                if (!peptideFound) {
-                                                    peptideFound = true;
-                                                }
-                                                PeptideAssumption peptideAssumption = new PeptideAssumption(peptide, tagAssumption.getRank(),
-                                                        advocateIndex, assumption.getIdentificationCharge(), score, assumption.getIdentificationFile());
-                                                peptideAssumption.addUrParam(tagAssumption);
-                                                tempAssumptions.add(peptideAssumption);
-                                            }
-                                        }
-                                    } else if (assumption instanceof PeptideAssumption) {
-                                        if (!peptideFound) {
-                                            peptideFound = true;
-                                        }
-                                        PeptideAssumption peptideAssumption = (PeptideAssumption) assumption;
-                                        ArrayList<PeptideProteinMapping> proteinMapping = peptideMapper.getProteinMapping(
-                                                peptideAssumption.getPeptide().getSequence(), deNovoGUI.getSequenceMatchingPreferences());
-                                        HashSet<String> proteins = new HashSet<String>(proteinMapping.size());
-                                        for (PeptideProteinMapping peptideProteinMapping : proteinMapping) {
-                                            proteins.add(peptideProteinMapping.getProteinAccession());
-                                        }
-                                        ArrayList<String> sortedProteinList = new ArrayList<String>(proteins);
-                                        Collections.sort(sortedProteinList);
-                                        peptideAssumption.getPeptide().setParentProteins(sortedProteinList);
-                                    } else {
-                                        throw new UnsupportedOperationException("Peptide mapping not supported for assumption of type " + assumption.getClass() + ".");
-                                    }
-                                }
-                            }
-                        }
-                    }
+                if (proteinMapper.mapAssumptions(allAssumptions, threshold, greaterThan, numberOfMatches)) {
+                    peptideFound = true;
                 }
 
                 identification.updateAssumptions(spectrumKey, allAssumptions);
@@ -2738,7 +2667,7 @@ public class ResultsFrame extends javax.swing.JFrame {
                         String[] fileNamesArray = new String[finalMgfFiles.size()];
                         for (int i = 0; i < finalMgfFiles.size(); i++) {
                             File mgfFile = finalMgfFiles.get(i);
-                            spectrumFactory.addSpectra(mgfFile, progressDialog);
+                            SpectrumIndexCache.addSpectra(spectrumFactory, mgfFile, progressDialog);
                             fileNamesArray[i] = mgfFile.getName();
                         }
                         spectrumFileComboBox.setModel(new DefaultComboBoxModel(fileNamesArray));
@@ -3306,10 +3235,10 @@ public class ResultsFrame extends javax.swing.JFrame {
 
             if (idfileReader != null) {
 
-                LinkedList<SpectrumMatch> spectrumMatches = idfileReader.getAllSpectrumMatches(waitingHandler, searchParameters);
+                LinkedList<SpectrumMatch> spectrumMatches = StreamingExporter.importSpectrumMatches(idfileReader, resultFile, searchParameters, deNovoGUI.getSequenceMatchingPreferences(), waitingHandler);
                 progressDialog.setPrimaryProgressCounterIndeterminate(true);
 
-                // remap the ptms and set GUI min/max values
+                // set GUI min/max values
                 for (SpectrumMatch spectrumMatch : spectrumMatches) {
 
                     HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
@@ -3336,81 +3265,6 @@ public class ResultsFrame extends javax.swing.JFrame {
                                     TagAssumption tagAssumption = (TagAssumption) assumption;
                                     Tag tag = tagAssumption.getTag();
 
-                                    // add the fixed PTMs
-                                    ptmFactory.checkFixedModifications(searchParameters.getPtmSettings(), tag, deNovoGUI.getSequenceMatchingPreferences());
-
-                                    // rename the variable modifications
-                                    for (TagComponent tagComponent : tag.getContent()) {
-                                        if (tagComponent instanceof AminoAcidPattern) {
-
-                                            AminoAcidPattern aminoAcidPattern = (AminoAcidPattern) tagComponent;
-
-                                            for (int aa : aminoAcidPattern.getModificationIndexes()) {
-                                                for (ModificationMatch modificationMatch : aminoAcidPattern.getModificationsAt(aa)) {
-                                                    if (modificationMatch.isVariable()) {
-                                                        if (advocate == Advocate.pepnovo.getIndex()) {
-                                                            String pepnovoPtmName = modificationMatch.getTheoreticPtm();
-                                                            PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(advocate);
-                                                            String utilitiesPtmName = pepnovoParameters.getUtilitiesPtmName(pepnovoPtmName);
-                                                            if (utilitiesPtmName == null) {
-                                                                throw new IllegalArgumentException("PepNovo PTM " + pepnovoPtmName + " not recognized in spectrum " + spectrumMatch.getKey() + ".");
-                                                            }
-                                                            modificationMatch.setTheoreticPtm(utilitiesPtmName);
-                                                        } else if (advocate == Advocate.direcTag.getIndex()) {
-                                                            // already mapped
-                                                        } else if (advocate == Advocate.pNovo.getIndex()) {
-                                                            // already mapped
-                                                        } else if (advocate == Advocate.novor.getIndex()) {
-                                                            // already mapped
-                                                        } else {
-                                                            Advocate notImplemented = Advocate.getAdvocate(advocate);
-                                                            if (notImplemented == null) {
-                                                                throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
-                                                            }
-                                                            throw new IllegalArgumentException("PTM mapping not implemented for " + Advocate.getAdvocate(advocate).getName() + ".");
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        } else if (tagComponent instanceof AminoAcidSequence) {
-
-                                            AminoAcidSequence aminoAcidSequence = (AminoAcidSequence) tagComponent;
-
-                                            for (int aa : aminoAcidSequence.getModificationIndexes()) {
-                                                for (ModificationMatch modificationMatch : aminoAcidSequence.getModificationsAt(aa)) {
-                                                    if (modificationMatch.isVariable()) {
-                                                        if (advocate == Advocate.pepnovo.getIndex()) {
-                                                            String pepnovoPtmName = modificationMatch.getTheoreticPtm();
-                                                            PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(advocate);
-                                                            String utilitiesPtmName = pepnovoParameters.getUtilitiesPtmName(pepnovoPtmName);
-                                                            if (utilitiesPtmName == null) {
-                                                                throw new IllegalArgumentException("PepNovo PTM " + pepnovoPtmName + " not recognized in spectrum " + spectrumMatch.getKey() + ".");
-                                                            }
-                                                            modificationMatch.setTheoreticPtm(utilitiesPtmName);
-                                                        } else if (advocate == Advocate.direcTag.getIndex()) {
-                                                            // already mapped
-                                                        } else if (advocate == Advocate.pNovo.getIndex()) {
-                                                            // already mapped
-                                                        } else if (advocate == Advocate.novor.getIndex()) {
-                                                            // already mapped
-                                                        } else {
-                                                            Advocate notImplemented = Advocate.getAdvocate(advocate);
-                                                            if (notImplemented == null) {
-                                                                throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
-                                                            }
-                                                            throw new IllegalArgumentException("PTM mapping not implemented for " + Advocate.getAdvocate(advocate).getName() + ".");
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        } else if (tagComponent instanceof MassGap) {
-                                            // Nothing to do here
-                                        } else {
-                                            throw new UnsupportedOperationException("Annotation not supported for the tag component " + tagComponent.getClass() + ".");
-                                        }
-                                    }
-
-                                    // Set GUI min/max values
                                     double mz = tagAssumption.getTheoreticMz();
                                     if (mz > maxIdentificationMz) {
                                         maxIdentificationMz = mz;
@@ -0,0 +1,270 @@
+package com.compomics.denovogui.io;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Assigns the precursor charge of the spectra without reliable charge before
+ * they are sequenced, so that the algorithms do not score every spectrum once
+ * per possible charge. Every candidate charge is scored using the peak list
+ * only:
+ * <ul>
+ * <li>a charge is rejected if a significant part of the intensity lies above
+ * the m/z of the singly charged precursor, where no fragment can be found,
+ * which rejects charge 1 for most multiply charged spectra,</li>
+ * <li>the fragment isotope envelopes spaced by 1/k indicate fragments of
+ * charge k, which are only found for precursors of higher charge,</li>
+ * <li>the pairs of complementary fragments sum to the mass of the precursor,
+ * the charge with the most complementary intensity is the most likely.</li>
+ * </ul>
+ * The confidence of the best charge is its share of the scores of the
+ * plausible charges. When the confidence is below the threshold, the
+ * plausible charges are kept so that the algorithms try all of them.
+ *
+ * @author Marc Vaudel
+ */
+public class ChargeAssigner {
+
+    /**
+     * The mass of a proton.
+     */
+    private static final double PROTON = 1.0072765;
+    /**
+     * The mass difference between two isotopic peaks of charge 1.
+     */
+    private static final double ISOTOPE_SPACING = 1.0033548;
+    /**
+     * The share of the intensity above the singly charged precursor m/z
+     * above which a charge is rejected.
+     */
+    private static final double MAX_INTENSITY_ABOVE_PRECURSOR = 0.05;
+    /**
+     * The share of the intensity in isotope envelopes of a fragment charge
+     * above which fragments of this charge are considered present.
+     */
+    private static final double MIN_ENVELOPE_INTENSITY = 0.1;
+    /**
+     * Pseudo score added to every charge when computing the confidence, so
+     * that spectra without complementary peaks are not assigned.
+     */
+    private static final double PSEUDO_SCORE = 0.01;
+    /**
+     * The highest charge considered.
+     */
+    private final int maxCharge;
+    /**
+     * The minimal confidence for a single charge to be assigned.
+     */
+    private final double minConfidence;
+
+    /**
+     * Constructor.
+     *
+     * @param minConfidence the minimal confidence for a single charge to be
+     * assigned, between 0 and 1
+     * @param maxCharge the highest charge considered
+     */
+    public ChargeAssigner(double minConfidence, int maxCharge) {
+        this.minConfidence = minConfidence;
+        this.maxCharge = maxCharge;
+    }
+
+    /**
+     * Returns the highest charge considered.
+     *
+     * @return the highest charge considered
+     */
+    public int getMaxCharge() {
+        return maxCharge;
+    }
+
+    /**
+     * Returns the minimal confidence for a single charge to be assigned.
+     *
+     * @return the minimal confidence
+     */
+    public double getMinConfidence() {
+        return minConfidence;
+    }
+
+    /**
+     * Returns the possible charges of a spectrum, the most likely first. A
+     * single charge is returned when its confidence reaches the threshold.
+     *
+     * @param precursorMz the precursor m/z
+     * @param mzs the m/z of the peaks in ascending order
+     * @param intensities the intensities of the peaks
+     * @param tolerance the fragment ion tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     *
+     * @return the possible charges, the most likely first
+     */
+    public int[] assign(double precursorMz, double[] mzs, double[] intensities, double tolerance, boolean ppm) {
+
+        double totalIntensity = 0;
+        for (double intensity : intensities) {
+            totalIntensity += intensity;
+        }
+        if (totalIntensity <= 0 || precursorMz <= PROTON) {
+            return getAllCharges();
+        }
+
+        // the highest fragment charge seen in the isotope envelopes, the precursor has a higher charge
+        int maxFragmentCharge = 1;
+        for (int k = 2; k < maxCharge; k++) {
+            if (getEnvelopeIntensity(mzs, intensities, k, tolerance, ppm) / totalIntensity >= MIN_ENVELOPE_INTENSITY) {
+                maxFragmentCharge = k;
+            }
+        }
+
+        double[] scores = new double[maxCharge + 1];
+        ArrayList<Integer> plausibleCharges = new ArrayList<Integer>(maxCharge);
+        int minCharge = maxFragmentCharge > 1 ? maxFragmentCharge + 1 : 1;
+        for (int charge = minCharge; charge <= maxCharge; charge++) {
+            double neutralMass = (precursorMz - PROTON) * charge;
+            if (getIntensityAbove(mzs, intensities, neutralMass + PROTON + getTolerance(neutralMass, tolerance, ppm)) / totalIntensity > MAX_INTENSITY_ABOVE_PRECURSOR) {
+                continue;
+            }
+            plausibleCharges.add(charge);
+            scores[charge] = getComplementIntensity(mzs, intensities, neutralMass + 2 * PROTON, tolerance, ppm) / totalIntensity;
+        }
+        if (plausibleCharges.isEmpty()) {
+            return getAllCharges();
+        }
+
+        // most likely first, the lowest charge first in case of tie
+        Integer[] sorted = plausibleCharges.toArray(new Integer[plausibleCharges.size()]);
+        final double[] finalScores = scores;
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer charge1, Integer charge2) {
+                return Double.compare(finalScores[charge2], finalScores[charge1]);
+            }
+        });
+
+        double scoreSum = 0;
+        for (int charge : sorted) {
+            scoreSum += scores[charge] + PSEUDO_SCORE;
+        }
+        double confidence = (scores[sorted[0]] + PSEUDO_SCORE) / scoreSum;
+        if (confidence >= minConfidence) {
+            return new int[]{sorted[0]};
+        }
+
+        int[] result = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            result[i] = sorted[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns all charges considered, ascending.
+     *
+     * @return all charges considered
+     */
+    private int[] getAllCharges() {
+        int[] result = new int[maxCharge];
+        for (int i = 0; i < maxCharge; i++) {
+            result[i] = i + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the intensity of the pairs of peaks whose m/z sum to the given
+     * value, each peak being counted once.
+     *
+     * @param mzs the m/z of the peaks in ascending order
+     * @param intensities the intensities of the peaks
+     * @param sum the expected sum of the m/z of complementary peaks
+     * @param tolerance the fragment ion tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     *
+     * @return the intensity of the complementary peaks
+     */
+    private static double getComplementIntensity(double[] mzs, double[] intensities, double sum, double tolerance, boolean ppm) {
+        double result = 0;
+        int low = 0;
+        int high = mzs.length - 1;
+        while (low < high) {
+            double error = mzs[low] + mzs[high] - sum;
+            double pairTolerance = getTolerance(mzs[low], tolerance, ppm) + getTolerance(mzs[high], tolerance, ppm);
+            if (Math.abs(error) <= pairTolerance) {
+                result += intensities[low] + intensities[high];
+                low++;
+                high--;
+            } else if (error > 0) {
+                high--;
+            } else {
+                low++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the intensity of the peaks followed by an isotopic peak of the
+     * given charge.
+     *
+     * @param mzs the m/z of the peaks in ascending order
+     * @param intensities the intensities of the peaks
+     * @param charge the fragment charge
+     * @param tolerance the fragment ion tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     *
+     * @return the intensity of the peaks in isotope envelopes of this charge
+     */
+    private static double getEnvelopeIntensity(double[] mzs, double[] intensities, int charge, double tolerance, boolean ppm) {
+        double result = 0;
+        double spacing = ISOTOPE_SPACING / charge;
+        double lowerSpacing = ISOTOPE_SPACING / (charge + 1);
+        int next = 0;
+        for (int i = 0; i < mzs.length; i++) {
+            double expected = mzs[i] + spacing;
+            double peakTolerance = Math.min(getTolerance(expected, tolerance, ppm), (spacing - lowerSpacing) / 2);
+            while (next < mzs.length && mzs[next] < expected - peakTolerance) {
+                next++;
+            }
+            if (next < mzs.length && mzs[next] <= expected + peakTolerance) {
+                result += intensities[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the intensity of the peaks above the given m/z.
+     *
+     * @param mzs the m/z of the peaks in ascending order
+     * @param intensities the intensities of the peaks
+     * @param mz the m/z
+     *
+     * @return the intensity of the peaks above the m/z
+     */
+    private static double getIntensityAbove(double[] mzs, double[] intensities, double mz) {
+        double result = 0;
+        for (int i = mzs.length - 1; i >= 0 && mzs[i] > mz; i--) {
+            result += intensities[i];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the tolerance in Dalton at the given m/z.
+     *
+     * @param mz the m/z
+     * @param tolerance the tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     *
+     * @return the tolerance in Dalton
+     */
+    private static double getTolerance(double mz, double tolerance, boolean ppm) {
+        return ppm ? mz * tolerance / 1000000 : tolerance;
+    }
+}
@@ -0,0 +1,561 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Gzip compressed mgf file. The file is decompressed in a streaming pipeline
+ * directly into the mgf files needed for the sequencing, no decompressed copy
+ * of the whole file is written: a reader thread reads the compressed file,
+ * the blocks of block compressed files (BGZF) are inflated in parallel, and
+ * the spectra are written to the chunks as the decompressed blocks come in.
+ * Plain gzip files cannot be inflated in parallel and are decompressed by the
+ * reader thread.
+ *
+ * @author Harald Barsnes
+ */
+public class CompressedMgfFile {
+
+    /**
+     * The extension of gzip compressed mgf files.
+     */
+    public static final String GZIP_EXTENSION = ".mgf.gz";
+    /**
+     * The extension of block compressed mgf files.
+     */
+    public static final String BGZF_EXTENSION = ".mgf.bgz";
+    /**
+     * The size of the decompressed blocks of plain gzip files.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * The maximal number of decompressed blocks waiting to be written.
+     */
+    private static final int QUEUE_SIZE = 64;
+    /**
+     * The size of the header of a BGZF block.
+     */
+    private static final int BGZF_HEADER_SIZE = 18;
+    /**
+     * The size of the footer of a gzip member: CRC32 and uncompressed size.
+     */
+    private static final int GZIP_FOOTER_SIZE = 8;
+    /**
+     * Block marking the end of the decompressed stream.
+     */
+    private static final Block END = new Block(new byte[0], -1, -1);
+    /**
+     * The compressed mgf file.
+     */
+    private final File file;
+    /**
+     * The number of threads to use to inflate block compressed files.
+     */
+    private final int nThreads;
+
+    /**
+     * Constructor.
+     *
+     * @param file the compressed mgf file
+     * @param nThreads the number of threads to use to inflate block
+     * compressed files
+     */
+    public CompressedMgfFile(File file, int nThreads) {
+        this.file = file;
+        this.nThreads = Math.max(1, nThreads);
+    }
+
+    /**
+     * Indicates whether the given file is a compressed mgf file.
+     *
+     * @param spectrumFile the spectrum file
+     *
+     * @return true if the file is a compressed mgf file
+     */
+    public static boolean isCompressedMgfFile(File spectrumFile) {
+        String name = spectrumFile.getName().toLowerCase();
+        return name.endsWith(GZIP_EXTENSION) || name.endsWith(BGZF_EXTENSION);
+    }
+
+    /**
+     * Returns the mgf file standing for the given compressed mgf file in the
+     * given folder. The results of the file are named after this mgf file,
+     * which is only written when the spectra need to be displayed.
+     *
+     * @param compressedFile the compressed mgf file
+     * @param folder the folder
+     *
+     * @return the corresponding mgf file
+     */
+    public static File getMgfFile(File compressedFile, File folder) {
+        String name = compressedFile.getName();
+        return new File(folder, name.substring(0, name.lastIndexOf(".")));
+    }
+
+    /**
+     * Indicates whether the given file is block compressed (BGZF), i.e. a
+     * series of gzip members whose compressed size is given in the header.
+     *
+     * @param file the compressed file
+     *
+     * @return true if the file is block compressed
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static boolean isBlockCompressed(File file) throws IOException {
+        byte[] header = new byte[BGZF_HEADER_SIZE];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(header);
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            in.close();
+        }
+        return isBgzfHeader(header);
+    }
+
+    /**
+     * Returns the compressed mgf file.
+     *
+     * @return the compressed mgf file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Decompresses the spectra into mgf chunks of similar size, named after
+     * the mgf file of this file with the chunk number appended. The chunks
+     * are balanced on the compressed size read, the number of spectra not
+     * being known before decompression.
+     *
+     * @param nChunks the number of chunks
+     * @param destinationFolder the folder where to write the chunks
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @return the chunk files, less than the number of chunks if the file
+     * contains too few spectra
+     *
+     * @throws IOException thrown if the file cannot be decompressed or the
+     * chunks cannot be written
+     */
+    public ArrayList<File> writeMgfChunks(int nChunks, File destinationFolder, WaitingHandler waitingHandler) throws IOException {
+        String mgfName = getMgfFile(file, destinationFolder).getName();
+        String baseName = mgfName.substring(0, mgfName.lastIndexOf("."));
+        File[] chunkFiles = new File[Math.max(1, nChunks)];
+        for (int i = 0; i < chunkFiles.length; i++) {
+            chunkFiles[i] = new File(destinationFolder, baseName + "_" + (i + 1) + ".mgf");
+        }
+        return writeMgf(chunkFiles, waitingHandler);
+    }
+
+    /**
+     * Decompresses the spectra to the given mgf file.
+     *
+     * @param mgfFile the mgf file
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @throws IOException thrown if the file cannot be decompressed or the
+     * mgf file cannot be written
+     */
+    public void writeMgf(File mgfFile, WaitingHandler waitingHandler) throws IOException {
+        writeMgf(new File[]{mgfFile}, waitingHandler);
+    }
+
+    /**
+     * Decompresses the spectra into the given mgf files. A new file is
+     * started at the first spectrum read after the corresponding share of
+     * the compressed file. The lines preceding the first spectrum, e.g. the
+     * global parameters, are repeated at the top of every file.
+     *
+     * @param mgfFiles the mgf files
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @return the mgf files written
+     *
+     * @throws IOException thrown if the file cannot be decompressed or the
+     * mgf files cannot be written
+     */
+    private ArrayList<File> writeMgf(File[] mgfFiles, WaitingHandler waitingHandler) throws IOException {
+
+        final long compressedLength = file.length();
+        final BlockingQueue<Future<Block>> queue = new ArrayBlockingQueue<Future<Block>>(QUEUE_SIZE);
+        final ExecutorService inflaters = isBlockCompressed(file) ? Executors.newFixedThreadPool(nThreads) : null;
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (inflaters != null) {
+                        readBlocks(queue, inflaters);
+                    } else {
+                        readStream(queue);
+                    }
+                    queue.put(getDone(END));
+                } catch (InterruptedException e) {
+                    // the writing was stopped
+                } catch (final IOException e) {
+                    FutureTask<Block> failed = new FutureTask<Block>(new Callable<Block>() {
+                        @Override
+                        public Block call() throws Exception {
+                            throw e;
+                        }
+                    });
+                    failed.run();
+                    try {
+                        queue.put(failed);
+                    } catch (InterruptedException ie) {
+                        // the writing was stopped
+                    }
+                }
+            }
+        }, "DeNovoGUI decompression " + file.getName());
+        reader.setDaemon(true);
+        reader.start();
+
+        if (waitingHandler != null) {
+            waitingHandler.setSecondaryProgressCounterIndeterminate(false);
+            waitingHandler.setMaxSecondaryProgressCounter(100);
+            waitingHandler.setSecondaryProgressCounter(0);
+        }
+
+        ArrayList<File> writtenFiles = new ArrayList<File>(mgfFiles.length);
+        BlockInputStream blockStream = new BlockInputStream(queue);
+        BufferedReader br = new BufferedReader(new InputStreamReader(blockStream), BUFFER_SIZE);
+        BufferedWriter bw = null;
+        try {
+            double chunkLength = ((double) compressedLength) / mgfFiles.length;
+            int progress = 0;
+            ArrayList<String> header = new ArrayList<String>();
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.equals("BEGIN IONS") && (bw == null
+                        || blockStream.getCompressedPosition() >= chunkLength * writtenFiles.size() && writtenFiles.size() < mgfFiles.length)) {
+                    if (bw != null) {
+                        bw.close();
+                    }
+                    File output = mgfFiles[writtenFiles.size()];
+                    writtenFiles.add(output);
+                    bw = new BufferedWriter(new FileWriter(output));
+                    for (String headerLine : header) {
+                        bw.write(headerLine);
+                        bw.newLine();
+                    }
+                }
+                if (bw != null) {
+                    bw.write(line);
+                    bw.newLine();
+                } else if (!line.isEmpty()) {
+                    header.add(line);
+                }
+                if (line.equals("END IONS") && waitingHandler != null) {
+                    if (waitingHandler.isRunCanceled()) {
+                        break;
+                    }
+                    int newProgress = (int) (100 * blockStream.getCompressedPosition() / Math.max(1, compressedLength));
+                    if (newProgress > progress) {
+                        waitingHandler.setSecondaryProgressCounter(newProgress);
+                        progress = newProgress;
+                    }
+                }
+            }
+        } finally {
+            reader.interrupt();
+            if (inflaters != null) {
+                inflaters.shutdownNow();
+            }
+            if (bw != null) {
+                bw.close();
+            }
+        }
+
+        return writtenFiles;
+    }
+
+    /**
+     * Decompresses a plain gzip file in blocks of fixed size.
+     *
+     * @param queue the queue where to put the decompressed blocks
+     *
+     * @throws IOException thrown if the file cannot be decompressed
+     * @throws InterruptedException thrown if the writing was stopped
+     */
+    private void readStream(BlockingQueue<Future<Block>> queue) throws IOException, InterruptedException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            GZIPInputStream gis = new GZIPInputStream(fis);
+            int length = BUFFER_SIZE;
+            while (length == BUFFER_SIZE) {
+                byte[] data = new byte[BUFFER_SIZE];
+                length = 0;
+                int read;
+                while (length < BUFFER_SIZE && (read = gis.read(data, length, BUFFER_SIZE - length)) != -1) {
+                    length += read;
+                }
+                if (length > 0) {
+                    queue.put(getDone(new Block(data, length, fis.getChannel().position())));
+                }
+            }
+        } finally {
+            fis.close();
+        }
+    }
+
+    /**
+     * Reads the blocks of a BGZF file and submits them for parallel
+     * inflation. The futures are queued in the order of the file.
+     *
+     * @param queue the queue where to put the decompressed blocks
+     * @param inflaters the executor inflating the blocks
+     *
+     * @throws IOException thrown if the file cannot be read
+     * @throws InterruptedException thrown if the writing was stopped
+     */
+    private void readBlocks(BlockingQueue<Future<Block>> queue, ExecutorService inflaters) throws IOException, InterruptedException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        try {
+            long position = 0;
+            int firstByte;
+            while ((firstByte = in.read()) != -1) {
+                byte[] header = new byte[BGZF_HEADER_SIZE];
+                header[0] = (byte) firstByte;
+                in.readFully(header, 1, BGZF_HEADER_SIZE - 1);
+                if (!isBgzfHeader(header)) {
+                    throw new IOException("Unexpected block header at position " + position + " of " + file.getName() + ".");
+                }
+                int blockSize = ((header[16] & 0xff) | (header[17] & 0xff) << 8) + 1;
+                final byte[] block = new byte[blockSize];
+                System.arraycopy(header, 0, block, 0, BGZF_HEADER_SIZE);
+                in.readFully(block, BGZF_HEADER_SIZE, blockSize - BGZF_HEADER_SIZE);
+                position += blockSize;
+                final long blockEnd = position;
+                queue.put(inflaters.submit(new Callable<Block>() {
+                    @Override
+                    public Block call() throws Exception {
+                        return inflate(block, blockEnd);
+                    }
+                }));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Inflates a BGZF block.
+     *
+     * @param block the compressed block including header and footer
+     * @param blockEnd the position of the end of the block in the compressed
+     * file
+     *
+     * @return the decompressed block
+     *
+     * @throws IOException thrown if the block is corrupted
+     */
+    private static Block inflate(byte[] block, long blockEnd) throws IOException {
+        int end = block.length;
+        int uncompressedSize = (block[end - 4] & 0xff) | (block[end - 3] & 0xff) << 8 | (block[end - 2] & 0xff) << 16 | (block[end - 1] & 0xff) << 24;
+        byte[] data = new byte[uncompressedSize];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block, BGZF_HEADER_SIZE, end - BGZF_HEADER_SIZE - GZIP_FOOTER_SIZE);
+            int length = 0;
+            while (length < uncompressedSize && !inflater.finished()) {
+                int read = inflater.inflate(data, length, uncompressedSize - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed block.");
+                }
+                length += read;
+            }
+            return new Block(data, length, blockEnd);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted compressed block.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Indicates whether the given bytes are the header of a BGZF block.
+     *
+     * @param header the first bytes of the block
+     *
+     * @return true if the bytes are the header of a BGZF block
+     */
+    private static boolean isBgzfHeader(byte[] header) {
+        return (header[0] & 0xff) == 31 && (header[1] & 0xff) == 139 && header[2] == 8 && (header[3] & 4) != 0
+                && header[10] == 6 && header[11] == 0 && header[12] == 'B' && header[13] == 'C';
+    }
+
+    /**
+     * Returns a completed future holding the given block.
+     *
+     * @param block the block
+     *
+     * @return a completed future
+     */
+    private static Future<Block> getDone(final Block block) {
+        FutureTask<Block> future = new FutureTask<Block>(new Callable<Block>() {
+            @Override
+            public Block call() {
+                return block;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    /**
+     * A block of decompressed data.
+     */
+    private static class Block {
+
+        /**
+         * The decompressed data.
+         */
+        private final byte[] data;
+        /**
+         * The number of bytes used in the data array.
+         */
+        private final int length;
+        /**
+         * The position of the end of the compressed block in the compressed
+         * file.
+         */
+        private final long compressedEnd;
+
+        /**
+         * Constructor.
+         *
+         * @param data the decompressed data
+         * @param length the number of bytes used in the data array
+         * @param compressedEnd the position of the end of the compressed
+         * block in the compressed file
+         */
+        private Block(byte[] data, int length, long compressedEnd) {
+            this.data = data;
+            this.length = length;
+            this.compressedEnd = compressedEnd;
+        }
+    }
+
+    /**
+     * Input stream reading the decompressed blocks from the queue in order.
+     */
+    private static class BlockInputStream extends InputStream {
+
+        /**
+         * The queue of decompressed blocks.
+         */
+        private final BlockingQueue<Future<Block>> queue;
+        /**
+         * The block being read.
+         */
+        private Block block = null;
+        /**
+         * The index of the next byte to read in the block.
+         */
+        private int index = 0;
+        /**
+         * Indicates whether the end of the stream was reached.
+         */
+        private boolean ended = false;
+
+        /**
+         * Constructor.
+         *
+         * @param queue the queue of decompressed blocks
+         */
+        private BlockInputStream(BlockingQueue<Future<Block>> queue) {
+            this.queue = queue;
+        }
+
+        /**
+         * Returns the position in the compressed file of the end of the
+         * block being read.
+         *
+         * @return the position in the compressed file
+         */
+        private long getCompressedPosition() {
+            return block == null ? 0 : block.compressedEnd;
+        }
+
+        /**
+         * Makes sure that a block with remaining bytes is available.
+         *
+         * @return false if the end of the stream was reached
+         *
+         * @throws IOException thrown if a block could not be decompressed
+         */
+        private boolean nextBlock() throws IOException {
+            while (!ended && (block == null || index == block.length)) {
+                Block next;
+                try {
+                    next = queue.take().get();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("Decompression interrupted.");
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException(cause);
+                }
+                if (next == END) {
+                    ended = true;
+                } else {
+                    block = next;
+                    index = 0;
+                }
+            }
+            return !ended;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextBlock()) {
+                return -1;
+            }
+            return block.data[index++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextBlock()) {
+                return -1;
+            }
+            int read = Math.min(length, block.length - index);
+            System.arraycopy(block.data, index, buffer, offset, read);
+            index += read;
+            return read;
+        }
+    }
+}
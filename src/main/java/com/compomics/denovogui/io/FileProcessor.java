@@ -10,6 +10,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import uk.ac.ebi.pride.tools.braf.BufferedRandomAccessFile;
 
 /**
@@ -19,6 +21,20 @@ import uk.ac.ebi.pride.tools.braf.BufferedRandomAccessFile;
  */
 public class FileProcessor {
 
+    /**
+     * The cost of a spectrum without peaks used when balancing chunks.
+     */
+    static final int SPECTRUM_BASE_COST = 10;
+    /**
+     * The id of the first spectrum of an mgf file in the Novor results, Novor
+     * numbers the spectra from 1.
+     */
+    public static final int NOVOR_FIRST_ID = 1;
+    /**
+     * Pattern of the spectrum index in the native ids of DirecTag.
+     */
+    private static final Pattern NATIVE_INDEX_PATTERN = Pattern.compile("index=(\\d+)");
+
     /**
      * Writes the chunk/merged output files.
      *
@@ -128,6 +144,31 @@ public class FileProcessor {
         return chunkedFiles;
     }
 
+    /**
+     * Counts the spectra of an mgf file.
+     *
+     * @param file the mgf file
+     *
+     * @return the number of spectra in the file
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static int countSpectra(File file) throws IOException {
+        int nSpectra = 0;
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.trim().equals("END IONS")) {
+                    nSpectra++;
+                }
+            }
+        } finally {
+            br.close();
+        }
+        return nSpectra;
+    }
+
     /**
      * Deletes the chunk files.
      *
@@ -156,9 +197,22 @@ public class FileProcessor {
      * to the file
      */
     public static void mergeAndDeleteOutputFiles(List<File> outFiles) throws IOException {
-
         File first = outFiles.get(0);
         File mergedFile = new File(first.getParent(), first.getName().substring(0, first.getName().lastIndexOf("_")) + ".mgf.out");
+        mergeOutputFiles(outFiles, mergedFile, true);
+    }
+
+    /**
+     * Merges (split) PepNovo+ output files into the given file.
+     *
+     * @param outFiles the output files to be merged
+     * @param mergedFile the file where to write the merged output
+     * @param delete if true the merged files are deleted
+     * @throws IOException thrown if there are problems with the reading/writing
+     * to the file
+     */
+    public static void mergeOutputFiles(List<File> outFiles, File mergedFile, boolean delete) throws IOException {
+
         BufferedWriter bWriter = new BufferedWriter(new FileWriter(mergedFile));
 
         try {
@@ -186,7 +240,7 @@ public class FileProcessor {
                 reader.close();
 
                 // Delete redundant output files.
-                if (file.exists()) {
+                if (delete && file.exists()) {
                     file.delete();
                 }
             }
@@ -196,6 +250,224 @@ public class FileProcessor {
         }
     }
 
+    /**
+     * Splits an mgf file in the given number of chunks of similar cost. The
+     * cost of a spectrum is estimated from its number of peaks so that chunks
+     * of spectra with many peaks contain less spectra. The chunks are named
+     * like the chunks of chunkFile. The global parameters written before the
+     * first spectrum are repeated at the top of every chunk.
+     *
+     * @param file the file to chunk
+     * @param nChunks the number of chunks
+     * @param destinationFolder the folder where to write the chunks
+     * @param waitingHandler waiting handler allowing the user to cancel the
+     * progress, can be null
+     *
+     * @return the chunk files
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    public static ArrayList<File> chunkFileByCost(File file, int nChunks, File destinationFolder, WaitingHandler waitingHandler) throws IOException {
+
+        // estimate the cost of every spectrum from its number of peaks
+        SpectrumIndex index = SpectrumIndexCache.getIndex(file);
+        int nSpectra = index.getNSpectra();
+        int[] costs = new int[nSpectra];
+        long totalCost = 0;
+        for (int i = 0; i < nSpectra; i++) {
+            costs[i] = SPECTRUM_BASE_COST + index.getPeakCount(i);
+            totalCost += costs[i];
+        }
+
+        // write the chunks
+        String filename = file.getName();
+        int start = filename.lastIndexOf(".");
+        ArrayList<File> chunkedFiles = new ArrayList<File>();
+        nChunks = Math.max(1, Math.min(nChunks, nSpectra));
+        double chunkCost = ((double) totalCost) / nChunks;
+
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        BufferedWriter bw = null;
+        try {
+            String line;
+            int spectrumIndex = 0;
+            long cumulativeCost = 0;
+            ArrayList<String> header = new ArrayList<String>();
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.equals("BEGIN IONS") && (bw == null
+                        || cumulativeCost >= chunkCost * chunkedFiles.size() && chunkedFiles.size() < nChunks)) {
+                    if (bw != null) {
+                        bw.close();
+                    }
+                    File output = new File(destinationFolder, filename.substring(0, start) + "_" + (chunkedFiles.size() + 1) + filename.substring(start));
+                    chunkedFiles.add(output);
+                    bw = new BufferedWriter(new FileWriter(output));
+                    for (String headerLine : header) {
+                        bw.write(headerLine);
+                        bw.newLine();
+                    }
+                }
+                if (bw != null) {
+                    bw.write(line);
+                    bw.newLine();
+                } else if (!line.isEmpty()) {
+                    header.add(line);
+                }
+                if (line.equals("END IONS")) {
+                    if (spectrumIndex < nSpectra) {
+                        cumulativeCost += costs[spectrumIndex++];
+                    }
+                    if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            br.close();
+            if (bw != null) {
+                bw.close();
+            }
+        }
+
+        return chunkedFiles;
+    }
+
+    /**
+     * Merges the DirecTag tags files obtained on consecutive chunks of a
+     * spectrum file. The header of the first file is kept and the spectrum
+     * indexes of the spectrum lines are shifted by the number of spectra in
+     * the preceding chunks.
+     *
+     * @param tagsFiles the tags files in the order of the chunks
+     * @param offsets the number of spectra preceding every chunk
+     * @param mergedFile the file where to write the merged results
+     * @throws IOException thrown if there are problems with the reading/writing
+     * to the file
+     */
+    public static void mergeTagsFiles(List<File> tagsFiles, List<Integer> offsets, File mergedFile) throws IOException {
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(mergedFile));
+        try {
+            for (int i = 0; i < tagsFiles.size(); i++) {
+                int offset = offsets.get(i);
+                BufferedReader br = new BufferedReader(new FileReader(tagsFiles.get(i)));
+                try {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (line.startsWith("H")) {
+                            if (i > 0) {
+                                continue;
+                            }
+                        } else if (line.startsWith("S") && offset > 0) {
+                            String[] split = line.split("\t", -1);
+                            split[1] = String.valueOf(Integer.parseInt(split[1]) + offset);
+                            Matcher matcher = NATIVE_INDEX_PATTERN.matcher(split[2]);
+                            if (matcher.find()) {
+                                split[2] = matcher.replaceFirst("index=" + (Integer.parseInt(matcher.group(1)) + offset));
+                            }
+                            line = join(split, "\t");
+                        }
+                        bw.write(line);
+                        bw.newLine();
+                    }
+                } finally {
+                    br.close();
+                }
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Merges the Novor csv files obtained on consecutive chunks of a spectrum
+     * file. The comment lines of the first file are kept and the spectrum ids
+     * are shifted by the number of spectra in the preceding chunks.
+     *
+     * @param novorFiles the Novor files in the order of the chunks
+     * @param offsets the number of spectra preceding every chunk
+     * @param mergedFile the file where to write the merged results
+     * @throws IOException thrown if there are problems with the reading/writing
+     * to the file
+     */
+    public static void mergeNovorFiles(List<File> novorFiles, List<Integer> offsets, File mergedFile) throws IOException {
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(mergedFile));
+        try {
+            for (int i = 0; i < novorFiles.size(); i++) {
+                int offset = offsets.get(i);
+                BufferedReader br = new BufferedReader(new FileReader(novorFiles.get(i)));
+                try {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        if (line.startsWith("#")) {
+                            if (i > 0) {
+                                continue;
+                            }
+                        } else if (offset > 0 && !line.trim().isEmpty()) {
+                            int separatorIndex = line.indexOf(",");
+                            int id = Integer.parseInt(line.substring(0, separatorIndex).trim());
+                            line = (id + offset) + line.substring(separatorIndex);
+                        }
+                        bw.write(line);
+                        bw.newLine();
+                    }
+                } finally {
+                    br.close();
+                }
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Concatenates text files.
+     *
+     * @param files the files to concatenate
+     * @param mergedFile the file where to write the merged content
+     * @throws IOException thrown if there are problems with the reading/writing
+     * to the file
+     */
+    public static void concatenateFiles(List<File> files, File mergedFile) throws IOException {
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(mergedFile));
+        try {
+            for (File file : files) {
+                BufferedReader br = new BufferedReader(new FileReader(file));
+                try {
+                    String line;
+                    while ((line = br.readLine()) != null) {
+                        bw.write(line);
+                        bw.newLine();
+                    }
+                } finally {
+                    br.close();
+                }
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Joins the given strings using the given separator.
+     *
+     * @param elements the strings to join
+     * @param separator the separator
+     * @return the joined string
+     */
+    private static String join(String[] elements, String separator) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < elements.length; i++) {
+            if (i > 0) {
+                result.append(separator);
+            }
+            result.append(elements[i]);
+        }
+        return result.toString();
+    }
+
     /**
      * Returns the PepNovo result file corresponding to the given spectrum file
      * and output folder.
@@ -267,6 +539,42 @@ public class FileProcessor {
         throw new IllegalArgumentException("Output file " + fileName + " format not recognized.");
     }
 
+    /**
+     * Returns the file the results of the given spectrum file are named
+     * after: mgf files are returned as such, mzML, mzXML and compressed mgf
+     * files are replaced by their mgf file in the given folder.
+     *
+     * @param spectrumFile the spectrum file
+     * @param folder the folder where the results are written
+     *
+     * @return the file the results are named after
+     */
+    public static File getResultSpectrumFile(File spectrumFile, File folder) {
+        if (XmlSpectrumFile.isXmlSpectrumFile(spectrumFile)) {
+            return XmlSpectrumFile.getMgfFile(spectrumFile, folder);
+        } else if (CompressedMgfFile.isCompressedMgfFile(spectrumFile)) {
+            return CompressedMgfFile.getMgfFile(spectrumFile, folder);
+        }
+        return spectrumFile;
+    }
+
+    /**
+     * Returns the files the results of the given spectrum files are named
+     * after, see getResultSpectrumFile.
+     *
+     * @param spectrumFiles the spectrum files
+     * @param folder the folder where the results are written
+     *
+     * @return the files the results are named after
+     */
+    public static ArrayList<File> getResultSpectrumFiles(List<File> spectrumFiles, File folder) {
+        ArrayList<File> result = new ArrayList<File>(spectrumFiles.size());
+        for (File spectrumFile : spectrumFiles) {
+            result.add(getResultSpectrumFile(spectrumFile, folder));
+        }
+        return result;
+    }
+
     /**
      * Returns a list of PepNovo out files expected from a list of spectrum
      * files.
@@ -0,0 +1,153 @@
+package com.compomics.denovogui.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Indexes mgf files in parallel in the background so that the sequencing of
+ * a file can start as soon as its own index is ready, without waiting for the
+ * other files. The indexes are taken from the spectrum index cache when
+ * available.
+ *
+ * @author Marc Vaudel
+ */
+public class MgfIndexer {
+
+    /**
+     * The executor indexing the files.
+     */
+    private final ExecutorService executor;
+    /**
+     * The indexes of the files submitted, indexed by file.
+     */
+    private final HashMap<File, Future<SpectrumIndex>> indexes = new HashMap<File, Future<SpectrumIndex>>();
+
+    /**
+     * Constructor.
+     *
+     * @param nThreads the number of files to index in parallel
+     */
+    public MgfIndexer(int nThreads) {
+        executor = Executors.newFixedThreadPool(Math.max(1, nThreads), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "DeNovoGUI mgf indexer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queues the given files for indexing. Files already submitted are
+     * ignored.
+     *
+     * @param mgfFiles the mgf files
+     */
+    public synchronized void index(List<File> mgfFiles) {
+        for (File mgfFile : mgfFiles) {
+            index(mgfFile);
+        }
+    }
+
+    /**
+     * Queues the given file for indexing. Files already submitted are
+     * ignored.
+     *
+     * @param mgfFile the mgf file
+     */
+    public synchronized void index(final File mgfFile) {
+        if (!indexes.containsKey(mgfFile)) {
+            indexes.put(mgfFile, executor.submit(new Callable<SpectrumIndex>() {
+                @Override
+                public SpectrumIndex call() throws Exception {
+                    return SpectrumIndexCache.getIndex(mgfFile);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Returns the number of spectra of the given file, waiting for the file
+     * to be indexed if needed. The file is indexed if not submitted before.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the number of spectra of the file
+     *
+     * @throws IOException thrown if the file cannot be read or the thread is
+     * interrupted while waiting
+     */
+    public int getNSpectra(File mgfFile) throws IOException {
+        return getIndex(mgfFile).getNSpectra();
+    }
+
+    /**
+     * Returns the index of the given file, waiting for the file to be indexed
+     * if needed. The file is indexed if not submitted before.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the index of the file
+     *
+     * @throws IOException thrown if the file cannot be read or the thread is
+     * interrupted while waiting
+     */
+    public SpectrumIndex getIndex(File mgfFile) throws IOException {
+        Future<SpectrumIndex> index;
+        synchronized (this) {
+            index(mgfFile);
+            index = indexes.get(mgfFile);
+        }
+        try {
+            return index.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while indexing " + mgfFile.getName() + ".");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("An error occurred while indexing " + mgfFile.getName() + ".", cause);
+        }
+    }
+
+    /**
+     * Returns the number of spectra of the given file if it is already
+     * indexed.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the number of spectra of the file, -1 if the file is not
+     * indexed yet or could not be indexed
+     */
+    public synchronized int getNSpectraIfIndexed(File mgfFile) {
+        Future<SpectrumIndex> index = indexes.get(mgfFile);
+        if (index == null || !index.isDone()) {
+            return -1;
+        }
+        try {
+            return index.get().getNSpectra();
+        } catch (InterruptedException e) {
+            return -1;
+        } catch (ExecutionException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Stops the indexing of the files not yet indexed.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,108 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.biology.AminoAcidPattern;
+import com.compomics.util.experiment.biology.AminoAcidSequence;
+import com.compomics.util.experiment.biology.MassGap;
+import com.compomics.util.experiment.biology.PTMFactory;
+import com.compomics.util.experiment.identification.Advocate;
+import com.compomics.util.experiment.identification.amino_acid_tags.Tag;
+import com.compomics.util.experiment.identification.amino_acid_tags.TagComponent;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.identification.identification_parameters.tool_specific.PepnovoParameters;
+import com.compomics.util.experiment.identification.matches.ModificationMatch;
+import com.compomics.util.experiment.identification.spectrum_assumptions.TagAssumption;
+import com.compomics.util.preferences.SequenceMatchingPreferences;
+
+/**
+ * Maps the modifications of the tags imported from the de novo results to
+ * the utilities modifications.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ModificationRemapper {
+
+    /**
+     * Empty default constructor.
+     */
+    private ModificationRemapper() {
+    }
+
+    /**
+     * Adds the fixed modifications to the tag of the given assumption and
+     * renames its variable modifications to the utilities names.
+     *
+     * @param tagAssumption the tag assumption
+     * @param advocate the index of the advocate of the assumption
+     * @param searchParameters the search parameters
+     * @param sequenceMatchingPreferences the sequence matching preferences
+     * @param spectrumKey the key of the spectrum, used for error messages
+     */
+    public static void remapModifications(TagAssumption tagAssumption, int advocate, SearchParameters searchParameters,
+            SequenceMatchingPreferences sequenceMatchingPreferences, String spectrumKey) {
+
+        Tag tag = tagAssumption.getTag();
+
+        // add the fixed PTMs
+        PTMFactory.getInstance().checkFixedModifications(searchParameters.getPtmSettings(), tag, sequenceMatchingPreferences);
+
+        // rename the variable modifications
+        for (TagComponent tagComponent : tag.getContent()) {
+            if (tagComponent instanceof AminoAcidPattern) {
+                AminoAcidPattern aminoAcidPattern = (AminoAcidPattern) tagComponent;
+                for (int aa : aminoAcidPattern.getModificationIndexes()) {
+                    for (ModificationMatch modificationMatch : aminoAcidPattern.getModificationsAt(aa)) {
+                        remapVariableModification(modificationMatch, advocate, searchParameters, spectrumKey);
+                    }
+                }
+            } else if (tagComponent instanceof AminoAcidSequence) {
+                AminoAcidSequence aminoAcidSequence = (AminoAcidSequence) tagComponent;
+                for (int aa : aminoAcidSequence.getModificationIndexes()) {
+                    for (ModificationMatch modificationMatch : aminoAcidSequence.getModificationsAt(aa)) {
+                        remapVariableModification(modificationMatch, advocate, searchParameters, spectrumKey);
+                    }
+                }
+            } else if (tagComponent instanceof MassGap) {
+                // Nothing to do here
+            } else {
+                throw new UnsupportedOperationException("Annotation not supported for the tag component " + tagComponent.getClass() + ".");
+            }
+        }
+    }
+
+    /**
+     * Renames a variable modification to the utilities name. Only the
+     * PepNovo+ modifications need to be renamed, the other algorithms already
+     * use the utilities names.
+     *
+     * @param modificationMatch the modification match
+     * @param advocate the index of the advocate of the assumption
+     * @param searchParameters the search parameters
+     * @param spectrumKey the key of the spectrum, used for error messages
+     */
+    private static void remapVariableModification(ModificationMatch modificationMatch, int advocate, SearchParameters searchParameters, String spectrumKey) {
+        if (modificationMatch.isVariable()) {
+            if (advocate == Advocate.pepnovo.getIndex()) {
+                String pepnovoPtmName = modificationMatch.getTheoreticPtm();
+                PepnovoParameters pepnovoParameters = (PepnovoParameters) searchParameters.getIdentificationAlgorithmParameter(advocate);
+                String utilitiesPtmName = pepnovoParameters.getUtilitiesPtmName(pepnovoPtmName);
+                if (utilitiesPtmName == null) {
+                    throw new IllegalArgumentException("PepNovo PTM " + pepnovoPtmName + " not recognized in spectrum " + spectrumKey + ".");
+                }
+                modificationMatch.setTheoreticPtm(utilitiesPtmName);
+            } else if (advocate == Advocate.direcTag.getIndex()) {
+                // already mapped
+            } else if (advocate == Advocate.pNovo.getIndex()) {
+                // already mapped
+            } else if (advocate == Advocate.novor.getIndex()) {
+                // already mapped
+            } else {
+                Advocate notImplemented = Advocate.getAdvocate(advocate);
+                if (notImplemented == null) {
+                    throw new IllegalArgumentException("Advocate of id " + advocate + " not recognized.");
+                }
+                throw new IllegalArgumentException("PTM mapping not implemented for " + Advocate.getAdvocate(advocate).getName() + ".");
+            }
+        }
+    }
+}
@@ -0,0 +1,739 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Reduces the peak lists of mgf files before they are sequenced, so that the
+ * algorithms whose run time scales with the number of peaks get compact
+ * spectra. The precursor charge of the spectra without reliable charge can
+ * first be assigned using a ChargeAssigner, the charge line of the spectrum
+ * is then replaced. The following steps can be combined, in this order:
+ * deisotoping, where the isotopic peaks of fragments are summed into their
+ * monoisotopic peak, charge reduction, where the fragments found multiply
+ * charged when deisotoping are moved to their singly charged m/z, noise
+ * removal, where the peaks below a multiple of the median intensity are
+ * removed, and the selection of the most intense peaks per m/z window. The
+ * spectra keep their order and header lines so that the results of the
+ * reduced files can be used like the results of the original files.
+ *
+ * @author Marc Vaudel
+ */
+public class PeakPreprocessor {
+
+    /**
+     * The mass difference between two isotopic peaks of charge 1.
+     */
+    private static final double ISOTOPE_SPACING = 1.0033548;
+    /**
+     * The mass of a proton.
+     */
+    private static final double PROTON = 1.0072765;
+    /**
+     * The maximal fragment charge considered when deisotoping.
+     */
+    private static final int MAX_FRAGMENT_CHARGE = 4;
+    /**
+     * Step name: deisotoping.
+     */
+    public static final String DEISOTOPE = "deisotope";
+    /**
+     * Step name: charge reduction.
+     */
+    public static final String CHARGE_REDUCTION = "charge_reduction";
+    /**
+     * Step name: noise removal, followed by the factor of the median
+     * intensity.
+     */
+    public static final String NOISE = "noise";
+    /**
+     * Step name: most intense peaks per window, followed by the number of
+     * peaks and the width of the windows.
+     */
+    public static final String TOP_N = "top_n";
+    /**
+     * Step name: charge assignment, followed by the minimal confidence and
+     * optionally the highest charge.
+     */
+    public static final String CHARGE = "charge";
+    /**
+     * The highest charge considered by default when assigning charges.
+     */
+    private static final int DEFAULT_MAX_CHARGE = 4;
+    /**
+     * If true, the isotopic peaks are summed into their monoisotopic peak.
+     */
+    private final boolean deisotope;
+    /**
+     * If true, the multiply charged fragments are moved to their singly
+     * charged m/z. Requires deisotoping.
+     */
+    private final boolean chargeReduction;
+    /**
+     * The peaks with an intensity below this factor times the median intensity
+     * are removed, no noise removal if not positive.
+     */
+    private final double noiseFactor;
+    /**
+     * The number of peaks kept per m/z window, all peaks are kept if not
+     * positive.
+     */
+    private final int topN;
+    /**
+     * The width of the m/z windows.
+     */
+    private final double windowWidth;
+    /**
+     * The assigner of the precursor charges, null if the charges are not
+     * assigned.
+     */
+    private final ChargeAssigner chargeAssigner;
+
+    /**
+     * Constructor without charge assignment.
+     *
+     * @param deisotope if true, the isotopic peaks are summed into their
+     * monoisotopic peak
+     * @param chargeReduction if true, the multiply charged fragments are moved
+     * to their singly charged m/z, only used when deisotoping
+     * @param noiseFactor the peaks with an intensity below this factor times
+     * the median intensity are removed, not positive for no noise removal
+     * @param topN the number of peaks kept per m/z window, not positive to
+     * keep all peaks
+     * @param windowWidth the width of the m/z windows
+     */
+    public PeakPreprocessor(boolean deisotope, boolean chargeReduction, double noiseFactor, int topN, double windowWidth) {
+        this(deisotope, chargeReduction, noiseFactor, topN, windowWidth, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param deisotope if true, the isotopic peaks are summed into their
+     * monoisotopic peak
+     * @param chargeReduction if true, the multiply charged fragments are moved
+     * to their singly charged m/z, only used when deisotoping
+     * @param noiseFactor the peaks with an intensity below this factor times
+     * the median intensity are removed, not positive for no noise removal
+     * @param topN the number of peaks kept per m/z window, not positive to
+     * keep all peaks
+     * @param windowWidth the width of the m/z windows
+     * @param chargeAssigner the assigner of the precursor charges, null to
+     * keep the charges of the spectra
+     */
+    public PeakPreprocessor(boolean deisotope, boolean chargeReduction, double noiseFactor, int topN, double windowWidth, ChargeAssigner chargeAssigner) {
+        this.deisotope = deisotope;
+        this.chargeReduction = chargeReduction;
+        this.noiseFactor = noiseFactor;
+        this.topN = topN;
+        this.windowWidth = windowWidth;
+        this.chargeAssigner = chargeAssigner;
+    }
+
+    /**
+     * Parses the preprocessing steps of an algorithm from a comma separated
+     * list: charge:[minimal confidence]:[highest charge], deisotope,
+     * charge_reduction, noise:[factor of the median intensity] and
+     * top_n:[peaks]:[window width], for example
+     * "charge:0.8,deisotope,noise:2,top_n:10:100".
+     *
+     * @param steps the steps
+     *
+     * @return the preprocessor
+     *
+     * @throws IllegalArgumentException thrown if a step cannot be parsed
+     */
+    public static PeakPreprocessor parse(String steps) throws IllegalArgumentException {
+
+        boolean deisotope = false;
+        boolean chargeReduction = false;
+        double noiseFactor = 0;
+        int topN = 0;
+        double windowWidth = 100;
+        ChargeAssigner chargeAssigner = null;
+
+        for (String step : steps.split(",")) {
+            String[] split = step.trim().split(":");
+            try {
+                if (split[0].equals(DEISOTOPE) && split.length == 1) {
+                    deisotope = true;
+                } else if (split[0].equals(CHARGE_REDUCTION) && split.length == 1) {
+                    chargeReduction = true;
+                } else if (split[0].equals(CHARGE) && (split.length == 2 || split.length == 3)) {
+                    double minConfidence = Double.parseDouble(split[1]);
+                    int maxCharge = split.length == 3 ? Integer.parseInt(split[2]) : DEFAULT_MAX_CHARGE;
+                    if (minConfidence < 0 || minConfidence > 1 || maxCharge < 1) {
+                        throw new IllegalArgumentException("The confidence must be between 0 and 1 and the highest charge positive in '" + step + "'.");
+                    }
+                    chargeAssigner = new ChargeAssigner(minConfidence, maxCharge);
+                } else if (split[0].equals(NOISE) && split.length == 2) {
+                    noiseFactor = Double.parseDouble(split[1]);
+                } else if (split[0].equals(TOP_N) && (split.length == 2 || split.length == 3)) {
+                    topN = Integer.parseInt(split[1]);
+                    if (split.length == 3) {
+                        windowWidth = Double.parseDouble(split[2]);
+                    }
+                    if (topN <= 0 || windowWidth <= 0) {
+                        throw new IllegalArgumentException("The number of peaks and the window width must be positive in '" + step + "'.");
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unknown preprocessing step '" + step + "'.");
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Could not parse the preprocessing step '" + step + "'.");
+            }
+        }
+
+        if (chargeReduction && !deisotope) {
+            throw new IllegalArgumentException("The charge reduction requires the deisotoping.");
+        }
+
+        return new PeakPreprocessor(deisotope, chargeReduction, noiseFactor, topN, windowWidth, chargeAssigner);
+    }
+
+    /**
+     * Parses the preprocessing of every algorithm from a semicolon separated
+     * list of algorithm names followed by their steps, for example
+     * "directag=deisotope,top_n:10:100;pepnovo=noise:2".
+     *
+     * @param settings the preprocessing settings
+     *
+     * @return the preprocessors indexed by algorithm name in lower case
+     *
+     * @throws IllegalArgumentException thrown if the settings cannot be parsed
+     */
+    public static HashMap<String, PeakPreprocessor> parseAlgorithms(String settings) throws IllegalArgumentException {
+        HashMap<String, PeakPreprocessor> result = new HashMap<String, PeakPreprocessor>();
+        for (String algorithmSettings : settings.split(";")) {
+            int separator = algorithmSettings.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Missing algorithm in '" + algorithmSettings + "'.");
+            }
+            result.put(algorithmSettings.substring(0, separator).trim().toLowerCase(), parse(algorithmSettings.substring(separator + 1)));
+        }
+        return result;
+    }
+
+    /**
+     * Preprocesses the given mgf files in parallel. The reduced files are
+     * written in the given folder under the name of the original files.
+     *
+     * @param mgfFiles the mgf files
+     * @param destinationFolder the folder where to write the reduced files
+     * @param tolerance the fragment ion tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     * @param nThreads the number of files to process in parallel
+     * @param waitingHandler the waiting handler
+     *
+     * @return the reduced files, in the order of the mgf files
+     *
+     * @throws IOException thrown if a file cannot be read or written
+     */
+    public ArrayList<File> process(List<File> mgfFiles, File destinationFolder, final double tolerance, final boolean ppm, int nThreads,
+            final WaitingHandler waitingHandler) throws IOException {
+
+        destinationFolder.mkdirs();
+        ArrayList<File> result = new ArrayList<File>(mgfFiles.size());
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>(mgfFiles.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(nThreads, mgfFiles.size())), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "DeNovoGUI peak preprocessing");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        try {
+            for (final File mgfFile : mgfFiles) {
+                final File reducedFile = new File(destinationFolder, mgfFile.getName());
+                result.add(reducedFile);
+                futures.add(executor.submit(new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        process(mgfFile, reducedFile, tolerance, ppm, waitingHandler);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException("An error occurred while preprocessing the spectra.", cause);
+                } catch (InterruptedException e) {
+                    throw new IOException("The preprocessing of the spectra was interrupted.", e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return result;
+    }
+
+    /**
+     * Writes the reduced spectra of an mgf file.
+     *
+     * @param mgfFile the mgf file
+     * @param reducedFile the file where to write the reduced spectra
+     * @param tolerance the fragment ion tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if the file cannot be read or written
+     */
+    public void process(File mgfFile, File reducedFile, double tolerance, boolean ppm, WaitingHandler waitingHandler) throws IOException {
+
+        BufferedReader reader = new BufferedReader(new FileReader(mgfFile));
+        try {
+            BufferedWriter writer = new BufferedWriter(new FileWriter(reducedFile));
+            try {
+                boolean inSpectrum = false;
+                ArrayList<String> headerLines = new ArrayList<String>();
+                ArrayList<double[]> peaks = new ArrayList<double[]>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String trimmed = line.trim();
+                    if (trimmed.startsWith("BEGIN IONS")) {
+                        inSpectrum = true;
+                        headerLines.clear();
+                        peaks.clear();
+                        writer.write(line);
+                        writer.newLine();
+                    } else if (inSpectrum && trimmed.startsWith("END IONS")) {
+                        inSpectrum = false;
+                        writeSpectrum(writer, headerLines, peaks, tolerance, ppm);
+                        writer.write(line);
+                        writer.newLine();
+                        if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                            return;
+                        }
+                    } else if (inSpectrum && !trimmed.isEmpty() && Character.isDigit(trimmed.charAt(0))) {
+                        String[] split = trimmed.split("\\s+");
+                        if (split.length > 1) {
+                            peaks.add(new double[]{Double.parseDouble(split[0]), Double.parseDouble(split[1])});
+                        }
+                    } else if (inSpectrum) {
+                        headerLines.add(line);
+                    } else {
+                        writer.write(line);
+                        writer.newLine();
+                    }
+                }
+            } finally {
+                writer.close();
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Writes the header lines and the reduced peaks of a spectrum. If the
+     * charges are assigned and the spectrum has no single charge, its charge
+     * line is replaced by the assigned charges.
+     *
+     * @param writer the writer
+     * @param headerLines the header lines of the spectrum
+     * @param peaks the peaks of the spectrum as m/z and intensity pairs
+     * @param tolerance the fragment ion tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     *
+     * @throws IOException thrown if the spectrum cannot be written
+     */
+    private void writeSpectrum(BufferedWriter writer, ArrayList<String> headerLines, ArrayList<double[]> peaks, double tolerance, boolean ppm) throws IOException {
+
+        int[] charges = null;
+        double precursorMz = 0;
+        int chargeLine = -1;
+        for (int i = 0; i < headerLines.size(); i++) {
+            String trimmed = headerLines.get(i).trim();
+            if (trimmed.startsWith("CHARGE")) {
+                charges = parseCharges(trimmed.substring(trimmed.indexOf('=') + 1));
+                chargeLine = i;
+            } else if (trimmed.startsWith("PEPMASS")) {
+                String[] split = trimmed.substring(trimmed.indexOf('=') + 1).trim().split("\\s+");
+                try {
+                    precursorMz = Double.parseDouble(split[0]);
+                } catch (NumberFormatException e) {
+                    // no precursor, the charge cannot be assigned
+                }
+            }
+        }
+
+        if (chargeAssigner != null && (charges == null || charges.length != 1) && precursorMz > 0) {
+            ArrayList<double[]> sortedPeaks = new ArrayList<double[]>(peaks);
+            sortByMz(sortedPeaks);
+            double[] mzs = new double[sortedPeaks.size()];
+            double[] intensities = new double[sortedPeaks.size()];
+            for (int i = 0; i < sortedPeaks.size(); i++) {
+                mzs[i] = sortedPeaks.get(i)[0];
+                intensities[i] = sortedPeaks.get(i)[1];
+            }
+            charges = chargeAssigner.assign(precursorMz, mzs, intensities, tolerance, ppm);
+            StringBuilder newChargeLine = new StringBuilder("CHARGE=");
+            for (int i = 0; i < charges.length; i++) {
+                if (i > 0) {
+                    newChargeLine.append(" and ");
+                }
+                newChargeLine.append(charges[i]).append("+");
+            }
+            if (chargeLine >= 0) {
+                headerLines.set(chargeLine, newChargeLine.toString());
+            } else {
+                headerLines.add(newChargeLine.toString());
+            }
+        }
+
+        for (String headerLine : headerLines) {
+            writer.write(headerLine);
+            writer.newLine();
+        }
+
+        int precursorCharge = 0;
+        if (charges != null) {
+            for (int charge : charges) {
+                precursorCharge = Math.max(precursorCharge, charge);
+            }
+        }
+        for (double[] peak : reduce(peaks, precursorCharge, tolerance, ppm)) {
+            writer.write(peak[0] + " " + peak[1]);
+            writer.newLine();
+        }
+    }
+
+    /**
+     * Returns the reduced peak list of a spectrum.
+     *
+     * @param peaks the peaks of the spectrum as m/z and intensity pairs
+     * @param precursorCharge the charge of the precursor, 0 if not known
+     * @param tolerance the fragment ion tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     *
+     * @return the reduced peaks sorted by m/z
+     */
+    public ArrayList<double[]> reduce(List<double[]> peaks, int precursorCharge, double tolerance, boolean ppm) {
+
+        ArrayList<double[]> result = new ArrayList<double[]>(peaks.size());
+        for (double[] peak : peaks) {
+            if (peak[1] > 0) {
+                result.add(new double[]{peak[0], peak[1]});
+            }
+        }
+        if (result.size() <= 1) {
+            return result;
+        }
+        sortByMz(result);
+
+        if (deisotope) {
+            // the fragments carry at most the charge of the precursor minus one
+            int maxCharge = precursorCharge > 1 ? Math.min(precursorCharge - 1, MAX_FRAGMENT_CHARGE) : 2;
+            result = deisotope(result, Math.max(1, maxCharge), tolerance, ppm);
+        }
+        if (noiseFactor > 0) {
+            result = removeNoise(result);
+        }
+        if (topN > 0) {
+            result = selectTopN(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Sums the isotopic peaks into their monoisotopic peak and, if charge
+     * reduction is enabled, moves the multiply charged fragments to their
+     * singly charged m/z. The isotopic clusters are expected to have a
+     * decreasing intensity, which is the case for most fragment masses.
+     *
+     * @param peaks the peaks sorted by m/z
+     * @param maxCharge the maximal fragment charge
+     * @param tolerance the fragment ion tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     *
+     * @return the deisotoped peaks sorted by m/z
+     */
+    private ArrayList<double[]> deisotope(ArrayList<double[]> peaks, int maxCharge, double tolerance, boolean ppm) {
+
+        int nPeaks = peaks.size();
+        double[] mzs = new double[nPeaks];
+        for (int i = 0; i < nPeaks; i++) {
+            mzs[i] = peaks.get(i)[0];
+        }
+        boolean[] isotope = new boolean[nPeaks];
+        ArrayList<double[]> result = new ArrayList<double[]>(nPeaks);
+
+        for (int i = 0; i < nPeaks; i++) {
+            if (isotope[i]) {
+                continue;
+            }
+            double[] peak = peaks.get(i);
+            double intensity = peak[1];
+            int clusterCharge = 0;
+
+            // the highest charges first, the isotopes of charge 1 would otherwise match every second peak of charge 2
+            for (int charge = maxCharge; charge >= 1 && clusterCharge == 0; charge--) {
+                int previous = i;
+                double expectedMz = peak[0] + ISOTOPE_SPACING / charge;
+                int next;
+                while ((next = findPeak(mzs, isotope, expectedMz, getTolerance(expectedMz, tolerance, ppm), previous)) >= 0
+                        && peaks.get(next)[1] < peaks.get(previous)[1]) {
+                    isotope[next] = true;
+                    intensity += peaks.get(next)[1];
+                    clusterCharge = charge;
+                    previous = next;
+                    expectedMz = peaks.get(next)[0] + ISOTOPE_SPACING / charge;
+                }
+            }
+
+            double mz = peak[0];
+            if (chargeReduction && clusterCharge > 1) {
+                mz = (mz - PROTON) * clusterCharge + PROTON;
+            }
+            result.add(new double[]{mz, intensity});
+        }
+
+        if (chargeReduction) {
+            // the reduced fragments may fall on singly charged peaks
+            sortByMz(result);
+            ArrayList<double[]> merged = new ArrayList<double[]>(result.size());
+            for (double[] peak : result) {
+                double[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+                if (last != null && peak[0] - last[0] <= getTolerance(peak[0], tolerance, ppm)) {
+                    if (peak[1] > last[1]) {
+                        last[0] = peak[0];
+                    }
+                    last[1] += peak[1];
+                } else {
+                    merged.add(peak);
+                }
+            }
+            result = merged;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the index of the peak closest to the given m/z within the
+     * tolerance, following the given peak and not assigned to a cluster yet.
+     *
+     * @param mzs the m/z of the peaks in ascending order
+     * @param isotope indicates which peaks are assigned to a cluster
+     * @param mz the m/z
+     * @param tolerance the tolerance in Dalton
+     * @param start the index of the peak after which to search
+     *
+     * @return the index of the peak, -1 if none
+     */
+    private static int findPeak(double[] mzs, boolean[] isotope, double mz, double tolerance, int start) {
+        int index = Arrays.binarySearch(mzs, start + 1, mzs.length, mz - tolerance);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        int result = -1;
+        double bestError = tolerance;
+        for (int i = index; i < mzs.length && mzs[i] <= mz + tolerance; i++) {
+            double error = Math.abs(mzs[i] - mz);
+            if (!isotope[i] && error <= bestError) {
+                result = i;
+                bestError = error;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the peaks with an intensity below the noise factor times the
+     * median intensity. The most intense peak is always kept.
+     *
+     * @param peaks the peaks sorted by m/z
+     *
+     * @return the remaining peaks sorted by m/z
+     */
+    private ArrayList<double[]> removeNoise(ArrayList<double[]> peaks) {
+
+        double[] intensities = new double[peaks.size()];
+        double maxIntensity = 0;
+        for (int i = 0; i < peaks.size(); i++) {
+            intensities[i] = peaks.get(i)[1];
+            maxIntensity = Math.max(maxIntensity, intensities[i]);
+        }
+        Arrays.sort(intensities);
+        int middle = intensities.length / 2;
+        double median = intensities.length % 2 == 1 ? intensities[middle] : (intensities[middle - 1] + intensities[middle]) / 2;
+        double threshold = Math.min(noiseFactor * median, maxIntensity);
+
+        ArrayList<double[]> result = new ArrayList<double[]>(peaks.size());
+        for (double[] peak : peaks) {
+            if (peak[1] >= threshold) {
+                result.add(peak);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keeps the most intense peaks of every m/z window.
+     *
+     * @param peaks the peaks sorted by m/z
+     *
+     * @return the remaining peaks sorted by m/z
+     */
+    private ArrayList<double[]> selectTopN(ArrayList<double[]> peaks) {
+
+        ArrayList<double[]> byIntensity = new ArrayList<double[]>(peaks);
+        Collections.sort(byIntensity, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] peak1, double[] peak2) {
+                return Double.compare(peak2[1], peak1[1]);
+            }
+        });
+
+        HashMap<Long, Integer> windowCounts = new HashMap<Long, Integer>();
+        ArrayList<double[]> result = new ArrayList<double[]>(peaks.size());
+        for (double[] peak : byIntensity) {
+            long window = (long) Math.floor(peak[0] / windowWidth);
+            Integer count = windowCounts.get(window);
+            if (count == null) {
+                count = 0;
+            }
+            if (count < topN) {
+                result.add(peak);
+                windowCounts.put(window, count + 1);
+            }
+        }
+        sortByMz(result);
+        return result;
+    }
+
+    /**
+     * Sorts peaks by ascending m/z.
+     *
+     * @param peaks the peaks
+     */
+    private static void sortByMz(List<double[]> peaks) {
+        Collections.sort(peaks, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] peak1, double[] peak2) {
+                return Double.compare(peak1[0], peak2[0]);
+            }
+        });
+    }
+
+    /**
+     * Returns the tolerance in Dalton at the given m/z.
+     *
+     * @param mz the m/z
+     * @param tolerance the tolerance
+     * @param ppm indicates whether the tolerance is in ppm, in Dalton
+     * otherwise
+     *
+     * @return the tolerance in Dalton
+     */
+    private static double getTolerance(double mz, double tolerance, boolean ppm) {
+        return ppm ? mz * tolerance / 1000000 : tolerance;
+    }
+
+    /**
+     * Returns the charges of a charge line, for example 2 and 3 for "2+ and
+     * 3+".
+     *
+     * @param value the value of the charge line
+     *
+     * @return the charges, empty if none
+     */
+    private static int[] parseCharges(String value) {
+        ArrayList<Integer> charges = new ArrayList<Integer>(2);
+        for (String part : value.split("[^0-9]+")) {
+            if (!part.isEmpty()) {
+                try {
+                    charges.add(Integer.parseInt(part));
+                } catch (NumberFormatException e) {
+                    // not a charge
+                }
+            }
+        }
+        int[] result = new int[charges.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = charges.get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        ArrayList<String> steps = new ArrayList<String>();
+        if (chargeAssigner != null) {
+            steps.add(CHARGE + ":" + chargeAssigner.getMinConfidence() + ":" + chargeAssigner.getMaxCharge());
+        }
+        if (deisotope) {
+            steps.add(DEISOTOPE);
+        }
+        if (chargeReduction) {
+            steps.add(CHARGE_REDUCTION);
+        }
+        if (noiseFactor > 0) {
+            steps.add(NOISE + ":" + noiseFactor);
+        }
+        if (topN > 0) {
+            steps.add(TOP_N + ":" + topN + ":" + windowWidth);
+        }
+        StringBuilder result = new StringBuilder();
+        for (String step : steps) {
+            if (result.length() > 0) {
+                result.append(",");
+            }
+            result.append(step);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Indicates whether the preprocessor changes the spectra.
+     *
+     * @return true if at least one step is enabled
+     */
+    public boolean isEnabled() {
+        return deisotope || noiseFactor > 0 || topN > 0 || chargeAssigner != null;
+    }
+
+    /**
+     * Indicates whether the precursor charges are assigned, in which case the
+     * algorithms can use the charges of the spectra instead of trying every
+     * charge.
+     *
+     * @return true if the precursor charges are assigned
+     */
+    public boolean isAssigningCharges() {
+        return chargeAssigner != null;
+    }
+}
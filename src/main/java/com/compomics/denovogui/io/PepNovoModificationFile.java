@@ -7,6 +7,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -47,18 +48,13 @@ public class PepNovoModificationFile {
      */
     private static final String ALL_LOCATIONS = "ALL";
     /**
-     * Mappings from modification name to modification ID in PepNovo+, e.g.
-     * C+57.
+     * Maximum mass offset value.
      */
-    private static Map<String, String> modIdMap;
+    private static final double maxMassOffsetValue = -50; // @TODO: why -50???
     /**
-     * Inverted mapping from modification ID to modification names.
+     * The name of the PepNovo+ model folder.
      */
-    private static HashMap<String, String> invertedModIdMap;
-    /**
-     * Maximum mass offset value.
-     */
-    private static double maxMassOffsetValue = -50; // @TODO: why -50???
+    public static final String MODELS_FOLDER = "Models";
 
     /**
      * This method writes the modifications to a file.
@@ -75,8 +71,6 @@ public class PepNovoModificationFile {
         writer.append(getHeader());
         writer.newLine();
 
-        modIdMap = new HashMap<String, String>();
-
         // Write the fixed modifications
         for (String mod : modificationProfile.getFixedModifications()) {
             writePtmLine(writer, mod, FIXED_PTM);
@@ -90,6 +84,67 @@ public class PepNovoModificationFile {
         writer.close();
     }
 
+    /**
+     * Creates a model folder for a sequencing session: the content of the
+     * PepNovo+ model folder is linked in a temporary folder where the
+     * modifications of the session are written. Sessions with different
+     * modifications can thus run PepNovo+ concurrently. The folder must be
+     * deleted using deleteModelFolder.
+     *
+     * @param pepNovoFolder the PepNovo+ folder
+     * @param modificationProfile the modification profile of the session
+     *
+     * @return the model folder of the session
+     *
+     * @throws IOException thrown if the folder cannot be created, for example
+     * if the file system does not support symbolic links
+     */
+    public static File writeModelFolder(File pepNovoFolder, PtmSettings modificationProfile) throws IOException {
+
+        File[] models = new File(pepNovoFolder, MODELS_FOLDER).listFiles();
+        if (models == null) {
+            throw new IOException("PepNovo+ models not found in " + pepNovoFolder.getAbsolutePath() + ".");
+        }
+
+        File modelFolder = Files.createTempDirectory("denovogui_pepnovo_models").toFile();
+        try {
+            for (File model : models) {
+                if (!model.getName().equals(name)) {
+                    Files.createSymbolicLink(new File(modelFolder, model.getName()).toPath(), model.getAbsoluteFile().toPath());
+                }
+            }
+            writeFile(modelFolder, modificationProfile);
+        } catch (IOException e) {
+            deleteModelFolder(modelFolder);
+            throw e;
+        } catch (UnsupportedOperationException e) {
+            deleteModelFolder(modelFolder);
+            throw new IOException("Symbolic links are not supported.", e);
+        }
+
+        return modelFolder;
+    }
+
+    /**
+     * Deletes a model folder created by writeModelFolder. The links are
+     * deleted, not the models they point to.
+     *
+     * @param modelFolder the model folder
+     */
+    public static void deleteModelFolder(File modelFolder) {
+        File[] files = modelFolder.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    Files.deleteIfExists(file.toPath());
+                } catch (IOException e) {
+                    // left in the temporary folder
+                }
+            }
+        }
+        modelFolder.delete();
+    }
+
     /**
      * Writes the lines corresponding to the given PTM name.
      *
@@ -127,7 +182,6 @@ public class PepNovoModificationFile {
                     writer.append(variable + SPACE);
                     writer.append("N_TERM" + SPACE);
                     writer.append("^" + connector + Long.toString(Math.round(ptmMass)) + SPACE);
-                    modIdMap.put(ptm.getName(), "^" + connector + Long.toString(Math.round(ptmMass)));
                     writer.append(ptm.getName().toUpperCase());
                     writer.newLine();
                 } else if (ptmFactory.getPTM(mod).getType() == PTM.MODC || ptmFactory.getPTM(mod).getType() == PTM.MODCAA
@@ -137,7 +191,6 @@ public class PepNovoModificationFile {
                     writer.append(variable + SPACE);
                     writer.append("C_TERM" + SPACE);
                     writer.append("$" + connector + Long.toString(Math.round(ptmMass)) + SPACE);
-                    modIdMap.put(ptm.getName(), "$" + connector + Long.toString(Math.round(ptmMass)));
                     writer.append(ptm.getName().toUpperCase());
                     writer.newLine();
                 }
@@ -152,7 +205,6 @@ public class PepNovoModificationFile {
                         writer.append(variable + SPACE);
                         writer.append("+1" + SPACE);
                         writer.append(residue + connector + Long.toString(Math.round(ptmMass)) + SPACE);
-                        modIdMap.put(ptm.getName(), residue + connector + Long.toString(Math.round(ptmMass)));
                     } else if (ptmFactory.getPTM(mod).getType() == PTM.MODC || ptmFactory.getPTM(mod).getType() == PTM.MODCAA
                             || ptmFactory.getPTM(mod).getType() == PTM.MODCP || ptmFactory.getPTM(mod).getType() == PTM.MODCPAA) {
                         writer.append(residue + SEP);
@@ -160,14 +212,12 @@ public class PepNovoModificationFile {
                         writer.append(variable + SPACE);
                         writer.append("-1" + SPACE);
                         writer.append(residue + connector + Long.toString(Math.round(ptmMass)) + SPACE);
-                        modIdMap.put(ptm.getName(), residue + connector + Long.toString(Math.round(ptmMass)));
                     } else {
                         writer.append(residue + SEP);
                         writer.append(ptmMass + SPACE);
                         writer.append(variable + SPACE);
                         writer.append(ALL_LOCATIONS + SPACE);
                         writer.append(residue + connector + Long.toString(Math.round(ptmMass)) + SPACE);
-                        modIdMap.put(ptm.getName(), residue + connector + Long.toString(Math.round(ptmMass)));
                     }
 
                     writer.append(ptm.getName().toUpperCase());
@@ -178,11 +228,16 @@ public class PepNovoModificationFile {
     }
 
     /**
-     * Fill the modification ID map.
+     * Returns the mapping from modification name to modification ID in
+     * PepNovo+, e.g. C+57, for all the modifications of the factory. A new map
+     * is returned at every call so that concurrent sessions do not share
+     * state.
+     *
+     * @return the mapping from modification name to modification ID
      */
-    private static void fillModIdMap() {
+    private static HashMap<String, String> getModIdMap() {
 
-        modIdMap = new HashMap<String, String>();
+        HashMap<String, String> modIdMap = new HashMap<String, String>();
         PTMFactory ptmFactory = PTMFactory.getInstance();
         List<String> mods = new ArrayList<String>();
         mods.addAll(ptmFactory.getDefaultModifications());
@@ -223,6 +278,8 @@ public class PepNovoModificationFile {
                 }
             }
         }
+
+        return modIdMap;
     }
 
     /**
@@ -241,10 +298,8 @@ public class PepNovoModificationFile {
      */
     public static Map<String, String> getInvertedModIdMap() {
 
-        fillModIdMap();
-
-        invertedModIdMap = new HashMap<String, String>();
-        for (Map.Entry<String, String> entry : modIdMap.entrySet()) {
+        HashMap<String, String> invertedModIdMap = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : getModIdMap().entrySet()) {
             invertedModIdMap.put(entry.getValue(), entry.getKey());
         }
 
@@ -258,7 +313,7 @@ public class PepNovoModificationFile {
      * @return the list of modification in a pep novo format
      */
     public static String getModsString(ArrayList<String> modifications) {
-        fillModIdMap();
+        HashMap<String, String> modIdMap = getModIdMap();
         Collections.sort(modifications);
         String result = "";
         // Append the selected modifications
@@ -0,0 +1,174 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.biology.Peptide;
+import com.compomics.util.experiment.identification.Advocate;
+import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
+import com.compomics.util.experiment.identification.amino_acid_tags.matchers.TagMatcher;
+import com.compomics.util.experiment.identification.protein_inference.PeptideMapper;
+import com.compomics.util.experiment.identification.protein_inference.PeptideProteinMapping;
+import com.compomics.util.experiment.identification.protein_inference.proteintree.ProteinTree;
+import com.compomics.util.experiment.identification.spectrum_assumptions.PeptideAssumption;
+import com.compomics.util.experiment.identification.spectrum_assumptions.TagAssumption;
+import com.compomics.util.preferences.SequenceMatchingPreferences;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Maps the de novo assumptions of a spectrum to the proteins of the FASTA
+ * file: the tags are completed to peptides found in the proteins and the
+ * parent proteins of the peptides are set.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class ProteinMapper {
+
+    /**
+     * The peptide mapper of the FASTA file.
+     */
+    private final PeptideMapper peptideMapper;
+    /**
+     * The tag matcher.
+     */
+    private final TagMatcher tagMatcher;
+    /**
+     * The sequence matching preferences.
+     */
+    private final SequenceMatchingPreferences sequenceMatchingPreferences;
+    /**
+     * The fragment ion accuracy.
+     */
+    private final double fragmentIonAccuracy;
+    /**
+     * The minimal length of amino acid sequence needed to map a tag, 0 if
+     * any.
+     */
+    private final int treeKeyLength;
+
+    /**
+     * Constructor.
+     *
+     * @param peptideMapper the peptide mapper of the FASTA file
+     * @param fixedModifications the fixed modifications
+     * @param variableModifications the variable modifications
+     * @param sequenceMatchingPreferences the sequence matching preferences
+     * @param fragmentIonAccuracy the fragment ion accuracy
+     */
+    public ProteinMapper(PeptideMapper peptideMapper, ArrayList<String> fixedModifications, ArrayList<String> variableModifications,
+            SequenceMatchingPreferences sequenceMatchingPreferences, double fragmentIonAccuracy) {
+        this.peptideMapper = peptideMapper;
+        this.sequenceMatchingPreferences = sequenceMatchingPreferences;
+        this.fragmentIonAccuracy = fragmentIonAccuracy;
+        tagMatcher = new TagMatcher(fixedModifications, variableModifications, sequenceMatchingPreferences);
+        if (peptideMapper instanceof ProteinTree) {
+            treeKeyLength = ((ProteinTree) peptideMapper).getInitialTagSize();
+        } else {
+            treeKeyLength = 0;
+        }
+    }
+
+    /**
+     * Maps the assumptions of a spectrum passing the score threshold to the
+     * proteins. The peptides found for the tags are added to the assumptions
+     * of the tags.
+     *
+     * @param allAssumptions the assumptions of the spectrum indexed by
+     * advocate and score
+     * @param threshold the score threshold
+     * @param greaterThan a boolean indicating whether the score has to be
+     * higher than the threshold
+     * @param numberOfMatches the limit in number of matches
+     *
+     * @return a boolean indicating whether a peptide was found
+     *
+     * @throws IOException exception thrown whenever an error occurred while
+     * reading or writing a file
+     * @throws ClassNotFoundException exception thrown whenever an error
+     * occurred while deserializing an object
+     * @throws InterruptedException exception thrown whenever a threading error
+     * occurred
+     * @throws SQLException exception thrown whenever an error occurs while
+     * interacting with the back-end database
+     */
+    public boolean mapAssumptions(HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> allAssumptions,
+            double threshold, boolean greaterThan, int numberOfMatches) throws IOException, ClassNotFoundException, InterruptedException, SQLException {
+
+        boolean peptideFound = false;
+
+        for (int advocateIndex : allAssumptions.keySet()) {
+
+            HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> assumptionsMap = allAssumptions.get(advocateIndex);
+
+            if (assumptionsMap != null) {
+                ArrayList<Double> scores = new ArrayList<Double>(assumptionsMap.keySet());
+                if (advocateIndex == Advocate.pepnovo.getIndex()
+                        || advocateIndex == Advocate.pNovo.getIndex()
+                        || advocateIndex == Advocate.novor.getIndex()) {
+                    Collections.sort(scores, Collections.reverseOrder());
+                } else {
+                    Collections.sort(scores);
+                }
+
+                for (int i = 0; i < scores.size() && i < numberOfMatches; i++) {
+
+                    double score = scores.get(i);
+                    ArrayList<SpectrumIdentificationAssumption> tempAssumptions = assumptionsMap.get(score);
+                    ArrayList<SpectrumIdentificationAssumption> denovoAssumptions = new ArrayList<SpectrumIdentificationAssumption>(tempAssumptions);
+
+                    for (SpectrumIdentificationAssumption assumption : denovoAssumptions) {
+
+                        boolean passesThreshold;
+
+                        if (greaterThan) {
+                            passesThreshold = assumption.getScore() >= threshold;
+                        } else { // less than
+                            passesThreshold = assumption.getScore() <= threshold;
+                        }
+
+                        if (passesThreshold) {
+                            if (assumption instanceof TagAssumption) {
+                                TagAssumption tagAssumption = (TagAssumption) assumption;
+                                int longestAminoAcidSequence = tagAssumption.getTag().getLongestAminoAcidSequence().length();
+                                if (longestAminoAcidSequence >= treeKeyLength) {
+                                    ArrayList<PeptideProteinMapping> proteinMapping = peptideMapper.getProteinMapping(
+                                            tagAssumption.getTag(), tagMatcher, sequenceMatchingPreferences, fragmentIonAccuracy);
+                                    for (Peptide peptide : PeptideProteinMapping.getPeptides(proteinMapping, sequenceMatchingPreferences)) {
+                                        if (!peptideFound) {
+                                            peptideFound = true;
+                                        }
+                                        PeptideAssumption peptideAssumption = new PeptideAssumption(peptide, tagAssumption.getRank(),
+                                                advocateIndex, assumption.getIdentificationCharge(), score, assumption.getIdentificationFile());
+                                        peptideAssumption.addUrParam(tagAssumption);
+                                        tempAssumptions.add(peptideAssumption);
+                                    }
+                                }
+                            } else if (assumption instanceof PeptideAssumption) {
+                                if (!peptideFound) {
+                                    peptideFound = true;
+                                }
+                                PeptideAssumption peptideAssumption = (PeptideAssumption) assumption;
+                                ArrayList<PeptideProteinMapping> proteinMapping = peptideMapper.getProteinMapping(
+                                        peptideAssumption.getPeptide().getSequence(), sequenceMatchingPreferences);
+                                HashSet<String> proteins = new HashSet<String>(proteinMapping.size());
+                                for (PeptideProteinMapping peptideProteinMapping : proteinMapping) {
+                                    proteins.add(peptideProteinMapping.getProteinAccession());
+                                }
+                                ArrayList<String> sortedProteinList = new ArrayList<String>(proteins);
+                                Collections.sort(sortedProteinList);
+                                peptideAssumption.getPeptide().setParentProteins(sortedProteinList);
+                            } else {
+                                throw new UnsupportedOperationException("Peptide mapping not supported for assumption of type " + assumption.getClass() + ".");
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return peptideFound;
+    }
+}
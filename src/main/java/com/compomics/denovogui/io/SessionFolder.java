@@ -0,0 +1,170 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+
+/**
+ * Scratch folder of a sequencing session in the output folder, named
+ * ".session_" followed by a random id, where the temporary files of the
+ * session are written. Only this folder is deleted at the end of the session
+ * so that the other content of the output folder, including the files of the
+ * other sessions, is never affected. The folder is locked while the session
+ * runs: the folders left by sessions which did not end, for example when
+ * DeNovoGUI was killed, are not locked anymore and can be taken over.
+ *
+ * @author Marc Vaudel
+ */
+public class SessionFolder {
+
+    /**
+     * The prefix of the names of the session folders.
+     */
+    public static final String PREFIX = ".session_";
+    /**
+     * The name of the lock file of a session folder.
+     */
+    private static final String LOCK_FILE = "session.lock";
+    /**
+     * The number of attempts to create a locked session folder.
+     */
+    private static final int N_ATTEMPTS = 10;
+    /**
+     * The folder.
+     */
+    private final File folder;
+    /**
+     * The lock file, null if locks are not supported.
+     */
+    private RandomAccessFile lockFile;
+    /**
+     * The lock of the folder, null if locks are not supported.
+     */
+    private FileLock lock;
+
+    /**
+     * Constructor.
+     *
+     * @param folder the folder
+     * @param lockFile the lock file, null if locks are not supported
+     * @param lock the lock of the folder, null if locks are not supported
+     */
+    private SessionFolder(File folder, RandomAccessFile lockFile, FileLock lock) {
+        this.folder = folder;
+        this.lockFile = lockFile;
+        this.lock = lock;
+    }
+
+    /**
+     * Creates and locks a new session folder in the given folder.
+     *
+     * @param parentFolder the folder where to create the session folder
+     *
+     * @return the session folder
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    public static SessionFolder create(File parentFolder) throws IOException {
+
+        if (!parentFolder.exists() && !parentFolder.mkdirs()) {
+            throw new IOException("Impossible to create folder " + parentFolder.getAbsolutePath() + ".");
+        }
+
+        for (int i = 0; i < N_ATTEMPTS; i++) {
+            File folder = Files.createTempDirectory(parentFolder.toPath(), PREFIX).toFile();
+            RandomAccessFile lockFile = new RandomAccessFile(new File(folder, LOCK_FILE), "rw");
+            FileLock lock;
+            try {
+                lock = lockFile.getChannel().tryLock();
+            } catch (IOException e) {
+                // locks not supported by the file system
+                lockFile.close();
+                return new SessionFolder(folder, null, null);
+            }
+            if (lock != null && folder.exists()) {
+                return new SessionFolder(folder, lockFile, lock);
+            }
+            // the folder was taken over between its creation and its lock
+            lockFile.close();
+        }
+
+        throw new IOException("Impossible to lock a session folder in " + parentFolder.getAbsolutePath() + ".");
+    }
+
+    /**
+     * Takes over the given sub-folder of the session folders left by
+     * sessions which did not end, if this session folder does not have it
+     * yet, and deletes these session folders. The folders of the sessions in
+     * progress, in this or another process, are left as they are.
+     *
+     * @param subFolderName the name of the sub-folder to take over
+     */
+    public void adopt(String subFolderName) {
+
+        File[] siblings = folder.getParentFile().listFiles();
+        if (siblings == null) {
+            return;
+        }
+
+        File subFolder = new File(folder, subFolderName);
+        for (File sibling : siblings) {
+            File siblingLock = new File(sibling, LOCK_FILE);
+            if (sibling.equals(folder) || !sibling.getName().startsWith(PREFIX) || !siblingLock.exists()) {
+                continue;
+            }
+            try {
+                RandomAccessFile siblingLockFile = new RandomAccessFile(siblingLock, "rw");
+                try {
+                    FileLock siblingFileLock = siblingLockFile.getChannel().tryLock();
+                    if (siblingFileLock == null) {
+                        continue;
+                    }
+                    File siblingSubFolder = new File(sibling, subFolderName);
+                    if (!subFolder.exists() && siblingSubFolder.exists()) {
+                        siblingSubFolder.renameTo(subFolder);
+                    }
+                } finally {
+                    siblingLockFile.close();
+                }
+                Util.deleteDir(sibling);
+            } catch (OverlappingFileLockException e) {
+                // session of this process
+            } catch (IOException e) {
+                // locks not supported or folder in use
+            }
+        }
+    }
+
+    /**
+     * Returns the folder.
+     *
+     * @return the folder
+     */
+    public File getFolder() {
+        return folder;
+    }
+
+    /**
+     * Releases the lock and deletes the folder with its content. The method
+     * can be called several times.
+     */
+    public synchronized void delete() {
+        if (lockFile != null) {
+            try {
+                lock.release();
+                lockFile.close();
+            } catch (IOException e) {
+                // the folder is deleted anyway
+            }
+            lockFile = null;
+            lock = null;
+        }
+        if (folder.exists()) {
+            Util.deleteDir(folder);
+        }
+    }
+}
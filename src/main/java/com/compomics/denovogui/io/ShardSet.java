@@ -0,0 +1,257 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Properties;
+
+/**
+ * Set of mgf shards of a spectrum file sequenced by every algorithm. The
+ * shards are described by a manifest written next to them, named after the
+ * spectrum file followed by ".shards", which records the size and
+ * modification date of the spectrum file and the number of spectra of every
+ * shard. Shards left by an interrupted run are reused as long as the
+ * spectrum file did not change.
+ *
+ * @author Marc Vaudel
+ */
+public class ShardSet {
+
+    /**
+     * The extension of the manifest files.
+     */
+    public static final String MANIFEST_EXTENSION = ".shards";
+    /**
+     * Manifest property: path of the spectrum file.
+     */
+    private static final String SOURCE = "source";
+    /**
+     * Manifest property: size of the spectrum file in bytes.
+     */
+    private static final String LENGTH = "length";
+    /**
+     * Manifest property: modification date of the spectrum file.
+     */
+    private static final String MODIFIED = "modified";
+    /**
+     * Manifest property: number of shards.
+     */
+    private static final String N_SHARDS = "shards";
+    /**
+     * Manifest property prefix: name, number of spectra and size of a shard.
+     */
+    private static final String SHARD = "shard.";
+    /**
+     * The manifest file.
+     */
+    private final File manifestFile;
+    /**
+     * The shard files in the order of the spectrum file.
+     */
+    private final ArrayList<File> shardFiles;
+    /**
+     * The number of spectra of every shard.
+     */
+    private final ArrayList<Integer> shardSpectra;
+
+    /**
+     * Constructor.
+     *
+     * @param manifestFile the manifest file
+     * @param shardFiles the shard files in the order of the spectrum file
+     * @param shardSpectra the number of spectra of every shard
+     */
+    private ShardSet(File manifestFile, ArrayList<File> shardFiles, ArrayList<Integer> shardSpectra) {
+        this.manifestFile = manifestFile;
+        this.shardFiles = shardFiles;
+        this.shardSpectra = shardSpectra;
+    }
+
+    /**
+     * Creates the shard set of a spectrum file from the given shards and
+     * writes its manifest.
+     *
+     * @param spectrumFile the spectrum file
+     * @param shardFiles the shard files in the order of the spectrum file
+     * @param shardFolder the folder containing the shards
+     *
+     * @return the shard set
+     *
+     * @throws IOException thrown if the shards cannot be read or the manifest
+     * cannot be written
+     */
+    public static ShardSet create(File spectrumFile, ArrayList<File> shardFiles, File shardFolder) throws IOException {
+
+        ArrayList<Integer> shardSpectra = new ArrayList<Integer>(shardFiles.size());
+        Properties manifest = new Properties();
+        manifest.setProperty(SOURCE, spectrumFile.getAbsolutePath());
+        manifest.setProperty(LENGTH, String.valueOf(spectrumFile.length()));
+        manifest.setProperty(MODIFIED, String.valueOf(spectrumFile.lastModified()));
+        manifest.setProperty(N_SHARDS, String.valueOf(shardFiles.size()));
+        for (int i = 0; i < shardFiles.size(); i++) {
+            File shardFile = shardFiles.get(i);
+            int nSpectra = FileProcessor.countSpectra(shardFile);
+            shardSpectra.add(nSpectra);
+            manifest.setProperty(SHARD + i, shardFile.getName() + "\t" + nSpectra + "\t" + shardFile.length());
+        }
+
+        // the manifest is written last so that incomplete shards are never reused
+        File manifestFile = getManifestFile(spectrumFile, shardFolder);
+        File tempFile = new File(shardFolder, manifestFile.getName() + ".tmp");
+        OutputStream out = new FileOutputStream(tempFile);
+        try {
+            manifest.store(out, "DeNovoGUI shards of " + spectrumFile.getName());
+        } finally {
+            out.close();
+        }
+        manifestFile.delete();
+        if (!tempFile.renameTo(manifestFile)) {
+            throw new IOException("Impossible to write the shard manifest " + manifestFile.getAbsolutePath() + ".");
+        }
+
+        return new ShardSet(manifestFile, shardFiles, shardSpectra);
+    }
+
+    /**
+     * Loads the shard set of a spectrum file from its manifest. Returns null
+     * if there is no manifest, if the spectrum file changed since the shards
+     * were written or if a shard is missing.
+     *
+     * @param spectrumFile the spectrum file
+     * @param shardFolder the folder containing the shards
+     *
+     * @return the shard set, null if not available
+     */
+    public static ShardSet load(File spectrumFile, File shardFolder) {
+
+        File manifestFile = getManifestFile(spectrumFile, shardFolder);
+        if (!manifestFile.exists()) {
+            return null;
+        }
+
+        try {
+            Properties manifest = new Properties();
+            InputStream in = new FileInputStream(manifestFile);
+            try {
+                manifest.load(in);
+            } finally {
+                in.close();
+            }
+
+            if (!spectrumFile.getAbsolutePath().equals(manifest.getProperty(SOURCE))
+                    || spectrumFile.length() != Long.parseLong(manifest.getProperty(LENGTH))
+                    || spectrumFile.lastModified() != Long.parseLong(manifest.getProperty(MODIFIED))) {
+                return null;
+            }
+
+            int nShards = Integer.parseInt(manifest.getProperty(N_SHARDS));
+            ArrayList<File> shardFiles = new ArrayList<File>(nShards);
+            ArrayList<Integer> shardSpectra = new ArrayList<Integer>(nShards);
+            for (int i = 0; i < nShards; i++) {
+                String[] shard = manifest.getProperty(SHARD + i).split("\t");
+                File shardFile = new File(shardFolder, shard[0]);
+                if (!shardFile.exists() || shardFile.length() != Long.parseLong(shard[2])) {
+                    return null;
+                }
+                shardFiles.add(shardFile);
+                shardSpectra.add(Integer.parseInt(shard[1]));
+            }
+
+            return new ShardSet(manifestFile, shardFiles, shardSpectra);
+
+        } catch (IOException e) {
+            return null;
+        } catch (RuntimeException e) {
+            // incomplete or corrupted manifest
+            return null;
+        }
+    }
+
+    /**
+     * Returns the manifest file of the shards of the given spectrum file.
+     *
+     * @param spectrumFile the spectrum file
+     * @param shardFolder the folder containing the shards
+     *
+     * @return the manifest file
+     */
+    public static File getManifestFile(File spectrumFile, File shardFolder) {
+        return new File(shardFolder, spectrumFile.getName() + MANIFEST_EXTENSION);
+    }
+
+    /**
+     * Returns the shard files in the order of the spectrum file.
+     *
+     * @return the shard files
+     */
+    public ArrayList<File> getShardFiles() {
+        return shardFiles;
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the number of shards
+     */
+    public int getNShards() {
+        return shardFiles.size();
+    }
+
+    /**
+     * Returns the number of spectra of the given shard.
+     *
+     * @param shard the index of the shard
+     *
+     * @return the number of spectra of the shard
+     */
+    public int getNSpectra(int shard) {
+        return shardSpectra.get(shard);
+    }
+
+    /**
+     * Returns the number of spectra of all shards.
+     *
+     * @return the number of spectra
+     */
+    public int getNSpectra() {
+        int nSpectra = 0;
+        for (int shardNSpectra : shardSpectra) {
+            nSpectra += shardNSpectra;
+        }
+        return nSpectra;
+    }
+
+    /**
+     * Returns the number of spectra preceding every shard in the spectrum
+     * file.
+     *
+     * @return the spectrum offsets of the shards
+     */
+    public ArrayList<Integer> getOffsets() {
+        ArrayList<Integer> offsets = new ArrayList<Integer>(shardSpectra.size());
+        int offset = 0;
+        for (int shardNSpectra : shardSpectra) {
+            offsets.add(offset);
+            offset += shardNSpectra;
+        }
+        return offsets;
+    }
+
+    /**
+     * Deletes the manifest and the shard files.
+     *
+     * @param waitingHandler the waiting handler
+     *
+     * @throws IOException thrown if a file cannot be deleted
+     */
+    public void delete(WaitingHandler waitingHandler) throws IOException {
+        // without manifest the shards are not reused
+        manifestFile.delete();
+        FileProcessor.deleteChunkFiles(shardFiles, waitingHandler);
+    }
+}
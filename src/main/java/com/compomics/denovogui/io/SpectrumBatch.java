@@ -0,0 +1,527 @@
+package com.compomics.denovogui.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A batch of small mgf files sequenced together so that the algorithms are
+ * started once per batch instead of once per file. The spectra of the files
+ * are concatenated in a batch mgf file where the title of every spectrum is
+ * prefixed by the index of its file in the batch. The results of the batch
+ * are then split back into the result files of every mgf file: the spectrum
+ * indexes of the DirecTag and Novor results are shifted by the number of
+ * spectra of the preceding files and the title prefixes are removed. Like for
+ * the merging of chunk results, the PepNovo+ and pNovo+ results are assigned
+ * using the titles. The DirecTag and Novor results do not contain the titles
+ * and are assigned using the spectrum indexes: the native id of DirecTag
+ * ("index=N") counts the spectra from 0, Novor counts them from 1.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumBatch {
+
+    /**
+     * The folder where the batch mgf files are written.
+     */
+    public static final String BATCHES_FOLDER = "spectrum_batches";
+    /**
+     * The pattern of the title prefixes.
+     */
+    private static final Pattern PREFIX_PATTERN = Pattern.compile("(^|\\s)DNGB(\\d+)_");
+    /**
+     * Pattern of the spectrum index in the native ids of DirecTag.
+     */
+    private static final Pattern NATIVE_INDEX_PATTERN = Pattern.compile("index=(\\d+)");
+    /**
+     * The mgf files of the batch.
+     */
+    private final ArrayList<File> mgfFiles = new ArrayList<File>();
+    /**
+     * The number of spectra preceding every file in the batch mgf file.
+     */
+    private final ArrayList<Integer> offsets = new ArrayList<Integer>();
+    /**
+     * The number of spectra in the batch.
+     */
+    private int nSpectra = 0;
+    /**
+     * The batch mgf file.
+     */
+    private final File batchFile;
+
+    /**
+     * Constructor.
+     *
+     * @param batchFolder the folder where to write the batch mgf file
+     * @param batchNumber the number of the batch, used to name the batch mgf
+     * file
+     */
+    public SpectrumBatch(File batchFolder, int batchNumber) {
+        batchFile = new File(batchFolder, "DeNovoGUI_batch_" + batchNumber + ".mgf");
+    }
+
+    /**
+     * Adds an mgf file to the batch.
+     *
+     * @param mgfFile the mgf file
+     * @param nSpectra the number of spectra of the mgf file
+     */
+    public void add(File mgfFile, int nSpectra) {
+        mgfFiles.add(mgfFile);
+        offsets.add(this.nSpectra);
+        this.nSpectra += nSpectra;
+    }
+
+    /**
+     * Returns the mgf files of the batch.
+     *
+     * @return the mgf files of the batch
+     */
+    public ArrayList<File> getMgfFiles() {
+        return mgfFiles;
+    }
+
+    /**
+     * Returns the number of spectra in the batch.
+     *
+     * @return the number of spectra in the batch
+     */
+    public int getNSpectra() {
+        return nSpectra;
+    }
+
+    /**
+     * Returns the batch mgf file.
+     *
+     * @return the batch mgf file
+     */
+    public File getBatchFile() {
+        return batchFile;
+    }
+
+    /**
+     * Writes the batch mgf file. The global parameters of every file are
+     * repeated at the start of its spectra and the spectra without title get
+     * a title made of the prefix only.
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    public void writeBatchFile() throws IOException {
+
+        batchFile.getParentFile().mkdirs();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(batchFile));
+        try {
+            for (int i = 0; i < mgfFiles.size(); i++) {
+                String prefix = getPrefix(i);
+                BufferedReader br = new BufferedReader(new FileReader(mgfFiles.get(i)));
+                try {
+                    String line;
+                    boolean inSpectrum = false, titleWritten = false;
+                    ArrayList<String> globalParameters = new ArrayList<String>();
+                    while ((line = br.readLine()) != null) {
+                        String trimmedLine = line.trim();
+                        if (trimmedLine.equals("BEGIN IONS")) {
+                            inSpectrum = true;
+                            titleWritten = false;
+                            bw.write(line);
+                            bw.newLine();
+                            // the parameters of the spectrum come after and take precedence
+                            for (String globalParameter : globalParameters) {
+                                bw.write(globalParameter);
+                                bw.newLine();
+                            }
+                            continue;
+                        } else if (!inSpectrum) {
+                            // the global parameters of the files could conflict in the batch
+                            if (trimmedLine.contains("=") && !trimmedLine.startsWith("#")) {
+                                globalParameters.add(trimmedLine);
+                            }
+                            continue;
+                        } else if (trimmedLine.startsWith("TITLE=")) {
+                            line = "TITLE=" + prefix + trimmedLine.substring(6);
+                            titleWritten = true;
+                        } else if (trimmedLine.equals("END IONS")) {
+                            inSpectrum = false;
+                        } else if (!titleWritten && !trimmedLine.isEmpty() && Character.isDigit(trimmedLine.charAt(0))) {
+                            bw.write("TITLE=" + prefix);
+                            bw.newLine();
+                            titleWritten = true;
+                        }
+                        bw.write(line);
+                        bw.newLine();
+                    }
+                } finally {
+                    br.close();
+                }
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Splits the results of the batch into the result files of every mgf file
+     * and deletes the results of the batch.
+     *
+     * @param outputFolder the folder containing the results
+     * @param pepNovo split the PepNovo+ results?
+     * @param direcTag split the DirecTag results?
+     * @param pNovo split the pNovo+ results?
+     * @param novor split the Novor results?
+     *
+     * @throws IOException thrown if the results cannot be read or written
+     */
+    public void splitResults(File outputFolder, boolean pepNovo, boolean direcTag, boolean pNovo, boolean novor) throws IOException {
+
+        if (pepNovo) {
+            File resultFile = FileProcessor.getOutFile(outputFolder, batchFile);
+            if (resultFile.exists()) {
+                splitPepNovoResults(resultFile, FileProcessor.getOutFiles(outputFolder, mgfFiles));
+                resultFile.delete();
+            }
+        }
+        if (direcTag) {
+            File resultFile = FileProcessor.getTagsFile(outputFolder, batchFile);
+            if (resultFile.exists()) {
+                splitTagsResults(resultFile, FileProcessor.getTagsFiles(outputFolder, mgfFiles));
+                resultFile.delete();
+            }
+        }
+        if (pNovo) {
+            File resultFile = FileProcessor.getPNovoResultFile(outputFolder, batchFile);
+            if (resultFile.exists()) {
+                splitPNovoResults(resultFile, FileProcessor.getPNovoResultFiles(outputFolder, mgfFiles));
+                resultFile.delete();
+            }
+        }
+        if (novor) {
+            File resultFile = FileProcessor.getNovorResultFile(outputFolder, batchFile);
+            if (resultFile.exists()) {
+                splitNovorResults(resultFile, FileProcessor.getNovorResultFiles(outputFolder, mgfFiles));
+                resultFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Deletes the batch mgf file.
+     */
+    public void deleteBatchFile() {
+        batchFile.delete();
+    }
+
+    /**
+     * Splits PepNovo+ results. Every spectrum block starts with a line
+     * starting with "&gt;&gt;" and containing the title of the spectrum.
+     *
+     * @param resultFile the result file of the batch
+     * @param splitFiles the result files of the mgf files
+     *
+     * @throws IOException thrown if the results cannot be read or written
+     */
+    private void splitPepNovoResults(File resultFile, ArrayList<File> splitFiles) throws IOException {
+
+        BufferedWriter[] writers = getWriters(splitFiles);
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(resultFile));
+            try {
+                String line;
+                BufferedWriter bw = null;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith(">>")) {
+                        int fileIndex = getFileIndex(line);
+                        bw = fileIndex >= 0 ? writers[fileIndex] : null;
+                        line = removePrefix(line, fileIndex);
+                    }
+                    if (bw != null) {
+                        bw.write(line);
+                        bw.newLine();
+                    }
+                }
+            } finally {
+                br.close();
+            }
+        } finally {
+            close(writers);
+        }
+    }
+
+    /**
+     * Splits pNovo+ results. Every spectrum block starts with a line starting
+     * with "S" and containing the title of the spectrum.
+     *
+     * @param resultFile the result file of the batch
+     * @param splitFiles the result files of the mgf files
+     *
+     * @throws IOException thrown if the results cannot be read or written
+     */
+    private void splitPNovoResults(File resultFile, ArrayList<File> splitFiles) throws IOException {
+
+        BufferedWriter[] writers = getWriters(splitFiles);
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(resultFile));
+            try {
+                String line;
+                BufferedWriter bw = null;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith("S")) {
+                        int fileIndex = getFileIndex(line);
+                        bw = fileIndex >= 0 ? writers[fileIndex] : null;
+                        line = removePrefix(line, fileIndex);
+                    }
+                    if (bw != null) {
+                        bw.write(line);
+                        bw.newLine();
+                    }
+                }
+            } finally {
+                br.close();
+            }
+        } finally {
+            close(writers);
+        }
+    }
+
+    /**
+     * Splits DirecTag results. The header lines are copied to every file, the
+     * spectrum lines start with "S" followed by the spectrum id and the
+     * native id. The spectra are assigned to the files using the index of the
+     * native id, starting from 0, the spectrum id is used when the native id
+     * has no index. The prefixes of the titles are removed.
+     *
+     * @param resultFile the result file of the batch
+     * @param splitFiles the result files of the mgf files
+     *
+     * @throws IOException thrown if the results cannot be read or written
+     */
+    private void splitTagsResults(File resultFile, ArrayList<File> splitFiles) throws IOException {
+
+        BufferedWriter[] writers = getWriters(splitFiles);
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(resultFile));
+            try {
+                String line;
+                BufferedWriter bw = null;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith("H")) {
+                        for (BufferedWriter writer : writers) {
+                            writer.write(line);
+                            writer.newLine();
+                        }
+                        continue;
+                    } else if (line.startsWith("S")) {
+                        String[] split = line.split("\t", -1);
+                        bw = null;
+                        if (split.length > 2) {
+                            Matcher matcher = NATIVE_INDEX_PATTERN.matcher(split[2]);
+                            boolean nativeIndex = matcher.find();
+                            int spectrumIndex = Integer.parseInt(nativeIndex ? matcher.group(1) : split[1]);
+                            int fileIndex = getFileIndexFromSpectrumIndex(spectrumIndex);
+                            if (fileIndex >= 0) {
+                                bw = writers[fileIndex];
+                                int offset = offsets.get(fileIndex);
+                                split[1] = String.valueOf(Integer.parseInt(split[1]) - offset);
+                                if (nativeIndex) {
+                                    split[2] = matcher.replaceFirst("index=" + (spectrumIndex - offset));
+                                }
+                                line = removePrefix(join(split), fileIndex);
+                            }
+                        }
+                    }
+                    if (bw != null) {
+                        bw.write(line);
+                        bw.newLine();
+                    }
+                }
+            } finally {
+                br.close();
+            }
+        } finally {
+            close(writers);
+        }
+    }
+
+    /**
+     * Splits Novor results. The comment lines are copied to every file, the
+     * other lines start with the spectrum id, starting from 1.
+     *
+     * @param resultFile the result file of the batch
+     * @param splitFiles the result files of the mgf files
+     *
+     * @throws IOException thrown if the results cannot be read or written
+     */
+    private void splitNovorResults(File resultFile, ArrayList<File> splitFiles) throws IOException {
+
+        BufferedWriter[] writers = getWriters(splitFiles);
+        try {
+            BufferedReader br = new BufferedReader(new FileReader(resultFile));
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith("#")) {
+                        for (BufferedWriter writer : writers) {
+                            writer.write(line);
+                            writer.newLine();
+                        }
+                    } else if (!line.trim().isEmpty()) {
+                        int separatorIndex = line.indexOf(",");
+                        int id = Integer.parseInt(line.substring(0, separatorIndex).trim());
+                        int fileIndex = getFileIndexFromSpectrumIndex(id - FileProcessor.NOVOR_FIRST_ID);
+                        if (fileIndex >= 0) {
+                            writers[fileIndex].write((id - offsets.get(fileIndex)) + line.substring(separatorIndex));
+                            writers[fileIndex].newLine();
+                        }
+                    }
+                }
+            } finally {
+                br.close();
+            }
+        } finally {
+            close(writers);
+        }
+    }
+
+    /**
+     * Returns the title prefix of the given file.
+     *
+     * @param fileIndex the index of the file in the batch
+     *
+     * @return the title prefix of the file
+     */
+    private static String getPrefix(int fileIndex) {
+        return "DNGB" + fileIndex + "_";
+    }
+
+    /**
+     * Returns the index in the batch of the file of the first prefixed title
+     * found in a text.
+     *
+     * @param text the text containing a prefixed title
+     *
+     * @return the index of the file, -1 if not found
+     */
+    private int getFileIndex(String text) {
+        Matcher matcher = PREFIX_PATTERN.matcher(text);
+        if (matcher.find()) {
+            int fileIndex = Integer.parseInt(matcher.group(2));
+            if (fileIndex < mgfFiles.size()) {
+                return fileIndex;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index in the batch of the file of the spectrum at the given
+     * index in the batch mgf file.
+     *
+     * @param spectrumIndex the index of the spectrum in the batch mgf file
+     *
+     * @return the index of the file, -1 if not found
+     */
+    private int getFileIndexFromSpectrumIndex(int spectrumIndex) {
+        if (spectrumIndex < 0 || spectrumIndex >= nSpectra) {
+            return -1;
+        }
+        int index = Collections.binarySearch(offsets, spectrumIndex);
+        if (index >= 0) {
+            // files without spectra have the offset of the next file
+            while (index + 1 < offsets.size() && offsets.get(index + 1) == spectrumIndex) {
+                index++;
+            }
+            return index;
+        }
+        return -index - 2;
+    }
+
+    /**
+     * Removes the first title prefix of the given file from a text.
+     *
+     * @param text the text
+     * @param fileIndex the index of the file in the batch, nothing is removed
+     * if negative
+     *
+     * @return the text without prefix
+     */
+    private static String removePrefix(String text, int fileIndex) {
+        if (fileIndex < 0) {
+            return text;
+        }
+        Matcher matcher = PREFIX_PATTERN.matcher(text);
+        if (matcher.find() && matcher.group(2).equals(Integer.toString(fileIndex))) {
+            return text.substring(0, matcher.end(1)) + text.substring(matcher.end());
+        }
+        return text;
+    }
+
+    /**
+     * Opens writers on the given files.
+     *
+     * @param files the files
+     *
+     * @return the writers
+     *
+     * @throws IOException thrown if a file cannot be opened
+     */
+    private static BufferedWriter[] getWriters(ArrayList<File> files) throws IOException {
+        BufferedWriter[] writers = new BufferedWriter[files.size()];
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                writers[i] = new BufferedWriter(new FileWriter(files.get(i)));
+            }
+        } catch (IOException e) {
+            close(writers);
+            throw e;
+        }
+        return writers;
+    }
+
+    /**
+     * Closes the given writers.
+     *
+     * @param writers the writers, can contain null elements
+     *
+     * @throws IOException thrown if a writer cannot be closed
+     */
+    private static void close(BufferedWriter[] writers) throws IOException {
+        IOException exception = null;
+        for (BufferedWriter writer : writers) {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    exception = e;
+                }
+            }
+        }
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Joins tab separated fields.
+     *
+     * @param fields the fields
+     *
+     * @return the joined fields
+     */
+    private static String join(String[] fields) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                result.append('\t');
+            }
+            result.append(fields[i]);
+        }
+        return result.toString();
+    }
+}
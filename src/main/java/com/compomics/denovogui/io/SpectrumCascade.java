@@ -0,0 +1,473 @@
+package com.compomics.denovogui.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cascade of the sequencing algorithms: the spectra confidently sequenced by
+ * an algorithm are not given to the following algorithms. The algorithms are
+ * run in the order of DeNovoGUI, Novor first, and the results of Novor and
+ * PepNovo+ are parsed as soon as they are available: the spectra whose best
+ * score reaches the threshold of the algorithm are marked as confident. The
+ * following algorithms then sequence a copy of the mgf files without the
+ * confident spectra. The spectrum indexes of the DirecTag and Novor results
+ * obtained on such a copy are mapped back to the original mgf file, the
+ * native ids of DirecTag counting the spectra from 0 and Novor counting them
+ * from 1, the PepNovo+ and pNovo+ results are assigned using the titles. The results of
+ * every algorithm thus refer to the original spectra and are loaded like the
+ * results of a normal run.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumCascade {
+
+    /**
+     * Pattern of the spectrum index in the native ids of DirecTag.
+     */
+    private static final Pattern NATIVE_INDEX_PATTERN = Pattern.compile("index=(\\d+)");
+    /**
+     * The name of the score column of the Novor results.
+     */
+    private static final String NOVOR_SCORE = "score";
+    /**
+     * The name of the score column of the PepNovo+ results.
+     */
+    private static final String PEPNOVO_SCORE = "PnvScr";
+    /**
+     * The score threshold of every algorithm, indexed by algorithm name on
+     * the command line.
+     */
+    private final HashMap<String, Double> thresholds;
+    /**
+     * The confident spectra of every mgf file sequenced, indexed by file
+     * name.
+     */
+    private final HashMap<String, BitSet> confidentSpectra = new HashMap<String, BitSet>();
+
+    /**
+     * Constructor.
+     *
+     * @param thresholds the score threshold of every algorithm, indexed by
+     * algorithm name on the command line, only novor and pepnovo are used
+     */
+    public SpectrumCascade(HashMap<String, Double> thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Parses the score thresholds from a semicolon separated list of
+     * algorithm names followed by the threshold, for example
+     * "novor=80;pepnovo=50".
+     *
+     * @param settings the thresholds
+     *
+     * @return the thresholds indexed by algorithm name in lower case
+     *
+     * @throws IllegalArgumentException thrown if the thresholds cannot be
+     * parsed or an algorithm does not support the cascade
+     */
+    public static HashMap<String, Double> parseThresholds(String settings) throws IllegalArgumentException {
+        HashMap<String, Double> result = new HashMap<String, Double>();
+        for (String algorithmSettings : settings.split(";")) {
+            String[] split = algorithmSettings.split("=");
+            if (split.length != 2) {
+                throw new IllegalArgumentException("Could not parse the cascade threshold '" + algorithmSettings + "'.");
+            }
+            String algorithm = split[0].trim().toLowerCase();
+            if (!algorithm.equals("novor") && !algorithm.equals("pepnovo")) {
+                throw new IllegalArgumentException("Only the Novor and PepNovo+ scores can be used in the cascade, not '" + algorithm + "'.");
+            }
+            try {
+                result.put(algorithm, Double.parseDouble(split[1].trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Could not parse the cascade threshold '" + algorithmSettings + "'.");
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indicates whether the results of the given algorithm are used to
+     * select the spectra of the following algorithms.
+     *
+     * @param algorithm the name of the algorithm on the command line
+     *
+     * @return true if the algorithm has a threshold
+     */
+    public boolean isGate(String algorithm) {
+        return thresholds.containsKey(algorithm);
+    }
+
+    /**
+     * Returns the number of confident spectra of an mgf file.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the number of confident spectra
+     */
+    public synchronized int getNConfident(File mgfFile) {
+        BitSet confident = confidentSpectra.get(mgfFile.getName());
+        return confident == null ? 0 : confident.cardinality();
+    }
+
+    /**
+     * Forgets the confident spectra of the given mgf files, for example once
+     * all algorithms are done.
+     *
+     * @param mgfFiles the mgf files
+     */
+    public synchronized void clear(ArrayList<File> mgfFiles) {
+        for (File mgfFile : mgfFiles) {
+            confidentSpectra.remove(mgfFile.getName());
+        }
+    }
+
+    /**
+     * Returns a copy of the confident spectra of an mgf file.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the indexes of the confident spectra
+     */
+    public synchronized BitSet getConfidentSpectra(File mgfFile) {
+        return (BitSet) getConfident(mgfFile).clone();
+    }
+
+    /**
+     * Returns the confident spectra of an mgf file, creating an empty set if
+     * none.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the confident spectra
+     */
+    private synchronized BitSet getConfident(File mgfFile) {
+        BitSet confident = confidentSpectra.get(mgfFile.getName());
+        if (confident == null) {
+            confident = new BitSet();
+            confidentSpectra.put(mgfFile.getName(), confident);
+        }
+        return confident;
+    }
+
+    /**
+     * Writes a copy of an mgf file without the given spectra. Returns null if
+     * no spectrum is excluded, in which case the mgf file can be used as is.
+     *
+     * @param mgfFile the mgf file
+     * @param excluded the indexes of the spectra to exclude
+     * @param filteredFile the file where to write the remaining spectra
+     *
+     * @return the index in the mgf file of every spectrum of the copy, null
+     * if no copy was written
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    public static int[] filter(File mgfFile, BitSet excluded, File filteredFile) throws IOException {
+
+        if (excluded.isEmpty()) {
+            return null;
+        }
+
+        filteredFile.getParentFile().mkdirs();
+        ArrayList<Integer> kept = new ArrayList<Integer>();
+        BufferedReader br = new BufferedReader(new FileReader(mgfFile));
+        try {
+            BufferedWriter bw = new BufferedWriter(new FileWriter(filteredFile));
+            try {
+                int spectrumIndex = -1;
+                boolean write = true;
+                String line;
+                while ((line = br.readLine()) != null) {
+                    String trimmedLine = line.trim();
+                    if (trimmedLine.startsWith("BEGIN IONS")) {
+                        spectrumIndex++;
+                        write = !excluded.get(spectrumIndex);
+                        if (write) {
+                            kept.add(spectrumIndex);
+                        }
+                    }
+                    if (write) {
+                        bw.write(line);
+                        bw.newLine();
+                    }
+                    if (trimmedLine.startsWith("END IONS")) {
+                        write = true;
+                    }
+                }
+            } finally {
+                bw.close();
+            }
+        } finally {
+            br.close();
+        }
+
+        int[] result = new int[kept.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = kept.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Marks the spectra of an mgf file confidently sequenced by Novor.
+     *
+     * @param mgfFile the mgf file
+     * @param novorFile the Novor results of the mgf file, with the spectrum
+     * indexes of the mgf file
+     *
+     * @throws IOException thrown if the results cannot be read
+     */
+    public void addNovorResults(File mgfFile, File novorFile) throws IOException {
+
+        Double threshold = thresholds.get("novor");
+        if (threshold == null || !novorFile.exists()) {
+            return;
+        }
+
+        BitSet confident = new BitSet();
+        BufferedReader br = new BufferedReader(new FileReader(novorFile));
+        try {
+            int scoreColumn = -1;
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith("#")) {
+                    // the last comment line is the header
+                    String[] header = line.substring(1).split(",");
+                    for (int i = 0; i < header.length; i++) {
+                        if (header[i].trim().equals(NOVOR_SCORE)) {
+                            scoreColumn = i;
+                        }
+                    }
+                } else if (scoreColumn >= 0 && !line.trim().isEmpty()) {
+                    String[] split = line.split(",");
+                    if (split.length > scoreColumn && Double.parseDouble(split[scoreColumn].trim()) >= threshold) {
+                        confident.set(Integer.parseInt(split[0].trim()) - FileProcessor.NOVOR_FIRST_ID);
+                    }
+                }
+            }
+        } finally {
+            br.close();
+        }
+
+        synchronized (this) {
+            getConfident(mgfFile).or(confident);
+        }
+    }
+
+    /**
+     * Marks the spectra of an mgf file confidently sequenced by PepNovo+.
+     * The spectra are found using their titles.
+     *
+     * @param mgfFile the mgf file
+     * @param outFile the PepNovo+ results of the mgf file
+     *
+     * @throws IOException thrown if the files cannot be read
+     */
+    public void addPepNovoResults(File mgfFile, File outFile) throws IOException {
+
+        Double threshold = thresholds.get("pepnovo");
+        if (threshold == null || !outFile.exists()) {
+            return;
+        }
+
+        HashMap<String, Integer> titleIndexes = getTitleIndexes(mgfFile);
+        BitSet confident = new BitSet();
+        BufferedReader br = new BufferedReader(new FileReader(outFile));
+        try {
+            Integer spectrumIndex = null;
+            int scoreColumn = -1;
+            boolean bestHit = false;
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (line.startsWith(">>")) {
+                    // >> [file index] [spectrum index] [title]
+                    String[] split = line.split(" ", 4);
+                    spectrumIndex = split.length == 4 ? titleIndexes.get(split[3].trim()) : null;
+                    bestHit = false;
+                } else if (line.startsWith("#Index")) {
+                    String[] header = line.split("\t");
+                    for (int i = 0; i < header.length; i++) {
+                        if (header[i].trim().equals(PEPNOVO_SCORE)) {
+                            scoreColumn = i;
+                        }
+                    }
+                    bestHit = true;
+                } else if (bestHit && spectrumIndex != null && scoreColumn >= 0 && !line.trim().isEmpty()) {
+                    String[] split = line.split("\t");
+                    if (split.length > scoreColumn && Double.parseDouble(split[scoreColumn].trim()) >= threshold) {
+                        confident.set(spectrumIndex);
+                    }
+                    bestHit = false;
+                }
+            }
+        } finally {
+            br.close();
+        }
+
+        synchronized (this) {
+            getConfident(mgfFile).or(confident);
+        }
+    }
+
+    /**
+     * Returns the index of every spectrum of an mgf file, indexed by title.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the spectrum indexes indexed by title
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    private static HashMap<String, Integer> getTitleIndexes(File mgfFile) throws IOException {
+        HashMap<String, Integer> result = new HashMap<String, Integer>();
+        BufferedReader br = new BufferedReader(new FileReader(mgfFile));
+        try {
+            int spectrumIndex = -1;
+            String line;
+            while ((line = br.readLine()) != null) {
+                String trimmedLine = line.trim();
+                if (trimmedLine.startsWith("BEGIN IONS")) {
+                    spectrumIndex++;
+                } else if (trimmedLine.startsWith("TITLE=")) {
+                    result.put(trimmedLine.substring(6).trim(), spectrumIndex);
+                }
+            }
+        } finally {
+            br.close();
+        }
+        return result;
+    }
+
+    /**
+     * Maps the spectrum indexes of the DirecTag results obtained on a copy of
+     * an mgf file back to the mgf file.
+     *
+     * @param tagsFile the DirecTag results
+     * @param spectrumIndexes the index in the mgf file of every spectrum of
+     * the copy
+     *
+     * @throws IOException thrown if the results cannot be read or written
+     */
+    public static void mapTagsFile(File tagsFile, int[] spectrumIndexes) throws IOException {
+
+        if (!tagsFile.exists()) {
+            return;
+        }
+        File tempFile = new File(tagsFile.getParentFile(), tagsFile.getName() + ".tmp");
+        BufferedReader br = new BufferedReader(new FileReader(tagsFile));
+        try {
+            BufferedWriter bw = new BufferedWriter(new FileWriter(tempFile));
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (line.startsWith("S")) {
+                        String[] split = line.split("\t", -1);
+                        if (split.length > 2) {
+                            int id = Integer.parseInt(split[1]);
+                            Matcher matcher = NATIVE_INDEX_PATTERN.matcher(split[2]);
+                            if (matcher.find()) {
+                                // the id is shifted like the native index, whatever its base
+                                int nativeIndex = Integer.parseInt(matcher.group(1));
+                                split[1] = String.valueOf(id + spectrumIndexes[nativeIndex] - nativeIndex);
+                                split[2] = matcher.replaceFirst("index=" + spectrumIndexes[nativeIndex]);
+                            } else {
+                                split[1] = String.valueOf(spectrumIndexes[id]);
+                            }
+                            line = join(split, "\t");
+                        }
+                    }
+                    bw.write(line);
+                    bw.newLine();
+                }
+            } finally {
+                bw.close();
+            }
+        } finally {
+            br.close();
+        }
+        replace(tempFile, tagsFile);
+    }
+
+    /**
+     * Maps the spectrum indexes of the Novor results obtained on a copy of an
+     * mgf file back to the mgf file.
+     *
+     * @param novorFile the Novor results
+     * @param spectrumIndexes the index in the mgf file of every spectrum of
+     * the copy
+     *
+     * @throws IOException thrown if the results cannot be read or written
+     */
+    public static void mapNovorFile(File novorFile, int[] spectrumIndexes) throws IOException {
+
+        if (!novorFile.exists()) {
+            return;
+        }
+        File tempFile = new File(novorFile.getParentFile(), novorFile.getName() + ".tmp");
+        BufferedReader br = new BufferedReader(new FileReader(novorFile));
+        try {
+            BufferedWriter bw = new BufferedWriter(new FileWriter(tempFile));
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    if (!line.startsWith("#") && !line.trim().isEmpty()) {
+                        int separatorIndex = line.indexOf(",");
+                        int id = Integer.parseInt(line.substring(0, separatorIndex).trim());
+                        line = (spectrumIndexes[id - FileProcessor.NOVOR_FIRST_ID] + FileProcessor.NOVOR_FIRST_ID) + line.substring(separatorIndex);
+                    }
+                    bw.write(line);
+                    bw.newLine();
+                }
+            } finally {
+                bw.close();
+            }
+        } finally {
+            br.close();
+        }
+        replace(tempFile, novorFile);
+    }
+
+    /**
+     * Replaces a file by another.
+     *
+     * @param newFile the new file
+     * @param file the file to replace
+     *
+     * @throws IOException thrown if the file cannot be replaced
+     */
+    private static void replace(File newFile, File file) throws IOException {
+        file.delete();
+        if (!newFile.renameTo(file)) {
+            throw new IOException("Impossible to write " + file.getAbsolutePath() + ".");
+        }
+    }
+
+    /**
+     * Joins the given elements.
+     *
+     * @param elements the elements
+     * @param separator the separator
+     *
+     * @return the joined elements
+     */
+    private static String join(String[] elements, String separator) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < elements.length; i++) {
+            if (i > 0) {
+                result.append(separator);
+            }
+            result.append(elements[i]);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,579 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.massspectrometry.Spectrum;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * Groups near-identical spectra of an mgf file so that only one
+ * representative per cluster has to be sequenced. Spectra are grouped by
+ * precursor m/z, charge and the cosine similarity of their binned peaks. The
+ * representative spectra are written to a reduced mgf file and the cluster
+ * members are saved in a cluster file next to the results so that the de novo
+ * assumptions of the representative can be given back to every member.
+ *
+ * @author Thilo Muth
+ */
+public class SpectrumClusterer {
+
+    /**
+     * The extension of the cluster files.
+     */
+    public static final String CLUSTER_FILE_EXTENSION = ".clusters";
+    /**
+     * The name of the sub folder of the output folder where the
+     * representative spectra are written.
+     */
+    public static final String CLUSTERED_SPECTRA_FOLDER = "clustered_spectra";
+    /**
+     * Separator used in the cluster files.
+     */
+    private static final String SEPARATOR = "\t";
+    /**
+     * The maximal number of peaks per spectrum used for the similarity.
+     */
+    private static final int MAX_PEAKS = 50;
+    /**
+     * The precursor m/z tolerance in Dalton.
+     */
+    private double precursorTolerance = 0.01;
+    /**
+     * The width of the m/z bins used for the dot product.
+     */
+    private double binSize = 1.0005;
+    /**
+     * The minimal cosine similarity for two spectra to be clustered.
+     */
+    private double similarityThreshold = 0.9;
+
+    /**
+     * Constructor.
+     *
+     * @param precursorTolerance the precursor m/z tolerance in Dalton
+     * @param binSize the width of the m/z bins used for the dot product
+     * @param similarityThreshold the minimal cosine similarity for two
+     * spectra to be clustered
+     */
+    public SpectrumClusterer(double precursorTolerance, double binSize, double similarityThreshold) {
+        this.precursorTolerance = precursorTolerance;
+        this.binSize = binSize;
+        this.similarityThreshold = similarityThreshold;
+    }
+
+    /**
+     * Clusters the spectra of the given mgf file. The representative spectra
+     * are written to a file of the same name in the clustered spectra folder
+     * of the output folder and the clusters to the cluster file of the output
+     * folder.
+     *
+     * @param mgfFile the mgf file to cluster
+     * @param outputFolder the output folder
+     * @param waitingHandler the waiting handler
+     *
+     * @return the mgf file containing the representative spectra
+     *
+     * @throws IOException thrown if the mgf file cannot be read or the
+     * results cannot be written
+     */
+    public File clusterFile(File mgfFile, File outputFolder, WaitingHandler waitingHandler) throws IOException {
+
+        SpectrumIndex index = indexFile(mgfFile);
+        int[] representatives = cluster(index);
+
+        File clusteredFolder = new File(outputFolder, CLUSTERED_SPECTRA_FOLDER);
+        if (!clusteredFolder.exists()) {
+            clusteredFolder.mkdirs();
+        }
+        File representativesFile = new File(clusteredFolder, mgfFile.getName());
+        writeRepresentatives(mgfFile, representativesFile, representatives);
+        writeClusterFile(getClusterFile(outputFolder, mgfFile), index, representatives);
+
+        int nClusters = 0;
+        for (int i = 0; i < representatives.length; i++) {
+            if (representatives[i] == i) {
+                nClusters++;
+            }
+        }
+        if (waitingHandler != null) {
+            waitingHandler.appendReport("Clustered " + index.nSpectra + " spectra of " + mgfFile.getName() + " into " + nClusters + " clusters.", true, true);
+        }
+
+        return representativesFile;
+    }
+
+    /**
+     * Reads the spectra of an mgf file into a primitive index.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the spectrum index
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    private SpectrumIndex indexFile(File mgfFile) throws IOException {
+
+        SpectrumIndex index = new SpectrumIndex();
+        BufferedReader br = new BufferedReader(new FileReader(mgfFile));
+
+        try {
+            String line, title = null;
+            double precursorMz = 0;
+            int charge = 0;
+            int nPeaks = 0;
+            double[] mz = new double[256];
+            double[] intensity = new double[256];
+
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.equals("BEGIN IONS")) {
+                    title = null;
+                    precursorMz = 0;
+                    charge = 0;
+                    nPeaks = 0;
+                } else if (line.startsWith("TITLE=")) {
+                    title = line.substring(6);
+                } else if (line.startsWith("PEPMASS=")) {
+                    precursorMz = Double.parseDouble(line.substring(8).trim().split("\\s+")[0]);
+                } else if (line.startsWith("CHARGE=")) {
+                    charge = parseCharge(line.substring(7));
+                } else if (line.equals("END IONS")) {
+                    index.add(title, precursorMz, charge, getBinnedPeaks(mz, intensity, nPeaks));
+                } else if (!line.isEmpty() && Character.isDigit(line.charAt(0))) {
+                    String[] split = line.split("\\s+");
+                    if (split.length > 1) {
+                        if (nPeaks == mz.length) {
+                            mz = Arrays.copyOf(mz, 2 * nPeaks);
+                            intensity = Arrays.copyOf(intensity, 2 * nPeaks);
+                        }
+                        mz[nPeaks] = Double.parseDouble(split[0]);
+                        intensity[nPeaks] = Double.parseDouble(split[1]);
+                        nPeaks++;
+                    }
+                }
+            }
+        } finally {
+            br.close();
+        }
+
+        return index;
+    }
+
+    /**
+     * Parses the first charge of an mgf charge field, 0 if not parseable.
+     *
+     * @param chargeAsString the charge field
+     *
+     * @return the charge
+     */
+    private static int parseCharge(String chargeAsString) {
+        String charge = chargeAsString.trim().split("\\s+")[0].replace("+", "");
+        try {
+            return Integer.parseInt(charge);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the most intense peaks of a spectrum as sorted m/z bins and
+     * normalized square rooted intensities.
+     *
+     * @param mz the peak m/z values
+     * @param intensity the peak intensities
+     * @param nPeaks the number of peaks
+     *
+     * @return the bins in the first array and the weights in the second
+     */
+    private double[][] getBinnedPeaks(final double[] mz, double[] intensity, int nPeaks) {
+
+        // select the most intense peaks
+        int[] selected;
+        if (nPeaks > MAX_PEAKS) {
+            double[] sortedIntensities = Arrays.copyOf(intensity, nPeaks);
+            Arrays.sort(sortedIntensities);
+            double minIntensity = sortedIntensities[nPeaks - MAX_PEAKS];
+            selected = new int[MAX_PEAKS];
+            int nSelected = 0;
+            for (int i = 0; i < nPeaks && nSelected < MAX_PEAKS; i++) {
+                if (intensity[i] >= minIntensity) {
+                    selected[nSelected++] = i;
+                }
+            }
+            selected = Arrays.copyOf(selected, nSelected);
+        } else {
+            selected = new int[nPeaks];
+            for (int i = 0; i < nPeaks; i++) {
+                selected[i] = i;
+            }
+        }
+
+        // sort the selected peaks by m/z, mgf files do not have to list the peaks in order
+        boolean sorted = true;
+        for (int i = 1; i < selected.length && sorted; i++) {
+            sorted = mz[selected[i - 1]] <= mz[selected[i]];
+        }
+        if (!sorted) {
+            Integer[] order = new Integer[selected.length];
+            for (int i = 0; i < selected.length; i++) {
+                order[i] = selected[i];
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return Double.compare(mz[o1], mz[o2]);
+                }
+            });
+            for (int i = 0; i < selected.length; i++) {
+                selected[i] = order[i];
+            }
+        }
+
+        // bin the selected peaks
+        double[] bins = new double[selected.length];
+        double[] weights = new double[selected.length];
+        int nBins = 0;
+        double norm = 0;
+        for (int i : selected) {
+            double bin = Math.floor(mz[i] / binSize);
+            double weight = Math.sqrt(intensity[i]);
+            if (nBins > 0 && bins[nBins - 1] == bin) {
+                weights[nBins - 1] += weight;
+            } else {
+                bins[nBins] = bin;
+                weights[nBins] = weight;
+                nBins++;
+            }
+        }
+        for (int i = 0; i < nBins; i++) {
+            norm += weights[i] * weights[i];
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < nBins; i++) {
+                weights[i] /= norm;
+            }
+        }
+
+        return new double[][]{Arrays.copyOf(bins, nBins), Arrays.copyOf(weights, nBins)};
+    }
+
+    /**
+     * Returns the dot product of two binned and normalized spectra.
+     *
+     * @param spectrum1 the first spectrum
+     * @param spectrum2 the second spectrum
+     *
+     * @return the cosine similarity
+     */
+    private static double getDotProduct(double[][] spectrum1, double[][] spectrum2) {
+        double[] bins1 = spectrum1[0], weights1 = spectrum1[1];
+        double[] bins2 = spectrum2[0], weights2 = spectrum2[1];
+        double result = 0;
+        int i = 0, j = 0;
+        while (i < bins1.length && j < bins2.length) {
+            if (bins1[i] == bins2[j]) {
+                result += weights1[i++] * weights2[j++];
+            } else if (bins1[i] < bins2[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Clusters the indexed spectra. Spectra are visited by increasing
+     * precursor m/z and joined to the first open cluster of same charge within
+     * the precursor tolerance with a sufficient similarity to its
+     * representative.
+     *
+     * @param index the spectrum index
+     *
+     * @return the index of the representative of each spectrum
+     */
+    private int[] cluster(SpectrumIndex index) {
+
+        int nSpectra = index.nSpectra;
+        Integer[] order = new Integer[nSpectra];
+        for (int i = 0; i < nSpectra; i++) {
+            order[i] = i;
+        }
+        final double[] precursorMzs = index.precursorMz;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(precursorMzs[o1], precursorMzs[o2]);
+            }
+        });
+
+        int[] representatives = new int[nSpectra];
+        LinkedList<Integer> openClusters = new LinkedList<Integer>();
+
+        for (int spectrumIndex : order) {
+
+            double precursorMz = precursorMzs[spectrumIndex];
+
+            // close the clusters out of the precursor tolerance
+            while (!openClusters.isEmpty() && precursorMz - precursorMzs[openClusters.getFirst()] > precursorTolerance) {
+                openClusters.removeFirst();
+            }
+
+            // spectra without title or charge are always sequenced on their own
+            boolean clusterable = index.charge[spectrumIndex] > 0 && index.titles[spectrumIndex] != null;
+
+            int representative = spectrumIndex;
+            if (clusterable) {
+                for (int candidate : openClusters) {
+                    if (index.charge[candidate] == index.charge[spectrumIndex]
+                            && getDotProduct(index.peaks[candidate], index.peaks[spectrumIndex]) >= similarityThreshold) {
+                        representative = candidate;
+                        break;
+                    }
+                }
+            }
+
+            representatives[spectrumIndex] = representative;
+            if (representative == spectrumIndex && clusterable) {
+                openClusters.add(spectrumIndex);
+            }
+        }
+
+        return representatives;
+    }
+
+    /**
+     * Copies the representative spectra to a new mgf file.
+     *
+     * @param mgfFile the original mgf file
+     * @param destinationFile the destination file
+     * @param representatives the representative of every spectrum
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    private static void writeRepresentatives(File mgfFile, File destinationFile, int[] representatives) throws IOException {
+
+        BufferedReader br = new BufferedReader(new FileReader(mgfFile));
+        try {
+            BufferedWriter bw = new BufferedWriter(new FileWriter(destinationFile));
+            try {
+                String line;
+                int spectrumIndex = 0;
+                boolean inSpectrum = false;
+                while ((line = br.readLine()) != null) {
+                    String trimmedLine = line.trim();
+                    if (trimmedLine.equals("BEGIN IONS")) {
+                        inSpectrum = true;
+                    }
+                    if (inSpectrum && representatives[spectrumIndex] == spectrumIndex) {
+                        bw.write(line);
+                        bw.newLine();
+                    }
+                    if (trimmedLine.equals("END IONS")) {
+                        inSpectrum = false;
+                        spectrumIndex++;
+                    }
+                }
+            } finally {
+                bw.close();
+            }
+        } finally {
+            br.close();
+        }
+    }
+
+    /**
+     * Writes the clusters containing more than one spectrum to a cluster
+     * file. Every line contains the title of the representative followed by
+     * the titles of the other members.
+     *
+     * @param clusterFile the cluster file
+     * @param index the spectrum index
+     * @param representatives the representative of every spectrum
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    private static void writeClusterFile(File clusterFile, SpectrumIndex index, int[] representatives) throws IOException {
+
+        HashMap<Integer, ArrayList<Integer>> members = new HashMap<Integer, ArrayList<Integer>>();
+        for (int i = 0; i < representatives.length; i++) {
+            if (representatives[i] != i) {
+                ArrayList<Integer> clusterMembers = members.get(representatives[i]);
+                if (clusterMembers == null) {
+                    clusterMembers = new ArrayList<Integer>();
+                    members.put(representatives[i], clusterMembers);
+                }
+                clusterMembers.add(i);
+            }
+        }
+
+        BufferedWriter bw = new BufferedWriter(new FileWriter(clusterFile));
+        try {
+            for (int representative : members.keySet()) {
+                bw.write(index.titles[representative]);
+                for (int member : members.get(representative)) {
+                    bw.write(SEPARATOR + index.titles[member]);
+                }
+                bw.newLine();
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Returns the cluster file corresponding to the given spectrum file and
+     * output folder.
+     *
+     * @param outputFolder the output folder
+     * @param spectrumFile the spectrum file
+     *
+     * @return the cluster file
+     */
+    public static File getClusterFile(File outputFolder, File spectrumFile) {
+        return new File(outputFolder, spectrumFile.getName() + CLUSTER_FILE_EXTENSION);
+    }
+
+    /**
+     * Reads a cluster file. Key: representative title, element: the titles of
+     * the other members.
+     *
+     * @param clusterFile the cluster file
+     *
+     * @return the clusters
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static HashMap<String, String[]> readClusterFile(File clusterFile) throws IOException {
+
+        HashMap<String, String[]> clusters = new HashMap<String, String[]>();
+        BufferedReader br = new BufferedReader(new FileReader(clusterFile));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    String[] split = line.split(SEPARATOR);
+                    clusters.put(split[0], Arrays.copyOfRange(split, 1, split.length));
+                }
+            }
+        } finally {
+            br.close();
+        }
+        return clusters;
+    }
+
+    /**
+     * Gives the assumptions of the representative spectra back to the other
+     * cluster members. Cluster files are looked up next to the result files.
+     *
+     * @param spectrumMatches the spectrum matches of a result file
+     * @param resultFolder the folder containing the result file
+     *
+     * @return the spectrum matches including the matches of all members
+     *
+     * @throws IOException thrown if a cluster file cannot be read
+     */
+    public static LinkedList<SpectrumMatch> fanOut(LinkedList<SpectrumMatch> spectrumMatches, File resultFolder) throws IOException {
+
+        HashMap<String, HashMap<String, String[]>> clustersMap = new HashMap<String, HashMap<String, String[]>>();
+        LinkedList<SpectrumMatch> memberMatches = new LinkedList<SpectrumMatch>();
+
+        for (SpectrumMatch spectrumMatch : spectrumMatches) {
+
+            String spectrumKey = spectrumMatch.getKey();
+            String fileName = Spectrum.getSpectrumFile(spectrumKey);
+            HashMap<String, String[]> clusters = clustersMap.get(fileName);
+            if (clusters == null) {
+                File clusterFile = new File(resultFolder, fileName + CLUSTER_FILE_EXTENSION);
+                if (clusterFile.exists()) {
+                    clusters = readClusterFile(clusterFile);
+                } else {
+                    clusters = new HashMap<String, String[]>(0);
+                }
+                clustersMap.put(fileName, clusters);
+            }
+
+            String[] members = clusters.get(Spectrum.getSpectrumTitle(spectrumKey));
+            if (members != null) {
+                HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
+                for (String memberTitle : members) {
+                    SpectrumMatch memberMatch = new SpectrumMatch(Spectrum.getSpectrumKey(fileName, memberTitle));
+                    for (int advocate : assumptionsMap.keySet()) {
+                        HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateAssumptions = assumptionsMap.get(advocate);
+                        for (double score : advocateAssumptions.keySet()) {
+                            for (SpectrumIdentificationAssumption assumption : advocateAssumptions.get(score)) {
+                                memberMatch.addHit(advocate, assumption, false);
+                            }
+                        }
+                    }
+                    memberMatches.add(memberMatch);
+                }
+            }
+        }
+
+        spectrumMatches.addAll(memberMatches);
+        return spectrumMatches;
+    }
+
+    /**
+     * Primitive index of the spectra of a file.
+     */
+    private static class SpectrumIndex {
+
+        /**
+         * The number of spectra indexed.
+         */
+        private int nSpectra = 0;
+        /**
+         * The spectrum titles.
+         */
+        private String[] titles = new String[1024];
+        /**
+         * The precursor m/z values.
+         */
+        private double[] precursorMz = new double[1024];
+        /**
+         * The precursor charges, 0 if unknown.
+         */
+        private int[] charge = new int[1024];
+        /**
+         * The binned peaks.
+         */
+        private double[][][] peaks = new double[1024][][];
+
+        /**
+         * Adds a spectrum to the index.
+         *
+         * @param title the spectrum title
+         * @param mz the precursor m/z
+         * @param z the precursor charge
+         * @param binnedPeaks the binned peaks
+         */
+        private void add(String title, double mz, int z, double[][] binnedPeaks) {
+            if (nSpectra == titles.length) {
+                int newLength = 2 * nSpectra;
+                titles = Arrays.copyOf(titles, newLength);
+                precursorMz = Arrays.copyOf(precursorMz, newLength);
+                charge = Arrays.copyOf(charge, newLength);
+                peaks = Arrays.copyOf(peaks, newLength);
+            }
+            titles[nSpectra] = title;
+            precursorMz[nSpectra] = mz;
+            charge[nSpectra] = z;
+            peaks[nSpectra] = binnedPeaks;
+            nSpectra++;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.compomics.denovogui.io;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Index of the spectra of an mgf file: byte offset of every spectrum, title,
+ * precursor and number of peaks. The index is obtained in a single pass over
+ * the file and can be saved in a compact binary format.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumIndex {
+
+    /**
+     * The size of the buffer used to read the mgf file.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * The number of spectra.
+     */
+    private int nSpectra = 0;
+    /**
+     * The byte offset of the BEGIN IONS line of every spectrum.
+     */
+    private long[] offsets = new long[1024];
+    /**
+     * The title of every spectrum.
+     */
+    private String[] titles = new String[1024];
+    /**
+     * The precursor m/z of every spectrum.
+     */
+    private double[] precursorMzs = new double[1024];
+    /**
+     * The first precursor charge of every spectrum, 0 if not given.
+     */
+    private int[] charges = new int[1024];
+    /**
+     * The retention time in seconds of every spectrum, NaN if not given.
+     */
+    private double[] retentionTimes = new double[1024];
+    /**
+     * The number of peaks of every spectrum.
+     */
+    private int[] peakCounts = new int[1024];
+    /**
+     * Indicates whether the parsing is between BEGIN IONS and END IONS.
+     */
+    private boolean inSpectrum = false;
+
+    /**
+     * Constructor for an empty index.
+     */
+    private SpectrumIndex() {
+    }
+
+    /**
+     * Indexes the given mgf file.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the index of the file
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static SpectrumIndex index(File mgfFile) throws IOException {
+        SpectrumIndex index = new SpectrumIndex();
+        InputStream in = new FileInputStream(mgfFile);
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            long position = 0, lineStart = 0;
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n') {
+                        index.parseLine(line, lineLength, lineStart);
+                        lineLength = 0;
+                        lineStart = position + i + 1;
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, 2 * line.length);
+                        }
+                        line[lineLength++] = b;
+                    }
+                }
+                position += read;
+            }
+            if (lineLength > 0) {
+                index.parseLine(line, lineLength, lineStart);
+            }
+        } finally {
+            in.close();
+        }
+        index.trim();
+        return index;
+    }
+
+    /**
+     * Parses a line of the mgf file.
+     *
+     * @param line the bytes of the line
+     * @param length the length of the line
+     * @param lineStart the byte offset of the line in the file
+     */
+    private void parseLine(byte[] line, int length, long lineStart) {
+        int start = 0, end = length;
+        while (start < end && line[start] <= ' ') {
+            start++;
+        }
+        while (end > start && line[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return;
+        }
+        byte first = line[start];
+        if (inSpectrum && first >= '0' && first <= '9') {
+            peakCounts[nSpectra]++;
+            return;
+        }
+        String text = new String(line, start, end - start);
+        if (text.equals("BEGIN IONS")) {
+            inSpectrum = true;
+            ensureCapacity();
+            offsets[nSpectra] = lineStart;
+            titles[nSpectra] = "";
+            precursorMzs[nSpectra] = 0;
+            charges[nSpectra] = 0;
+            retentionTimes[nSpectra] = Double.NaN;
+            peakCounts[nSpectra] = 0;
+        } else if (!inSpectrum) {
+            return;
+        } else if (text.equals("END IONS")) {
+            inSpectrum = false;
+            nSpectra++;
+        } else if (text.startsWith("TITLE=")) {
+            titles[nSpectra] = text.substring(6);
+        } else if (text.startsWith("PEPMASS=")) {
+            precursorMzs[nSpectra] = parseFirstNumber(text.substring(8));
+        } else if (text.startsWith("RTINSECONDS=")) {
+            retentionTimes[nSpectra] = parseFirstNumber(text.substring(12));
+        } else if (text.startsWith("CHARGE=")) {
+            charges[nSpectra] = parseCharge(text.substring(7));
+        }
+    }
+
+    /**
+     * Makes sure that the arrays can hold one more spectrum.
+     */
+    private void ensureCapacity() {
+        if (nSpectra == offsets.length) {
+            int capacity = 2 * nSpectra;
+            offsets = Arrays.copyOf(offsets, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            precursorMzs = Arrays.copyOf(precursorMzs, capacity);
+            charges = Arrays.copyOf(charges, capacity);
+            retentionTimes = Arrays.copyOf(retentionTimes, capacity);
+            peakCounts = Arrays.copyOf(peakCounts, capacity);
+        }
+    }
+
+    /**
+     * Resizes the arrays to the number of spectra.
+     */
+    private void trim() {
+        offsets = Arrays.copyOf(offsets, nSpectra);
+        titles = Arrays.copyOf(titles, nSpectra);
+        precursorMzs = Arrays.copyOf(precursorMzs, nSpectra);
+        charges = Arrays.copyOf(charges, nSpectra);
+        retentionTimes = Arrays.copyOf(retentionTimes, nSpectra);
+        peakCounts = Arrays.copyOf(peakCounts, nSpectra);
+    }
+
+    /**
+     * Parses the first number of a value, 0 if the value cannot be parsed.
+     *
+     * @param value the value
+     *
+     * @return the first number of the value
+     */
+    private static double parseFirstNumber(String value) {
+        String[] split = value.trim().split("\\s+");
+        try {
+            return Double.parseDouble(split[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Parses the first charge of an mgf charge value, e.g. 2+ or 2+ and 3+.
+     *
+     * @param value the charge value
+     *
+     * @return the first charge, 0 if the value cannot be parsed
+     */
+    private static int parseCharge(String value) {
+        int charge = 0;
+        int i = 0;
+        value = value.trim();
+        while (i < value.length() && Character.isDigit(value.charAt(i))) {
+            charge = 10 * charge + value.charAt(i) - '0';
+            i++;
+        }
+        if (i < value.length() && value.charAt(i) == '-') {
+            charge = -charge;
+        }
+        return charge;
+    }
+
+    /**
+     * Writes the index in binary format.
+     *
+     * @param out the output stream
+     *
+     * @throws IOException thrown if the index cannot be written
+     */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(nSpectra);
+        for (int i = 0; i < nSpectra; i++) {
+            out.writeLong(offsets[i]);
+            out.writeUTF(titles[i]);
+            out.writeDouble(precursorMzs[i]);
+            out.writeInt(charges[i]);
+            out.writeDouble(retentionTimes[i]);
+            out.writeInt(peakCounts[i]);
+        }
+    }
+
+    /**
+     * Reads an index written in binary format.
+     *
+     * @param in the input stream
+     *
+     * @return the index
+     *
+     * @throws IOException thrown if the index cannot be read
+     */
+    public static SpectrumIndex read(DataInputStream in) throws IOException {
+        SpectrumIndex index = new SpectrumIndex();
+        int n = in.readInt();
+        if (n < 0) {
+            throw new IOException("Corrupted spectrum index.");
+        }
+        index.nSpectra = n;
+        index.offsets = new long[n];
+        index.titles = new String[n];
+        index.precursorMzs = new double[n];
+        index.charges = new int[n];
+        index.retentionTimes = new double[n];
+        index.peakCounts = new int[n];
+        for (int i = 0; i < n; i++) {
+            index.offsets[i] = in.readLong();
+            index.titles[i] = in.readUTF();
+            index.precursorMzs[i] = in.readDouble();
+            index.charges[i] = in.readInt();
+            index.retentionTimes[i] = in.readDouble();
+            index.peakCounts[i] = in.readInt();
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of spectra.
+     *
+     * @return the number of spectra
+     */
+    public int getNSpectra() {
+        return nSpectra;
+    }
+
+    /**
+     * Returns the byte offset of the given spectrum in the mgf file.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the byte offset of the spectrum
+     */
+    public long getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Returns the title of the given spectrum.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the title of the spectrum, empty if not given
+     */
+    public String getTitle(int index) {
+        return titles[index];
+    }
+
+    /**
+     * Returns the precursor m/z of the given spectrum.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the precursor m/z of the spectrum
+     */
+    public double getPrecursorMz(int index) {
+        return precursorMzs[index];
+    }
+
+    /**
+     * Returns the first precursor charge of the given spectrum.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the precursor charge of the spectrum, 0 if not given
+     */
+    public int getCharge(int index) {
+        return charges[index];
+    }
+
+    /**
+     * Returns the retention time of the given spectrum in seconds.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the retention time of the spectrum, NaN if not given
+     */
+    public double getRetentionTime(int index) {
+        return retentionTimes[index];
+    }
+
+    /**
+     * Returns the number of peaks of the given spectrum.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the number of peaks of the spectrum
+     */
+    public int getPeakCount(int index) {
+        return peakCounts[index];
+    }
+}
@@ -0,0 +1,338 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.massspectrometry.SpectrumFactory;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Cache of the spectrum indexes of the mgf files, stored in a folder managed
+ * by DeNovoGUI instead of next to the spectrum files so that read-only
+ * folders can be used. An index is found back using the size, the
+ * modification date and a hash of the content of the mgf file, any change of
+ * the file thus leads to a new index. The content hash covers the beginning
+ * and the end of the file so that it stays cheap for large files. The
+ * indexes of the spectrum factory used to display and export the results are
+ * stored in the same folder.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumIndexCache {
+
+    /**
+     * The version of the index format, increase when the format changes so
+     * that older indexes are ignored.
+     */
+    public static final int VERSION = 1;
+    /**
+     * The extension of the index files.
+     */
+    public static final String INDEX_EXTENSION = ".dgi";
+    /**
+     * The subfolder of the cache where the spectrum factory writes its
+     * indexes.
+     */
+    public static final String FACTORY_FOLDER = "factory";
+    /**
+     * Identifier written at the beginning of the index files.
+     */
+    private static final int MAGIC_NUMBER = 0x44474958;
+    /**
+     * The number of bytes hashed at the beginning and at the end of the mgf
+     * files.
+     */
+    private static final int HASHED_LENGTH = 1 << 20;
+    /**
+     * The folder where the indexes are stored, null to use the default
+     * folder.
+     */
+    private static String cacheFolder = null;
+
+    /**
+     * Returns the folder where the indexes are stored.
+     *
+     * @return the folder where the indexes are stored
+     */
+    public static File getCacheFolder() {
+        if (cacheFolder == null) {
+            return new File(new File(new File(System.getProperty("user.home"), ".compomics"), "denovogui"), "spectrum_index");
+        }
+        return new File(cacheFolder);
+    }
+
+    /**
+     * Returns the path of the folder where the indexes are stored.
+     *
+     * @return the path of the folder where the indexes are stored
+     */
+    public static String getCacheFolderPath() {
+        return getCacheFolder().getAbsolutePath();
+    }
+
+    /**
+     * Sets the folder where the indexes are stored.
+     *
+     * @param cacheFolder the folder where the indexes are stored
+     */
+    public static void setCacheFolder(String cacheFolder) {
+        SpectrumIndexCache.cacheFolder = cacheFolder;
+    }
+
+    /**
+     * Returns the index of the given mgf file. The index is taken from the
+     * cache if available, otherwise the file is indexed and the index saved
+     * in the cache. Failing to save the index does not prevent returning it.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the index of the file
+     *
+     * @throws IOException thrown if the mgf file cannot be read
+     */
+    public static SpectrumIndex getIndex(File mgfFile) throws IOException {
+
+        long size = mgfFile.length();
+        long lastModified = mgfFile.lastModified();
+        byte[] contentHash = getContentHash(mgfFile);
+        File indexFile = new File(getCacheFolder(), getKey(size, lastModified, contentHash) + INDEX_EXTENSION);
+
+        if (indexFile.exists()) {
+            try {
+                SpectrumIndex index = read(indexFile, size, lastModified, contentHash);
+                if (index != null) {
+                    return index;
+                }
+            } catch (IOException e) {
+                // corrupted index, index again
+            }
+        }
+
+        SpectrumIndex index = SpectrumIndex.index(mgfFile);
+
+        try {
+            write(index, indexFile, size, lastModified, contentHash);
+        } catch (IOException e) {
+            System.out.println("The spectrum index of " + mgfFile.getName() + " could not be saved in " + indexFile.getParent() + ": " + e.getMessage());
+        }
+
+        return index;
+    }
+
+    /**
+     * Adds the spectra of the given mgf file to the spectrum factory. The
+     * factory writes its index next to the file it is given, it is therefore
+     * given a link to the mgf file in the cache folder so that its index is
+     * stored in the cache and reused by the GUI, the command line and the
+     * exports. Without link support, the index is written next to the mgf
+     * file as before.
+     *
+     * @param spectrumFactory the spectrum factory
+     * @param mgfFile the mgf file
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @throws IOException thrown if the mgf file cannot be read
+     * @throws ClassNotFoundException thrown if the index of the spectrum
+     * factory cannot be read
+     */
+    public static void addSpectra(SpectrumFactory spectrumFactory, File mgfFile, WaitingHandler waitingHandler) throws IOException, ClassNotFoundException {
+        spectrumFactory.addSpectra(getFactoryFile(mgfFile), waitingHandler);
+    }
+
+    /**
+     * Returns the link to the given mgf file in the cache folder of the
+     * spectrum factory. The link is in a folder named after the size, the
+     * modification date and the content hash of the file, so that any change
+     * of the file leads to a new index of the spectrum factory. A symbolic
+     * link is used when possible, a hard link otherwise.
+     *
+     * @param mgfFile the mgf file
+     *
+     * @return the link to the mgf file, the mgf file itself if no link can be
+     * created
+     *
+     * @throws IOException thrown if the mgf file cannot be read
+     */
+    public static File getFactoryFile(File mgfFile) throws IOException {
+
+        byte[] contentHash = getContentHash(mgfFile);
+        File folder = new File(new File(getCacheFolder(), FACTORY_FOLDER), getKey(mgfFile.length(), mgfFile.lastModified(), contentHash));
+        File link = new File(folder, mgfFile.getName());
+        if (link.exists()) {
+            return link;
+        }
+        // the link to a file which was moved
+        Files.deleteIfExists(link.toPath());
+        if (!folder.exists() && !folder.mkdirs()) {
+            return mgfFile;
+        }
+
+        try {
+            Files.createSymbolicLink(link.toPath(), mgfFile.getAbsoluteFile().toPath());
+            return link;
+        } catch (FileAlreadyExistsException e) {
+            // created concurrently
+            return link;
+        } catch (UnsupportedOperationException e) {
+            // try a hard link
+        } catch (IOException e) {
+            // try a hard link, symbolic links need privileges on Windows
+        }
+        try {
+            Files.createLink(link.toPath(), mgfFile.getAbsoluteFile().toPath());
+            return link;
+        } catch (FileAlreadyExistsException e) {
+            return link;
+        } catch (UnsupportedOperationException e) {
+            return mgfFile;
+        } catch (IOException e) {
+            // for example on another file system
+            return mgfFile;
+        }
+    }
+
+    /**
+     * Reads an index file.
+     *
+     * @param indexFile the index file
+     * @param size the size of the mgf file
+     * @param lastModified the modification date of the mgf file
+     * @param contentHash the content hash of the mgf file
+     *
+     * @return the index, null if the index file does not match the mgf file
+     * or has another version
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    private static SpectrumIndex read(File indexFile, long size, long lastModified, byte[] contentHash) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            if (in.readInt() != MAGIC_NUMBER || in.readInt() != VERSION
+                    || in.readLong() != size || in.readLong() != lastModified) {
+                return null;
+            }
+            byte[] savedHash = new byte[in.readUnsignedByte()];
+            in.readFully(savedHash);
+            if (!Arrays.equals(savedHash, contentHash)) {
+                return null;
+            }
+            return SpectrumIndex.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes an index file. The index is written to a temporary file which
+     * is then renamed so that concurrent readers never see a partial index.
+     *
+     * @param index the index
+     * @param indexFile the index file
+     * @param size the size of the mgf file
+     * @param lastModified the modification date of the mgf file
+     * @param contentHash the content hash of the mgf file
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    private static void write(SpectrumIndex index, File indexFile, long size, long lastModified, byte[] contentHash) throws IOException {
+        File folder = indexFile.getParentFile();
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Impossible to create folder " + folder.getAbsolutePath() + ".");
+        }
+        File tempFile = File.createTempFile(indexFile.getName(), ".tmp", folder);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC_NUMBER);
+            out.writeInt(VERSION);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+            out.writeByte(contentHash.length);
+            out.write(contentHash);
+            index.write(out);
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(indexFile)) {
+            tempFile.delete();
+            if (!indexFile.exists()) {
+                throw new IOException("Impossible to create " + indexFile.getAbsolutePath() + ".");
+            }
+        }
+    }
+
+    /**
+     * Returns the hash of the beginning and of the end of the given file.
+     *
+     * @param file the file
+     *
+     * @return the content hash
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    private static byte[] getContentHash(File file) throws IOException {
+        MessageDigest digest = getDigest();
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            byte[] buffer = new byte[(int) Math.min(HASHED_LENGTH, length)];
+            raf.readFully(buffer);
+            digest.update(buffer);
+            if (length > HASHED_LENGTH) {
+                buffer = new byte[(int) Math.min(HASHED_LENGTH, length - HASHED_LENGTH)];
+                raf.seek(length - buffer.length);
+                raf.readFully(buffer);
+                digest.update(buffer);
+            }
+        } finally {
+            raf.close();
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Returns the name of the index file of an mgf file.
+     *
+     * @param size the size of the mgf file
+     * @param lastModified the modification date of the mgf file
+     * @param contentHash the content hash of the mgf file
+     *
+     * @return the name of the index file
+     */
+    private static String getKey(long size, long lastModified, byte[] contentHash) {
+        MessageDigest digest = getDigest();
+        digest.update(contentHash);
+        for (int i = 0; i < 8; i++) {
+            digest.update((byte) (size >>> (8 * i)));
+            digest.update((byte) (lastModified >>> (8 * i)));
+        }
+        StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b & 0xff));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns a new SHA-1 digest.
+     *
+     * @return a new SHA-1 digest
+     */
+    private static MessageDigest getDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available.", e);
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.compomics.denovogui.io;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Routes the spectra to the algorithms according to their characteristics.
+ * Every algorithm can be given rules on the spectrum metadata of the mgf
+ * files, only the spectra matching all rules of an algorithm are sequenced by
+ * this algorithm. The rules are:
+ * <ul>
+ * <li>charge:&lt;min&gt;-&lt;max&gt;, the precursor charge, a spectrum with
+ * several charges matches if one of them is in the range,</li>
+ * <li>mz:&lt;min&gt;-&lt;max&gt;, the precursor m/z,</li>
+ * <li>peaks:&lt;min&gt;-&lt;max&gt;, the number of peaks,</li>
+ * <li>rt:&lt;min&gt;-&lt;max&gt;, the retention time in seconds,</li>
+ * <li>title:&lt;regular expression&gt;, the title, for example to select the
+ * activation type written in the titles.</li>
+ * </ul>
+ * A bound of a range can be omitted, for example "peaks:20-". A spectrum
+ * without the value of a rule, for example without charge, matches the rule.
+ * The algorithms without rules sequence all spectra.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumRouter {
+
+    /**
+     * The rules of every algorithm, indexed by algorithm name on the command
+     * line.
+     */
+    private final HashMap<String, ArrayList<Rule>> rules;
+
+    /**
+     * Constructor.
+     *
+     * @param rules the rules of every algorithm, indexed by algorithm name on
+     * the command line
+     */
+    private SpectrumRouter(HashMap<String, ArrayList<Rule>> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Parses the routing from a semicolon separated list of algorithm names
+     * followed by '=' and a comma separated list of rules, for example
+     * "pepnovo=charge:1-3,peaks:20-;novor=title:.*HCD.*".
+     *
+     * @param settings the routing
+     *
+     * @return the router
+     *
+     * @throws IllegalArgumentException thrown if the routing cannot be parsed
+     */
+    public static SpectrumRouter parse(String settings) throws IllegalArgumentException {
+        HashMap<String, ArrayList<Rule>> rules = new HashMap<String, ArrayList<Rule>>();
+        for (String algorithmSettings : settings.split(";")) {
+            int separatorIndex = algorithmSettings.indexOf('=');
+            if (separatorIndex < 0) {
+                throw new IllegalArgumentException("Could not parse the routing '" + algorithmSettings + "'.");
+            }
+            String algorithm = algorithmSettings.substring(0, separatorIndex).trim().toLowerCase();
+            ArrayList<Rule> algorithmRules = new ArrayList<Rule>();
+            for (String rule : algorithmSettings.substring(separatorIndex + 1).split(",")) {
+                if (!rule.trim().isEmpty()) {
+                    algorithmRules.add(Rule.parse(rule.trim()));
+                }
+            }
+            rules.put(algorithm, algorithmRules);
+        }
+        return new SpectrumRouter(rules);
+    }
+
+    /**
+     * Returns the names of the algorithms with rules.
+     *
+     * @return the names of the algorithms with rules
+     */
+    public Set<String> getAlgorithms() {
+        return rules.keySet();
+    }
+
+    /**
+     * Indicates whether the spectra are routed for the given algorithm.
+     *
+     * @param algorithm the name of the algorithm on the command line
+     *
+     * @return true if the algorithm has rules
+     */
+    public boolean isRouting(String algorithm) {
+        ArrayList<Rule> algorithmRules = rules.get(algorithm);
+        return algorithmRules != null && !algorithmRules.isEmpty();
+    }
+
+    /**
+     * Returns the spectra of an mgf file not matching the rules of an
+     * algorithm.
+     *
+     * @param algorithm the name of the algorithm on the command line
+     * @param mgfFile the mgf file
+     *
+     * @return the indexes of the spectra not matching the rules
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    public BitSet getExcluded(String algorithm, File mgfFile) throws IOException {
+
+        BitSet result = new BitSet();
+        ArrayList<Rule> algorithmRules = rules.get(algorithm);
+        if (algorithmRules == null || algorithmRules.isEmpty()) {
+            return result;
+        }
+
+        BufferedReader br = new BufferedReader(new FileReader(mgfFile));
+        try {
+            int spectrumIndex = -1;
+            SpectrumHeader spectrumHeader = null;
+            String line;
+            while ((line = br.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("BEGIN IONS")) {
+                    spectrumIndex++;
+                    spectrumHeader = new SpectrumHeader();
+                } else if (spectrumHeader == null) {
+                    // outside of a spectrum
+                } else if (line.startsWith("END IONS")) {
+                    for (Rule rule : algorithmRules) {
+                        if (!rule.matches(spectrumHeader)) {
+                            result.set(spectrumIndex);
+                            break;
+                        }
+                    }
+                    spectrumHeader = null;
+                } else if (line.startsWith("TITLE=")) {
+                    spectrumHeader.title = line.substring(6).trim();
+                } else if (line.startsWith("PEPMASS=")) {
+                    spectrumHeader.mz = Double.parseDouble(line.substring(8).trim().split("\\s+")[0]);
+                } else if (line.startsWith("RTINSECONDS=")) {
+                    spectrumHeader.rt = Double.parseDouble(line.substring(12).trim().split("[\\s-]+")[0]);
+                } else if (line.startsWith("CHARGE=")) {
+                    spectrumHeader.charges = getCharges(line.substring(7));
+                } else if (!line.isEmpty() && Character.isDigit(line.charAt(0))) {
+                    spectrumHeader.nPeaks++;
+                }
+            }
+        } finally {
+            br.close();
+        }
+        return result;
+    }
+
+    /**
+     * Parses the charges of a spectrum, for example "2+ and 3+".
+     *
+     * @param charges the charges as written in the mgf file
+     *
+     * @return the charges, empty if not known
+     */
+    private static ArrayList<Integer> getCharges(String charges) {
+        ArrayList<Integer> result = new ArrayList<Integer>(2);
+        for (String charge : charges.split("(and|,)")) {
+            String value = charge.replace("+", "").replace("-", "").trim();
+            if (!value.isEmpty()) {
+                try {
+                    int parsedCharge = Integer.parseInt(value);
+                    if (parsedCharge > 0) {
+                        result.add(parsedCharge);
+                    }
+                } catch (NumberFormatException e) {
+                    // unknown charge
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the rules of the given algorithm as on the command line.
+     *
+     * @param algorithm the name of the algorithm on the command line
+     *
+     * @return the rules of the algorithm
+     */
+    public String toString(String algorithm) {
+        StringBuilder result = new StringBuilder();
+        ArrayList<Rule> algorithmRules = rules.get(algorithm);
+        if (algorithmRules != null) {
+            for (Rule rule : algorithmRules) {
+                if (result.length() > 0) {
+                    result.append(",");
+                }
+                result.append(rule);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * The metadata of a spectrum used by the rules.
+     */
+    private static class SpectrumHeader {
+
+        /**
+         * The title, null if not known.
+         */
+        private String title = null;
+        /**
+         * The precursor m/z, NaN if not known.
+         */
+        private double mz = Double.NaN;
+        /**
+         * The retention time in seconds, NaN if not known.
+         */
+        private double rt = Double.NaN;
+        /**
+         * The precursor charges, empty if not known.
+         */
+        private ArrayList<Integer> charges = new ArrayList<Integer>(0);
+        /**
+         * The number of peaks.
+         */
+        private int nPeaks = 0;
+    }
+
+    /**
+     * A rule on the metadata of the spectra.
+     */
+    private static class Rule {
+
+        /**
+         * The property tested: charge, mz, peaks, rt or title.
+         */
+        private final String property;
+        /**
+         * The lower bound of the range.
+         */
+        private final double min;
+        /**
+         * The upper bound of the range.
+         */
+        private final double max;
+        /**
+         * The pattern of the title, null for the other properties.
+         */
+        private final Pattern pattern;
+        /**
+         * The rule as on the command line.
+         */
+        private final String rule;
+
+        /**
+         * Constructor.
+         *
+         * @param property the property tested
+         * @param min the lower bound of the range
+         * @param max the upper bound of the range
+         * @param pattern the pattern of the title, null for the other
+         * properties
+         * @param rule the rule as on the command line
+         */
+        private Rule(String property, double min, double max, Pattern pattern, String rule) {
+            this.property = property;
+            this.min = min;
+            this.max = max;
+            this.pattern = pattern;
+            this.rule = rule;
+        }
+
+        /**
+         * Parses a rule.
+         *
+         * @param rule the rule, for example "charge:2-3"
+         *
+         * @return the rule
+         *
+         * @throws IllegalArgumentException thrown if the rule cannot be parsed
+         */
+        private static Rule parse(String rule) throws IllegalArgumentException {
+            int separatorIndex = rule.indexOf(':');
+            if (separatorIndex < 0) {
+                throw new IllegalArgumentException("Could not parse the routing rule '" + rule + "'.");
+            }
+            String property = rule.substring(0, separatorIndex).trim().toLowerCase();
+            String value = rule.substring(separatorIndex + 1).trim();
+            if (property.equals("title")) {
+                try {
+                    return new Rule(property, 0, 0, Pattern.compile(value), rule);
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Could not parse the title pattern of the routing rule '" + rule + "'.");
+                }
+            }
+            if (!property.equals("charge") && !property.equals("mz") && !property.equals("peaks") && !property.equals("rt")) {
+                throw new IllegalArgumentException("Unknown property '" + property + "' in the routing rule '" + rule + "'.");
+            }
+            try {
+                int rangeIndex = value.indexOf('-');
+                if (rangeIndex < 0) {
+                    double bound = Double.parseDouble(value);
+                    return new Rule(property, bound, bound, null, rule);
+                }
+                String minValue = value.substring(0, rangeIndex).trim();
+                String maxValue = value.substring(rangeIndex + 1).trim();
+                double min = minValue.isEmpty() ? Double.NEGATIVE_INFINITY : Double.parseDouble(minValue);
+                double max = maxValue.isEmpty() ? Double.POSITIVE_INFINITY : Double.parseDouble(maxValue);
+                return new Rule(property, min, max, null, rule);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Could not parse the range of the routing rule '" + rule + "'.");
+            }
+        }
+
+        /**
+         * Indicates whether a spectrum matches the rule.
+         *
+         * @param spectrumHeader the metadata of the spectrum
+         *
+         * @return true if the spectrum matches the rule or does not have the
+         * value of the rule
+         */
+        private boolean matches(SpectrumHeader spectrumHeader) {
+            if (property.equals("title")) {
+                return spectrumHeader.title == null || pattern.matcher(spectrumHeader.title).find();
+            } else if (property.equals("charge")) {
+                if (spectrumHeader.charges.isEmpty()) {
+                    return true;
+                }
+                for (int charge : spectrumHeader.charges) {
+                    if (inRange(charge)) {
+                        return true;
+                    }
+                }
+                return false;
+            } else if (property.equals("mz")) {
+                return Double.isNaN(spectrumHeader.mz) || inRange(spectrumHeader.mz);
+            } else if (property.equals("rt")) {
+                return Double.isNaN(spectrumHeader.rt) || inRange(spectrumHeader.rt);
+            }
+            return inRange(spectrumHeader.nPeaks);
+        }
+
+        /**
+         * Indicates whether a value is in the range of the rule.
+         *
+         * @param value the value
+         *
+         * @return true if the value is in the range
+         */
+        private boolean inRange(double value) {
+            return value >= min && value <= max;
+        }
+
+        @Override
+        public String toString() {
+            return rule;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.compomics.denovogui.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Draws a stratified random sample of the spectra of an mgf file, for
+ * example to estimate the duration of a run. The spectra are stratified by
+ * precursor charge and by position in the file, which follows the retention
+ * time, so that the sample has the charge distribution of the file and
+ * covers the whole gradient. Every stratum contributes the sampling fraction
+ * of its spectra, at least one spectrum.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumSampler {
+
+    /**
+     * The number of blocks of the file used as strata.
+     */
+    private static final int N_BLOCKS = 10;
+    /**
+     * The fraction of the spectra to sample.
+     */
+    private final double fraction;
+    /**
+     * The random number generator.
+     */
+    private final Random random;
+
+    /**
+     * Constructor.
+     *
+     * @param fraction the fraction of the spectra to sample, between 0 and 1
+     * @param seed the seed of the random number generator
+     */
+    public SpectrumSampler(double fraction, long seed) {
+        this.fraction = fraction;
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Returns a sample of the spectra of an indexed mgf file.
+     *
+     * @param spectrumIndex the index of the mgf file
+     *
+     * @return the indexes of the sampled spectra in ascending order
+     */
+    public int[] sample(SpectrumIndex spectrumIndex) {
+
+        int nSpectra = spectrumIndex.getNSpectra();
+
+        // strata indexed by block and charge
+        HashMap<Long, ArrayList<Integer>> strata = new HashMap<Long, ArrayList<Integer>>();
+        for (int i = 0; i < nSpectra; i++) {
+            long block = (long) i * N_BLOCKS / nSpectra;
+            long key = block << 32 | spectrumIndex.getCharge(i);
+            ArrayList<Integer> stratum = strata.get(key);
+            if (stratum == null) {
+                stratum = new ArrayList<Integer>();
+                strata.put(key, stratum);
+            }
+            stratum.add(i);
+        }
+
+        ArrayList<Integer> sample = new ArrayList<Integer>();
+        for (ArrayList<Integer> stratum : strata.values()) {
+            int nSampled = Math.min(stratum.size(), Math.max(1, (int) Math.round(fraction * stratum.size())));
+            // partial Fisher-Yates shuffle
+            for (int i = 0; i < nSampled; i++) {
+                int j = i + random.nextInt(stratum.size() - i);
+                Integer spectrum = stratum.get(j);
+                stratum.set(j, stratum.get(i));
+                stratum.set(i, spectrum);
+                sample.add(spectrum);
+            }
+        }
+
+        int[] result = new int[sample.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sample.get(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Copies the given spectra of an indexed mgf file to a new mgf file.
+     *
+     * @param mgfFile the mgf file
+     * @param spectrumIndex the index of the mgf file
+     * @param spectra the indexes of the spectra to copy in ascending order
+     * @param destinationFile the file where to write the spectra
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    public static void writeSpectra(File mgfFile, SpectrumIndex spectrumIndex, int[] spectra, File destinationFile) throws IOException {
+
+        destinationFile.getParentFile().mkdirs();
+        RandomAccessFile in = new RandomAccessFile(mgfFile, "r");
+        try {
+            FileOutputStream out = new FileOutputStream(destinationFile);
+            try {
+                FileChannel inChannel = in.getChannel();
+                FileChannel outChannel = out.getChannel();
+                for (int spectrum : spectra) {
+                    long start = spectrumIndex.getOffset(spectrum);
+                    long end = spectrum + 1 < spectrumIndex.getNSpectra() ? spectrumIndex.getOffset(spectrum + 1) : inChannel.size();
+                    long position = start;
+                    while (position < end) {
+                        position += inChannel.transferTo(position, end - position, outChannel);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.experiment.identification.SpectrumIdentificationAssumption;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.identification.spectrum_assumptions.TagAssumption;
+import com.compomics.util.experiment.io.identifications.IdfileReader;
+import com.compomics.util.experiment.io.identifications.IdfileReaderFactory;
+import com.compomics.util.experiment.massspectrometry.Spectrum;
+import com.compomics.util.preferences.SequenceMatchingPreferences;
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * Imports the de novo results one file at a time and writes the text exports
+ * while importing, without identification database or graphical interface.
+ * Only the matches of the result file being processed are kept in memory. The
+ * spectra of the result files must be loaded in the spectrum factory.
+ *
+ * @author Marc Vaudel
+ * @author Harald Barsnes
+ */
+public class StreamingExporter {
+
+    /**
+     * The search parameters.
+     */
+    private final SearchParameters searchParameters;
+    /**
+     * The sequence matching preferences.
+     */
+    private final SequenceMatchingPreferences sequenceMatchingPreferences;
+    /**
+     * The de novo score threshold.
+     */
+    private final double threshold;
+    /**
+     * Indicates whether the scores have to be greater than the threshold.
+     */
+    private final boolean greaterThan;
+    /**
+     * The maximum number of matches to export per spectrum.
+     */
+    private final int numberOfMatches;
+    /**
+     * The protein mapper, null if the matches are not mapped to proteins.
+     */
+    private ProteinMapper proteinMapper = null;
+    /**
+     * The writer of the peptide export, null if not exported.
+     */
+    private BufferedWriter peptidesWriter = null;
+    /**
+     * The writer of the tag export, null if not exported.
+     */
+    private BufferedWriter tagsWriter = null;
+    /**
+     * The writer of the BLAST-compatible export, null if not exported.
+     */
+    private BufferedWriter blastWriter = null;
+    /**
+     * The number of spectra exported.
+     */
+    private int nSpectra = 0;
+    /**
+     * Indicates whether a peptide was found when mapping the matches.
+     */
+    private boolean peptideFound = false;
+
+    /**
+     * Constructor.
+     *
+     * @param searchParameters the search parameters
+     * @param sequenceMatchingPreferences the sequence matching preferences
+     * @param threshold the de novo score threshold
+     * @param greaterThan a boolean indicating whether the scores have to be
+     * greater than the threshold
+     * @param numberOfMatches the maximum number of matches to export per
+     * spectrum
+     */
+    public StreamingExporter(SearchParameters searchParameters, SequenceMatchingPreferences sequenceMatchingPreferences,
+            double threshold, boolean greaterThan, int numberOfMatches) {
+        this.searchParameters = searchParameters;
+        this.sequenceMatchingPreferences = sequenceMatchingPreferences;
+        this.threshold = threshold;
+        this.greaterThan = greaterThan;
+        this.numberOfMatches = numberOfMatches;
+    }
+
+    /**
+     * Sets the protein mapper used to map the matches to the proteins before
+     * export.
+     *
+     * @param proteinMapper the protein mapper, null to export the matches
+     * without mapping
+     */
+    public void setProteinMapper(ProteinMapper proteinMapper) {
+        this.proteinMapper = proteinMapper;
+    }
+
+    /**
+     * Opens the export files and writes their headers.
+     *
+     * @param peptidesFile the peptide export file, null if not exported
+     * @param tagsFile the tag export file, null if not exported
+     * @param blastFile the BLAST-compatible export file, null if not exported
+     *
+     * @throws IOException thrown if a file cannot be written
+     */
+    public void open(File peptidesFile, File tagsFile, File blastFile) throws IOException {
+        if (peptidesFile != null) {
+            peptidesWriter = new BufferedWriter(new FileWriter(peptidesFile));
+            TextExporter.writePeptideExportHeader(peptidesWriter);
+        }
+        if (tagsFile != null) {
+            tagsWriter = new BufferedWriter(new FileWriter(tagsFile));
+            TextExporter.writeTagExportHeader(tagsWriter);
+        }
+        if (blastFile != null) {
+            blastWriter = new BufferedWriter(new FileWriter(blastFile));
+        }
+    }
+
+    /**
+     * Imports the matches of a result file and writes them to the exports.
+     *
+     * @param resultFile the result file
+     * @param waitingHandler the waiting handler
+     *
+     * @throws Exception thrown if the result file cannot be imported or the
+     * matches cannot be mapped or written
+     */
+    public void export(File resultFile, WaitingHandler waitingHandler) throws Exception {
+
+        IdfileReader idfileReader = IdfileReaderFactory.getInstance().getFileReader(resultFile);
+
+        if (idfileReader == null) {
+            throw new IllegalArgumentException("Result file " + resultFile.getName() + " format not recognized.");
+        }
+
+        try {
+            LinkedList<SpectrumMatch> spectrumMatches = importSpectrumMatches(idfileReader, resultFile, searchParameters, sequenceMatchingPreferences, waitingHandler);
+
+            // write the matches and release them
+            while (!spectrumMatches.isEmpty()) {
+
+                SpectrumMatch spectrumMatch = spectrumMatches.removeFirst();
+                String spectrumKey = spectrumMatch.getKey();
+                String spectrumFile = Spectrum.getSpectrumFile(spectrumKey);
+                HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
+
+                if (proteinMapper != null && proteinMapper.mapAssumptions(assumptionsMap, threshold, greaterThan, numberOfMatches)) {
+                    peptideFound = true;
+                }
+                if (peptidesWriter != null) {
+                    TextExporter.writePeptideExportLines(peptidesWriter, spectrumFile, spectrumKey, assumptionsMap, searchParameters, threshold, greaterThan, numberOfMatches);
+                }
+                if (tagsWriter != null) {
+                    TextExporter.writeTagExportLines(tagsWriter, spectrumFile, spectrumKey, assumptionsMap, searchParameters, threshold, greaterThan, numberOfMatches);
+                    tagsWriter.newLine();
+                }
+                if (blastWriter != null) {
+                    TextExporter.writeBlastExportLines(blastWriter, spectrumFile, spectrumKey, assumptionsMap, searchParameters, threshold, greaterThan, numberOfMatches);
+                }
+
+                nSpectra++;
+
+                if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                    return;
+                }
+            }
+        } finally {
+            idfileReader.close();
+        }
+    }
+
+    /**
+     * Imports the matches of a result file: the modifications are remapped and
+     * the matches of clustered spectra are given back to all cluster members.
+     * All imports of de novo results go through this method.
+     *
+     * @param idfileReader the reader of the result file
+     * @param resultFile the result file
+     * @param searchParameters the search parameters
+     * @param sequenceMatchingPreferences the sequence matching preferences
+     * @param waitingHandler the waiting handler
+     *
+     * @return the spectrum matches of the result file
+     *
+     * @throws Exception thrown if the result file cannot be imported
+     */
+    public static LinkedList<SpectrumMatch> importSpectrumMatches(IdfileReader idfileReader, File resultFile, SearchParameters searchParameters,
+            SequenceMatchingPreferences sequenceMatchingPreferences, WaitingHandler waitingHandler) throws Exception {
+
+        LinkedList<SpectrumMatch> spectrumMatches = idfileReader.getAllSpectrumMatches(waitingHandler, searchParameters);
+
+        // add the fixed PTMs and rename the variable modifications
+        for (SpectrumMatch spectrumMatch : spectrumMatches) {
+            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = spectrumMatch.getAssumptionsMap();
+            for (int advocate : assumptionsMap.keySet()) {
+                HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> tempAssumptions = assumptionsMap.get(advocate);
+                for (double score : tempAssumptions.keySet()) {
+                    for (SpectrumIdentificationAssumption assumption : tempAssumptions.get(score)) {
+                        if (assumption instanceof TagAssumption) {
+                            ModificationRemapper.remapModifications((TagAssumption) assumption, advocate, searchParameters, sequenceMatchingPreferences, spectrumMatch.getKey());
+                        }
+                    }
+                }
+            }
+        }
+
+        // give the results of clustered spectra back to all cluster members,
+        // after remapping as the members share the assumptions of their representative
+        return SpectrumClusterer.fanOut(spectrumMatches, resultFile.getParentFile());
+    }
+
+    /**
+     * Closes the export files.
+     *
+     * @throws IOException thrown if a file cannot be closed
+     */
+    public void close() throws IOException {
+        try {
+            if (peptidesWriter != null) {
+                peptidesWriter.close();
+            }
+        } finally {
+            try {
+                if (tagsWriter != null) {
+                    tagsWriter.close();
+                }
+            } finally {
+                if (blastWriter != null) {
+                    blastWriter.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of spectra exported.
+     *
+     * @return the number of spectra exported
+     */
+    public int getNSpectra() {
+        return nSpectra;
+    }
+
+    /**
+     * Indicates whether a peptide was found when mapping the matches to the
+     * proteins.
+     *
+     * @return true if a peptide was found
+     */
+    public boolean isPeptideFound() {
+        return peptideFound;
+    }
+}
@@ -81,13 +81,7 @@ public class TextExporter {
             BufferedWriter b = new BufferedWriter(f);
 
             try {
-                b.write("File Name" + SEPARATOR + "Spectrum Title" + SEPARATOR + "Retention Time (s)" + SEPARATOR + "Measured m/z" + SEPARATOR + "Measured Charge" + SEPARATOR
-                        + "Rank" + SEPARATOR + "Protein(s)" + SEPARATOR + "Peptide" + SEPARATOR + "Peptide Variable Modifications" + SEPARATOR + "Modified Sequence"
-                        + SEPARATOR + "Tag" + SEPARATOR + "Longest Amino Acid Sequence" + SEPARATOR + "Tag Variable Modifications" + SEPARATOR + "Modified tag sequence" + SEPARATOR
-                        + "PepNovo RankScore" + SEPARATOR + "PepNovo Score" + SEPARATOR + "DirecTag E-value" + SEPARATOR + "pNovo+ Score" + SEPARATOR + "Novor Score" + SEPARATOR
-                        + "N-Gap" + SEPARATOR + "C-Gap" + SEPARATOR + "Theoretic m/z" + SEPARATOR + "Identification Charge" + SEPARATOR + "Tag Mass Error (Da)"
-                        + SEPARATOR + "Tag Mass Error (ppm)" + SEPARATOR + "Peptide Mass Error (Da)" + SEPARATOR + "Peptide Mass Error (ppm)" + SEPARATOR + "Isotope");
-                b.newLine();
+                writePeptideExportHeader(b);
 
                 if (waitingHandler != null) {
                     waitingHandler.setWaitingText("Exporting Spectra - Writing File. Please Wait...");
@@ -100,135 +94,7 @@ public class TextExporter {
                     for (String spectrumKey : identification.getSpectrumIdentification(mgfFile)) {
                         if (identification.matchExists(spectrumKey)) {
 
-                            StringBuilder spectrumDetails = new StringBuilder();
-
-                            String spectrumTitle = Spectrum.getSpectrumTitle(spectrumKey);
-                            spectrumDetails.append(mgfFile).append(SEPARATOR).append(spectrumTitle).append(SEPARATOR);
-
-                            Precursor precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
-                            spectrumDetails.append(precursor.getRt()).append(SEPARATOR).append(precursor.getMz()).append(SEPARATOR).append(precursor.getPossibleChargesAsString()).append(SEPARATOR);
-
-                            ArrayList<PeptideAssumption> assumptions = new ArrayList<PeptideAssumption>();
-                            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = identification.getAssumptions(spectrumKey);
-
-                            for (int algorithmId : assumptionsMap.keySet()) {
-                                HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateMap = assumptionsMap.get(algorithmId);
-                                if (advocateMap != null) {
-                                    ArrayList<Double> scores = new ArrayList<Double>(advocateMap.keySet());
-                                    Collections.sort(scores, Collections.reverseOrder());
-                                    for (Double score : scores) {
-                                        for (SpectrumIdentificationAssumption assumption : advocateMap.get(score)) {
-                                            if (assumption instanceof PeptideAssumption) {
-                                                PeptideAssumption peptideAssumption = (PeptideAssumption) assumption;
-                                                assumptions.add(peptideAssumption);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-
-                            // export all matches above the score threshold up to the given user selected amount
-                            for (int i = 0; i < assumptions.size() && i < numberOfMatches; i++) {
-
-                                PeptideAssumption peptideAssumption = assumptions.get(i);
-
-                                boolean passesThreshold;
-
-                                if (greaterThan) {
-                                    passesThreshold = peptideAssumption.getScore() >= threshold;
-                                } else { // less than
-                                    passesThreshold = peptideAssumption.getScore() <= threshold;
-                                }
-
-                                if (passesThreshold) {
-
-                                    b.write(spectrumDetails.toString());
-                                    b.write(peptideAssumption.getRank() + SEPARATOR);
-
-                                    Peptide peptide = peptideAssumption.getPeptide();
-                                    String proteinText = "";
-                                    ArrayList<String> proteins = peptide.getParentProteinsNoRemapping();
-                                    if (proteins != null) {
-                                        Collections.sort(proteins);
-                                        for (String accession : proteins) {
-                                            if (!proteinText.equals("")) {
-                                                proteinText += SEPARATOR_2;
-                                            }
-                                            proteinText += accession;
-                                        }
-                                    }
-                                    b.write(proteinText + SEPARATOR);
-
-                                    b.write(peptide.getSequence() + SEPARATOR);
-                                    b.write(getPeptideModificationsAsString(peptide) + SEPARATOR);
-                                    b.write(peptide.getTaggedModifiedSequence(searchParameters.getPtmSettings(), false, false, true, false) + SEPARATOR);
-
-                                    // tag section if any
-                                    TagAssumption tagAssumption = new TagAssumption();
-                                    tagAssumption = (TagAssumption) peptideAssumption.getUrParam(tagAssumption);
-                                    if (tagAssumption != null) {
-                                        Tag tag = tagAssumption.getTag();
-                                        b.write(tag.asSequence() + SEPARATOR);
-                                        b.write(tag.getLongestAminoAcidSequence() + SEPARATOR);
-                                        b.write(Tag.getTagModificationsAsString(tag) + SEPARATOR);
-                                        b.write(tag.getTaggedModifiedSequence(searchParameters.getPtmSettings(), false, false, true, false) + SEPARATOR);
-                                        if (tagAssumption.getAdvocate() == Advocate.pepnovo.getIndex()) {
-                                            PepnovoAssumptionDetails pepnovoAssumptionDetails = new PepnovoAssumptionDetails();
-                                            pepnovoAssumptionDetails = (PepnovoAssumptionDetails) tagAssumption.getUrParam(pepnovoAssumptionDetails);
-                                            b.write(pepnovoAssumptionDetails.getRankScore() + SEPARATOR);
-                                            b.write(tagAssumption.getScore() + SEPARATOR + SEPARATOR + SEPARATOR + SEPARATOR);
-                                        } else if (tagAssumption.getAdvocate() == Advocate.direcTag.getIndex()) {
-                                            b.write(SEPARATOR + SEPARATOR + tagAssumption.getScore() + SEPARATOR + SEPARATOR + SEPARATOR);
-                                        } else if (tagAssumption.getAdvocate() == Advocate.pNovo.getIndex()) {
-                                            b.write(SEPARATOR + SEPARATOR + SEPARATOR + tagAssumption.getScore() + SEPARATOR + SEPARATOR);
-                                        } else if (tagAssumption.getAdvocate() == Advocate.novor.getIndex()) {
-                                            b.write(SEPARATOR + SEPARATOR + SEPARATOR + SEPARATOR + tagAssumption.getScore() + SEPARATOR);
-                                        }
-                                        b.write(tag.getNTerminalGap() + SEPARATOR);
-                                        b.write(tag.getCTerminalGap() + SEPARATOR);
-                                        b.write(tag.getMass() + SEPARATOR);
-                                        b.write(tagAssumption.getIdentificationCharge().value + SEPARATOR);
-                                        double massDeviation = tagAssumption.getDeltaMass(precursor.getMz(), false, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
-                                        b.write(massDeviation + SEPARATOR);
-                                        massDeviation = tagAssumption.getDeltaMass(precursor.getMz(), true, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
-                                        b.write(massDeviation + SEPARATOR);
-                                    } else if (peptideAssumption.getAdvocate() == Advocate.novor.getIndex()) {
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR + SEPARATOR + SEPARATOR + SEPARATOR + peptideAssumption.getScore() + SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);  
-                                    } else {
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                        b.write(SEPARATOR);
-                                    }
-                                    Double massDeviation = peptideAssumption.getDeltaMass(precursor.getMz(), false, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
-                                    b.write(massDeviation + SEPARATOR);
-                                    massDeviation = peptideAssumption.getDeltaMass(precursor.getMz(), true, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
-                                    b.write(massDeviation + SEPARATOR);
-                                    b.write(peptideAssumption.getIsotopeNumber(precursor.getMz(), searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection()) + SEPARATOR);
-                                    b.newLine();
-                                }
-                            }
+                            writePeptideExportLines(b, mgfFile, spectrumKey, identification.getAssumptions(spectrumKey), searchParameters, threshold, greaterThan, numberOfMatches);
                             if (waitingHandler != null) {
                                 waitingHandler.increaseSecondaryProgressCounter();
                                 if (waitingHandler.isRunCanceled()) {
@@ -286,11 +152,7 @@ public class TextExporter {
             BufferedWriter b = new BufferedWriter(f);
 
             try {
-                b.write("File Name" + SEPARATOR + "Spectrum Title" + SEPARATOR + "Retention Time (s)" + SEPARATOR + "Measured m/z" + SEPARATOR + "Measured Charge" + SEPARATOR
-                        + "Rank" + SEPARATOR + "Tag" + SEPARATOR + "Longest AminoAcid sequence" + SEPARATOR + "Variable Modifications" + SEPARATOR + "Modified Sequence" + SEPARATOR
-                        + "PepNovo RankScore" + SEPARATOR + "PepNovo Score" + SEPARATOR + "DirecTag E-value" + SEPARATOR + "pNovo+ Score" + SEPARATOR + "Novor Score" + SEPARATOR
-                        + "N-Gap" + SEPARATOR + "C-Gap" + SEPARATOR + "Theoretic m/z" + SEPARATOR + "Identification Charge");
-                b.newLine();
+                writeTagExportHeader(b);
 
                 if (waitingHandler != null) {
                     waitingHandler.setWaitingText("Exporting Spectra - Writing File. Please Wait...");
@@ -303,55 +165,7 @@ public class TextExporter {
                     for (String spectrumKey : identification.getSpectrumIdentification(mgfFile)) {
                         if (identification.matchExists(spectrumKey)) {
 
-                            String spectrumTitle = Spectrum.getSpectrumTitle(spectrumKey);
-                            StringBuilder spectrumDetails = new StringBuilder();
-
-                            spectrumDetails.append(mgfFile).append(SEPARATOR).append(spectrumTitle).append(SEPARATOR);
-
-                            Precursor precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
-                            spectrumDetails.append(precursor.getRt()).append(SEPARATOR).append(precursor.getMz()).append(SEPARATOR).append(precursor.getPossibleChargesAsString()).append(SEPARATOR);
-
-                            ArrayList<SpectrumIdentificationAssumption> allAssumptions = new ArrayList<SpectrumIdentificationAssumption>();
-                            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = identification.getAssumptions(spectrumKey);
-
-                            for (int algorithmId : assumptionsMap.keySet()) {
-                                HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateMap = assumptionsMap.get(algorithmId);
-                                if (advocateMap != null) {
-                                    ArrayList<Double> scores = new ArrayList<Double>(advocateMap.keySet());
-                                    Collections.sort(scores, Collections.reverseOrder());
-                                    for (Double score : scores) {
-                                        for (SpectrumIdentificationAssumption assumption : advocateMap.get(score)) {
-                                            allAssumptions.add(assumption);
-                                        }
-                                    }
-                                }
-                            }
-
-                            int rank = 0;
-
-                            // export all matches above the score threshold up to the given user selected amount
-                            for (int i = 0; i < allAssumptions.size() && i < numberOfMatches; i++) {
-
-                                SpectrumIdentificationAssumption assumption = allAssumptions.get(i);
-
-                                boolean passesThreshold;
-
-                                if (greaterThan) {
-                                    passesThreshold = assumption.getScore() >= threshold;
-                                } else { // less than
-                                    passesThreshold = assumption.getScore() <= threshold;
-                                }
-
-                                if (passesThreshold) {
-                                    b.write(spectrumDetails.toString());
-                                    b.write(++rank + SEPARATOR);
-                                    writeTagExportLine(b, assumption, searchParameters);
-                                    b.newLine();
-                                }
-                            }
-                            if (allAssumptions.isEmpty()) {
-                                b.newLine();
-                            }
+                            writeTagExportLines(b, mgfFile, spectrumKey, identification.getAssumptions(spectrumKey), searchParameters, threshold, greaterThan, numberOfMatches);
                             if (waitingHandler != null) {
                                 waitingHandler.increaseSecondaryProgressCounter();
                                 if (waitingHandler.isRunCanceled()) {
@@ -519,69 +333,7 @@ public class TextExporter {
                     for (String spectrumKey : identification.getSpectrumIdentification(mgfFile)) {
                         if (identification.matchExists(spectrumKey)) {
 
-                            String spectrumDetails = ">";
-                            String spectrumTitle = Spectrum.getSpectrumTitle(spectrumKey);
-                            spectrumDetails += mgfFile + SEPARATOR_2 + spectrumTitle + SEPARATOR_2;
-                            Precursor precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
-                            spectrumDetails += precursor.getMz() + SEPARATOR_2 + precursor.getPossibleChargesAsString() + SEPARATOR_2;
-                            ArrayList<SpectrumIdentificationAssumption> assumptions = new ArrayList<SpectrumIdentificationAssumption>();
-                            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap = identification.getAssumptions(spectrumKey);
-
-                            for (int algorithmId : assumptionsMap.keySet()) {
-                                HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateMap = assumptionsMap.get(algorithmId);
-                                if (advocateMap != null) {
-                                    ArrayList<Double> scores = new ArrayList<Double>(advocateMap.keySet());
-                                    Collections.sort(scores, Collections.reverseOrder());
-                                    for (Double score : scores) {
-                                        for (SpectrumIdentificationAssumption assumption : advocateMap.get(score)) {
-                                            assumptions.add(assumption);
-                                        }
-                                    }
-                                }
-                            }
-
-                            // export all matches above the score threshold up to the given user selected amount
-                            for (int i = 0; i < assumptions.size() && i < numberOfMatches; i++) {
-
-                                SpectrumIdentificationAssumption assumption = assumptions.get(i);
-
-                                boolean passesThreshold;
-
-                                if (greaterThan) {
-                                    passesThreshold = assumption.getScore() >= threshold;
-                                } else { // less than
-                                    passesThreshold = assumption.getScore() <= threshold;
-                                }
-
-                                if (passesThreshold) {
-                                    b.write(spectrumDetails);
-                                    if (assumption.getAdvocate() == Advocate.pepnovo.getIndex()) {
-                                        PepnovoAssumptionDetails pepnovoAssumptionDetails = new PepnovoAssumptionDetails();
-                                        pepnovoAssumptionDetails = (PepnovoAssumptionDetails) assumption.getUrParam(pepnovoAssumptionDetails);
-                                        b.write(pepnovoAssumptionDetails.getRankScore() + SEPARATOR_2);
-                                    } else {
-                                        b.write(SEPARATOR_2);
-                                    }
-                                    b.write(assumption.getScore() + "");
-                                    b.newLine();
-                                    if (assumption instanceof TagAssumption) {
-                                        TagAssumption tagAssumption = (TagAssumption) assumption;
-                                        b.write(tagAssumption.getTag().getLongestAminoAcidSequence());
-                                    } else if (assumption instanceof PeptideAssumption) {
-                                        PeptideAssumption peptideAssumption = (PeptideAssumption) assumption;
-                                        Peptide peptide = peptideAssumption.getPeptide();
-                                        b.write(peptide.getSequence());
-                                    } else {
-                                        throw new UnsupportedOperationException("Export not implemented for assumption of type " + assumption.getClass() + ".");
-                                    }
-
-                                    b.newLine();
-                                }
-                            }
-
-                            if (assumptions.isEmpty()) {
-                                b.newLine(); //This should not happen. Should.
-                            }
+                            writeBlastExportLines(b, mgfFile, spectrumKey, identification.getAssumptions(spectrumKey), searchParameters, threshold, greaterThan, numberOfMatches);
 
                             if (waitingHandler != null) {
                                 waitingHandler.increaseSecondaryProgressCounter();
@@ -600,6 +352,348 @@ public class TextExporter {
         }
     }
 
+    /**
+     * Writes the header of the peptide export.
+     *
+     * @param b the writer
+     *
+     * @throws IOException thrown if an IO exception occurs
+     */
+    public static void writePeptideExportHeader(BufferedWriter b) throws IOException {
+        b.write("File Name" + SEPARATOR + "Spectrum Title" + SEPARATOR + "Retention Time (s)" + SEPARATOR + "Measured m/z" + SEPARATOR + "Measured Charge" + SEPARATOR
+                + "Rank" + SEPARATOR + "Protein(s)" + SEPARATOR + "Peptide" + SEPARATOR + "Peptide Variable Modifications" + SEPARATOR + "Modified Sequence"
+                + SEPARATOR + "Tag" + SEPARATOR + "Longest Amino Acid Sequence" + SEPARATOR + "Tag Variable Modifications" + SEPARATOR + "Modified tag sequence" + SEPARATOR
+                + "PepNovo RankScore" + SEPARATOR + "PepNovo Score" + SEPARATOR + "DirecTag E-value" + SEPARATOR + "pNovo+ Score" + SEPARATOR + "Novor Score" + SEPARATOR
+                + "N-Gap" + SEPARATOR + "C-Gap" + SEPARATOR + "Theoretic m/z" + SEPARATOR + "Identification Charge" + SEPARATOR + "Tag Mass Error (Da)"
+                + SEPARATOR + "Tag Mass Error (ppm)" + SEPARATOR + "Peptide Mass Error (Da)" + SEPARATOR + "Peptide Mass Error (ppm)" + SEPARATOR + "Isotope");
+        b.newLine();
+    }
+
+    /**
+     * Writes the peptide export lines of a spectrum.
+     *
+     * @param b the writer
+     * @param spectrumFile the name of the spectrum file
+     * @param spectrumKey the key of the spectrum
+     * @param assumptionsMap the assumptions of the spectrum indexed by
+     * advocate and score
+     * @param searchParameters the search parameters used for the search
+     * @param threshold de novo score threshold
+     * @param greaterThan use greater than threshold
+     * @param numberOfMatches the maximum number of matches to export
+     *
+     * @throws IOException thrown if an IO exception occurs
+     * @throws MzMLUnmarshallerException thrown if a precursor cannot be
+     * extracted from a spectrum
+     * @throws InterruptedException thrown if the process is interrupted
+     */
+    public static void writePeptideExportLines(BufferedWriter b, String spectrumFile, String spectrumKey,
+            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap, SearchParameters searchParameters,
+            double threshold, boolean greaterThan, int numberOfMatches) throws IOException, MzMLUnmarshallerException, InterruptedException {
+
+        StringBuilder spectrumDetails = new StringBuilder();
+
+        String spectrumTitle = Spectrum.getSpectrumTitle(spectrumKey);
+        spectrumDetails.append(spectrumFile).append(SEPARATOR).append(spectrumTitle).append(SEPARATOR);
+
+        Precursor precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
+        spectrumDetails.append(precursor.getRt()).append(SEPARATOR).append(precursor.getMz()).append(SEPARATOR).append(precursor.getPossibleChargesAsString()).append(SEPARATOR);
+
+        ArrayList<PeptideAssumption> assumptions = new ArrayList<PeptideAssumption>();
+
+        for (int algorithmId : assumptionsMap.keySet()) {
+            HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateMap = assumptionsMap.get(algorithmId);
+            if (advocateMap != null) {
+                ArrayList<Double> scores = new ArrayList<Double>(advocateMap.keySet());
+                Collections.sort(scores, Collections.reverseOrder());
+                for (Double score : scores) {
+                    for (SpectrumIdentificationAssumption assumption : advocateMap.get(score)) {
+                        if (assumption instanceof PeptideAssumption) {
+                            PeptideAssumption peptideAssumption = (PeptideAssumption) assumption;
+                            assumptions.add(peptideAssumption);
+                        }
+                    }
+                }
+            }
+        }
+
+        // export all matches above the score threshold up to the given user selected amount
+        for (int i = 0; i < assumptions.size() && i < numberOfMatches; i++) {
+
+            PeptideAssumption peptideAssumption = assumptions.get(i);
+
+            boolean passesThreshold;
+
+            if (greaterThan) {
+                passesThreshold = peptideAssumption.getScore() >= threshold;
+            } else { // less than
+                passesThreshold = peptideAssumption.getScore() <= threshold;
+            }
+
+            if (passesThreshold) {
+
+                b.write(spectrumDetails.toString());
+                b.write(peptideAssumption.getRank() + SEPARATOR);
+
+                Peptide peptide = peptideAssumption.getPeptide();
+                String proteinText = "";
+                ArrayList<String> proteins = peptide.getParentProteinsNoRemapping();
+                if (proteins != null) {
+                    Collections.sort(proteins);
+                    for (String accession : proteins) {
+                        if (!proteinText.equals("")) {
+                            proteinText += SEPARATOR_2;
+                        }
+                        proteinText += accession;
+                    }
+                }
+                b.write(proteinText + SEPARATOR);
+
+                b.write(peptide.getSequence() + SEPARATOR);
+                b.write(getPeptideModificationsAsString(peptide) + SEPARATOR);
+                b.write(peptide.getTaggedModifiedSequence(searchParameters.getPtmSettings(), false, false, true, false) + SEPARATOR);
+
+                // tag section if any
+                TagAssumption tagAssumption = new TagAssumption();
+                tagAssumption = (TagAssumption) peptideAssumption.getUrParam(tagAssumption);
+                if (tagAssumption != null) {
+                    Tag tag = tagAssumption.getTag();
+                    b.write(tag.asSequence() + SEPARATOR);
+                    b.write(tag.getLongestAminoAcidSequence() + SEPARATOR);
+                    b.write(Tag.getTagModificationsAsString(tag) + SEPARATOR);
+                    b.write(tag.getTaggedModifiedSequence(searchParameters.getPtmSettings(), false, false, true, false) + SEPARATOR);
+                    if (tagAssumption.getAdvocate() == Advocate.pepnovo.getIndex()) {
+                        PepnovoAssumptionDetails pepnovoAssumptionDetails = new PepnovoAssumptionDetails();
+                        pepnovoAssumptionDetails = (PepnovoAssumptionDetails) tagAssumption.getUrParam(pepnovoAssumptionDetails);
+                        b.write(pepnovoAssumptionDetails.getRankScore() + SEPARATOR);
+                        b.write(tagAssumption.getScore() + SEPARATOR + SEPARATOR + SEPARATOR + SEPARATOR);
+                    } else if (tagAssumption.getAdvocate() == Advocate.direcTag.getIndex()) {
+                        b.write(SEPARATOR + SEPARATOR + tagAssumption.getScore() + SEPARATOR + SEPARATOR + SEPARATOR);
+                    } else if (tagAssumption.getAdvocate() == Advocate.pNovo.getIndex()) {
+                        b.write(SEPARATOR + SEPARATOR + SEPARATOR + tagAssumption.getScore() + SEPARATOR + SEPARATOR);
+                    } else if (tagAssumption.getAdvocate() == Advocate.novor.getIndex()) {
+                        b.write(SEPARATOR + SEPARATOR + SEPARATOR + SEPARATOR + tagAssumption.getScore() + SEPARATOR);
+                    }
+                    b.write(tag.getNTerminalGap() + SEPARATOR);
+                    b.write(tag.getCTerminalGap() + SEPARATOR);
+                    b.write(tag.getMass() + SEPARATOR);
+                    b.write(tagAssumption.getIdentificationCharge().value + SEPARATOR);
+                    double massDeviation = tagAssumption.getDeltaMass(precursor.getMz(), false, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
+                    b.write(massDeviation + SEPARATOR);
+                    massDeviation = tagAssumption.getDeltaMass(precursor.getMz(), true, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
+                    b.write(massDeviation + SEPARATOR);
+                } else if (peptideAssumption.getAdvocate() == Advocate.novor.getIndex()) {
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR + SEPARATOR + SEPARATOR + SEPARATOR + peptideAssumption.getScore() + SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);  
+                } else {
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                    b.write(SEPARATOR);
+                }
+                Double massDeviation = peptideAssumption.getDeltaMass(precursor.getMz(), false, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
+                b.write(massDeviation + SEPARATOR);
+                massDeviation = peptideAssumption.getDeltaMass(precursor.getMz(), true, searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection());
+                b.write(massDeviation + SEPARATOR);
+                b.write(peptideAssumption.getIsotopeNumber(precursor.getMz(), searchParameters.getMinIsotopicCorrection(), searchParameters.getMaxIsotopicCorrection()) + SEPARATOR);
+                b.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes the header of the tag export.
+     *
+     * @param b the writer
+     *
+     * @throws IOException thrown if an IO exception occurs
+     */
+    public static void writeTagExportHeader(BufferedWriter b) throws IOException {
+        b.write("File Name" + SEPARATOR + "Spectrum Title" + SEPARATOR + "Retention Time (s)" + SEPARATOR + "Measured m/z" + SEPARATOR + "Measured Charge" + SEPARATOR
+                + "Rank" + SEPARATOR + "Tag" + SEPARATOR + "Longest AminoAcid sequence" + SEPARATOR + "Variable Modifications" + SEPARATOR + "Modified Sequence" + SEPARATOR
+                + "PepNovo RankScore" + SEPARATOR + "PepNovo Score" + SEPARATOR + "DirecTag E-value" + SEPARATOR + "pNovo+ Score" + SEPARATOR + "Novor Score" + SEPARATOR
+                + "N-Gap" + SEPARATOR + "C-Gap" + SEPARATOR + "Theoretic m/z" + SEPARATOR + "Identification Charge");
+        b.newLine();
+    }
+
+    /**
+     * Writes the tag export lines of a spectrum.
+     *
+     * @param b the writer
+     * @param spectrumFile the name of the spectrum file
+     * @param spectrumKey the key of the spectrum
+     * @param assumptionsMap the assumptions of the spectrum indexed by
+     * advocate and score
+     * @param searchParameters the search parameters used for the search
+     * @param threshold de novo score threshold
+     * @param greaterThan use greater than threshold
+     * @param numberOfMatches the maximum number of matches to export
+     *
+     * @throws IOException thrown if an IO exception occurs
+     * @throws MzMLUnmarshallerException thrown if a precursor cannot be
+     * extracted from a spectrum
+     * @throws InterruptedException thrown if the process is interrupted
+     */
+    public static void writeTagExportLines(BufferedWriter b, String spectrumFile, String spectrumKey,
+            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap, SearchParameters searchParameters,
+            double threshold, boolean greaterThan, int numberOfMatches) throws IOException, MzMLUnmarshallerException, InterruptedException {
+
+        String spectrumTitle = Spectrum.getSpectrumTitle(spectrumKey);
+        StringBuilder spectrumDetails = new StringBuilder();
+
+        spectrumDetails.append(spectrumFile).append(SEPARATOR).append(spectrumTitle).append(SEPARATOR);
+
+        Precursor precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
+        spectrumDetails.append(precursor.getRt()).append(SEPARATOR).append(precursor.getMz()).append(SEPARATOR).append(precursor.getPossibleChargesAsString()).append(SEPARATOR);
+
+        ArrayList<SpectrumIdentificationAssumption> allAssumptions = new ArrayList<SpectrumIdentificationAssumption>();
+
+        for (int algorithmId : assumptionsMap.keySet()) {
+            HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateMap = assumptionsMap.get(algorithmId);
+            if (advocateMap != null) {
+                ArrayList<Double> scores = new ArrayList<Double>(advocateMap.keySet());
+                Collections.sort(scores, Collections.reverseOrder());
+                for (Double score : scores) {
+                    for (SpectrumIdentificationAssumption assumption : advocateMap.get(score)) {
+                        allAssumptions.add(assumption);
+                    }
+                }
+            }
+        }
+
+        int rank = 0;
+
+        // export all matches above the score threshold up to the given user selected amount
+        for (int i = 0; i < allAssumptions.size() && i < numberOfMatches; i++) {
+
+            SpectrumIdentificationAssumption assumption = allAssumptions.get(i);
+
+            boolean passesThreshold;
+
+            if (greaterThan) {
+                passesThreshold = assumption.getScore() >= threshold;
+            } else { // less than
+                passesThreshold = assumption.getScore() <= threshold;
+            }
+
+            if (passesThreshold) {
+                b.write(spectrumDetails.toString());
+                b.write(++rank + SEPARATOR);
+                writeTagExportLine(b, assumption, searchParameters);
+                b.newLine();
+            }
+        }
+        if (allAssumptions.isEmpty()) {
+            b.newLine();
+        }
+    }
+
+    /**
+     * Writes the BLAST-compatible export lines of a spectrum.
+     *
+     * @param b the writer
+     * @param spectrumFile the name of the spectrum file
+     * @param spectrumKey the key of the spectrum
+     * @param assumptionsMap the assumptions of the spectrum indexed by
+     * advocate and score
+     * @param searchParameters the search parameters used for the search
+     * @param threshold de novo score threshold
+     * @param greaterThan use greater than threshold
+     * @param numberOfMatches the maximum number of matches to export
+     *
+     * @throws IOException thrown if an IO exception occurs
+     * @throws MzMLUnmarshallerException thrown if a precursor cannot be
+     * extracted from a spectrum
+     * @throws InterruptedException thrown if the process is interrupted
+     */
+    public static void writeBlastExportLines(BufferedWriter b, String spectrumFile, String spectrumKey,
+            HashMap<Integer, HashMap<Double, ArrayList<SpectrumIdentificationAssumption>>> assumptionsMap, SearchParameters searchParameters,
+            double threshold, boolean greaterThan, int numberOfMatches) throws IOException, MzMLUnmarshallerException, InterruptedException {
+
+        String spectrumDetails = ">";
+        String spectrumTitle = Spectrum.getSpectrumTitle(spectrumKey);
+        spectrumDetails += spectrumFile + SEPARATOR_2 + spectrumTitle + SEPARATOR_2;
+        Precursor precursor = SpectrumFactory.getInstance().getPrecursor(spectrumKey);
+        spectrumDetails += precursor.getMz() + SEPARATOR_2 + precursor.getPossibleChargesAsString() + SEPARATOR_2;
+        ArrayList<SpectrumIdentificationAssumption> assumptions = new ArrayList<SpectrumIdentificationAssumption>();
+
+        for (int algorithmId : assumptionsMap.keySet()) {
+            HashMap<Double, ArrayList<SpectrumIdentificationAssumption>> advocateMap = assumptionsMap.get(algorithmId);
+            if (advocateMap != null) {
+                ArrayList<Double> scores = new ArrayList<Double>(advocateMap.keySet());
+                Collections.sort(scores, Collections.reverseOrder());
+                for (Double score : scores) {
+                    for (SpectrumIdentificationAssumption assumption : advocateMap.get(score)) {
+                        assumptions.add(assumption);
+                    }
+                }
+            }
+        }
+
+        // export all matches above the score threshold up to the given user selected amount
+        for (int i = 0; i < assumptions.size() && i < numberOfMatches; i++) {
+
+            SpectrumIdentificationAssumption assumption = assumptions.get(i);
+
+            boolean passesThreshold;
+
+            if (greaterThan) {
+                passesThreshold = assumption.getScore() >= threshold;
+            } else { // less than
+                passesThreshold = assumption.getScore() <= threshold;
+            }
+
+            if (passesThreshold) {
+                b.write(spectrumDetails);
+                if (assumption.getAdvocate() == Advocate.pepnovo.getIndex()) {
+                    PepnovoAssumptionDetails pepnovoAssumptionDetails = new PepnovoAssumptionDetails();
+                    pepnovoAssumptionDetails = (PepnovoAssumptionDetails) assumption.getUrParam(pepnovoAssumptionDetails);
+                    b.write(pepnovoAssumptionDetails.getRankScore() + SEPARATOR_2);
+                } else {
+                    b.write(SEPARATOR_2);
+                }
+                b.write(assumption.getScore() + "");
+                b.newLine();
+                if (assumption instanceof TagAssumption) {
+                    TagAssumption tagAssumption = (TagAssumption) assumption;
+                    b.write(tagAssumption.getTag().getLongestAminoAcidSequence());
+                } else if (assumption instanceof PeptideAssumption) {
+                    PeptideAssumption peptideAssumption = (PeptideAssumption) assumption;
+                    Peptide peptide = peptideAssumption.getPeptide();
+                    b.write(peptide.getSequence());
+                } else {
+                    throw new UnsupportedOperationException("Export not implemented for assumption of type " + assumption.getClass() + ".");
+                }
+
+                b.newLine();
+            }
+        }
+
+        if (assumptions.isEmpty()) {
+            b.newLine(); //This should not happen. Should.
+        }
+    }
+
     /**
      * Returns the peptide modifications as a string.
      *
@@ -0,0 +1,948 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.util.waiting.WaitingHandler;
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Indexed access to the MS2 spectra of an mzML or mzXML file. The file is
+ * indexed once, keeping the byte offset, title, precursor and number of peaks
+ * of every MS2 spectrum, so that single spectra can be read at random and
+ * that the spectra can be streamed into balanced mgf chunks for the
+ * sequencing engines without writing an mgf file of the whole run.
+ * <p>
+ * The titles of the spectra are the native ids for mzML files and scan=number
+ * for mzXML files. The results of the chunks are merged into results named
+ * after the mgf file returned by getMgfFile.
+ *
+ * @author Marc Vaudel
+ */
+public class XmlSpectrumFile {
+
+    /**
+     * The extension of mzML files.
+     */
+    public static final String MZML_EXTENSION = ".mzml";
+    /**
+     * The extension of mzXML files.
+     */
+    public static final String MZXML_EXTENSION = ".mzxml";
+    /**
+     * The size of the buffer used when looking for the spectrum offsets.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+    /**
+     * PSI-MS accession of the MS level.
+     */
+    private static final String MS_LEVEL = "MS:1000511";
+    /**
+     * PSI-MS accession of the scan start time.
+     */
+    private static final String SCAN_START_TIME = "MS:1000016";
+    /**
+     * PSI-MS accession of the selected ion m/z.
+     */
+    private static final String SELECTED_ION_MZ = "MS:1000744";
+    /**
+     * PSI-MS accession of the isolation window target m/z.
+     */
+    private static final String ISOLATION_WINDOW_TARGET = "MS:1000827";
+    /**
+     * PSI-MS accession of the charge state.
+     */
+    private static final String CHARGE_STATE = "MS:1000041";
+    /**
+     * PSI-MS accession of a possible charge state.
+     */
+    private static final String POSSIBLE_CHARGE_STATE = "MS:1000633";
+    /**
+     * PSI-MS accession of the 64-bit float encoding.
+     */
+    private static final String FLOAT_64 = "MS:1000523";
+    /**
+     * PSI-MS accession of the 32-bit float encoding.
+     */
+    private static final String FLOAT_32 = "MS:1000521";
+    /**
+     * PSI-MS accession of the zlib compression.
+     */
+    private static final String ZLIB_COMPRESSION = "MS:1000574";
+    /**
+     * PSI-MS accession of the MS-Numpress linear prediction compression.
+     */
+    private static final String NUMPRESS_LINEAR = "MS:1002312";
+    /**
+     * PSI-MS accession of the MS-Numpress positive integer compression.
+     */
+    private static final String NUMPRESS_PIC = "MS:1002313";
+    /**
+     * PSI-MS accession of the MS-Numpress short logged float compression.
+     */
+    private static final String NUMPRESS_SLOF = "MS:1002314";
+    /**
+     * PSI-MS accession of the m/z array.
+     */
+    private static final String MZ_ARRAY = "MS:1000514";
+    /**
+     * PSI-MS accession of the intensity array.
+     */
+    private static final String INTENSITY_ARRAY = "MS:1000515";
+    /**
+     * Unit ontology accession of the minute.
+     */
+    private static final String MINUTE = "UO:0000031";
+    /**
+     * The factory of the XML readers.
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+    /**
+     * The mzML or mzXML file.
+     */
+    private final File file;
+    /**
+     * True for mzXML files, false for mzML files.
+     */
+    private final boolean mzXml;
+    /**
+     * The referenceable param groups of an mzML file: id to list of
+     * accession, value and unit accession.
+     */
+    private final HashMap<String, ArrayList<String[]>> paramGroups = new HashMap<String, ArrayList<String[]>>();
+    /**
+     * The number of MS2 spectra.
+     */
+    private int nSpectra = 0;
+    /**
+     * The byte offsets of the MS2 spectra.
+     */
+    private long[] offsets = new long[1024];
+    /**
+     * The titles of the MS2 spectra.
+     */
+    private String[] titles = new String[1024];
+    /**
+     * The precursor m/z of the MS2 spectra.
+     */
+    private double[] precursorMzs = new double[1024];
+    /**
+     * The precursor charges of the MS2 spectra, 0 if unknown.
+     */
+    private int[] charges = new int[1024];
+    /**
+     * The number of peaks of the MS2 spectra.
+     */
+    private int[] peakCounts = new int[1024];
+
+    /**
+     * Constructor, indexes the given file.
+     *
+     * @param file the mzML or mzXML file
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @throws IOException thrown if the file cannot be read or parsed
+     */
+    public XmlSpectrumFile(File file, WaitingHandler waitingHandler) throws IOException {
+        this.file = file;
+        this.mzXml = file.getName().toLowerCase().endsWith(MZXML_EXTENSION);
+        index(waitingHandler);
+    }
+
+    /**
+     * Indicates whether the given file is an mzML or mzXML file.
+     *
+     * @param spectrumFile the spectrum file
+     *
+     * @return true if the file is an mzML or mzXML file
+     */
+    public static boolean isXmlSpectrumFile(File spectrumFile) {
+        String name = spectrumFile.getName().toLowerCase();
+        return name.endsWith(MZML_EXTENSION) || name.endsWith(MZXML_EXTENSION);
+    }
+
+    /**
+     * Returns the mgf file standing for the given mzML or mzXML file in the
+     * given folder. The results of the file are named after this mgf file,
+     * which is only written when the spectra need to be displayed.
+     *
+     * @param xmlFile the mzML or mzXML file
+     * @param folder the folder
+     *
+     * @return the corresponding mgf file
+     */
+    public static File getMgfFile(File xmlFile, File folder) {
+        String name = xmlFile.getName();
+        return new File(folder, name.substring(0, name.lastIndexOf(".")) + ".mgf");
+    }
+
+    /**
+     * Returns the mzML or mzXML file.
+     *
+     * @return the mzML or mzXML file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the number of MS2 spectra.
+     *
+     * @return the number of MS2 spectra
+     */
+    public int getNSpectra() {
+        return nSpectra;
+    }
+
+    /**
+     * Returns the title of the MS2 spectrum at the given index.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the title of the spectrum
+     */
+    public String getSpectrumTitle(int index) {
+        return titles[index];
+    }
+
+    /**
+     * Returns the titles of the MS2 spectra in the order of the file.
+     *
+     * @return the titles of the MS2 spectra
+     */
+    public ArrayList<String> getSpectrumTitles() {
+        return new ArrayList<String>(Arrays.asList(titles).subList(0, nSpectra));
+    }
+
+    /**
+     * Returns the precursor m/z of the MS2 spectrum at the given index.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the precursor m/z, NaN if unknown
+     */
+    public double getPrecursorMz(int index) {
+        return precursorMzs[index];
+    }
+
+    /**
+     * Returns the precursor charge of the MS2 spectrum at the given index.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the precursor charge, 0 if unknown
+     */
+    public int getPrecursorCharge(int index) {
+        return charges[index];
+    }
+
+    /**
+     * Returns the number of peaks of the MS2 spectrum at the given index.
+     *
+     * @param index the index of the spectrum
+     *
+     * @return the number of peaks
+     */
+    public int getPeakCount(int index) {
+        return peakCounts[index];
+    }
+
+    /**
+     * Reads the MS2 spectrum at the given index and writes it in the mgf
+     * format.
+     *
+     * @param index the index of the spectrum
+     * @param writer the writer
+     *
+     * @throws IOException thrown if the file cannot be read or the spectrum
+     * cannot be written
+     */
+    public void writeSpectrum(int index, Writer writer) throws IOException {
+        FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            channel.position(offsets[index]);
+            SpectrumParser parser = new SpectrumParser(new BufferedInputStream(Channels.newInputStream(channel)), true);
+            try {
+                XmlSpectrum spectrum = parser.next();
+                if (spectrum == null) {
+                    throw new IOException("Spectrum " + titles[index] + " not found in " + file.getName() + ".");
+                }
+                spectrum.writeMgf(writer);
+            } finally {
+                parser.close();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Streams the MS2 spectra into the given number of mgf chunks of similar
+     * cost. The chunks are named after the mgf file of this file with the
+     * chunk number appended.
+     *
+     * @param nChunks the number of chunks
+     * @param destinationFolder the folder where to write the chunks
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @return the chunk files
+     *
+     * @throws IOException thrown if the file cannot be read or the chunks
+     * cannot be written
+     */
+    public ArrayList<File> writeMgfChunks(int nChunks, File destinationFolder, WaitingHandler waitingHandler) throws IOException {
+
+        String mgfName = getMgfFile(file, destinationFolder).getName();
+        String baseName = mgfName.substring(0, mgfName.lastIndexOf("."));
+        nChunks = Math.max(1, Math.min(nChunks, nSpectra));
+
+        long totalCost = 0;
+        for (int i = 0; i < nSpectra; i++) {
+            totalCost += FileProcessor.SPECTRUM_BASE_COST + peakCounts[i];
+        }
+        double chunkCost = ((double) totalCost) / nChunks;
+
+        ArrayList<File> chunkFiles = new ArrayList<File>(nChunks);
+        ArrayList<Integer> chunkStarts = new ArrayList<Integer>(nChunks);
+        long cumulativeCost = 0;
+        for (int i = 0; i < nSpectra; i++) {
+            if (chunkStarts.isEmpty() || cumulativeCost >= chunkCost * chunkStarts.size() && chunkStarts.size() < nChunks) {
+                chunkStarts.add(i);
+                chunkFiles.add(new File(destinationFolder, baseName + "_" + chunkStarts.size() + ".mgf"));
+            }
+            cumulativeCost += FileProcessor.SPECTRUM_BASE_COST + peakCounts[i];
+        }
+
+        writeMgf(chunkFiles, chunkStarts, waitingHandler);
+        return chunkFiles;
+    }
+
+    /**
+     * Writes all MS2 spectra to the given mgf file.
+     *
+     * @param mgfFile the mgf file
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @throws IOException thrown if the file cannot be read or the mgf file
+     * cannot be written
+     */
+    public void writeMgf(File mgfFile, WaitingHandler waitingHandler) throws IOException {
+        ArrayList<File> mgfFiles = new ArrayList<File>(1);
+        mgfFiles.add(mgfFile);
+        ArrayList<Integer> starts = new ArrayList<Integer>(1);
+        starts.add(0);
+        writeMgf(mgfFiles, starts, waitingHandler);
+    }
+
+    /**
+     * Streams the MS2 spectra into mgf files.
+     *
+     * @param mgfFiles the mgf files
+     * @param starts the index of the first spectrum of every mgf file
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @throws IOException thrown if the file cannot be read or the mgf files
+     * cannot be written
+     */
+    private void writeMgf(ArrayList<File> mgfFiles, ArrayList<Integer> starts, WaitingHandler waitingHandler) throws IOException {
+
+        SpectrumParser parser = new SpectrumParser(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE), true);
+        BufferedWriter bw = null;
+        try {
+            int spectrumIndex = 0, fileIndex = 0;
+            XmlSpectrum spectrum;
+            while ((spectrum = parser.next()) != null && spectrumIndex < nSpectra) {
+                if (spectrum.msLevel == 1) {
+                    continue;
+                }
+                if (fileIndex < starts.size() && spectrumIndex == starts.get(fileIndex)) {
+                    if (bw != null) {
+                        bw.close();
+                    }
+                    bw = new BufferedWriter(new FileWriter(mgfFiles.get(fileIndex++)));
+                }
+                if (bw != null) {
+                    spectrum.writeMgf(bw);
+                }
+                spectrumIndex++;
+                if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                    break;
+                }
+            }
+        } finally {
+            parser.close();
+            if (bw != null) {
+                bw.close();
+            }
+        }
+    }
+
+    /**
+     * Indexes the file.
+     *
+     * @param waitingHandler the waiting handler, can be null
+     *
+     * @throws IOException thrown if the file cannot be read or parsed
+     */
+    private void index(WaitingHandler waitingHandler) throws IOException {
+
+        long[] elementOffsets = findElementOffsets(mzXml ? "<scan" : "<spectrum");
+
+        SpectrumParser parser = new SpectrumParser(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE), false);
+        try {
+            int elementIndex = 0;
+            XmlSpectrum spectrum;
+            while ((spectrum = parser.next()) != null) {
+                if (elementIndex >= elementOffsets.length) {
+                    throw new IOException("Inconsistent spectrum elements in " + file.getName() + ".");
+                }
+                long offset = elementOffsets[elementIndex++];
+                if (spectrum.msLevel == 1) {
+                    continue;
+                }
+                if (nSpectra == offsets.length) {
+                    int newLength = 2 * nSpectra;
+                    offsets = Arrays.copyOf(offsets, newLength);
+                    titles = Arrays.copyOf(titles, newLength);
+                    precursorMzs = Arrays.copyOf(precursorMzs, newLength);
+                    charges = Arrays.copyOf(charges, newLength);
+                    peakCounts = Arrays.copyOf(peakCounts, newLength);
+                }
+                offsets[nSpectra] = offset;
+                titles[nSpectra] = spectrum.title;
+                precursorMzs[nSpectra] = spectrum.getPrecursorMz();
+                charges[nSpectra] = spectrum.charge;
+                peakCounts[nSpectra] = spectrum.peakCount;
+                nSpectra++;
+                if (waitingHandler != null && waitingHandler.isRunCanceled()) {
+                    break;
+                }
+            }
+        } finally {
+            parser.close();
+        }
+    }
+
+    /**
+     * Returns the byte offsets of the start tags beginning with the given
+     * prefix and followed by a white space.
+     *
+     * @param tagPrefix the tag prefix, e.g. &lt;spectrum
+     *
+     * @return the byte offsets of the start tags
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    private long[] findElementOffsets(String tagPrefix) throws IOException {
+
+        byte[] pattern = tagPrefix.getBytes("US-ASCII");
+        long[] result = new long[1024];
+        int nResults = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream is = new FileInputStream(file);
+        try {
+            long position = 0;
+            int matched = 0, read;
+            while ((read = is.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = buffer[i];
+                    if (matched == pattern.length) {
+                        if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                            if (nResults == result.length) {
+                                result = Arrays.copyOf(result, 2 * nResults);
+                            }
+                            result[nResults++] = position - pattern.length;
+                        }
+                        matched = 0;
+                    }
+                    if (b == pattern[matched]) {
+                        matched++;
+                    } else {
+                        matched = b == pattern[0] ? 1 : 0;
+                    }
+                }
+            }
+        } finally {
+            is.close();
+        }
+        return Arrays.copyOf(result, nResults);
+    }
+
+    /**
+     * Decodes a base64 encoded binary array.
+     *
+     * @param text the base64 text
+     * @param is64Bit true for 64-bit floats, false for 32-bit floats
+     * @param zlib true if the array is zlib compressed
+     * @param byteOrder the byte order
+     *
+     * @return the decoded values
+     *
+     * @throws IOException thrown if the array cannot be decoded
+     */
+    private static double[] decode(String text, boolean is64Bit, boolean zlib, ByteOrder byteOrder) throws IOException {
+        byte[] bytes = Base64.getMimeDecoder().decode(text.trim());
+        if (zlib && bytes.length > 0) {
+            Inflater inflater = new Inflater();
+            inflater.setInput(bytes);
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(4 * bytes.length);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            try {
+                while (!inflater.finished()) {
+                    int n = inflater.inflate(buffer);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    bos.write(buffer, 0, n);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Impossible to decompress a binary array.", e);
+            } finally {
+                inflater.end();
+            }
+            bytes = bos.toByteArray();
+        }
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes).order(byteOrder);
+        double[] result = new double[bytes.length / (is64Bit ? 8 : 4)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = is64Bit ? byteBuffer.getDouble() : byteBuffer.getFloat();
+        }
+        return result;
+    }
+
+    /**
+     * Parses the xs:duration retention times of mzXML files, e.g. PT12.5S.
+     *
+     * @param duration the duration
+     *
+     * @return the duration in seconds, NaN if not parsable
+     */
+    private static double parseDuration(String duration) {
+        if (duration == null || !duration.startsWith("PT")) {
+            return Double.NaN;
+        }
+        double seconds = 0;
+        int start = 2;
+        for (int i = 2; i < duration.length(); i++) {
+            char c = duration.charAt(i);
+            if (c == 'H' || c == 'M' || c == 'S') {
+                double value = Double.parseDouble(duration.substring(start, i));
+                seconds += c == 'H' ? 3600 * value : c == 'M' ? 60 * value : value;
+                start = i + 1;
+            }
+        }
+        return seconds;
+    }
+
+    /**
+     * A spectrum parsed from the file.
+     */
+    private static class XmlSpectrum {
+
+        /**
+         * The title.
+         */
+        private String title;
+        /**
+         * The MS level, 0 if unknown.
+         */
+        private int msLevel = 0;
+        /**
+         * The selected precursor m/z.
+         */
+        private double precursorMz = Double.NaN;
+        /**
+         * The isolation window target m/z.
+         */
+        private double isolationMz = Double.NaN;
+        /**
+         * The precursor charge, 0 if unknown.
+         */
+        private int charge = 0;
+        /**
+         * The retention time in seconds.
+         */
+        private double retentionTime = Double.NaN;
+        /**
+         * The number of peaks.
+         */
+        private int peakCount = 0;
+        /**
+         * The m/z values.
+         */
+        private double[] mz = new double[0];
+        /**
+         * The intensities.
+         */
+        private double[] intensities = new double[0];
+        /**
+         * True if the peaks of this mzXML scan were read.
+         */
+        private boolean complete = false;
+
+        /**
+         * Returns the precursor m/z, the isolation window target if the
+         * selected ion is not given.
+         *
+         * @return the precursor m/z
+         */
+        private double getPrecursorMz() {
+            return Double.isNaN(precursorMz) ? isolationMz : precursorMz;
+        }
+
+        /**
+         * Writes the spectrum in the mgf format.
+         *
+         * @param writer the writer
+         *
+         * @throws IOException thrown if the spectrum cannot be written
+         */
+        private void writeMgf(Writer writer) throws IOException {
+            double mgfPrecursorMz = getPrecursorMz();
+            StringBuilder sb = new StringBuilder(32 + 24 * mz.length);
+            sb.append("BEGIN IONS\n");
+            sb.append("TITLE=").append(title).append('\n');
+            sb.append("PEPMASS=").append(Double.isNaN(mgfPrecursorMz) ? 0 : mgfPrecursorMz).append('\n');
+            if (charge > 0) {
+                sb.append("CHARGE=").append(charge).append("+\n");
+            }
+            if (!Double.isNaN(retentionTime)) {
+                sb.append("RTINSECONDS=").append(retentionTime).append('\n');
+            }
+            int n = Math.min(mz.length, intensities.length);
+            for (int i = 0; i < n; i++) {
+                appendValue(sb, mz[i]).append(' ');
+                appendValue(sb, intensities[i]).append('\n');
+            }
+            sb.append("END IONS\n\n");
+            writer.write(sb.toString());
+        }
+
+        /**
+         * Appends a value, values decoded from 32-bit floats are written with
+         * float precision.
+         *
+         * @param sb the string builder
+         * @param value the value
+         *
+         * @return the string builder
+         */
+        private static StringBuilder appendValue(StringBuilder sb, double value) {
+            float floatValue = (float) value;
+            if (floatValue == value) {
+                return sb.append(floatValue);
+            }
+            return sb.append(value);
+        }
+    }
+
+    /**
+     * Sequential parser of the spectra of an mzML or mzXML stream.
+     */
+    private class SpectrumParser {
+
+        /**
+         * The stream parsed.
+         */
+        private final InputStream inputStream;
+        /**
+         * The XML reader.
+         */
+        private final XMLStreamReader reader;
+        /**
+         * If true the peaks are decoded.
+         */
+        private final boolean decodePeaks;
+        /**
+         * The mzML spectrum being parsed.
+         */
+        private XmlSpectrum current = null;
+        /**
+         * The open mzXML scans.
+         */
+        private final Deque<XmlSpectrum> openScans = new ArrayDeque<XmlSpectrum>();
+        /**
+         * The mzML param group being parsed.
+         */
+        private ArrayList<String[]> currentGroup = null;
+        /**
+         * True when parsing a binary data array.
+         */
+        private boolean inArray = false;
+        /**
+         * True if the current binary data array uses 64-bit floats.
+         */
+        private boolean is64Bit = false;
+        /**
+         * True if the current binary data array is zlib compressed.
+         */
+        private boolean zlib = false;
+        /**
+         * The type of the current binary data array, null if not needed.
+         */
+        private String arrayType = null;
+
+        /**
+         * Constructor.
+         *
+         * @param inputStream the stream to parse
+         * @param decodePeaks if true the peaks are decoded
+         *
+         * @throws IOException thrown if the stream cannot be parsed
+         */
+        private SpectrumParser(InputStream inputStream, boolean decodePeaks) throws IOException {
+            this.inputStream = inputStream;
+            this.decodePeaks = decodePeaks;
+            try {
+                reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+            } catch (XMLStreamException e) {
+                throw new IOException("Impossible to parse " + file.getName() + ".", e);
+            }
+        }
+
+        /**
+         * Returns the next spectrum of the stream in the order of the start
+         * tags.
+         *
+         * @return the next spectrum, null if none
+         *
+         * @throws IOException thrown if the stream cannot be parsed
+         */
+        private XmlSpectrum next() throws IOException {
+            try {
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    XmlSpectrum spectrum = mzXml ? processMzXml(event) : processMzMl(event);
+                    if (spectrum != null) {
+                        return spectrum;
+                    }
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                throw new IOException("Impossible to parse " + file.getName() + ".", e);
+            } catch (NumberFormatException e) {
+                throw new IOException("Impossible to parse " + file.getName() + ".", e);
+            }
+        }
+
+        /**
+         * Processes an mzML event.
+         *
+         * @param event the event
+         *
+         * @return the spectrum completed by the event, null if none
+         *
+         * @throws XMLStreamException thrown if the stream cannot be parsed
+         * @throws IOException thrown if a binary array cannot be decoded
+         */
+        private XmlSpectrum processMzMl(int event) throws XMLStreamException, IOException {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("cvParam")) {
+                    String[] param = new String[]{reader.getAttributeValue(null, "accession"), reader.getAttributeValue(null, "value"),
+                        reader.getAttributeValue(null, "unitAccession")};
+                    if (currentGroup != null) {
+                        currentGroup.add(param);
+                    } else {
+                        processParam(param);
+                    }
+                } else if (name.equals("referenceableParamGroupRef")) {
+                    ArrayList<String[]> group = paramGroups.get(reader.getAttributeValue(null, "ref"));
+                    if (group != null) {
+                        for (String[] param : group) {
+                            processParam(param);
+                        }
+                    }
+                } else if (name.equals("spectrum")) {
+                    current = new XmlSpectrum();
+                    current.title = reader.getAttributeValue(null, "id");
+                    String length = reader.getAttributeValue(null, "defaultArrayLength");
+                    if (length != null) {
+                        current.peakCount = Integer.parseInt(length);
+                    }
+                } else if (name.equals("binaryDataArray")) {
+                    inArray = true;
+                    is64Bit = false;
+                    zlib = false;
+                    arrayType = null;
+                } else if (name.equals("binary") && current != null) {
+                    String text = reader.getElementText();
+                    if (decodePeaks && arrayType != null) {
+                        double[] values = decode(text, is64Bit, zlib, ByteOrder.LITTLE_ENDIAN);
+                        if (arrayType.equals(MZ_ARRAY)) {
+                            current.mz = values;
+                        } else {
+                            current.intensities = values;
+                        }
+                    }
+                } else if (name.equals("referenceableParamGroup")) {
+                    currentGroup = new ArrayList<String[]>();
+                    paramGroups.put(reader.getAttributeValue(null, "id"), currentGroup);
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("spectrum")) {
+                    XmlSpectrum spectrum = current;
+                    current = null;
+                    return spectrum;
+                } else if (name.equals("binaryDataArray")) {
+                    inArray = false;
+                } else if (name.equals("referenceableParamGroup")) {
+                    currentGroup = null;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Processes an mzML cv param.
+         *
+         * @param param the accession, value and unit accession of the param
+         *
+         * @throws IOException thrown if the param is not supported
+         */
+        private void processParam(String[] param) throws IOException {
+            String accession = param[0];
+            if (accession == null || current == null) {
+                return;
+            }
+            if (inArray) {
+                if (accession.equals(FLOAT_64)) {
+                    is64Bit = true;
+                } else if (accession.equals(FLOAT_32)) {
+                    is64Bit = false;
+                } else if (accession.equals(ZLIB_COMPRESSION)) {
+                    zlib = true;
+                } else if (accession.equals(MZ_ARRAY) || accession.equals(INTENSITY_ARRAY)) {
+                    arrayType = accession;
+                } else if (accession.equals(NUMPRESS_LINEAR) || accession.equals(NUMPRESS_PIC) || accession.equals(NUMPRESS_SLOF)) {
+                    throw new IOException("The MS-Numpress compression used in " + file.getName() + " is not supported.");
+                }
+            } else if (accession.equals(MS_LEVEL)) {
+                current.msLevel = Integer.parseInt(param[1]);
+            } else if (accession.equals(SCAN_START_TIME)) {
+                double time = Double.parseDouble(param[1]);
+                current.retentionTime = MINUTE.equals(param[2]) ? 60 * time : time;
+            } else if (accession.equals(SELECTED_ION_MZ)) {
+                if (Double.isNaN(current.precursorMz)) {
+                    current.precursorMz = Double.parseDouble(param[1]);
+                }
+            } else if (accession.equals(ISOLATION_WINDOW_TARGET)) {
+                if (Double.isNaN(current.isolationMz)) {
+                    current.isolationMz = Double.parseDouble(param[1]);
+                }
+            } else if (accession.equals(CHARGE_STATE) || accession.equals(POSSIBLE_CHARGE_STATE)) {
+                if (current.charge == 0) {
+                    current.charge = Integer.parseInt(param[1]);
+                }
+            }
+        }
+
+        /**
+         * Processes an mzXML event.
+         *
+         * @param event the event
+         *
+         * @return the spectrum completed by the event, null if none
+         *
+         * @throws XMLStreamException thrown if the stream cannot be parsed
+         * @throws IOException thrown if a binary array cannot be decoded
+         */
+        private XmlSpectrum processMzXml(int event) throws XMLStreamException, IOException {
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                if (name.equals("scan")) {
+                    XmlSpectrum scan = new XmlSpectrum();
+                    scan.title = "scan=" + reader.getAttributeValue(null, "num");
+                    String msLevel = reader.getAttributeValue(null, "msLevel");
+                    if (msLevel != null) {
+                        scan.msLevel = Integer.parseInt(msLevel);
+                    }
+                    String peaksCount = reader.getAttributeValue(null, "peaksCount");
+                    if (peaksCount != null) {
+                        scan.peakCount = Integer.parseInt(peaksCount);
+                    }
+                    scan.retentionTime = parseDuration(reader.getAttributeValue(null, "retentionTime"));
+                    openScans.push(scan);
+                } else if (name.equals("precursorMz") && !openScans.isEmpty()) {
+                    XmlSpectrum scan = openScans.peek();
+                    String charge = reader.getAttributeValue(null, "precursorCharge");
+                    String text = reader.getElementText().trim();
+                    if (Double.isNaN(scan.precursorMz)) {
+                        scan.precursorMz = Double.parseDouble(text);
+                        if (charge != null) {
+                            scan.charge = Integer.parseInt(charge);
+                        }
+                    }
+                } else if (name.equals("peaks") && !openScans.isEmpty()) {
+                    XmlSpectrum scan = openScans.peek();
+                    String precision = reader.getAttributeValue(null, "precision");
+                    String byteOrder = reader.getAttributeValue(null, "byteOrder");
+                    String compression = reader.getAttributeValue(null, "compressionType");
+                    String text = reader.getElementText();
+                    if (decodePeaks) {
+                        double[] values = decode(text, "64".equals(precision), "zlib".equals(compression),
+                                "little".equals(byteOrder) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+                        int n = values.length / 2;
+                        scan.mz = new double[n];
+                        scan.intensities = new double[n];
+                        for (int i = 0; i < n; i++) {
+                            scan.mz[i] = values[2 * i];
+                            scan.intensities[i] = values[2 * i + 1];
+                        }
+                    }
+                    // the peaks come before the nested scans
+                    scan.complete = true;
+                    return scan;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("scan") && !openScans.isEmpty()) {
+                XmlSpectrum scan = openScans.pop();
+                if (!scan.complete) {
+                    return scan;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Closes the parser and its stream.
+         *
+         * @throws IOException thrown if the stream cannot be closed
+         */
+        private void close() throws IOException {
+            try {
+                reader.close();
+            } catch (XMLStreamException e) {
+                // the stream is closed below
+            }
+            inputStream.close();
+        }
+    }
+}
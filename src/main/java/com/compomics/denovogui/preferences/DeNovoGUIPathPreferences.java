@@ -1,6 +1,7 @@
 package com.compomics.denovogui.preferences;
 
 import com.compomics.denovogui.gui.ResultsFrame;
+import com.compomics.denovogui.io.SpectrumIndexCache;
 import com.compomics.software.settings.PathKey;
 import com.compomics.software.settings.UtilitiesPathPreferences;
 import java.io.BufferedReader;
@@ -28,7 +29,11 @@ public class DeNovoGUIPathPreferences {
          * Directory where identification matches are temporarily saved to
          * reduce the memory footprint.
          */
-        matchesDirectory("denovogui_matches_directory", "Folder where identification matches are temporarily saved to reduce the memory footprint.", "", true);
+        matchesDirectory("denovogui_matches_directory", "Folder where identification matches are temporarily saved to reduce the memory footprint.", "", true),
+        /**
+         * Directory where the indexes of the spectrum files are cached.
+         */
+        spectrumIndexDirectory("denovogui_spectrum_index_directory", "Folder where the indexes of the spectrum files are cached.", "spectrum_index", true);
         /**
          * The key used to refer to this path.
          */
@@ -156,6 +161,8 @@ public class DeNovoGUIPathPreferences {
         switch (deNovoGuiPathKey) {
             case matchesDirectory:
                 return ResultsFrame.getCacheDirectoryParent();
+            case spectrumIndexDirectory:
+                return SpectrumIndexCache.getCacheFolderPath();
             default:
                 throw new UnsupportedOperationException("Path " + deNovoGuiPathKey.id + " not implemented.");
         }
@@ -172,6 +179,9 @@ public class DeNovoGUIPathPreferences {
             case matchesDirectory:
                 ResultsFrame.setCacheDirectoryParent(path);
                 return;
+            case spectrumIndexDirectory:
+                SpectrumIndexCache.setCacheFolder(path);
+                return;
             default:
                 throw new UnsupportedOperationException("Path " + deNovoGuiPathKey.id + " not implemented.");
         }
@@ -269,6 +279,9 @@ public class DeNovoGUIPathPreferences {
                 }
                 bw.write(toWrite);
                 break;
+            case spectrumIndexDirectory:
+                bw.write(SpectrumIndexCache.getCacheFolderPath());
+                break;
             default:
                 throw new UnsupportedOperationException("Path " + pathKey.id + " not implemented.");
         }
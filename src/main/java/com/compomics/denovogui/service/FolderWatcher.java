@@ -0,0 +1,264 @@
+package com.compomics.denovogui.service;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.execution.RunMetrics;
+import com.compomics.denovogui.io.CompressedMgfFile;
+import com.compomics.denovogui.io.XmlSpectrumFile;
+import com.compomics.util.exceptions.ExceptionHandler;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Watches a folder and sequences the spectrum files written to it as they
+ * arrive. A file is sequenced once complete: when its size and modification
+ * date did not change between two checks of the folder or, if required, when
+ * a marker file named after the spectrum file followed by ".done" is present.
+ * The same sequencing handler is used for all files and the metrics of every
+ * file are saved next to its results. Files with metrics in the output folder
+ * are considered as already sequenced.
+ *
+ * @author Marc Vaudel
+ */
+public class FolderWatcher {
+
+    /**
+     * The extension of the marker files.
+     */
+    public static final String MARKER_EXTENSION = ".done";
+    /**
+     * The folder to watch.
+     */
+    private final File watchFolder;
+    /**
+     * The output folder.
+     */
+    private final File outputFolder;
+    /**
+     * The sequencing handler.
+     */
+    private final DeNovoSequencingHandler deNovoSequencingHandler;
+    /**
+     * The interval in milliseconds between two checks of the folder.
+     */
+    private final long pollingInterval;
+    /**
+     * If true, files are only sequenced when their marker file is present.
+     */
+    private final boolean markerRequired;
+    /**
+     * The size and modification date of the files at the last check.
+     */
+    private final HashMap<File, long[]> lastObservations = new HashMap<File, long[]>();
+    /**
+     * The files sequenced by this watcher, identified by path, size and
+     * modification date.
+     */
+    private final HashSet<String> processedFiles = new HashSet<String>();
+    /**
+     * The waiting handler of the file being sequenced, null if none.
+     */
+    private WaitingHandlerCLIImpl currentWaitingHandler = null;
+    /**
+     * Indicates whether the watcher is running.
+     */
+    private volatile boolean running = false;
+    /**
+     * The thread running the watcher.
+     */
+    private Thread watcherThread = null;
+
+    /**
+     * Constructor.
+     *
+     * @param watchFolder the folder to watch
+     * @param outputFolder the output folder
+     * @param deNovoSequencingHandler the sequencing handler to use
+     * @param pollingInterval the interval in milliseconds between two checks
+     * of the folder
+     * @param markerRequired if true, files are only sequenced when their marker
+     * file is present
+     */
+    public FolderWatcher(File watchFolder, File outputFolder, DeNovoSequencingHandler deNovoSequencingHandler, long pollingInterval, boolean markerRequired) {
+        this.watchFolder = watchFolder;
+        this.outputFolder = outputFolder;
+        this.deNovoSequencingHandler = deNovoSequencingHandler;
+        this.pollingInterval = pollingInterval;
+        this.markerRequired = markerRequired;
+    }
+
+    /**
+     * Sequences the files of the folder as they arrive until stopped.
+     *
+     * @param searchParameters the search parameters
+     * @param searchParametersFile the file where to save the search parameters
+     * @param pepNovoExeTitle the name of the PepNovo+ executable
+     * @param direcTagExeTitle the name of the DirecTag executable
+     * @param pNovoExeTitle the name of the pNovo+ executable
+     * @param novorExeTitle the name of the Novor executable
+     * @param enablePepNovo run PepNovo?
+     * @param enableDirecTag run DirecTag?
+     * @param enablePNovo run pNovo?
+     * @param enableNovor run Novor?
+     * @param exceptionHandler the exception handler
+     */
+    public void run(SearchParameters searchParameters, File searchParametersFile, String pepNovoExeTitle, String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle,
+            boolean enablePepNovo, boolean enableDirecTag, boolean enablePNovo, boolean enableNovor, ExceptionHandler exceptionHandler) {
+
+        running = true;
+        watcherThread = Thread.currentThread();
+        System.out.println("Watching " + watchFolder.getAbsolutePath() + " for new spectrum files.");
+
+        while (running) {
+
+            for (File spectrumFile : getCompleteFiles()) {
+
+                if (!running) {
+                    break;
+                }
+
+                processedFiles.add(getFileKey(spectrumFile));
+                System.out.println("Sequencing " + spectrumFile.getName() + ".");
+
+                WaitingHandlerCLIImpl waitingHandler = new WaitingHandlerCLIImpl();
+                synchronized (this) {
+                    currentWaitingHandler = waitingHandler;
+                }
+                try {
+                    ArrayList<File> spectrumFiles = new ArrayList<File>(1);
+                    spectrumFiles.add(spectrumFile);
+                    RunMetrics runMetrics = deNovoSequencingHandler.startSequencing(spectrumFiles, searchParameters, outputFolder, searchParametersFile, pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle,
+                            enablePepNovo, enableDirecTag, enablePNovo, enableNovor, waitingHandler, exceptionHandler);
+                    if (!waitingHandler.isRunCanceled() && runMetrics != null) {
+                        runMetrics.writeJson(getMetricsFile(spectrumFile));
+                        System.out.println(spectrumFile.getName() + " sequenced.");
+                    } else {
+                        System.out.println("The sequencing of " + spectrumFile.getName() + " did not complete.");
+                    }
+                } catch (Exception e) {
+                    exceptionHandler.catchException(e);
+                } finally {
+                    synchronized (this) {
+                        currentWaitingHandler = null;
+                    }
+                }
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(pollingInterval);
+                } catch (InterruptedException e) {
+                    // stopped
+                }
+            }
+        }
+
+        System.out.println("Stopped watching " + watchFolder.getAbsolutePath() + ".");
+    }
+
+    /**
+     * Stops the watcher and cancels the sequencing of the current file.
+     */
+    public void stop() {
+        running = false;
+        synchronized (this) {
+            if (currentWaitingHandler != null) {
+                currentWaitingHandler.setRunCanceled();
+                try {
+                    deNovoSequencingHandler.cancelSequencing(outputFolder, currentWaitingHandler);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        if (watcherThread != null) {
+            watcherThread.interrupt();
+        }
+    }
+
+    /**
+     * Checks the folder and returns the complete spectrum files not sequenced
+     * yet, sorted by name.
+     *
+     * @return the complete spectrum files not sequenced yet
+     */
+    private ArrayList<File> getCompleteFiles() {
+
+        ArrayList<File> result = new ArrayList<File>();
+        File[] files = watchFolder.listFiles();
+        if (files == null) {
+            return result;
+        }
+        Arrays.sort(files);
+
+        HashMap<File, long[]> observations = new HashMap<File, long[]>();
+
+        for (File file : files) {
+
+            if (!file.isFile() || !isSpectrumFile(file) || processedFiles.contains(getFileKey(file)) || getMetricsFile(file).exists()) {
+                continue;
+            }
+
+            long[] observation = new long[]{file.length(), file.lastModified()};
+            observations.put(file, observation);
+
+            boolean complete;
+            if (markerRequired) {
+                complete = new File(file.getParentFile(), file.getName() + MARKER_EXTENSION).exists();
+            } else {
+                long[] lastObservation = lastObservations.get(file);
+                complete = observation[0] > 0 && lastObservation != null
+                        && lastObservation[0] == observation[0] && lastObservation[1] == observation[1];
+            }
+            if (complete) {
+                result.add(file);
+            }
+        }
+
+        lastObservations.clear();
+        lastObservations.putAll(observations);
+
+        return result;
+    }
+
+    /**
+     * Indicates whether a file is a spectrum file supported by DeNovoGUI.
+     *
+     * @param file the file
+     *
+     * @return true if the file is a spectrum file
+     */
+    private static boolean isSpectrumFile(File file) {
+        return file.getName().toLowerCase().endsWith(".mgf")
+                || XmlSpectrumFile.isXmlSpectrumFile(file)
+                || CompressedMgfFile.isCompressedMgfFile(file);
+    }
+
+    /**
+     * Returns a key identifying a version of a file.
+     *
+     * @param file the file
+     *
+     * @return a key identifying the version of the file
+     */
+    private static String getFileKey(File file) {
+        return file.getAbsolutePath() + "_" + file.length() + "_" + file.lastModified();
+    }
+
+    /**
+     * Returns the file where to save the metrics of the sequencing of a
+     * spectrum file.
+     *
+     * @param spectrumFile the spectrum file
+     *
+     * @return the file where to save the metrics
+     */
+    public File getMetricsFile(File spectrumFile) {
+        return new File(outputFolder, "DeNovoGUI Report " + spectrumFile.getName() + ".json");
+    }
+}
@@ -0,0 +1,227 @@
+package com.compomics.denovogui.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Minimal parser of the JSON requests sent to the sequencing service. Objects
+ * are returned as HashMap, arrays as ArrayList, numbers as Double, and strings
+ * and booleans as String and Boolean.
+ *
+ * @author Marc Vaudel
+ */
+public class JsonParser {
+
+    /**
+     * The text to parse.
+     */
+    private final String text;
+    /**
+     * The current position in the text.
+     */
+    private int index = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param text the text to parse
+     */
+    private JsonParser(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Parses a JSON text.
+     *
+     * @param text the text to parse
+     *
+     * @return the parsed value
+     *
+     * @throws IllegalArgumentException thrown if the text is not valid JSON
+     */
+    public static Object parse(String text) {
+        JsonParser jsonParser = new JsonParser(text);
+        Object result = jsonParser.parseValue();
+        jsonParser.skipWhiteSpace();
+        if (jsonParser.index < text.length()) {
+            throw new IllegalArgumentException("Unexpected character at position " + jsonParser.index + ".");
+        }
+        return result;
+    }
+
+    /**
+     * Parses the value at the current position.
+     *
+     * @return the value
+     */
+    private Object parseValue() {
+        skipWhiteSpace();
+        if (index >= text.length()) {
+            throw new IllegalArgumentException("Unexpected end of JSON text.");
+        }
+        char c = text.charAt(index);
+        if (c == '{') {
+            return parseObject();
+        } else if (c == '[') {
+            return parseArray();
+        } else if (c == '"') {
+            return parseString();
+        } else if (text.startsWith("true", index)) {
+            index += 4;
+            return Boolean.TRUE;
+        } else if (text.startsWith("false", index)) {
+            index += 5;
+            return Boolean.FALSE;
+        } else if (text.startsWith("null", index)) {
+            index += 4;
+            return null;
+        } else {
+            return parseNumber();
+        }
+    }
+
+    /**
+     * Parses the object at the current position.
+     *
+     * @return the object
+     */
+    private HashMap<String, Object> parseObject() {
+        HashMap<String, Object> result = new HashMap<String, Object>();
+        index++;
+        skipWhiteSpace();
+        if (index < text.length() && text.charAt(index) == '}') {
+            index++;
+            return result;
+        }
+        while (true) {
+            skipWhiteSpace();
+            if (index >= text.length() || text.charAt(index) != '"') {
+                throw new IllegalArgumentException("Expected a key at position " + index + ".");
+            }
+            String key = parseString();
+            expect(':');
+            result.put(key, parseValue());
+            skipWhiteSpace();
+            if (index < text.length() && text.charAt(index) == ',') {
+                index++;
+            } else {
+                expect('}');
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Parses the array at the current position.
+     *
+     * @return the array
+     */
+    private ArrayList<Object> parseArray() {
+        ArrayList<Object> result = new ArrayList<Object>();
+        index++;
+        skipWhiteSpace();
+        if (index < text.length() && text.charAt(index) == ']') {
+            index++;
+            return result;
+        }
+        while (true) {
+            result.add(parseValue());
+            skipWhiteSpace();
+            if (index < text.length() && text.charAt(index) == ',') {
+                index++;
+            } else {
+                expect(']');
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Parses the string at the current position.
+     *
+     * @return the string
+     */
+    private String parseString() {
+        StringBuilder result = new StringBuilder();
+        index++;
+        while (index < text.length()) {
+            char c = text.charAt(index++);
+            if (c == '"') {
+                return result.toString();
+            } else if (c == '\\') {
+                if (index >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(index++);
+                switch (escaped) {
+                    case 'b':
+                        result.append('\b');
+                        break;
+                    case 'f':
+                        result.append('\f');
+                        break;
+                    case 'n':
+                        result.append('\n');
+                        break;
+                    case 'r':
+                        result.append('\r');
+                        break;
+                    case 't':
+                        result.append('\t');
+                        break;
+                    case 'u':
+                        if (index + 4 > text.length()) {
+                            throw new IllegalArgumentException("Invalid unicode escape at position " + index + ".");
+                        }
+                        result.append((char) Integer.parseInt(text.substring(index, index + 4), 16));
+                        index += 4;
+                        break;
+                    default:
+                        result.append(escaped);
+                }
+            } else {
+                result.append(c);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string.");
+    }
+
+    /**
+     * Parses the number at the current position.
+     *
+     * @return the number
+     */
+    private Double parseNumber() {
+        int start = index;
+        while (index < text.length() && "+-0123456789.eE".indexOf(text.charAt(index)) >= 0) {
+            index++;
+        }
+        if (start == index) {
+            throw new IllegalArgumentException("Unexpected character at position " + index + ".");
+        }
+        return Double.valueOf(text.substring(start, index));
+    }
+
+    /**
+     * Skips the white space at the current position and checks that the next
+     * character is the expected one.
+     *
+     * @param c the expected character
+     */
+    private void expect(char c) {
+        skipWhiteSpace();
+        if (index >= text.length() || text.charAt(index) != c) {
+            throw new IllegalArgumentException("Expected '" + c + "' at position " + index + ".");
+        }
+        index++;
+    }
+
+    /**
+     * Skips the white space at the current position.
+     */
+    private void skipWhiteSpace() {
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) {
+            index++;
+        }
+    }
+}
@@ -0,0 +1,903 @@
+package com.compomics.denovogui.service;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.execution.JobStatus;
+import com.compomics.denovogui.execution.ResourceMonitor;
+import com.compomics.denovogui.execution.RunMetrics;
+import com.compomics.denovogui.io.FileProcessor;
+import com.compomics.denovogui.io.PeakPreprocessor;
+import com.compomics.denovogui.io.SpectrumRouter;
+import com.compomics.util.exceptions.ExceptionHandler;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Long running sequencing service accepting jobs over a local HTTP/JSON API.
+ * The factories, the spectrum index cache and the JVM stay warm between jobs.
+ * The jobs are started by priority and share a global thread budget.
+ * <p>
+ * API:
+ * <p>
+ * GET /status - the state of the service.
+ * <p>
+ * POST /jobs - submits a job: {"spectrumFiles": [...], "outputFolder": "...",
+ * "idParams": "...", "pepnovo": true, "directag": true, "pnovo": false,
+ * "novor": false, "priority": 0, "threads": 4}. Only the spectrum files and
+ * the output folder are mandatory.
+ * <p>
+ * GET /jobs - the list of jobs.
+ * <p>
+ * GET /jobs/{id} - the status of a job.
+ * <p>
+ * DELETE /jobs/{id} - cancels a job.
+ * <p>
+ * GET /jobs/{id}/results - the result files of a job.
+ * <p>
+ * GET /jobs/{id}/results/{file name} - downloads a result file.
+ * <p>
+ * POST /shutdown - cancels the jobs and stops the service.
+ * <p>
+ * Every request has to carry the access token printed when the service
+ * starts in an X-DeNovoGUI-Token header. Requests sent by a browser from
+ * another origin are rejected, and POST requests have to be sent as
+ * application/json, so that web pages cannot submit jobs or stop the service.
+ *
+ * @author Marc Vaudel
+ */
+public class SequencingService {
+
+    /**
+     * The maximal size in bytes of a request body.
+     */
+    private static final int MAX_REQUEST_SIZE = 1 << 20;
+    /**
+     * The number of threads answering the HTTP requests.
+     */
+    private static final int N_HTTP_THREADS = 4;
+    /**
+     * The header carrying the access token.
+     */
+    public static final String TOKEN_HEADER = "X-DeNovoGUI-Token";
+    /**
+     * The access token required by every request, generated at startup.
+     */
+    private final String token;
+    /**
+     * The port to listen on.
+     */
+    private final int port;
+    /**
+     * The number of threads shared by the jobs.
+     */
+    private final int nThreads;
+    /**
+     * The threads not used by a running job.
+     */
+    private final Semaphore threadBudget;
+    /**
+     * The PepNovo+ folder.
+     */
+    private final File pepNovoFolder;
+    /**
+     * The DirecTag folder.
+     */
+    private final File direcTagFolder;
+    /**
+     * The pNovo+ folder.
+     */
+    private final File pNovoFolder;
+    /**
+     * The Novor folder.
+     */
+    private final File novorFolder;
+    /**
+     * The name of the PepNovo+ executable, null if not available.
+     */
+    private final String pepNovoExeTitle;
+    /**
+     * The name of the DirecTag executable, null if not available.
+     */
+    private final String direcTagExeTitle;
+    /**
+     * The name of the pNovo+ executable, null if not available.
+     */
+    private final String pNovoExeTitle;
+    /**
+     * The name of the Novor executable, null if not available.
+     */
+    private final String novorExeTitle;
+    /**
+     * The search parameters file used when a job does not provide one.
+     */
+    private final File defaultSearchParametersFile;
+    /**
+     * The exception handler.
+     */
+    private final ExceptionHandler exceptionHandler;
+    /**
+     * Time in milliseconds after which a job is considered as hanging when its
+     * duration cannot be estimated yet.
+     */
+    private long jobTimeout = 12 * 60 * 60 * 1000L;
+    /**
+     * If true, slow jobs are speculatively started again on idle threads.
+     */
+    private boolean speculativeExecution = false;
+    /**
+     * If true, near-identical spectra are clustered before sequencing.
+     */
+    private boolean clusterSpectra = false;
+    /**
+     * The minimal similarity of two clustered spectra.
+     */
+    private double clusteringSimilarity = 0.9;
+    /**
+     * The monitor of the resources of the machine shared by the jobs, null
+     * if not used.
+     */
+    private ResourceMonitor resourceMonitor = null;
+    /**
+     * If true, Novor is run in the service process.
+     */
+    private boolean novorInProcess = false;
+    /**
+     * The number of spectra under which mgf files are sequenced in batches.
+     */
+    private int batchSize = 0;
+    /**
+     * The peak preprocessing of every algorithm, indexed by algorithm name.
+     */
+    private HashMap<String, PeakPreprocessor> peakPreprocessors = new HashMap<String, PeakPreprocessor>();
+    /**
+     * The score thresholds of the sequencing cascade, indexed by algorithm
+     * name.
+     */
+    private HashMap<String, Double> cascadeThresholds = new HashMap<String, Double>();
+    /**
+     * The routing of the spectra to the algorithms, null if not set.
+     */
+    private SpectrumRouter spectrumRouter = null;
+    /**
+     * The jobs waiting to be started.
+     */
+    private final PriorityBlockingQueue<ServiceJob> queue = new PriorityBlockingQueue<ServiceJob>();
+    /**
+     * All jobs indexed by id in submission order.
+     */
+    private final LinkedHashMap<Integer, ServiceJob> jobs = new LinkedHashMap<Integer, ServiceJob>();
+    /**
+     * The id of the next job.
+     */
+    private int nextId = 1;
+    /**
+     * The PepNovo+ modification file is written in the PepNovo+ folder, jobs
+     * running PepNovo+ are thus run one at a time.
+     */
+    private final ReentrantLock pepNovoLock = new ReentrantLock();
+    /**
+     * The executor running the jobs.
+     */
+    private final ExecutorService jobExecutor = Executors.newCachedThreadPool();
+    /**
+     * The HTTP server.
+     */
+    private HttpServer httpServer = null;
+    /**
+     * The thread starting the jobs.
+     */
+    private Thread dispatcher = null;
+    /**
+     * Released when the service is stopped.
+     */
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    /**
+     * Constructor.
+     *
+     * @param port the port to listen on
+     * @param nThreads the number of threads shared by the jobs
+     * @param pepNovoFolder the PepNovo+ folder
+     * @param direcTagFolder the DirecTag folder
+     * @param pNovoFolder the pNovo+ folder
+     * @param novorFolder the Novor folder
+     * @param pepNovoExeTitle the name of the PepNovo+ executable, null if not
+     * available
+     * @param direcTagExeTitle the name of the DirecTag executable, null if not
+     * available
+     * @param pNovoExeTitle the name of the pNovo+ executable, null if not
+     * available
+     * @param novorExeTitle the name of the Novor executable, null if not
+     * available
+     * @param defaultSearchParametersFile the search parameters file used when
+     * a job does not provide one
+     * @param exceptionHandler the exception handler
+     */
+    public SequencingService(int port, int nThreads, File pepNovoFolder, File direcTagFolder, File pNovoFolder, File novorFolder,
+            String pepNovoExeTitle, String direcTagExeTitle, String pNovoExeTitle, String novorExeTitle,
+            File defaultSearchParametersFile, ExceptionHandler exceptionHandler) {
+        this.port = port;
+        this.nThreads = nThreads;
+        this.threadBudget = new Semaphore(nThreads, true);
+        this.pepNovoFolder = pepNovoFolder;
+        this.direcTagFolder = direcTagFolder;
+        this.pNovoFolder = pNovoFolder;
+        this.novorFolder = novorFolder;
+        this.pepNovoExeTitle = pepNovoExeTitle;
+        this.direcTagExeTitle = direcTagExeTitle;
+        this.pNovoExeTitle = pNovoExeTitle;
+        this.novorExeTitle = novorExeTitle;
+        this.defaultSearchParametersFile = defaultSearchParametersFile;
+        this.exceptionHandler = exceptionHandler;
+        byte[] tokenBytes = new byte[16];
+        new SecureRandom().nextBytes(tokenBytes);
+        StringBuilder tokenBuilder = new StringBuilder();
+        for (byte tokenByte : tokenBytes) {
+            tokenBuilder.append(String.format("%02x", tokenByte & 0xff));
+        }
+        this.token = tokenBuilder.toString();
+    }
+
+    /**
+     * Starts listening for requests and starting the jobs.
+     *
+     * @throws IOException thrown if the port cannot be opened
+     */
+    public void start() throws IOException {
+
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.setExecutor(Executors.newFixedThreadPool(N_HTTP_THREADS));
+        httpServer.createContext("/status", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!checkRequest(exchange)) {
+                    return;
+                }
+                handleStatus(exchange);
+            }
+        });
+        httpServer.createContext("/jobs", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!checkRequest(exchange)) {
+                    return;
+                }
+                handleJobs(exchange);
+            }
+        });
+        httpServer.createContext("/shutdown", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!checkRequest(exchange)) {
+                    return;
+                }
+                if (!exchange.getRequestMethod().equals("POST")) {
+                    sendError(exchange, 405, "Method not allowed.");
+                    return;
+                }
+                sendJson(exchange, 200, "{\"status\": \"stopping\"}");
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        stop();
+                    }
+                }, "DeNovoGUI service shutdown").start();
+            }
+        });
+
+        dispatcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        }, "DeNovoGUI service dispatcher");
+        dispatcher.start();
+
+        httpServer.start();
+        System.out.println("DeNovoGUI service listening on http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port
+                + " using " + nThreads + " threads.");
+        System.out.println("Access token (" + TOKEN_HEADER + " header): " + token);
+    }
+
+    /**
+     * Checks that a request carries the access token, does not come from a
+     * foreign origin and, for POST requests, is sent as JSON. An error is
+     * sent otherwise.
+     *
+     * @param exchange the HTTP exchange
+     *
+     * @return true if the request can be handled
+     *
+     * @throws IOException thrown if the error cannot be sent
+     */
+    private boolean checkRequest(HttpExchange exchange) throws IOException {
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null && !origin.equals("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port)
+                && !origin.equals("http://localhost:" + port)) {
+            sendError(exchange, 403, "Origin not allowed.");
+            return false;
+        }
+        String requestToken = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+        if (requestToken == null || !MessageDigest.isEqual(token.getBytes("UTF-8"), requestToken.getBytes("UTF-8"))) {
+            sendError(exchange, 401, "Missing or invalid " + TOKEN_HEADER + " header.");
+            return false;
+        }
+        if (exchange.getRequestMethod().equals("POST")) {
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType == null || !contentType.toLowerCase().trim().startsWith("application/json")) {
+                sendError(exchange, 415, "Content-Type application/json expected.");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the service is stopped.
+     *
+     * @throws InterruptedException thrown if the thread is interrupted while
+     * waiting
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Cancels the jobs and stops the service.
+     */
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(1);
+            ((ExecutorService) httpServer.getExecutor()).shutdown();
+        }
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        ArrayList<ServiceJob> allJobs;
+        synchronized (jobs) {
+            allJobs = new ArrayList<ServiceJob>(jobs.values());
+        }
+        for (ServiceJob job : allJobs) {
+            try {
+                job.cancel();
+            } catch (IOException e) {
+                exceptionHandler.catchException(e);
+            }
+        }
+        jobExecutor.shutdown();
+        System.out.println("DeNovoGUI service stopped.");
+        stopped.countDown();
+    }
+
+    /**
+     * Starts the jobs by priority as soon as enough threads are available.
+     * The highest priority job waits for its threads, lower priority jobs are
+     * not started before it.
+     */
+    private void dispatch() {
+        try {
+            while (true) {
+                final ServiceJob job = queue.take();
+                if (job.getStatus() != JobStatus.WAITING) {
+                    continue;
+                }
+                threadBudget.acquire(job.getNThreads());
+                final DeNovoSequencingHandler deNovoSequencingHandler = new DeNovoSequencingHandler(pepNovoFolder, direcTagFolder, pNovoFolder, novorFolder);
+                if (!job.start(deNovoSequencingHandler)) {
+                    threadBudget.release(job.getNThreads());
+                    continue;
+                }
+                jobExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            runJob(job, deNovoSequencingHandler);
+                        } finally {
+                            threadBudget.release(job.getNThreads());
+                        }
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            // service stopped
+        }
+    }
+
+    /**
+     * Runs a job.
+     *
+     * @param job the job
+     * @param deNovoSequencingHandler the sequencing handler to use
+     */
+    private void runJob(ServiceJob job, DeNovoSequencingHandler deNovoSequencingHandler) {
+
+        String errorMessage = null;
+
+        try {
+            // each job works on its own copy of the parameters
+            SearchParameters searchParameters = SearchParameters.getIdentificationParameters(job.getSearchParametersFile());
+            String error = DeNovoSequencingHandler.loadModifications(searchParameters);
+            if (error != null) {
+                System.out.println(error);
+            }
+            File outputFolder = job.getOutputFolder();
+            if (!outputFolder.exists() && !outputFolder.mkdirs()) {
+                throw new IOException("Impossible to create folder " + outputFolder.getAbsolutePath() + ".");
+            }
+
+            deNovoSequencingHandler.setNThreads(job.getNThreads());
+            deNovoSequencingHandler.setJobTimeout(jobTimeout);
+            deNovoSequencingHandler.setSpeculativeExecution(speculativeExecution);
+            deNovoSequencingHandler.setClusterSpectra(clusterSpectra);
+            deNovoSequencingHandler.setClusteringSimilarity(clusteringSimilarity);
+            deNovoSequencingHandler.setResourceMonitor(resourceMonitor);
+            deNovoSequencingHandler.setNovorInProcess(novorInProcess);
+            deNovoSequencingHandler.setBatchSize(batchSize);
+            deNovoSequencingHandler.setPeakPreprocessors(peakPreprocessors);
+            deNovoSequencingHandler.setCascadeThresholds(cascadeThresholds);
+            deNovoSequencingHandler.setSpectrumRouter(spectrumRouter);
+
+            // the parameters with the modification mappings are saved with the results
+            File searchParametersCopy = new File(outputFolder, job.getSearchParametersFile().getName());
+
+            if (job.isPepNovoEnabled()) {
+                pepNovoLock.lockInterruptibly();
+            }
+            try {
+                deNovoSequencingHandler.startSequencing(job.getSpectrumFiles(), searchParameters, outputFolder, searchParametersCopy,
+                        pepNovoExeTitle, direcTagExeTitle, pNovoExeTitle, novorExeTitle,
+                        job.isPepNovoEnabled(), job.isDirecTagEnabled(), job.isPNovoEnabled(), job.isNovorEnabled(),
+                        job.getWaitingHandler(), exceptionHandler);
+            } finally {
+                if (job.isPepNovoEnabled()) {
+                    pepNovoLock.unlock();
+                }
+            }
+        } catch (Exception e) {
+            errorMessage = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+            exceptionHandler.catchException(e);
+        }
+
+        job.end(errorMessage);
+        System.out.println("Job " + job.getId() + " " + job.getStatus().name().toLowerCase() + ".");
+    }
+
+    /**
+     * Submits a job.
+     *
+     * @param request the parsed JSON request
+     *
+     * @return the job
+     *
+     * @throws IllegalArgumentException thrown if the request is not valid
+     */
+    private ServiceJob submit(HashMap<String, Object> request) {
+
+        Object spectrumFilesValue = request.get("spectrumFiles");
+        if (!(spectrumFilesValue instanceof ArrayList) || ((ArrayList) spectrumFilesValue).isEmpty()) {
+            throw new IllegalArgumentException("spectrumFiles not specified.");
+        }
+        ArrayList<File> spectrumFiles = new ArrayList<File>();
+        for (Object path : (ArrayList) spectrumFilesValue) {
+            File spectrumFile = new File(String.valueOf(path));
+            if (!spectrumFile.exists()) {
+                throw new IllegalArgumentException("File " + spectrumFile.getAbsolutePath() + " not found.");
+            }
+            spectrumFiles.add(spectrumFile);
+        }
+
+        Object outputFolderValue = request.get("outputFolder");
+        if (!(outputFolderValue instanceof String)) {
+            throw new IllegalArgumentException("outputFolder not specified.");
+        }
+        File outputFolder = new File((String) outputFolderValue);
+
+        File searchParametersFile = defaultSearchParametersFile;
+        if (request.get("idParams") instanceof String) {
+            searchParametersFile = new File((String) request.get("idParams"));
+        }
+        if (!searchParametersFile.exists()) {
+            throw new IllegalArgumentException("File " + searchParametersFile.getAbsolutePath() + " not found.");
+        }
+
+        boolean enablePepNovo = getBoolean(request, "pepnovo", pepNovoExeTitle != null);
+        boolean enableDirecTag = getBoolean(request, "directag", direcTagExeTitle != null);
+        boolean enablePNovo = getBoolean(request, "pnovo", false);
+        boolean enableNovor = getBoolean(request, "novor", false);
+        if (enablePepNovo && pepNovoExeTitle == null
+                || enableDirecTag && direcTagExeTitle == null
+                || enablePNovo && pNovoExeTitle == null
+                || enableNovor && novorExeTitle == null) {
+            throw new IllegalArgumentException("Algorithm not available in this service.");
+        }
+        if (!enablePepNovo && !enableDirecTag && !enablePNovo && !enableNovor) {
+            throw new IllegalArgumentException("No sequencing algorithm selected.");
+        }
+
+        int priority = (int) getNumber(request, "priority", 0);
+        int jobThreads = (int) getNumber(request, "threads", nThreads);
+        if (jobThreads <= 0) {
+            throw new IllegalArgumentException("The number of threads has to be positive.");
+        }
+        jobThreads = Math.min(jobThreads, nThreads);
+
+        ServiceJob job;
+        synchronized (jobs) {
+            job = new ServiceJob(nextId++, priority, spectrumFiles, outputFolder, searchParametersFile, jobThreads,
+                    enablePepNovo, enableDirecTag, enablePNovo, enableNovor);
+            jobs.put(job.getId(), job);
+        }
+        queue.add(job);
+        System.out.println("Job " + job.getId() + " submitted.");
+        return job;
+    }
+
+    /**
+     * Handles the requests on /status.
+     *
+     * @param exchange the HTTP exchange
+     *
+     * @throws IOException thrown if the response cannot be sent
+     */
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        int waiting = 0, running = 0;
+        synchronized (jobs) {
+            for (ServiceJob job : jobs.values()) {
+                if (job.getStatus() == JobStatus.WAITING) {
+                    waiting++;
+                } else if (job.getStatus() == JobStatus.RUNNING) {
+                    running++;
+                }
+            }
+        }
+        sendJson(exchange, 200, "{\"port\": " + port + ", \"threads\": " + nThreads + ", \"availableThreads\": " + threadBudget.availablePermits()
+                + ", \"waitingJobs\": " + waiting + ", \"runningJobs\": " + running + "}");
+    }
+
+    /**
+     * Handles the requests on /jobs.
+     *
+     * @param exchange the HTTP exchange
+     *
+     * @throws IOException thrown if the response cannot be sent
+     */
+    private void handleJobs(HttpExchange exchange) throws IOException {
+
+        try {
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            String[] parts = path.substring(1).split("/");
+
+            if (parts.length == 1) {
+
+                if (method.equals("POST")) {
+                    Object request = JsonParser.parse(readBody(exchange));
+                    if (!(request instanceof HashMap)) {
+                        throw new IllegalArgumentException("A JSON object is expected.");
+                    }
+                    ServiceJob job = submit((HashMap<String, Object>) request);
+                    sendJson(exchange, 201, job.toJson());
+                } else if (method.equals("GET")) {
+                    StringBuilder json = new StringBuilder("[");
+                    synchronized (jobs) {
+                        for (ServiceJob job : jobs.values()) {
+                            if (json.length() > 1) {
+                                json.append(",");
+                            }
+                            json.append(System.getProperty("line.separator")).append("  ").append(job.toJson());
+                        }
+                    }
+                    sendJson(exchange, 200, json.append(System.getProperty("line.separator")).append("]").toString());
+                } else {
+                    sendError(exchange, 405, "Method not allowed.");
+                }
+                return;
+            }
+
+            ServiceJob job;
+            try {
+                synchronized (jobs) {
+                    job = jobs.get(Integer.parseInt(parts[1]));
+                }
+            } catch (NumberFormatException e) {
+                job = null;
+            }
+            if (job == null) {
+                sendError(exchange, 404, "Job not found.");
+                return;
+            }
+
+            if (parts.length == 2) {
+                if (method.equals("GET")) {
+                    sendJson(exchange, 200, job.toJson());
+                } else if (method.equals("DELETE")) {
+                    if (job.cancel()) {
+                        queue.remove(job);
+                        System.out.println("Job " + job.getId() + " canceled.");
+                    }
+                    sendJson(exchange, 200, job.toJson());
+                } else {
+                    sendError(exchange, 405, "Method not allowed.");
+                }
+            } else if (parts[2].equals("results") && method.equals("GET")) {
+                ArrayList<File> resultFiles = FileProcessor.getAllResultFiles(job.getOutputFolder(),
+                        FileProcessor.getResultSpectrumFiles(job.getSpectrumFiles(), job.getOutputFolder()),
+                        job.isPepNovoEnabled(), job.isDirecTagEnabled(), job.isPNovoEnabled(), job.isNovorEnabled());
+                if (parts.length == 3) {
+                    StringBuilder json = new StringBuilder("[");
+                    for (File resultFile : resultFiles) {
+                        if (json.length() > 1) {
+                            json.append(", ");
+                        }
+                        json.append("{\"name\": ").append(RunMetrics.quote(resultFile.getName()))
+                                .append(", \"path\": ").append(RunMetrics.quote(resultFile.getAbsolutePath()))
+                                .append(", \"size\": ").append(resultFile.length()).append("}");
+                    }
+                    sendJson(exchange, 200, json.append("]").toString());
+                } else {
+                    for (File resultFile : resultFiles) {
+                        if (resultFile.getName().equals(parts[3])) {
+                            sendFile(exchange, resultFile);
+                            return;
+                        }
+                    }
+                    sendError(exchange, 404, "Result file not found.");
+                }
+            } else {
+                sendError(exchange, 404, "Not found.");
+            }
+
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (Exception e) {
+            exceptionHandler.catchException(e);
+            sendError(exchange, 500, e.getMessage() != null ? e.getMessage() : e.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads the body of a request.
+     *
+     * @param exchange the HTTP exchange
+     *
+     * @return the body of the request
+     *
+     * @throws IOException thrown if the body cannot be read
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        InputStream inputStream = exchange.getRequestBody();
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+                if (body.size() > MAX_REQUEST_SIZE) {
+                    throw new IllegalArgumentException("Request too large.");
+                }
+            }
+            return body.toString("UTF-8");
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Sends a JSON response.
+     *
+     * @param exchange the HTTP exchange
+     * @param code the HTTP status code
+     * @param json the JSON content
+     *
+     * @throws IOException thrown if the response cannot be sent
+     */
+    private static void sendJson(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] content = (json + System.getProperty("line.separator")).getBytes("UTF-8");
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, content.length);
+        OutputStream outputStream = exchange.getResponseBody();
+        try {
+            outputStream.write(content);
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Sends an error as JSON response.
+     *
+     * @param exchange the HTTP exchange
+     * @param code the HTTP status code
+     * @param message the error message
+     *
+     * @throws IOException thrown if the response cannot be sent
+     */
+    private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        sendJson(exchange, code, "{\"error\": " + RunMetrics.quote(message) + "}");
+    }
+
+    /**
+     * Sends a file.
+     *
+     * @param exchange the HTTP exchange
+     * @param file the file to send
+     *
+     * @throws IOException thrown if the file cannot be sent
+     */
+    private static void sendFile(HttpExchange exchange, File file) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.sendResponseHeaders(200, file.length());
+        OutputStream outputStream = exchange.getResponseBody();
+        try {
+            FileInputStream inputStream = new FileInputStream(file);
+            try {
+                byte[] buffer = new byte[1 << 16];
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, read);
+                }
+            } finally {
+                inputStream.close();
+            }
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Returns a boolean value of a request.
+     *
+     * @param request the request
+     * @param key the key of the value
+     * @param defaultValue the value returned if not set
+     *
+     * @return the value
+     */
+    private static boolean getBoolean(HashMap<String, Object> request, String key, boolean defaultValue) {
+        Object value = request.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Boolean)) {
+            throw new IllegalArgumentException(key + " has to be true or false.");
+        }
+        return (Boolean) value;
+    }
+
+    /**
+     * Returns a number of a request.
+     *
+     * @param request the request
+     * @param key the key of the value
+     * @param defaultValue the value returned if not set
+     *
+     * @return the value
+     */
+    private static double getNumber(HashMap<String, Object> request, String key, double defaultValue) {
+        Object value = request.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!(value instanceof Double)) {
+            throw new IllegalArgumentException(key + " has to be a number.");
+        }
+        return (Double) value;
+    }
+
+    /**
+     * Sets the time in milliseconds after which a job is considered as
+     * hanging when its duration cannot be estimated yet.
+     *
+     * @param jobTimeout the job timeout in milliseconds
+     */
+    public void setJobTimeout(long jobTimeout) {
+        this.jobTimeout = jobTimeout;
+    }
+
+    /**
+     * Sets whether slow jobs are speculatively started again on idle threads.
+     *
+     * @param speculativeExecution true to start slow jobs again
+     */
+    public void setSpeculativeExecution(boolean speculativeExecution) {
+        this.speculativeExecution = speculativeExecution;
+    }
+
+    /**
+     * Sets whether near-identical spectra are clustered before sequencing.
+     *
+     * @param clusterSpectra true to cluster the spectra
+     */
+    public void setClusterSpectra(boolean clusterSpectra) {
+        this.clusterSpectra = clusterSpectra;
+    }
+
+    /**
+     * Sets the minimal similarity of two clustered spectra.
+     *
+     * @param clusteringSimilarity the minimal similarity
+     */
+    public void setClusteringSimilarity(double clusteringSimilarity) {
+        this.clusteringSimilarity = clusteringSimilarity;
+    }
+
+    /**
+     * Sets the monitor used to adapt the jobs to the resources left by the
+     * other processes of the machine.
+     *
+     * @param resourceMonitor the resource monitor, null to not adapt the jobs
+     */
+    public void setResourceMonitor(ResourceMonitor resourceMonitor) {
+        this.resourceMonitor = resourceMonitor;
+    }
+
+    /**
+     * Sets whether Novor is run in the service process instead of a separate
+     * Java process per job.
+     *
+     * @param novorInProcess true if Novor should be run in the service
+     * process
+     */
+    public void setNovorInProcess(boolean novorInProcess) {
+        this.novorInProcess = novorInProcess;
+    }
+
+    /**
+     * Sets the number of spectra under which the mgf files of a job are
+     * sequenced in batches.
+     *
+     * @param batchSize the batch size, 0 to sequence every file separately
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the peak preprocessing of the spectra of every algorithm, indexed
+     * by algorithm name.
+     *
+     * @param peakPreprocessors the peak preprocessing of every algorithm
+     */
+    public void setPeakPreprocessors(HashMap<String, PeakPreprocessor> peakPreprocessors) {
+        this.peakPreprocessors = peakPreprocessors;
+    }
+
+    /**
+     * Sets the score thresholds of the sequencing cascade, indexed by
+     * algorithm name.
+     *
+     * @param cascadeThresholds the score thresholds of the sequencing cascade
+     */
+    public void setCascadeThresholds(HashMap<String, Double> cascadeThresholds) {
+        this.cascadeThresholds = cascadeThresholds;
+    }
+
+    /**
+     * Sets the routing of the spectra to the algorithms.
+     *
+     * @param spectrumRouter the routing of the spectra to the algorithms
+     */
+    public void setSpectrumRouter(SpectrumRouter spectrumRouter) {
+        this.spectrumRouter = spectrumRouter;
+    }
+}
@@ -0,0 +1,337 @@
+package com.compomics.denovogui.service;
+
+import com.compomics.denovogui.DeNovoSequencingHandler;
+import com.compomics.denovogui.execution.JobStatus;
+import com.compomics.denovogui.execution.RunMetrics;
+import com.compomics.util.gui.waiting.waitinghandlers.WaitingHandlerCLIImpl;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+
+/**
+ * A sequencing job submitted to the sequencing service. Jobs are ordered by
+ * decreasing priority and then by submission order.
+ *
+ * @author Marc Vaudel
+ */
+public class ServiceJob implements Comparable<ServiceJob> {
+
+    /**
+     * The id of the job.
+     */
+    private final int id;
+    /**
+     * The priority of the job, higher priorities are started first.
+     */
+    private final int priority;
+    /**
+     * The spectrum files to sequence.
+     */
+    private final ArrayList<File> spectrumFiles;
+    /**
+     * The output folder.
+     */
+    private final File outputFolder;
+    /**
+     * The search parameters file.
+     */
+    private final File searchParametersFile;
+    /**
+     * The number of threads used by the job.
+     */
+    private final int nThreads;
+    /**
+     * Run PepNovo+?
+     */
+    private final boolean enablePepNovo;
+    /**
+     * Run DirecTag?
+     */
+    private final boolean enableDirecTag;
+    /**
+     * Run pNovo+?
+     */
+    private final boolean enablePNovo;
+    /**
+     * Run Novor?
+     */
+    private final boolean enableNovor;
+    /**
+     * The status of the job.
+     */
+    private JobStatus status = JobStatus.WAITING;
+    /**
+     * The waiting handler of the job.
+     */
+    private final WaitingHandlerCLIImpl waitingHandler = new WaitingHandlerCLIImpl();
+    /**
+     * The sequencing handler running the job, null if not started.
+     */
+    private DeNovoSequencingHandler deNovoSequencingHandler = null;
+    /**
+     * The error message if the job failed, null otherwise.
+     */
+    private String errorMessage = null;
+    /**
+     * The submission time.
+     */
+    private final long submissionTime = System.currentTimeMillis();
+    /**
+     * The start time, 0 if not started.
+     */
+    private long startTime = 0;
+    /**
+     * The end time, 0 if not ended.
+     */
+    private long endTime = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param id the id of the job
+     * @param priority the priority of the job
+     * @param spectrumFiles the spectrum files to sequence
+     * @param outputFolder the output folder
+     * @param searchParametersFile the search parameters file
+     * @param nThreads the number of threads used by the job
+     * @param enablePepNovo run PepNovo+?
+     * @param enableDirecTag run DirecTag?
+     * @param enablePNovo run pNovo+?
+     * @param enableNovor run Novor?
+     */
+    public ServiceJob(int id, int priority, ArrayList<File> spectrumFiles, File outputFolder, File searchParametersFile, int nThreads,
+            boolean enablePepNovo, boolean enableDirecTag, boolean enablePNovo, boolean enableNovor) {
+        this.id = id;
+        this.priority = priority;
+        this.spectrumFiles = spectrumFiles;
+        this.outputFolder = outputFolder;
+        this.searchParametersFile = searchParametersFile;
+        this.nThreads = nThreads;
+        this.enablePepNovo = enablePepNovo;
+        this.enableDirecTag = enableDirecTag;
+        this.enablePNovo = enablePNovo;
+        this.enableNovor = enableNovor;
+    }
+
+    @Override
+    public int compareTo(ServiceJob other) {
+        if (priority != other.priority) {
+            return priority > other.priority ? -1 : 1;
+        }
+        return id < other.id ? -1 : id == other.id ? 0 : 1;
+    }
+
+    /**
+     * Marks the job as started if it is waiting.
+     *
+     * @param deNovoSequencingHandler the sequencing handler running the job
+     *
+     * @return true if the job was started, false if it was canceled before
+     */
+    public synchronized boolean start(DeNovoSequencingHandler deNovoSequencingHandler) {
+        if (status != JobStatus.WAITING) {
+            return false;
+        }
+        this.deNovoSequencingHandler = deNovoSequencingHandler;
+        status = JobStatus.RUNNING;
+        startTime = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Marks the job as ended. A job canceled while running stays canceled.
+     *
+     * @param errorMessage the error message if the job failed, null otherwise
+     */
+    public synchronized void end(String errorMessage) {
+        endTime = System.currentTimeMillis();
+        deNovoSequencingHandler = null;
+        if (status == JobStatus.CANCELED) {
+            return;
+        }
+        if (errorMessage != null) {
+            status = JobStatus.ERROR;
+            this.errorMessage = errorMessage;
+        } else if (waitingHandler.isRunCanceled()) {
+            status = JobStatus.ERROR;
+            this.errorMessage = "The sequencing did not complete, see the service log for details.";
+        } else {
+            status = JobStatus.FINISHED;
+        }
+    }
+
+    /**
+     * Cancels the job. A waiting job is not started, the processes of a
+     * running job are stopped.
+     *
+     * @return true if the job was canceled, false if it had already ended
+     *
+     * @throws IOException thrown if the temporary files of a running job
+     * cannot be deleted
+     */
+    public synchronized boolean cancel() throws IOException {
+        if (status == JobStatus.WAITING) {
+            status = JobStatus.CANCELED;
+            endTime = System.currentTimeMillis();
+            return true;
+        } else if (status == JobStatus.RUNNING) {
+            status = JobStatus.CANCELED;
+            waitingHandler.setRunCanceled();
+            if (deNovoSequencingHandler != null) {
+                deNovoSequencingHandler.cancelSequencing(outputFolder, waitingHandler);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the id of the job.
+     *
+     * @return the id of the job
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the priority of the job.
+     *
+     * @return the priority of the job
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the spectrum files to sequence.
+     *
+     * @return the spectrum files to sequence
+     */
+    public ArrayList<File> getSpectrumFiles() {
+        return spectrumFiles;
+    }
+
+    /**
+     * Returns the output folder.
+     *
+     * @return the output folder
+     */
+    public File getOutputFolder() {
+        return outputFolder;
+    }
+
+    /**
+     * Returns the search parameters file.
+     *
+     * @return the search parameters file
+     */
+    public File getSearchParametersFile() {
+        return searchParametersFile;
+    }
+
+    /**
+     * Returns the number of threads used by the job.
+     *
+     * @return the number of threads used by the job
+     */
+    public int getNThreads() {
+        return nThreads;
+    }
+
+    /**
+     * Returns true if PepNovo+ is run.
+     *
+     * @return true if PepNovo+ is run
+     */
+    public boolean isPepNovoEnabled() {
+        return enablePepNovo;
+    }
+
+    /**
+     * Returns true if DirecTag is run.
+     *
+     * @return true if DirecTag is run
+     */
+    public boolean isDirecTagEnabled() {
+        return enableDirecTag;
+    }
+
+    /**
+     * Returns true if pNovo+ is run.
+     *
+     * @return true if pNovo+ is run
+     */
+    public boolean isPNovoEnabled() {
+        return enablePNovo;
+    }
+
+    /**
+     * Returns true if Novor is run.
+     *
+     * @return true if Novor is run
+     */
+    public boolean isNovorEnabled() {
+        return enableNovor;
+    }
+
+    /**
+     * Returns the status of the job.
+     *
+     * @return the status of the job
+     */
+    public synchronized JobStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the waiting handler of the job.
+     *
+     * @return the waiting handler of the job
+     */
+    public WaitingHandlerCLIImpl getWaitingHandler() {
+        return waitingHandler;
+    }
+
+    /**
+     * Returns the job as a JSON object.
+     *
+     * @return the job as a JSON object
+     */
+    public synchronized String toJson() {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssZ");
+        StringBuilder json = new StringBuilder();
+        json.append("{\"id\": ").append(id);
+        json.append(", \"status\": ").append(RunMetrics.quote(status.name().toLowerCase()));
+        json.append(", \"priority\": ").append(priority);
+        json.append(", \"threads\": ").append(nThreads);
+        json.append(", \"spectrumFiles\": [");
+        for (int i = 0; i < spectrumFiles.size(); i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append(RunMetrics.quote(spectrumFiles.get(i).getAbsolutePath()));
+        }
+        json.append("]");
+        json.append(", \"outputFolder\": ").append(RunMetrics.quote(outputFolder.getAbsolutePath()));
+        json.append(", \"idParams\": ").append(RunMetrics.quote(searchParametersFile.getAbsolutePath()));
+        json.append(", \"pepnovo\": ").append(enablePepNovo);
+        json.append(", \"directag\": ").append(enableDirecTag);
+        json.append(", \"pnovo\": ").append(enablePNovo);
+        json.append(", \"novor\": ").append(enableNovor);
+        json.append(", \"submitted\": ").append(RunMetrics.quote(dateFormat.format(new Date(submissionTime))));
+        if (startTime > 0) {
+            json.append(", \"started\": ").append(RunMetrics.quote(dateFormat.format(new Date(startTime))));
+        }
+        if (endTime > 0) {
+            json.append(", \"ended\": ").append(RunMetrics.quote(dateFormat.format(new Date(endTime))));
+        }
+        if (errorMessage != null) {
+            json.append(", \"error\": ").append(RunMetrics.quote(errorMessage));
+        }
+        json.append("}");
+        return json.toString();
+    }
+}
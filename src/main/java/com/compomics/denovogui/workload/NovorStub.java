@@ -0,0 +1,51 @@
+package com.compomics.denovogui.workload;
+
+import java.io.File;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+
+/**
+ * Main class of the Novor stub jar. Novor is started as jar file, the rate of
+ * the stub is therefore stored in the manifest of the stub jar.
+ *
+ * @author Marc Vaudel
+ */
+public class NovorStub {
+
+    /**
+     * The manifest attribute giving the rate of the stub.
+     */
+    public static final String RATE_ATTRIBUTE = "DeNovoGUI-Stub-Rate";
+
+    /**
+     * Empty default constructor.
+     */
+    private NovorStub() {
+    }
+
+    /**
+     * Runs the Novor stub.
+     *
+     * @param args the command line arguments of Novor
+     */
+    public static void main(String[] args) {
+        try {
+            double rate = 0;
+            String jarPath = System.getProperty("java.class.path").split(File.pathSeparator)[0];
+            JarFile jarFile = new JarFile(jarPath);
+            try {
+                Attributes attributes = jarFile.getManifest().getMainAttributes();
+                String rateValue = attributes.getValue(RATE_ATTRIBUTE);
+                if (rateValue != null) {
+                    rate = Double.parseDouble(rateValue);
+                }
+            } finally {
+                jarFile.close();
+            }
+            StubEngine.run(StubEngine.NOVOR, args, WorkloadGenerator.getStubRate(rate));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.compomics.denovogui.workload;
+
+import com.compomics.denovogui.io.SpectrumIndex;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+/**
+ * Stub of the de novo sequencing algorithms used for performance testing.
+ * Takes the command line of PepNovo+, DirecTag, pNovo+ or Novor as started by
+ * DeNovoGUI and writes synthetic results where the algorithm would, at the
+ * rate given by the stub rate system property or environment variable.
+ *
+ * @author Marc Vaudel
+ */
+public class StubEngine {
+
+    /**
+     * The name of the PepNovo+ stub.
+     */
+    public static final String PEPNOVO = "pepnovo";
+    /**
+     * The name of the DirecTag stub.
+     */
+    public static final String DIRECTAG = "directag";
+    /**
+     * The name of the pNovo+ stub.
+     */
+    public static final String PNOVO = "pnovo";
+    /**
+     * The name of the Novor stub.
+     */
+    public static final String NOVOR = "novor";
+    /**
+     * The number of tags written per spectrum by the DirecTag stub.
+     */
+    private static final int N_TAGS = 10;
+    /**
+     * The default number of solutions per spectrum.
+     */
+    private static final int DEFAULT_SOLUTIONS = 10;
+
+    /**
+     * Empty default constructor.
+     */
+    private StubEngine() {
+    }
+
+    /**
+     * Runs a stub.
+     *
+     * @param args the name of the stub followed by the command line arguments
+     * of the algorithm
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: StubEngine " + PEPNOVO + "|" + DIRECTAG + "|" + PNOVO + "|" + NOVOR + " [algorithm arguments]");
+            System.exit(1);
+        }
+        String[] engineArgs = new String[args.length - 1];
+        System.arraycopy(args, 1, engineArgs, 0, engineArgs.length);
+        try {
+            run(args[0], engineArgs, WorkloadGenerator.getStubRate(0));
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs a stub.
+     *
+     * @param engine the name of the stub
+     * @param args the command line arguments of the algorithm
+     * @param rate the number of spectra processed per second, unlimited if not
+     * positive
+     *
+     * @throws IOException thrown if the spectra cannot be read or the results
+     * cannot be written
+     */
+    public static void run(String engine, String[] args, double rate) throws IOException {
+
+        // the seed only depends on the input so that repeated runs give the same results
+        long seed = 0;
+        for (String arg : args) {
+            seed = 31 * seed + arg.hashCode();
+        }
+        WorkloadGenerator workloadGenerator = new WorkloadGenerator(seed);
+
+        if (engine.equalsIgnoreCase(PEPNOVO)) {
+
+            File mgfFile = new File(getArgument(args, "-file", null));
+            int nSolutions = Integer.parseInt(getArgument(args, "-num_solutions", Integer.toString(DEFAULT_SOLUTIONS)));
+            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(System.out));
+            try {
+                workloadGenerator.writePepNovoResults(SpectrumIndex.index(mgfFile), bw, nSolutions, rate);
+            } finally {
+                bw.flush();
+            }
+
+        } else if (engine.equalsIgnoreCase(DIRECTAG)) {
+
+            if (args.length == 0) {
+                throw new IllegalArgumentException("Spectrum file not given.");
+            }
+            File mgfFile = new File(args[0]);
+            File workFolder = new File(getArgument(args, "-workdir", "."));
+            String suffix = getArgument(args, "-OutputSuffix", "");
+            String mgfName = mgfFile.getName().substring(0, mgfFile.getName().lastIndexOf('.'));
+            BufferedWriter bw = new BufferedWriter(new FileWriter(new File(workFolder, mgfName + suffix + ".tags")));
+            try {
+                workloadGenerator.writeDirecTagResults(SpectrumIndex.index(mgfFile), bw, N_TAGS, rate);
+            } finally {
+                bw.close();
+            }
+
+        } else if (engine.equalsIgnoreCase(PNOVO)) {
+
+            if (args.length == 0) {
+                throw new IllegalArgumentException("Parameter file not given.");
+            }
+            String spectrumPath = null, outputPath = null;
+            int nPeptides = DEFAULT_SOLUTIONS;
+            BufferedReader br = new BufferedReader(new FileReader(args[0]));
+            try {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    int separator = line.indexOf('=');
+                    if (separator > 0) {
+                        String key = line.substring(0, separator).trim();
+                        String value = line.substring(separator + 1).trim();
+                        if (key.equals("spec_path1")) {
+                            spectrumPath = value;
+                        } else if (key.equals("out_path")) {
+                            outputPath = value;
+                        } else if (key.equals("report_pep")) {
+                            nPeptides = Integer.parseInt(value);
+                        }
+                    }
+                }
+            } finally {
+                br.close();
+            }
+            if (spectrumPath == null || outputPath == null) {
+                throw new IllegalArgumentException("spec_path1 or out_path not found in " + args[0] + ".");
+            }
+            File mgfFile = new File(spectrumPath);
+            String mgfName = mgfFile.getName().substring(0, mgfFile.getName().lastIndexOf('.'));
+            BufferedWriter bw = new BufferedWriter(new FileWriter(new File(outputPath, mgfName + ".txt")));
+            try {
+                workloadGenerator.writePNovoResults(SpectrumIndex.index(mgfFile), bw, nPeptides, rate);
+            } finally {
+                bw.close();
+            }
+
+        } else if (engine.equalsIgnoreCase(NOVOR)) {
+
+            File mgfFile = new File(getArgument(args, "-f", null));
+            File csvFile = new File(getArgument(args, "-o", null));
+            BufferedWriter bw = new BufferedWriter(new FileWriter(csvFile));
+            try {
+                workloadGenerator.writeNovorResults(SpectrumIndex.index(mgfFile), mgfFile.getName(), bw, rate);
+            } finally {
+                bw.close();
+            }
+
+        } else {
+            throw new IllegalArgumentException("Stub " + engine + " not supported.");
+        }
+    }
+
+    /**
+     * Returns the value following an option in the command line arguments.
+     *
+     * @param args the command line arguments
+     * @param option the option
+     * @param defaultValue the value to return if the option is not found,
+     * null if the option is mandatory
+     *
+     * @return the value of the option
+     *
+     * @throws IllegalArgumentException thrown if a mandatory option is not
+     * found
+     */
+    private static String getArgument(String[] args, String option, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(option)) {
+                return args[i + 1];
+            }
+        }
+        if (defaultValue == null) {
+            throw new IllegalArgumentException("Option " + option + " not found.");
+        }
+        return defaultValue;
+    }
+}
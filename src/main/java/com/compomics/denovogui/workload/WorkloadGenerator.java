@@ -0,0 +1,589 @@
+package com.compomics.denovogui.workload;
+
+import com.compomics.denovogui.io.SpectrumIndex;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Generates synthetic workloads for performance testing: mgf files of
+ * configurable size, results of the de novo sequencing algorithms and stub
+ * executables producing these results at a controlled rate in place of the
+ * real algorithms. The spectra contain the fragment ions of random tryptic
+ * peptides completed with noise peaks. This class only depends on the JDK so
+ * that the stub executables can run with the DeNovoGUI jar alone.
+ *
+ * @author Marc Vaudel
+ */
+public class WorkloadGenerator {
+
+    /**
+     * The mass of a proton.
+     */
+    private static final double PROTON = 1.007276;
+    /**
+     * The mass of water.
+     */
+    private static final double WATER = 18.010565;
+    /**
+     * The amino acids used to build the peptides.
+     */
+    private static final char[] AMINO_ACIDS = "GASPVTLINDQKEMHFRYW".toCharArray();
+    /**
+     * The monoisotopic residue masses of the amino acids.
+     */
+    private static final double[] AMINO_ACID_MASSES = {57.02146, 71.03711, 87.03203, 97.05276, 99.06841, 101.04768, 113.08406, 113.08406, 114.04293,
+        115.02694, 128.05858, 128.09496, 129.04259, 131.04049, 137.05891, 147.06841, 156.10111, 163.06333, 186.07931};
+    /**
+     * The default charge distribution, probability of charge 1, 2, 3 and 4.
+     */
+    public static final double[] DEFAULT_CHARGE_DISTRIBUTION = {0.05, 0.6, 0.3, 0.05};
+    /**
+     * The name of the stub executable of PepNovo+.
+     */
+    public static final String PEPNOVO_STUB = "PepNovo_Linux";
+    /**
+     * The name of the stub executable of DirecTag.
+     */
+    public static final String DIRECTAG_STUB = "directag";
+    /**
+     * The name of the stub executable of pNovo+.
+     */
+    public static final String PNOVO_STUB = "pNovo3";
+    /**
+     * The name of the stub executable of Novor, Novor is always started as
+     * jar file.
+     */
+    public static final String NOVOR_STUB = "novor.jar";
+    /**
+     * The system property giving the rate of the stub executables in spectra
+     * per second.
+     */
+    public static final String STUB_RATE_PROPERTY = "denovogui.stub.rate";
+    /**
+     * The environment variable overriding the rate of the stub executables.
+     */
+    public static final String STUB_RATE_VARIABLE = "DENOVOGUI_STUB_RATE";
+    /**
+     * The random generator.
+     */
+    private final Random random;
+    /**
+     * The average number of peaks per spectrum.
+     */
+    private int nPeaks = 200;
+    /**
+     * The cumulative charge distribution, index 0 for charge 1.
+     */
+    private double[] cumulativeChargeDistribution;
+
+    /**
+     * Constructor.
+     *
+     * @param seed the seed of the random generator, the same seed gives the
+     * same workload
+     */
+    public WorkloadGenerator(long seed) {
+        random = new Random(seed);
+        setChargeDistribution(DEFAULT_CHARGE_DISTRIBUTION);
+    }
+
+    /**
+     * Sets the average number of peaks per spectrum. The number of peaks of
+     * every spectrum is drawn between half and one and a half times the
+     * average.
+     *
+     * @param nPeaks the average number of peaks per spectrum
+     */
+    public void setNPeaks(int nPeaks) {
+        if (nPeaks < 2) {
+            throw new IllegalArgumentException("At least two peaks per spectrum are needed.");
+        }
+        this.nPeaks = nPeaks;
+    }
+
+    /**
+     * Sets the charge distribution.
+     *
+     * @param chargeDistribution the relative frequencies of the charges,
+     * index 0 for charge 1
+     */
+    public void setChargeDistribution(double[] chargeDistribution) {
+        double total = 0;
+        for (double frequency : chargeDistribution) {
+            if (frequency < 0) {
+                throw new IllegalArgumentException("Negative charge frequency.");
+            }
+            total += frequency;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Empty charge distribution.");
+        }
+        cumulativeChargeDistribution = new double[chargeDistribution.length];
+        double cumulative = 0;
+        for (int i = 0; i < chargeDistribution.length; i++) {
+            cumulative += chargeDistribution[i] / total;
+            cumulativeChargeDistribution[i] = cumulative;
+        }
+    }
+
+    /**
+     * Parses a charge distribution given as comma separated charge:frequency
+     * pairs, e.g. 2:0.6,3:0.3,4:0.1.
+     *
+     * @param distribution the charge distribution as text
+     *
+     * @return the relative frequencies of the charges, index 0 for charge 1
+     *
+     * @throws IllegalArgumentException thrown if the distribution cannot be
+     * parsed
+     */
+    public static double[] parseChargeDistribution(String distribution) {
+        double[] result = new double[0];
+        for (String pair : distribution.split(",")) {
+            String[] split = pair.trim().split(":");
+            if (split.length != 2) {
+                throw new IllegalArgumentException("Charge frequency " + pair + " not recognized, expected charge:frequency.");
+            }
+            int charge = Integer.parseInt(split[0].trim());
+            if (charge < 1) {
+                throw new IllegalArgumentException("Charge " + charge + " not supported.");
+            }
+            if (charge > result.length) {
+                result = Arrays.copyOf(result, charge);
+            }
+            result[charge - 1] = Double.parseDouble(split[1].trim());
+        }
+        return result;
+    }
+
+    /**
+     * Writes an mgf file of synthetic spectra.
+     *
+     * @param mgfFile the mgf file to write
+     * @param nSpectra the number of spectra
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public void writeMgf(File mgfFile, int nSpectra) throws IOException {
+
+        String prefix = mgfFile.getName().substring(0, mgfFile.getName().lastIndexOf('.'));
+        BufferedWriter bw = new BufferedWriter(new FileWriter(mgfFile), 1 << 16);
+
+        try {
+            for (int i = 0; i < nSpectra; i++) {
+
+                int charge = getCharge();
+                double[] residues = getPeptide();
+                double peptideMass = WATER;
+                for (double residue : residues) {
+                    peptideMass += residue;
+                }
+                double precursorMz = (peptideMass + charge * PROTON) / charge;
+
+                // fragment ions of the peptide and noise
+                int spectrumPeaks = nPeaks / 2 + random.nextInt(nPeaks + 1);
+                double[] mzs = new double[spectrumPeaks];
+                double[] intensities = new double[spectrumPeaks];
+                int peak = 0;
+                double bIon = PROTON, yIon = WATER + PROTON;
+                for (int j = 0; j < residues.length - 1 && peak < spectrumPeaks / 2; j++) {
+                    bIon += residues[j];
+                    yIon += residues[residues.length - 1 - j];
+                    mzs[peak] = bIon;
+                    intensities[peak++] = 1e4 * Math.exp(2 * random.nextGaussian());
+                    if (peak < spectrumPeaks / 2) {
+                        mzs[peak] = yIon;
+                        intensities[peak++] = 1e4 * Math.exp(2 * random.nextGaussian());
+                    }
+                }
+                while (peak < spectrumPeaks) {
+                    mzs[peak] = 100 + (peptideMass - 100) * random.nextDouble();
+                    intensities[peak++] = 1e3 * Math.exp(random.nextGaussian());
+                }
+                Integer[] order = new Integer[spectrumPeaks];
+                for (int j = 0; j < spectrumPeaks; j++) {
+                    order[j] = j;
+                }
+                final double[] finalMzs = mzs;
+                Arrays.sort(order, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer o1, Integer o2) {
+                        return Double.compare(finalMzs[o1], finalMzs[o2]);
+                    }
+                });
+
+                bw.write("BEGIN IONS");
+                bw.newLine();
+                bw.write("TITLE=" + prefix + " spectrum " + i);
+                bw.newLine();
+                bw.write(String.format(Locale.US, "PEPMASS=%.5f\t%.0f", precursorMz, 1e6 * Math.exp(random.nextGaussian())));
+                bw.newLine();
+                bw.write("CHARGE=" + charge + "+");
+                bw.newLine();
+                bw.write(String.format(Locale.US, "RTINSECONDS=%.2f", 7200.0 * i / nSpectra));
+                bw.newLine();
+                for (int j : order) {
+                    bw.write(String.format(Locale.US, "%.5f\t%.1f", mzs[j], intensities[j]));
+                    bw.newLine();
+                }
+                bw.write("END IONS");
+                bw.newLine();
+                bw.newLine();
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Draws a charge from the charge distribution.
+     *
+     * @return a charge
+     */
+    private int getCharge() {
+        double draw = random.nextDouble();
+        for (int i = 0; i < cumulativeChargeDistribution.length; i++) {
+            if (draw < cumulativeChargeDistribution[i]) {
+                return i + 1;
+            }
+        }
+        return cumulativeChargeDistribution.length;
+    }
+
+    /**
+     * Draws the residue masses of a random tryptic peptide.
+     *
+     * @return the residue masses of the peptide
+     */
+    private double[] getPeptide() {
+        int length = 7 + random.nextInt(14);
+        double[] residues = new double[length];
+        for (int i = 0; i < length - 1; i++) {
+            residues[i] = AMINO_ACID_MASSES[random.nextInt(AMINO_ACID_MASSES.length)];
+        }
+        // K or R
+        residues[length - 1] = random.nextBoolean() ? 128.09496 : 156.10111;
+        return residues;
+    }
+
+    /**
+     * Returns a random amino acid sequence.
+     *
+     * @param length the length of the sequence
+     *
+     * @return a random amino acid sequence
+     */
+    private String getSequence(int length) {
+        StringBuilder sequence = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sequence.append(AMINO_ACIDS[random.nextInt(AMINO_ACIDS.length)]);
+        }
+        return sequence.toString();
+    }
+
+    /**
+     * Returns the neutral mass of the precursor of a spectrum.
+     *
+     * @param index the spectrum index
+     * @param i the index of the spectrum
+     *
+     * @return the neutral mass of the precursor
+     */
+    private static double getPrecursorMass(SpectrumIndex index, int i) {
+        int charge = Math.max(1, index.getCharge(i));
+        return index.getPrecursorMz(i) * charge - charge * PROTON;
+    }
+
+    /**
+     * Writes PepNovo+ results for the spectra of an mgf file, as printed by
+     * PepNovo+ on the standard output.
+     *
+     * @param index the index of the mgf file
+     * @param bw the writer
+     * @param nSolutions the number of solutions per spectrum
+     * @param rate the number of spectra written per second, unlimited if not
+     * positive
+     *
+     * @throws IOException thrown if the results cannot be written or the
+     * thread is interrupted
+     */
+    public void writePepNovoResults(SpectrumIndex index, BufferedWriter bw, int nSolutions, double rate) throws IOException {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < index.getNSpectra(); i++) {
+            int charge = Math.max(1, index.getCharge(i));
+            bw.write(">> 0 " + i + " " + index.getTitle(i).trim());
+            bw.newLine();
+            bw.write("#Index\tRnkScr\tPnvScr\tN-Gap\tC-Gap\t[M+H]\tCharge\tSequence");
+            bw.newLine();
+            double mh = getPrecursorMass(index, i) + PROTON;
+            for (int j = 0; j < nSolutions; j++) {
+                bw.write(String.format(Locale.US, "%d\t%.3f\t%.3f\t%.3f\t%.3f\t%.3f\t%d\t%s",
+                        j, 5 - 0.5 * j, 100 * random.nextDouble(), 0.0, 0.0, mh, charge, getSequence(5 + random.nextInt(8))));
+                bw.newLine();
+            }
+            bw.newLine();
+            pace(bw, start, i + 1, rate);
+        }
+    }
+
+    /**
+     * Writes DirecTag results for the spectra of an mgf file.
+     *
+     * @param index the index of the mgf file
+     * @param bw the writer
+     * @param nTags the number of tags per spectrum
+     * @param rate the number of spectra written per second, unlimited if not
+     * positive
+     *
+     * @throws IOException thrown if the results cannot be written or the
+     * thread is interrupted
+     */
+    public void writeDirecTagResults(SpectrumIndex index, BufferedWriter bw, int nTags, double rate) throws IOException {
+        bw.write("H\tDirecTag stub of the DeNovoGUI workload generator");
+        bw.newLine();
+        bw.write("H\tSpectrumInfoFormat\tS\tID\tNativeID\tChargeState\tPrecursorMass\tTotalTIC\tNumPeaks\tBasePeak\tMaxTag\tMaxScore\tNumTags");
+        bw.newLine();
+        bw.write("H\tTagInfoFormat\tT\tTag\tnTerminusMass\tcTerminusMass\tTotalScore\trank\tchargeState\tIntensityScore\tMzFidelityScore\tComplementScore\tvalid");
+        bw.newLine();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < index.getNSpectra(); i++) {
+            int charge = Math.max(1, index.getCharge(i));
+            double precursorMass = getPrecursorMass(index, i);
+            bw.write(String.format(Locale.US, "S\t%d\tindex=%d\t%d\t%.4f\t%.1f\t%d\t%.4f\t%d\t%.4f\t%d",
+                    i, i, charge, precursorMass, 1e6 * random.nextDouble(), index.getPeakCount(i), 0.0, nTags, 100.0, nTags));
+            bw.newLine();
+            for (int j = 0; j < nTags; j++) {
+                String tag = getSequence(3);
+                double nTerminusMass = (precursorMass - 400) * random.nextDouble();
+                double cTerminusMass = Math.max(0, precursorMass - 400 - nTerminusMass);
+                bw.write(String.format(Locale.US, "T\t%s\t%.4f\t%.4f\t%.6g\t%d\t%d\t%.4f\t%.4f\t%.4f\t1",
+                        tag, nTerminusMass, cTerminusMass, 1e-3 * random.nextDouble(), j + 1, charge,
+                        random.nextDouble(), random.nextDouble(), random.nextDouble()));
+                bw.newLine();
+            }
+            pace(bw, start, i + 1, rate);
+        }
+    }
+
+    /**
+     * Writes pNovo+ results for the spectra of an mgf file.
+     *
+     * @param index the index of the mgf file
+     * @param bw the writer
+     * @param nPeptides the number of peptides per spectrum
+     * @param rate the number of spectra written per second, unlimited if not
+     * positive
+     *
+     * @throws IOException thrown if the results cannot be written or the
+     * thread is interrupted
+     */
+    public void writePNovoResults(SpectrumIndex index, BufferedWriter bw, int nPeptides, double rate) throws IOException {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < index.getNSpectra(); i++) {
+            bw.write("S" + (i + 1) + "\t" + index.getTitle(i).trim());
+            bw.newLine();
+            double score = 100 * random.nextDouble();
+            for (int j = 0; j < nPeptides; j++) {
+                bw.write(String.format(Locale.US, "P%d\t%s\t%.4f", j + 1, getSequence(6 + random.nextInt(8)), score));
+                bw.newLine();
+                score *= random.nextDouble();
+            }
+            bw.newLine();
+            pace(bw, start, i + 1, rate);
+        }
+    }
+
+    /**
+     * Writes Novor results for the spectra of an mgf file.
+     *
+     * @param index the index of the mgf file
+     * @param mgfName the name of the mgf file
+     * @param bw the writer
+     * @param rate the number of spectra written per second, unlimited if not
+     * positive
+     *
+     * @throws IOException thrown if the results cannot be written or the
+     * thread is interrupted
+     */
+    public void writeNovorResults(SpectrumIndex index, String mgfName, BufferedWriter bw, double rate) throws IOException {
+        bw.write("# v1.1.2234");
+        bw.newLine();
+        bw.write("# Spectra: " + mgfName);
+        bw.newLine();
+        bw.write("# id, scanNum, RT, mz(data), z, pepMass(denovo), err(data-denovo), ppm(1e6*err/(mz*z)), score, peptide, aaScore, ");
+        bw.newLine();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < index.getNSpectra(); i++) {
+            int charge = Math.max(1, index.getCharge(i));
+            double rt = Double.isNaN(index.getRetentionTime(i)) ? 0 : index.getRetentionTime(i);
+            int length = 6 + random.nextInt(10);
+            StringBuilder aaScores = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                if (j > 0) {
+                    aaScores.append('-');
+                }
+                aaScores.append(random.nextInt(100));
+            }
+            bw.write(String.format(Locale.US, "%d, %d, %.1f, %.4f, %d, %.4f, %.4f, %.1f, %.1f, %s, %s, ",
+                    i + 1, i + 1, rt, index.getPrecursorMz(i), charge, getPrecursorMass(index, i), 0.0, 0.0,
+                    100 * random.nextDouble(), getSequence(length), aaScores));
+            bw.newLine();
+            pace(bw, start, i + 1, rate);
+        }
+    }
+
+    /**
+     * Waits until the time of the given number of spectra at the given rate
+     * has passed, the results written so far are flushed before waiting.
+     *
+     * @param bw the writer
+     * @param start the start time in milliseconds
+     * @param nSpectra the number of spectra written
+     * @param rate the number of spectra written per second, unlimited if not
+     * positive
+     *
+     * @throws IOException thrown if the results cannot be flushed or the
+     * thread is interrupted
+     */
+    private static void pace(BufferedWriter bw, long start, int nSpectra, double rate) throws IOException {
+        if (rate <= 0) {
+            return;
+        }
+        long wait = start + (long) (1000 * nSpectra / rate) - System.currentTimeMillis();
+        if (wait > 0) {
+            bw.flush();
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted while writing the results.");
+            }
+        }
+    }
+
+    /**
+     * Writes the stub executables of the algorithms in the given folder, in
+     * the subfolders PepNovo, DirecTag, pNovo and Novor. The stubs run
+     * StubEngine with the classes of this DeNovoGUI installation. The
+     * PepNovo+, DirecTag and pNovo+ stubs are shell scripts and therefore
+     * only run on Linux and Mac.
+     *
+     * @param folder the folder where to write the stubs
+     * @param rate the number of spectra processed per second by the stubs,
+     * unlimited if not positive
+     *
+     * @throws IOException thrown if a stub cannot be written
+     */
+    public static void writeStubEngines(File folder, double rate) throws IOException {
+
+        File classPath = new File(getClassPath());
+        String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath();
+
+        writeStubScript(new File(new File(folder, "PepNovo"), PEPNOVO_STUB), java, classPath, StubEngine.PEPNOVO, rate);
+        writeStubScript(new File(new File(folder, "DirecTag"), DIRECTAG_STUB), java, classPath, StubEngine.DIRECTAG, rate);
+        writeStubScript(new File(new File(folder, "pNovo"), PNOVO_STUB), java, classPath, StubEngine.PNOVO, rate);
+
+        // Novor is started using java -jar, the stub is an empty jar running the stub engine
+        File novorFolder = new File(folder, "Novor");
+        createFolder(novorFolder);
+        Manifest manifest = new Manifest();
+        Attributes attributes = manifest.getMainAttributes();
+        attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        attributes.put(Attributes.Name.MAIN_CLASS, NovorStub.class.getName());
+        attributes.put(Attributes.Name.CLASS_PATH, classPath.toURI().toString());
+        attributes.putValue(NovorStub.RATE_ATTRIBUTE, Double.toString(rate));
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(new File(novorFolder, NOVOR_STUB)), manifest);
+        jarOutputStream.close();
+    }
+
+    /**
+     * Writes the shell script of a stub executable.
+     *
+     * @param scriptFile the script file
+     * @param java the path to the java executable
+     * @param classPath the class path of DeNovoGUI
+     * @param engine the name of the engine in StubEngine
+     * @param rate the number of spectra processed per second by the stub
+     *
+     * @throws IOException thrown if the script cannot be written
+     */
+    private static void writeStubScript(File scriptFile, String java, File classPath, String engine, double rate) throws IOException {
+        createFolder(scriptFile.getParentFile());
+        BufferedWriter bw = new BufferedWriter(new FileWriter(scriptFile));
+        try {
+            bw.write("#!/bin/sh");
+            bw.write("\n");
+            bw.write("# " + engine + " stub generated by the DeNovoGUI workload generator, the rate can be changed using " + STUB_RATE_VARIABLE);
+            bw.write("\n");
+            bw.write("exec \"" + java + "\" -D" + STUB_RATE_PROPERTY + "=" + rate + " -cp \"" + classPath.getAbsolutePath() + "\" "
+                    + StubEngine.class.getName() + " " + engine + " \"$@\"");
+            bw.write("\n");
+        } finally {
+            bw.close();
+        }
+        scriptFile.setExecutable(true);
+    }
+
+    /**
+     * Creates a folder if it does not exist.
+     *
+     * @param folder the folder
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    private static void createFolder(File folder) throws IOException {
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Impossible to create folder " + folder.getAbsolutePath() + ".");
+        }
+    }
+
+    /**
+     * Returns the location of the DeNovoGUI classes, the jar file or the
+     * classes folder.
+     *
+     * @return the location of the DeNovoGUI classes
+     *
+     * @throws IOException thrown if the location cannot be found
+     */
+    private static String getClassPath() throws IOException {
+        try {
+            return new File(WorkloadGenerator.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+        } catch (Exception e) {
+            throw new IOException("The location of the DeNovoGUI classes could not be found.", e);
+        }
+    }
+
+    /**
+     * Returns the rate of the stub executables, taken from the environment
+     * variable if set, from the system property otherwise.
+     *
+     * @param defaultRate the rate to use if neither is set
+     *
+     * @return the number of spectra processed per second, unlimited if not
+     * positive
+     */
+    public static double getStubRate(double defaultRate) {
+        String rate = System.getenv(STUB_RATE_VARIABLE);
+        if (rate == null) {
+            rate = System.getProperty(STUB_RATE_PROPERTY);
+        }
+        if (rate != null) {
+            try {
+                return Double.parseDouble(rate.trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Stub rate " + rate + " not recognized, using " + defaultRate + ".");
+            }
+        }
+        return defaultRate;
+    }
+}
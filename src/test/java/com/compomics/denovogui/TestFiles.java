@@ -0,0 +1,98 @@
+package com.compomics.denovogui;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+
+/**
+ * Helper methods writing and reading the files of the tests.
+ *
+ * @author Marc Vaudel
+ */
+public class TestFiles {
+
+    /**
+     * Empty default constructor.
+     */
+    private TestFiles() {
+    }
+
+    /**
+     * Creates a temporary folder for a test. The folder is to be deleted by
+     * the test using Util.deleteDir.
+     *
+     * @param prefix the prefix of the name of the folder
+     *
+     * @return the folder created
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    public static File createTempFolder(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    /**
+     * Writes a text to a file.
+     *
+     * @param file the file
+     * @param text the text
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public static void write(File file, String text) throws IOException {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(file));
+        try {
+            bw.write(text);
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Writes lines to a file.
+     *
+     * @param file the file
+     * @param lines the lines
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    public static void writeLines(File file, String... lines) throws IOException {
+        BufferedWriter bw = new BufferedWriter(new FileWriter(file));
+        try {
+            for (String line : lines) {
+                bw.write(line);
+                bw.newLine();
+            }
+        } finally {
+            bw.close();
+        }
+    }
+
+    /**
+     * Reads the lines of a file.
+     *
+     * @param file the file
+     *
+     * @return the lines of the file
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    public static ArrayList<String> readLines(File file) throws IOException {
+        ArrayList<String> lines = new ArrayList<String>();
+        BufferedReader br = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = br.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            br.close();
+        }
+        return lines;
+    }
+}
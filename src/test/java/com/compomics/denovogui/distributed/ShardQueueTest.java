@@ -0,0 +1,180 @@
+package com.compomics.denovogui.distributed;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the claim, complete and release cycle of the shard queue.
+ *
+ * @author Marc Vaudel
+ */
+public class ShardQueueTest {
+
+    /**
+     * The shared folder of the test.
+     */
+    private File sharedFolder;
+    /**
+     * The shard queue tested.
+     */
+    private ShardQueue shardQueue;
+
+    /**
+     * Creates an empty queue in a temporary folder.
+     *
+     * @throws IOException thrown if the folders cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        sharedFolder = TestFiles.createTempFolder("shard_queue");
+        shardQueue = new ShardQueue(sharedFolder);
+        shardQueue.createFolders();
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(sharedFolder);
+    }
+
+    /**
+     * Tests that a shard is claimed once and completed by the first worker
+     * only.
+     *
+     * @throws IOException thrown if the task files cannot be written
+     */
+    @Test
+    public void testClaimAndComplete() throws IOException {
+        shardQueue.submit("0_a_1.mgf", "a.mgf", 0);
+        Assert.assertEquals(1, shardQueue.getQueueSize());
+
+        Assert.assertEquals("0_a_1.mgf", shardQueue.claim("worker1"));
+        Assert.assertNull(shardQueue.claim("worker2"));
+        Assert.assertEquals(0, shardQueue.getQueueSize());
+        Assert.assertEquals(1, shardQueue.getClaimedTasks().size());
+
+        Assert.assertTrue(shardQueue.complete("0_a_1.mgf", "worker1", 100));
+        Assert.assertFalse(shardQueue.complete("0_a_1.mgf", "worker2", 50));
+        Assert.assertTrue(shardQueue.isDone("0_a_1.mgf"));
+        Assert.assertEquals("worker1", shardQueue.getDoneTask("0_a_1.mgf").getProperty(ShardQueue.WORKER));
+        Assert.assertEquals("a.mgf", shardQueue.getDoneTask("0_a_1.mgf").getProperty(ShardQueue.SPECTRUM_FILE));
+        Assert.assertEquals("100", shardQueue.getDoneTask("0_a_1.mgf").getProperty(ShardQueue.DURATION));
+        Assert.assertTrue(shardQueue.getClaimedTasks().isEmpty());
+    }
+
+    /**
+     * Tests that a released shard is queued again and marked as failed after
+     * the maximal number of attempts.
+     *
+     * @throws IOException thrown if the task files cannot be written
+     */
+    @Test
+    public void testReleaseUntilFailed() throws IOException {
+        shardQueue.submit("0_a_1.mgf", "a.mgf", 0);
+        for (int attempt = 1; attempt < ShardQueue.MAX_ATTEMPTS; attempt++) {
+            Assert.assertEquals("0_a_1.mgf", shardQueue.claim("worker"));
+            Assert.assertTrue(shardQueue.release("0_a_1.mgf", "worker"));
+            Assert.assertEquals(1, shardQueue.getQueueSize());
+            Assert.assertFalse(shardQueue.isFailed("0_a_1.mgf"));
+        }
+        Assert.assertEquals("0_a_1.mgf", shardQueue.claim("worker"));
+        Assert.assertTrue(shardQueue.release("0_a_1.mgf", "worker"));
+        Assert.assertTrue(shardQueue.isFailed("0_a_1.mgf"));
+        Assert.assertEquals(0, shardQueue.getQueueSize());
+        Assert.assertNull(shardQueue.claim("worker"));
+        Assert.assertFalse(shardQueue.release("0_a_1.mgf", "worker"));
+    }
+
+    /**
+     * Tests that a shard is not marked as failed while a speculative copy is
+     * processed by another worker, and that the last copy failing marks it as
+     * failed.
+     *
+     * @throws IOException thrown if the task files cannot be written
+     */
+    @Test
+    public void testReleaseWithSpeculativeCopy() throws IOException {
+        shardQueue.submit("0_a_1.mgf", "a.mgf", 0);
+        for (int attempt = 1; attempt < ShardQueue.MAX_ATTEMPTS; attempt++) {
+            Assert.assertEquals("0_a_1.mgf", shardQueue.claim("worker1"));
+            Assert.assertTrue(shardQueue.release("0_a_1.mgf", "worker1"));
+        }
+        Assert.assertEquals("0_a_1.mgf", shardQueue.claim("worker1"));
+        shardQueue.duplicate("0_a_1.mgf", "worker1");
+        Assert.assertEquals("0_a_1.mgf", shardQueue.claim("worker2"));
+
+        Assert.assertTrue(shardQueue.release("0_a_1.mgf", "worker1"));
+        Assert.assertFalse(shardQueue.isFailed("0_a_1.mgf"));
+        Assert.assertTrue(shardQueue.hasCopy("0_a_1.mgf"));
+        Assert.assertEquals(0, shardQueue.getQueueSize());
+
+        Assert.assertTrue(shardQueue.release("0_a_1.mgf", "worker2"));
+        Assert.assertTrue(shardQueue.isFailed("0_a_1.mgf"));
+        Assert.assertFalse(shardQueue.hasCopy("0_a_1.mgf"));
+    }
+
+    /**
+     * Tests that a failed speculative copy leaves the shard to the worker
+     * still processing it.
+     *
+     * @throws IOException thrown if the task files cannot be written
+     */
+    @Test
+    public void testReleaseCopyThenComplete() throws IOException {
+        shardQueue.submit("0_a_1.mgf", "a.mgf", 0);
+        Assert.assertEquals("0_a_1.mgf", shardQueue.claim("worker1"));
+        shardQueue.duplicate("0_a_1.mgf", "worker1");
+        Assert.assertEquals("0_a_1.mgf", shardQueue.claim("worker2"));
+
+        Assert.assertTrue(shardQueue.release("0_a_1.mgf", "worker2"));
+        Assert.assertEquals(0, shardQueue.getQueueSize());
+        Assert.assertTrue(shardQueue.complete("0_a_1.mgf", "worker1", 100));
+        Assert.assertTrue(shardQueue.isDone("0_a_1.mgf"));
+        Assert.assertFalse(shardQueue.isFailed("0_a_1.mgf"));
+    }
+
+    /**
+     * Tests that a duplicated shard is not claimed once completed.
+     *
+     * @throws IOException thrown if the task files cannot be written
+     */
+    @Test
+    public void testDuplicate() throws IOException {
+        shardQueue.submit("0_a_1.mgf", "a.mgf", 10);
+        Assert.assertEquals("0_a_1.mgf", shardQueue.claim("worker1"));
+        shardQueue.duplicate("0_a_1.mgf", "worker1");
+        Assert.assertEquals(1, shardQueue.getQueueSize());
+        Assert.assertTrue(shardQueue.complete("0_a_1.mgf", "worker1", 100));
+        Assert.assertNull(shardQueue.claim("worker2"));
+        Assert.assertEquals("10", shardQueue.getDoneTask("0_a_1.mgf").getProperty(ShardQueue.OFFSET));
+    }
+
+    /**
+     * Tests that clearing the queue removes the tasks and the search
+     * parameters of a previous run.
+     *
+     * @throws IOException thrown if the task files cannot be written
+     */
+    @Test
+    public void testClear() throws IOException {
+        TestFiles.write(shardQueue.getSearchParametersFile(), "parameters");
+        shardQueue.submit("0_a_1.mgf", "a.mgf", 0);
+        shardQueue.submit("0_a_2.mgf", "a.mgf", 5);
+        shardQueue.claim("worker");
+        shardQueue.complete("0_a_1.mgf", "worker", 100);
+        shardQueue.clear();
+        shardQueue.createFolders();
+        Assert.assertFalse(shardQueue.isDone("0_a_1.mgf"));
+        Assert.assertEquals(0, shardQueue.getQueueSize());
+        Assert.assertTrue(shardQueue.getClaimedTasks().isEmpty());
+        Assert.assertFalse(shardQueue.getSearchParametersFile().exists());
+    }
+}
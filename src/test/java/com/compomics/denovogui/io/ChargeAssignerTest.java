@@ -0,0 +1,141 @@
+package com.compomics.denovogui.io;
+
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the assignment of the precursor charge on synthetic spectra made of
+ * the b and y ions of a peptide.
+ *
+ * @author Marc Vaudel
+ */
+public class ChargeAssignerTest {
+
+    /**
+     * The mass of a proton.
+     */
+    private static final double PROTON = 1.0072765;
+    /**
+     * The mass of water.
+     */
+    private static final double WATER = 18.010565;
+    /**
+     * The residue masses of the test peptide SAFPLEVDTK.
+     */
+    private static final double[] RESIDUES = new double[]{87.03203, 71.03711, 147.06841, 97.05276, 113.08406,
+        129.04259, 99.06841, 115.02694, 101.04768, 128.09496};
+    /**
+     * The fragment ion tolerance in Dalton.
+     */
+    private static final double TOLERANCE = 0.02;
+
+    /**
+     * Tests that a doubly charged spectrum with complementary fragments is
+     * assigned charge 2, the fragments above the singly charged precursor m/z
+     * ruling out charge 1.
+     */
+    @Test
+    public void testDoublyCharged() {
+        double[][] peaks = getPeaks(false);
+        double precursorMz = (getPeptideMass() + 2 * PROTON) / 2;
+        ChargeAssigner chargeAssigner = new ChargeAssigner(0.5, 4);
+        Assert.assertArrayEquals(new int[]{2}, chargeAssigner.assign(precursorMz, peaks[0], peaks[1], TOLERANCE, false));
+    }
+
+    /**
+     * Tests that a singly charged spectrum with complementary fragments is
+     * assigned charge 1.
+     */
+    @Test
+    public void testSinglyCharged() {
+        double[][] peaks = getPeaks(false);
+        double precursorMz = getPeptideMass() + PROTON;
+        ChargeAssigner chargeAssigner = new ChargeAssigner(0.5, 4);
+        Assert.assertArrayEquals(new int[]{1}, chargeAssigner.assign(precursorMz, peaks[0], peaks[1], TOLERANCE, false));
+    }
+
+    /**
+     * Tests that the isotope envelopes of doubly charged fragments rule out
+     * the charges 1 and 2.
+     */
+    @Test
+    public void testTriplyCharged() {
+        double[][] peaks = getPeaks(true);
+        double precursorMz = (getPeptideMass() + 3 * PROTON) / 3;
+        ChargeAssigner chargeAssigner = new ChargeAssigner(0.5, 4);
+        Assert.assertArrayEquals(new int[]{3}, chargeAssigner.assign(precursorMz, peaks[0], peaks[1], TOLERANCE, false));
+    }
+
+    /**
+     * Tests that the plausible charges are all returned, the most likely
+     * first, when the confidence is below the threshold.
+     */
+    @Test
+    public void testLowConfidence() {
+        double[][] peaks = getPeaks(false);
+        double precursorMz = (getPeptideMass() + 2 * PROTON) / 2;
+        ChargeAssigner chargeAssigner = new ChargeAssigner(1, 4);
+        int[] charges = chargeAssigner.assign(precursorMz, peaks[0], peaks[1], TOLERANCE, false);
+        Assert.assertEquals(3, charges.length);
+        Assert.assertEquals(2, charges[0]);
+        int[] sorted = Arrays.copyOf(charges, charges.length);
+        Arrays.sort(sorted);
+        Assert.assertArrayEquals(new int[]{2, 3, 4}, sorted);
+    }
+
+    /**
+     * Tests that all charges are returned for spectra without information.
+     */
+    @Test
+    public void testNoPeaks() {
+        ChargeAssigner chargeAssigner = new ChargeAssigner(0.5, 3);
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, chargeAssigner.assign(500, new double[0], new double[0], TOLERANCE, false));
+        Assert.assertArrayEquals(new int[]{1, 2, 3}, chargeAssigner.assign(0, new double[]{100, 200}, new double[]{1, 1}, TOLERANCE, false));
+    }
+
+    /**
+     * Returns the neutral mass of the test peptide.
+     *
+     * @return the neutral mass of the test peptide
+     */
+    private static double getPeptideMass() {
+        double mass = WATER;
+        for (double residue : RESIDUES) {
+            mass += residue;
+        }
+        return mass;
+    }
+
+    /**
+     * Returns the singly charged b and y ions of the test peptide, sorted by
+     * m/z, and optionally the doubly charged y ions with their second
+     * isotope.
+     *
+     * @param doublyChargedEnvelopes add the isotope envelopes of the doubly
+     * charged y ions
+     *
+     * @return the m/z values in the first array and the intensities in the
+     * second
+     */
+    private static double[][] getPeaks(boolean doublyChargedEnvelopes) {
+        int nFragments = RESIDUES.length - 1;
+        double[] mzs = new double[(doublyChargedEnvelopes ? 4 : 2) * nFragments];
+        int nPeaks = 0;
+        double bMass = 0;
+        for (int i = 0; i < nFragments; i++) {
+            bMass += RESIDUES[i];
+            double yMass = getPeptideMass() - bMass;
+            mzs[nPeaks++] = bMass + PROTON;
+            mzs[nPeaks++] = yMass + PROTON;
+            if (doublyChargedEnvelopes) {
+                mzs[nPeaks++] = (yMass + 2 * PROTON) / 2;
+                mzs[nPeaks++] = (yMass + 2 * PROTON + 1.0033548) / 2;
+            }
+        }
+        Arrays.sort(mzs);
+        double[] intensities = new double[mzs.length];
+        Arrays.fill(intensities, 100);
+        return new double[][]{mzs, intensities};
+    }
+}
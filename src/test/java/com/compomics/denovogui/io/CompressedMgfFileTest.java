@@ -0,0 +1,221 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the decompression of compressed mgf files into chunks.
+ *
+ * @author Harald Barsnes
+ */
+public class CompressedMgfFileTest {
+
+    /**
+     * The global parameters written before the first spectrum.
+     */
+    private static final String[] HEADER = new String[]{"CHARGE=2+", "MASS=Monoisotopic"};
+    /**
+     * The number of spectra in the test file.
+     */
+    private static final int N_SPECTRA = 200;
+    /**
+     * The uncompressed size of the BGZF blocks, small so that the spectra
+     * span several blocks.
+     */
+    private static final int BLOCK_SIZE = 100;
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+
+    /**
+     * Creates a temporary folder.
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("compressed_mgf");
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests that the chunks of a BGZF file contain every spectrum once,
+     * complete and in order, and start with the global parameters.
+     *
+     * @throws IOException thrown if the files cannot be written or read
+     */
+    @Test
+    public void testBgzfChunks() throws IOException {
+        File bgzfFile = new File(folder, "test" + CompressedMgfFile.BGZF_EXTENSION);
+        writeBgzf(bgzfFile, getMgf().getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(CompressedMgfFile.isBlockCompressed(bgzfFile));
+
+        File chunkFolder = new File(folder, "chunks");
+        chunkFolder.mkdirs();
+        ArrayList<File> chunks = new CompressedMgfFile(bgzfFile, 4).writeMgfChunks(4, chunkFolder, null);
+        Assert.assertEquals(4, chunks.size());
+        Assert.assertEquals("test_1.mgf", chunks.get(0).getName());
+
+        checkChunks(chunks);
+    }
+
+    /**
+     * Tests that a plain gzip file is decompressed with its global
+     * parameters.
+     *
+     * @throws IOException thrown if the files cannot be written or read
+     */
+    @Test
+    public void testGzip() throws IOException {
+        File gzipFile = new File(folder, "test" + CompressedMgfFile.GZIP_EXTENSION);
+        GZIPOutputStream gos = new GZIPOutputStream(new FileOutputStream(gzipFile));
+        try {
+            gos.write(getMgf().getBytes(StandardCharsets.UTF_8));
+        } finally {
+            gos.close();
+        }
+        Assert.assertFalse(CompressedMgfFile.isBlockCompressed(gzipFile));
+
+        File mgfFile = CompressedMgfFile.getMgfFile(gzipFile, folder);
+        Assert.assertEquals("test.mgf", mgfFile.getName());
+        new CompressedMgfFile(gzipFile, 1).writeMgf(mgfFile, null);
+
+        ArrayList<File> chunks = new ArrayList<File>();
+        chunks.add(mgfFile);
+        checkChunks(chunks);
+    }
+
+    /**
+     * Checks that the given chunks start with the global parameters and
+     * contain every spectrum once, complete and in order.
+     *
+     * @param chunks the chunks
+     *
+     * @throws IOException thrown if a chunk cannot be read
+     */
+    private static void checkChunks(ArrayList<File> chunks) throws IOException {
+        int spectrumIndex = 0;
+        for (File chunk : chunks) {
+            ArrayList<String> lines = TestFiles.readLines(chunk);
+            for (int i = 0; i < HEADER.length; i++) {
+                Assert.assertEquals(HEADER[i], lines.get(i));
+            }
+            Assert.assertEquals("BEGIN IONS", lines.get(HEADER.length));
+            Assert.assertEquals("END IONS", lines.get(lines.size() - 1));
+            boolean inSpectrum = false;
+            for (int i = HEADER.length; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.equals("BEGIN IONS")) {
+                    Assert.assertFalse(inSpectrum);
+                    inSpectrum = true;
+                    Assert.assertEquals("TITLE=spectrum " + spectrumIndex, lines.get(i + 1));
+                    spectrumIndex++;
+                } else if (line.equals("END IONS")) {
+                    Assert.assertTrue(inSpectrum);
+                    inSpectrum = false;
+                }
+            }
+        }
+        Assert.assertEquals(N_SPECTRA, spectrumIndex);
+    }
+
+    /**
+     * Returns the content of the test mgf file.
+     *
+     * @return the content of the test mgf file
+     */
+    private static String getMgf() {
+        StringBuilder mgf = new StringBuilder();
+        for (String headerLine : HEADER) {
+            mgf.append(headerLine).append("\n");
+        }
+        for (int i = 0; i < N_SPECTRA; i++) {
+            mgf.append("BEGIN IONS\n");
+            mgf.append("TITLE=spectrum ").append(i).append("\n");
+            mgf.append("PEPMASS=").append(400 + i).append(".25\n");
+            for (int j = 0; j < 5; j++) {
+                mgf.append(100 + 50 * j).append(".1 ").append(1000 + i + j).append("\n");
+            }
+            mgf.append("END IONS\n");
+        }
+        return mgf.toString();
+    }
+
+    /**
+     * Writes the given data to a BGZF file in blocks of BLOCK_SIZE
+     * uncompressed bytes.
+     *
+     * @param file the file to write
+     * @param data the data to compress
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    private static void writeBgzf(File file, byte[] data) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            for (int offset = 0; offset < data.length; offset += BLOCK_SIZE) {
+                int length = Math.min(BLOCK_SIZE, data.length - offset);
+
+                Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                deflater.setInput(data, offset, length);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                byte[] buffer = new byte[1024];
+                while (!deflater.finished()) {
+                    int deflated = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, deflated);
+                }
+                deflater.end();
+
+                CRC32 crc = new CRC32();
+                crc.update(data, offset, length);
+
+                int blockSize = 18 + compressed.size() + 8;
+                byte[] header = new byte[]{31, (byte) 139, 8, 4, 0, 0, 0, 0, 0, (byte) 255, 6, 0, 'B', 'C', 2, 0,
+                    (byte) ((blockSize - 1) & 0xff), (byte) ((blockSize - 1) >> 8)};
+                fos.write(header);
+                compressed.writeTo(fos);
+                writeInt(fos, (int) crc.getValue());
+                writeInt(fos, length);
+            }
+        } finally {
+            fos.close();
+        }
+    }
+
+    /**
+     * Writes an integer in little endian order.
+     *
+     * @param fos the output stream
+     * @param value the value to write
+     *
+     * @throws IOException thrown if the value cannot be written
+     */
+    private static void writeInt(FileOutputStream fos, int value) throws IOException {
+        fos.write(value & 0xff);
+        fos.write((value >> 8) & 0xff);
+        fos.write((value >> 16) & 0xff);
+        fos.write((value >> 24) & 0xff);
+    }
+}
@@ -0,0 +1,100 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the chunking of mgf files.
+ *
+ * @author Thilo Muth
+ */
+public class FileProcessorTest {
+
+    /**
+     * The global parameters written before the first spectrum.
+     */
+    private static final String[] HEADER = new String[]{"COM=test file", "CHARGE=2+", "MASS=Monoisotopic"};
+    /**
+     * The number of spectra in the test file.
+     */
+    private static final int N_SPECTRA = 12;
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+
+    /**
+     * Creates a temporary folder.
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("file_processor");
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests that the chunks of similar cost contain every spectrum once,
+     * complete and in order, and start with the global parameters of the
+     * file.
+     *
+     * @throws IOException thrown if the files cannot be written or read
+     */
+    @Test
+    public void testChunkFileByCost() throws IOException {
+        ArrayList<String> lines = new ArrayList<String>();
+        for (String headerLine : HEADER) {
+            lines.add(headerLine);
+        }
+        lines.add("");
+        for (int i = 0; i < N_SPECTRA; i++) {
+            lines.add("BEGIN IONS");
+            lines.add("TITLE=spectrum " + i);
+            lines.add("PEPMASS=" + (400 + i) + ".25");
+            for (int j = 0; j < 1 + i % 4; j++) {
+                lines.add((100 + 50 * j) + ".1 " + (1000 + i + j));
+            }
+            lines.add("END IONS");
+            lines.add("");
+        }
+        File mgfFile = new File(folder, "test.mgf");
+        TestFiles.writeLines(mgfFile, lines.toArray(new String[lines.size()]));
+
+        File chunkFolder = new File(folder, "chunks");
+        chunkFolder.mkdirs();
+        ArrayList<File> chunks = FileProcessor.chunkFileByCost(mgfFile, 3, chunkFolder, null);
+        Assert.assertEquals(3, chunks.size());
+        Assert.assertEquals("test_1.mgf", chunks.get(0).getName());
+
+        int spectrumIndex = 0;
+        for (File chunk : chunks) {
+            ArrayList<String> chunkLines = TestFiles.readLines(chunk);
+            for (int i = 0; i < HEADER.length; i++) {
+                Assert.assertEquals(HEADER[i], chunkLines.get(i));
+            }
+            Assert.assertEquals("BEGIN IONS", chunkLines.get(HEADER.length));
+            for (int i = HEADER.length; i < chunkLines.size(); i++) {
+                if (chunkLines.get(i).equals("BEGIN IONS")) {
+                    Assert.assertEquals("TITLE=spectrum " + spectrumIndex, chunkLines.get(i + 1));
+                    spectrumIndex++;
+                }
+            }
+        }
+        Assert.assertEquals(N_SPECTRA, spectrumIndex);
+    }
+}
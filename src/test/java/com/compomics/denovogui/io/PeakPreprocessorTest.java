@@ -0,0 +1,200 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the parsing of the preprocessing steps and the reduction of the peak
+ * lists.
+ *
+ * @author Marc Vaudel
+ */
+public class PeakPreprocessorTest {
+
+    /**
+     * The mass difference between two isotopic peaks of charge 1.
+     */
+    private static final double ISOTOPE_SPACING = 1.0033548;
+    /**
+     * The mass of a proton.
+     */
+    private static final double PROTON = 1.0072765;
+    /**
+     * The fragment ion tolerance in Dalton.
+     */
+    private static final double TOLERANCE = 0.02;
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+
+    /**
+     * Creates a temporary folder.
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("peak_preprocessor");
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests the parsing of the steps of several algorithms.
+     */
+    @Test
+    public void testParse() {
+        HashMap<String, PeakPreprocessor> preprocessors = PeakPreprocessor.parseAlgorithms("DirecTag=deisotope, charge_reduction,top_n:10:50;pepnovo=noise:2");
+        Assert.assertEquals(2, preprocessors.size());
+        Assert.assertEquals("deisotope,charge_reduction,top_n:10:50.0", preprocessors.get("directag").toString());
+        Assert.assertEquals("noise:2.0", preprocessors.get("pepnovo").toString());
+        Assert.assertTrue(preprocessors.get("pepnovo").isEnabled());
+        Assert.assertFalse(preprocessors.get("pepnovo").isAssigningCharges());
+        Assert.assertTrue(PeakPreprocessor.parse("charge:0.8").isAssigningCharges());
+        Assert.assertFalse(new PeakPreprocessor(false, false, 0, 0, 100).isEnabled());
+    }
+
+    /**
+     * Tests that the charge reduction without deisotoping is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseChargeReductionOnly() {
+        PeakPreprocessor.parse("charge_reduction");
+    }
+
+    /**
+     * Tests that an unknown step is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseUnknownStep() {
+        PeakPreprocessor.parse("deisotope,smooth");
+    }
+
+    /**
+     * Tests that a step with an invalid value is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidValue() {
+        PeakPreprocessor.parse("top_n:ten");
+    }
+
+    /**
+     * Tests that the isotopic peaks are summed into their monoisotopic peak,
+     * and that the doubly charged fragments are moved to their singly
+     * charged m/z with the charge reduction.
+     */
+    @Test
+    public void testDeisotope() {
+        ArrayList<double[]> peaks = new ArrayList<double[]>();
+        peaks.add(new double[]{500, 100});
+        peaks.add(new double[]{500 + ISOTOPE_SPACING, 50});
+        peaks.add(new double[]{500 + 2 * ISOTOPE_SPACING, 20});
+        peaks.add(new double[]{700, 80});
+        peaks.add(new double[]{700 + ISOTOPE_SPACING / 2, 40});
+
+        ArrayList<double[]> result = new PeakPreprocessor(true, false, 0, 0, 100).reduce(peaks, 3, TOLERANCE, false);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(500, result.get(0)[0], 1e-6);
+        Assert.assertEquals(170, result.get(0)[1], 1e-6);
+        Assert.assertEquals(700, result.get(1)[0], 1e-6);
+        Assert.assertEquals(120, result.get(1)[1], 1e-6);
+
+        result = new PeakPreprocessor(true, true, 0, 0, 100).reduce(peaks, 3, TOLERANCE, false);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(500, result.get(0)[0], 1e-6);
+        Assert.assertEquals(2 * (700 - PROTON) + PROTON, result.get(1)[0], 1e-6);
+        Assert.assertEquals(120, result.get(1)[1], 1e-6);
+    }
+
+    /**
+     * Tests that the peaks below the noise factor times the median intensity
+     * and the peaks without intensity are removed.
+     */
+    @Test
+    public void testRemoveNoise() {
+        ArrayList<double[]> peaks = new ArrayList<double[]>();
+        peaks.add(new double[]{300, 10});
+        peaks.add(new double[]{200, 1});
+        peaks.add(new double[]{400, 100});
+        peaks.add(new double[]{250, 0});
+        peaks.add(new double[]{100, 2});
+        peaks.add(new double[]{150, 3});
+
+        ArrayList<double[]> result = PeakPreprocessor.parse("noise:2").reduce(peaks, 2, TOLERANCE, false);
+        Assert.assertEquals(2, result.size());
+        Assert.assertEquals(300, result.get(0)[0], 1e-6);
+        Assert.assertEquals(400, result.get(1)[0], 1e-6);
+    }
+
+    /**
+     * Tests that the most intense peaks of every window are kept in m/z
+     * order.
+     */
+    @Test
+    public void testTopN() {
+        ArrayList<double[]> peaks = new ArrayList<double[]>();
+        peaks.add(new double[]{110, 5});
+        peaks.add(new double[]{150, 10});
+        peaks.add(new double[]{180, 7});
+        peaks.add(new double[]{210, 3});
+        peaks.add(new double[]{250, 1});
+
+        ArrayList<double[]> result = PeakPreprocessor.parse("top_n:2:100").reduce(peaks, 2, TOLERANCE, false);
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals(150, result.get(0)[0], 1e-6);
+        Assert.assertEquals(180, result.get(1)[0], 1e-6);
+        Assert.assertEquals(210, result.get(2)[0], 1e-6);
+        Assert.assertEquals(250, result.get(3)[0], 1e-6);
+    }
+
+    /**
+     * Tests that the reduced file keeps the global parameters, the order and
+     * the header lines of the spectra, the peaks without intensity being
+     * removed.
+     *
+     * @throws IOException thrown if the files cannot be written or read
+     */
+    @Test
+    public void testProcessFile() throws IOException {
+        File mgfFile = new File(folder, "test.mgf");
+        TestFiles.writeLines(mgfFile, "CHARGE=2+",
+                "BEGIN IONS", "TITLE=spectrum 1", "PEPMASS=450.5", "100.1 10", "200.2 0", "300.3 30", "END IONS",
+                "BEGIN IONS", "TITLE=spectrum 2", "PEPMASS=550.5", "CHARGE=3+", "150.1 5", "END IONS");
+        File reducedFolder = new File(folder, "reduced");
+        reducedFolder.mkdirs();
+        ArrayList<File> mgfFiles = new ArrayList<File>();
+        mgfFiles.add(mgfFile);
+
+        ArrayList<File> reducedFiles = PeakPreprocessor.parse("top_n:5").process(mgfFiles, reducedFolder, TOLERANCE, false, 1, null);
+        Assert.assertEquals(1, reducedFiles.size());
+        Assert.assertEquals(new File(reducedFolder, "test.mgf"), reducedFiles.get(0));
+
+        ArrayList<String> lines = TestFiles.readLines(reducedFiles.get(0));
+        Assert.assertEquals(13, lines.size());
+        Assert.assertEquals("CHARGE=2+", lines.get(0));
+        Assert.assertEquals("TITLE=spectrum 1", lines.get(2));
+        Assert.assertEquals("PEPMASS=450.5", lines.get(3));
+        Assert.assertEquals("100.1 10.0", lines.get(4));
+        Assert.assertEquals("300.3 30.0", lines.get(5));
+        Assert.assertEquals("END IONS", lines.get(6));
+        Assert.assertEquals("TITLE=spectrum 2", lines.get(8));
+        Assert.assertEquals("CHARGE=3+", lines.get(10));
+        Assert.assertEquals("150.1 5.0", lines.get(11));
+        Assert.assertEquals("END IONS", lines.get(12));
+    }
+}
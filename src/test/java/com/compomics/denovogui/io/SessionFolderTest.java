@@ -0,0 +1,87 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the creation, the take over and the deletion of the session folders.
+ *
+ * @author Marc Vaudel
+ */
+public class SessionFolderTest {
+
+    /**
+     * The temporary output folder of the test.
+     */
+    private File folder;
+
+    /**
+     * Creates a temporary folder.
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("session_folder");
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests that the deletion of a session folder leaves the other files of
+     * the output folder.
+     *
+     * @throws IOException thrown if the files cannot be written
+     */
+    @Test
+    public void testDelete() throws IOException {
+        File resultFile = new File(folder, "results.csv");
+        TestFiles.write(resultFile, "result");
+        SessionFolder sessionFolder = SessionFolder.create(folder);
+        Assert.assertTrue(sessionFolder.getFolder().getName().startsWith(SessionFolder.PREFIX));
+        TestFiles.write(new File(sessionFolder.getFolder(), "temp.mgf"), "BEGIN IONS");
+
+        sessionFolder.delete();
+        sessionFolder.delete();
+        Assert.assertFalse(sessionFolder.getFolder().exists());
+        Assert.assertTrue(resultFile.exists());
+    }
+
+    /**
+     * Tests that the sub-folder of a session which did not end is taken over
+     * while the folder of a session in progress is left.
+     *
+     * @throws IOException thrown if the files cannot be written
+     */
+    @Test
+    public void testAdopt() throws IOException {
+        File leftFolder = new File(folder, SessionFolder.PREFIX + "1");
+        File leftShard = new File(new File(leftFolder, "shards"), "test_1.mgf");
+        leftShard.getParentFile().mkdirs();
+        TestFiles.write(leftShard, "BEGIN IONS");
+        TestFiles.write(new File(leftFolder, "session.lock"), "");
+        SessionFolder runningFolder = SessionFolder.create(folder);
+        TestFiles.write(new File(runningFolder.getFolder(), "running.mgf"), "BEGIN IONS");
+
+        SessionFolder sessionFolder = SessionFolder.create(folder);
+        sessionFolder.adopt("shards");
+        Assert.assertTrue(new File(new File(sessionFolder.getFolder(), "shards"), "test_1.mgf").exists());
+        Assert.assertFalse(leftFolder.exists());
+        Assert.assertTrue(new File(runningFolder.getFolder(), "running.mgf").exists());
+
+        sessionFolder.delete();
+        runningFolder.delete();
+    }
+}
@@ -0,0 +1,186 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the writing of a batch mgf file and the splitting of its results back
+ * into the result files of the mgf files.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumBatchTest {
+
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+    /**
+     * The batch tested: a.mgf with two spectra, b.mgf without spectra and
+     * c.mgf with three spectra.
+     */
+    private SpectrumBatch spectrumBatch;
+    /**
+     * The mgf files of the batch.
+     */
+    private File aFile, bFile, cFile;
+
+    /**
+     * Writes the mgf files and creates the batch.
+     *
+     * @throws IOException thrown if the files cannot be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("spectrum_batch");
+        aFile = new File(folder, "a.mgf");
+        TestFiles.writeLines(aFile, "CHARGE=2+",
+                "BEGIN IONS", "TITLE=a1", "PEPMASS=401.1", "100.1 10", "END IONS",
+                "BEGIN IONS", "TITLE=a2", "PEPMASS=402.1", "100.1 10", "END IONS");
+        bFile = new File(folder, "b.mgf");
+        TestFiles.writeLines(bFile, "CHARGE=3+");
+        cFile = new File(folder, "c.mgf");
+        TestFiles.writeLines(cFile,
+                "BEGIN IONS", "TITLE=c1", "PEPMASS=501.1", "100.1 10", "END IONS",
+                "BEGIN IONS", "PEPMASS=502.1", "100.1 10", "END IONS",
+                "BEGIN IONS", "TITLE=c3", "PEPMASS=503.1", "100.1 10", "END IONS");
+        spectrumBatch = new SpectrumBatch(new File(folder, SpectrumBatch.BATCHES_FOLDER), 1);
+        spectrumBatch.add(aFile, 2);
+        spectrumBatch.add(bFile, 0);
+        spectrumBatch.add(cFile, 3);
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests that the titles are prefixed with the index of their file and
+     * that the global parameters are repeated in the spectra of their file.
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    @Test
+    public void testWriteBatchFile() throws IOException {
+        Assert.assertEquals(5, spectrumBatch.getNSpectra());
+        spectrumBatch.writeBatchFile();
+
+        ArrayList<String> lines = TestFiles.readLines(spectrumBatch.getBatchFile());
+        ArrayList<String> titles = new ArrayList<String>();
+        int nCharges = 0;
+        for (String line : lines) {
+            if (line.startsWith("TITLE=")) {
+                titles.add(line.substring(6));
+            } else if (line.equals("CHARGE=2+")) {
+                nCharges++;
+            }
+            Assert.assertFalse(line.equals("CHARGE=3+"));
+        }
+        Assert.assertEquals(5, titles.size());
+        Assert.assertEquals("DNGB0_a1", titles.get(0));
+        Assert.assertEquals("DNGB0_a2", titles.get(1));
+        Assert.assertEquals("DNGB2_c1", titles.get(2));
+        Assert.assertEquals("DNGB2_", titles.get(3));
+        Assert.assertEquals("DNGB2_c3", titles.get(4));
+        Assert.assertEquals(2, nCharges);
+    }
+
+    /**
+     * Tests the splitting of the results of every algorithm, in particular
+     * the spectra at the boundaries of the files. The DirecTag native ids
+     * count the spectra from 0 and the Novor ids from 1.
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    @Test
+    public void testSplitResults() throws IOException {
+        File batchFile = spectrumBatch.getBatchFile();
+        String[] titles = new String[]{"DNGB0_a1", "DNGB0_a2", "DNGB2_c1", "DNGB2_", "DNGB2_c3"};
+
+        File pepNovoFile = FileProcessor.getOutFile(folder, batchFile);
+        File tagsFile = FileProcessor.getTagsFile(folder, batchFile);
+        File pNovoFile = FileProcessor.getPNovoResultFile(folder, batchFile);
+        File novorFile = FileProcessor.getNovorResultFile(folder, batchFile);
+
+        ArrayList<String> pepNovoLines = new ArrayList<String>();
+        ArrayList<String> tagsLines = new ArrayList<String>();
+        ArrayList<String> pNovoLines = new ArrayList<String>();
+        ArrayList<String> novorLines = new ArrayList<String>();
+        tagsLines.add("H\tSpectrumInfoFormat\tS\tID\tNativeID");
+        novorLines.add("# id, scanNum, RT, mz(data), z, pepMass(denovo), err(data-denovo), ppm(1e6*err/(mz*z)), score, peptide, aaScore, ");
+        for (int i = 0; i < titles.length; i++) {
+            pepNovoLines.add(">> 0 " + i + " " + titles[i]);
+            pepNovoLines.add("#Index\tProb\tScore");
+            tagsLines.add("S\t" + i + "\tindex=" + i);
+            tagsLines.add("T\tTAG" + i);
+            pNovoLines.add("S" + (i + 1) + "\t" + titles[i]);
+            pNovoLines.add("P1\tPEPTIDE" + i + "\t10.0");
+            novorLines.add((i + FileProcessor.NOVOR_FIRST_ID) + ", 0, 0.0, " + i + ".5, 2, 0, 0, 0, 50.0, PEPTIDE" + i + ", 1, ");
+        }
+        TestFiles.writeLines(pepNovoFile, pepNovoLines.toArray(new String[0]));
+        TestFiles.writeLines(tagsFile, tagsLines.toArray(new String[0]));
+        TestFiles.writeLines(pNovoFile, pNovoLines.toArray(new String[0]));
+        TestFiles.writeLines(novorFile, novorLines.toArray(new String[0]));
+
+        spectrumBatch.splitResults(folder, true, true, true, true);
+
+        Assert.assertFalse(pepNovoFile.exists());
+        Assert.assertFalse(tagsFile.exists());
+        Assert.assertFalse(pNovoFile.exists());
+        Assert.assertFalse(novorFile.exists());
+
+        ArrayList<String> aLines = TestFiles.readLines(FileProcessor.getOutFile(folder, aFile));
+        Assert.assertEquals(4, aLines.size());
+        Assert.assertEquals(">> 0 0 a1", aLines.get(0));
+        Assert.assertEquals(">> 0 1 a2", aLines.get(2));
+        ArrayList<String> cLines = TestFiles.readLines(FileProcessor.getOutFile(folder, cFile));
+        Assert.assertEquals(6, cLines.size());
+        Assert.assertEquals(">> 0 2 c1", cLines.get(0));
+        Assert.assertEquals(">> 0 3 ", cLines.get(2));
+        Assert.assertTrue(TestFiles.readLines(FileProcessor.getOutFile(folder, bFile)).isEmpty());
+
+        aLines = TestFiles.readLines(FileProcessor.getTagsFile(folder, aFile));
+        Assert.assertEquals(5, aLines.size());
+        Assert.assertEquals(tagsLines.get(0), aLines.get(0));
+        Assert.assertEquals("S\t0\tindex=0", aLines.get(1));
+        Assert.assertEquals("T\tTAG0", aLines.get(2));
+        Assert.assertEquals("S\t1\tindex=1", aLines.get(3));
+        cLines = TestFiles.readLines(FileProcessor.getTagsFile(folder, cFile));
+        Assert.assertEquals(7, cLines.size());
+        Assert.assertEquals("S\t0\tindex=0", cLines.get(1));
+        Assert.assertEquals("T\tTAG2", cLines.get(2));
+        Assert.assertEquals("S\t2\tindex=2", cLines.get(5));
+        Assert.assertEquals("T\tTAG4", cLines.get(6));
+        Assert.assertEquals(1, TestFiles.readLines(FileProcessor.getTagsFile(folder, bFile)).size());
+
+        aLines = TestFiles.readLines(FileProcessor.getPNovoResultFile(folder, aFile));
+        Assert.assertEquals(4, aLines.size());
+        Assert.assertEquals("S2\ta2", aLines.get(2));
+        cLines = TestFiles.readLines(FileProcessor.getPNovoResultFile(folder, cFile));
+        Assert.assertEquals(6, cLines.size());
+        Assert.assertEquals("S3\tc1", cLines.get(0));
+        Assert.assertEquals("P1\tPEPTIDE4\t10.0", cLines.get(5));
+
+        aLines = TestFiles.readLines(FileProcessor.getNovorResultFile(folder, aFile));
+        Assert.assertEquals(3, aLines.size());
+        Assert.assertEquals(novorLines.get(0), aLines.get(0));
+        Assert.assertTrue(aLines.get(1).startsWith("1, 0, 0.0, 0.5, 2"));
+        Assert.assertTrue(aLines.get(2).startsWith("2, 0, 0.0, 1.5, 2"));
+        cLines = TestFiles.readLines(FileProcessor.getNovorResultFile(folder, cFile));
+        Assert.assertEquals(4, cLines.size());
+        Assert.assertTrue(cLines.get(1).startsWith("1, 0, 0.0, 2.5, 2"));
+        Assert.assertTrue(cLines.get(3).startsWith("3, 0, 0.0, 4.5, 2"));
+        Assert.assertEquals(1, TestFiles.readLines(FileProcessor.getNovorResultFile(folder, bFile)).size());
+    }
+}
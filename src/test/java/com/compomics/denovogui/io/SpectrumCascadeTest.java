@@ -0,0 +1,176 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the selection of the confident spectra and the mapping of the results
+ * obtained on the filtered mgf files back to the original spectra.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumCascadeTest {
+
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+    /**
+     * The test mgf file.
+     */
+    private File mgfFile;
+
+    /**
+     * Writes the test mgf file with four spectra.
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("spectrum_cascade");
+        mgfFile = new File(folder, "test.mgf");
+        ArrayList<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 4; i++) {
+            lines.add("BEGIN IONS");
+            lines.add("TITLE=spectrum " + i);
+            lines.add("PEPMASS=" + (400 + i) + ".25");
+            lines.add("100.1 10");
+            lines.add("END IONS");
+        }
+        TestFiles.writeLines(mgfFile, lines.toArray(new String[lines.size()]));
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests the parsing of the thresholds.
+     */
+    @Test
+    public void testParseThresholds() {
+        HashMap<String, Double> thresholds = SpectrumCascade.parseThresholds("Novor = 80;pepnovo=50.5");
+        Assert.assertEquals(2, thresholds.size());
+        Assert.assertEquals(80, thresholds.get("novor"), 1e-6);
+        Assert.assertEquals(50.5, thresholds.get("pepnovo"), 1e-6);
+    }
+
+    /**
+     * Tests that an algorithm without score is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseThresholdsUnsupportedAlgorithm() {
+        SpectrumCascade.parseThresholds("direcTag=10");
+    }
+
+    /**
+     * Tests that the Novor result with id 1 marks the first spectrum as
+     * confident.
+     *
+     * @throws IOException thrown if the files cannot be written or read
+     */
+    @Test
+    public void testAddNovorResults() throws IOException {
+        File novorFile = new File(folder, "test.novor.csv");
+        TestFiles.writeLines(novorFile, "# comment", "# id, scanNum, RT, mz(data), z, pepMass(denovo), err(data-denovo), ppm(1e6*err/(mz*z)), score, peptide, aaScore,",
+                "1, 0, 0.0, 401.25, 2, 800.5, 0.0, 0.0, 90.0, PEPTIDE, 90",
+                "3, 0, 0.0, 403.25, 2, 804.5, 0.0, 0.0, 20.0, PEPTIDE, 20");
+
+        HashMap<String, Double> thresholds = new HashMap<String, Double>();
+        thresholds.put("novor", 80.0);
+        SpectrumCascade spectrumCascade = new SpectrumCascade(thresholds);
+        Assert.assertTrue(spectrumCascade.isGate("novor"));
+        Assert.assertFalse(spectrumCascade.isGate("pepnovo"));
+        spectrumCascade.addNovorResults(mgfFile, novorFile);
+
+        BitSet expected = new BitSet();
+        expected.set(0);
+        Assert.assertEquals(expected, spectrumCascade.getConfidentSpectra(mgfFile));
+        Assert.assertEquals(1, spectrumCascade.getNConfident(mgfFile));
+
+        ArrayList<File> mgfFiles = new ArrayList<File>();
+        mgfFiles.add(mgfFile);
+        spectrumCascade.clear(mgfFiles);
+        Assert.assertEquals(0, spectrumCascade.getNConfident(mgfFile));
+    }
+
+    /**
+     * Tests that the filtered copy keeps the spectra which are not excluded
+     * and returns their index in the original file.
+     *
+     * @throws IOException thrown if the files cannot be written or read
+     */
+    @Test
+    public void testFilter() throws IOException {
+        File filteredFile = new File(new File(folder, "filtered"), "test.mgf");
+        Assert.assertNull(SpectrumCascade.filter(mgfFile, new BitSet(), filteredFile));
+
+        BitSet excluded = new BitSet();
+        excluded.set(0);
+        excluded.set(2);
+        int[] spectrumIndexes = SpectrumCascade.filter(mgfFile, excluded, filteredFile);
+        Assert.assertArrayEquals(new int[]{1, 3}, spectrumIndexes);
+
+        ArrayList<String> lines = TestFiles.readLines(filteredFile);
+        Assert.assertEquals(10, lines.size());
+        Assert.assertEquals("TITLE=spectrum 1", lines.get(1));
+        Assert.assertEquals("TITLE=spectrum 3", lines.get(6));
+    }
+
+    /**
+     * Tests that the 1-based ids of the Novor results obtained on a filtered
+     * copy are mapped to the 1-based ids of the original spectra.
+     *
+     * @throws IOException thrown if the files cannot be written or read
+     */
+    @Test
+    public void testMapNovorFile() throws IOException {
+        File novorFile = new File(folder, "test.novor.csv");
+        TestFiles.writeLines(novorFile, "# id, score, peptide", "1, 90.0, PEPTIDE", "2, 20.0, PEPTIDE");
+
+        SpectrumCascade.mapNovorFile(novorFile, new int[]{1, 3});
+
+        ArrayList<String> lines = TestFiles.readLines(novorFile);
+        Assert.assertEquals(3, lines.size());
+        Assert.assertEquals("# id, score, peptide", lines.get(0));
+        Assert.assertEquals("2, 90.0, PEPTIDE", lines.get(1));
+        Assert.assertEquals("4, 20.0, PEPTIDE", lines.get(2));
+    }
+
+    /**
+     * Tests that the 0-based native indexes of the DirecTag results obtained
+     * on a filtered copy are mapped to the indexes of the original spectra.
+     *
+     * @throws IOException thrown if the files cannot be written or read
+     */
+    @Test
+    public void testMapTagsFile() throws IOException {
+        File tagsFile = new File(folder, "test.tags");
+        TestFiles.writeLines(tagsFile, "H\tTagsGenerator\tDirecTag",
+                "S\t0\tindex=0\t2\t401.25",
+                "T\tPEP\t1",
+                "S\t1\tindex=1\t2\t403.25");
+
+        SpectrumCascade.mapTagsFile(tagsFile, new int[]{1, 3});
+
+        ArrayList<String> lines = TestFiles.readLines(tagsFile);
+        Assert.assertEquals(4, lines.size());
+        Assert.assertEquals("H\tTagsGenerator\tDirecTag", lines.get(0));
+        Assert.assertEquals("S\t1\tindex=1\t2\t401.25", lines.get(1));
+        Assert.assertEquals("T\tPEP\t1", lines.get(2));
+        Assert.assertEquals("S\t3\tindex=3\t2\t403.25", lines.get(3));
+    }
+}
@@ -0,0 +1,113 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import com.compomics.util.experiment.identification.matches.SpectrumMatch;
+import com.compomics.util.experiment.massspectrometry.Spectrum;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the clustering of the spectra and the fan-out of the results of the
+ * representatives to the cluster members.
+ *
+ * @author Thilo Muth
+ */
+public class SpectrumClustererTest {
+
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+    /**
+     * The test mgf file.
+     */
+    private File mgfFile;
+
+    /**
+     * Writes the test mgf file: spectrum 2 is spectrum 1 with its peaks in
+     * reverse order, spectrum 3 has the same precursor but other peaks,
+     * spectrum 4 is spectrum 1 with another charge.
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("spectrum_clusterer");
+        mgfFile = new File(folder, "test.mgf");
+        TestFiles.writeLines(mgfFile,
+                "BEGIN IONS", "TITLE=spectrum 1", "PEPMASS=500.25", "CHARGE=2+",
+                "150.1 100", "250.2 400", "350.3 900", "450.4 1600", "END IONS",
+                "BEGIN IONS", "TITLE=spectrum 2", "PEPMASS=500.252", "CHARGE=2+",
+                "450.4 1600", "350.3 900", "250.2 400", "150.1 100", "END IONS",
+                "BEGIN IONS", "TITLE=spectrum 3", "PEPMASS=500.251", "CHARGE=2+",
+                "175.1 100", "275.2 400", "375.3 900", "475.4 1600", "END IONS",
+                "BEGIN IONS", "TITLE=spectrum 4", "PEPMASS=500.25", "CHARGE=3+",
+                "150.1 100", "250.2 400", "350.3 900", "450.4 1600", "END IONS");
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests that only the spectra of same charge and similar peaks are
+     * clustered, whatever the order of the peaks, and that the
+     * representatives are written in their original order.
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    @Test
+    public void testClusterFile() throws IOException {
+        SpectrumClusterer spectrumClusterer = new SpectrumClusterer(0.01, 1.0005, 0.9);
+        File representativesFile = spectrumClusterer.clusterFile(mgfFile, folder, null);
+        Assert.assertEquals(new File(new File(folder, SpectrumClusterer.CLUSTERED_SPECTRA_FOLDER), mgfFile.getName()), representativesFile);
+
+        ArrayList<String> titles = new ArrayList<String>();
+        for (String line : TestFiles.readLines(representativesFile)) {
+            if (line.startsWith("TITLE=")) {
+                titles.add(line.substring(6));
+            }
+        }
+        Assert.assertEquals(3, titles.size());
+        Assert.assertEquals("spectrum 1", titles.get(0));
+        Assert.assertEquals("spectrum 3", titles.get(1));
+        Assert.assertEquals("spectrum 4", titles.get(2));
+
+        HashMap<String, String[]> clusters = SpectrumClusterer.readClusterFile(SpectrumClusterer.getClusterFile(folder, mgfFile));
+        Assert.assertEquals(1, clusters.size());
+        Assert.assertArrayEquals(new String[]{"spectrum 2"}, clusters.get("spectrum 1"));
+    }
+
+    /**
+     * Tests that every member of a cluster gets a spectrum match when the
+     * results of the representatives are imported, and that the spectra
+     * without cluster are left untouched.
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    @Test
+    public void testFanOut() throws IOException {
+        new SpectrumClusterer(0.01, 1.0005, 0.9).clusterFile(mgfFile, folder, null);
+
+        LinkedList<SpectrumMatch> spectrumMatches = new LinkedList<SpectrumMatch>();
+        spectrumMatches.add(new SpectrumMatch(Spectrum.getSpectrumKey(mgfFile.getName(), "spectrum 1")));
+        spectrumMatches.add(new SpectrumMatch(Spectrum.getSpectrumKey(mgfFile.getName(), "spectrum 3")));
+        spectrumMatches.add(new SpectrumMatch(Spectrum.getSpectrumKey("other.mgf", "spectrum 1")));
+
+        LinkedList<SpectrumMatch> result = SpectrumClusterer.fanOut(spectrumMatches, folder);
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals(Spectrum.getSpectrumKey(mgfFile.getName(), "spectrum 2"), result.getLast().getKey());
+    }
+}
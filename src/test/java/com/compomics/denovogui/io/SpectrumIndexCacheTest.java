@@ -0,0 +1,143 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that the spectrum index cache reuses the indexes of the current
+ * version only.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumIndexCacheTest {
+
+    /**
+     * The length of the header of the index files: magic number, version,
+     * size, modification date, hash length and SHA-1 hash.
+     */
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + 1 + 20;
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+    /**
+     * The cache folder used before the test.
+     */
+    private String previousCacheFolder;
+
+    /**
+     * Creates a temporary folder and uses it as cache.
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("spectrum_index_cache");
+        previousCacheFolder = SpectrumIndexCache.getCacheFolderPath();
+        SpectrumIndexCache.setCacheFolder(new File(folder, "cache").getAbsolutePath());
+    }
+
+    /**
+     * Restores the cache folder and deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        SpectrumIndexCache.setCacheFolder(previousCacheFolder);
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests that a cached index is reused when its version is current and
+     * that an index of another version is replaced by a new index.
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    @Test
+    public void testVersion() throws IOException {
+        File mgfFile = new File(folder, "a.mgf");
+        TestFiles.writeLines(mgfFile, "BEGIN IONS", "TITLE=a1", "PEPMASS=401.1", "100.1 10", "END IONS");
+        File otherMgfFile = new File(folder, "b.mgf");
+        TestFiles.writeLines(otherMgfFile,
+                "BEGIN IONS", "TITLE=b1", "PEPMASS=501.1", "100.1 10", "END IONS",
+                "BEGIN IONS", "TITLE=b2", "PEPMASS=502.1", "100.1 10", "END IONS");
+
+        Assert.assertEquals(1, SpectrumIndexCache.getIndex(mgfFile).getNSpectra());
+        File indexFile = getIndexFile();
+        Assert.assertEquals(2, SpectrumIndexCache.getIndex(otherMgfFile).getNSpectra());
+        File otherIndexFile = getIndexFile(indexFile);
+
+        // an index of the current version is read from the cache: give the mgf file the spectra of the other file
+        byte[] header = Arrays.copyOf(Files.readAllBytes(indexFile.toPath()), HEADER_LENGTH);
+        byte[] otherIndex = Files.readAllBytes(otherIndexFile.toPath());
+        System.arraycopy(header, 0, otherIndex, 0, HEADER_LENGTH);
+        Files.write(indexFile.toPath(), otherIndex);
+        Assert.assertEquals(2, SpectrumIndexCache.getIndex(mgfFile).getNSpectra());
+
+        // an index of another version is ignored and replaced
+        RandomAccessFile raf = new RandomAccessFile(indexFile, "rw");
+        try {
+            raf.seek(4);
+            raf.writeInt(SpectrumIndexCache.VERSION + 1);
+        } finally {
+            raf.close();
+        }
+        SpectrumIndex index = SpectrumIndexCache.getIndex(mgfFile);
+        Assert.assertEquals(1, index.getNSpectra());
+        Assert.assertEquals("a1", index.getTitle(0));
+        raf = new RandomAccessFile(indexFile, "r");
+        try {
+            raf.seek(4);
+            Assert.assertEquals(SpectrumIndexCache.VERSION, raf.readInt());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Tests that a modified mgf file gets a new index.
+     *
+     * @throws IOException thrown if the files cannot be read or written
+     */
+    @Test
+    public void testModifiedFile() throws IOException {
+        File mgfFile = new File(folder, "a.mgf");
+        TestFiles.writeLines(mgfFile, "BEGIN IONS", "TITLE=a1", "PEPMASS=401.1", "100.1 10", "END IONS");
+        Assert.assertEquals(1, SpectrumIndexCache.getIndex(mgfFile).getNSpectra());
+        File indexFile = getIndexFile();
+
+        TestFiles.writeLines(mgfFile,
+                "BEGIN IONS", "TITLE=a1", "PEPMASS=401.1", "100.1 10", "END IONS",
+                "BEGIN IONS", "TITLE=a2", "PEPMASS=402.1", "100.1 10", "END IONS");
+        Assert.assertEquals(2, SpectrumIndexCache.getIndex(mgfFile).getNSpectra());
+        Assert.assertTrue(getIndexFile(indexFile).exists());
+    }
+
+    /**
+     * Returns the only index file of the cache folder other than the given
+     * files.
+     *
+     * @param excluded the index files to ignore
+     *
+     * @return the index file
+     */
+    private static File getIndexFile(File... excluded) {
+        File result = null;
+        for (File file : SpectrumIndexCache.getCacheFolder().listFiles()) {
+            if (file.getName().endsWith(SpectrumIndexCache.INDEX_EXTENSION) && !Arrays.asList(excluded).contains(file)) {
+                Assert.assertNull(result);
+                result = file;
+            }
+        }
+        Assert.assertNotNull(result);
+        return result;
+    }
+}
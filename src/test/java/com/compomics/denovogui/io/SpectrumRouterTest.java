@@ -0,0 +1,146 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the parsing of the routing rules and the routing of the spectra.
+ *
+ * @author Marc Vaudel
+ */
+public class SpectrumRouterTest {
+
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+    /**
+     * The test mgf file.
+     */
+    private File mgfFile;
+
+    /**
+     * Writes the test mgf file: a doubly charged HCD spectrum with three
+     * peaks, a triply charged CID spectrum with one peak, a spectrum with two
+     * possible charges and a spectrum without metadata.
+     *
+     * @throws IOException thrown if the file cannot be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("spectrum_router");
+        mgfFile = new File(folder, "test.mgf");
+        TestFiles.writeLines(mgfFile,
+                "BEGIN IONS", "TITLE=spectrum 1 HCD", "PEPMASS=450.5 1000", "CHARGE=2+", "RTINSECONDS=120.5",
+                "100.1 10", "200.2 20", "300.3 30", "END IONS", "",
+                "BEGIN IONS", "TITLE=spectrum 2 CID", "PEPMASS=700.5", "CHARGE=3+", "RTINSECONDS=600",
+                "100.1 10", "END IONS", "",
+                "BEGIN IONS", "TITLE=spectrum 3 CID", "PEPMASS=900.5", "CHARGE=2+ and 3+",
+                "100.1 10", "200.2 20", "END IONS", "",
+                "BEGIN IONS", "100.1 10", "END IONS");
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests the parsing of the rules of several algorithms.
+     */
+    @Test
+    public void testParse() {
+        SpectrumRouter spectrumRouter = SpectrumRouter.parse("PepNovo = charge:1-3, peaks:20- ;novor=title:.*HCD.*;pnovo=");
+        Assert.assertEquals(3, spectrumRouter.getAlgorithms().size());
+        Assert.assertTrue(spectrumRouter.isRouting("pepnovo"));
+        Assert.assertTrue(spectrumRouter.isRouting("novor"));
+        Assert.assertFalse(spectrumRouter.isRouting("pnovo"));
+        Assert.assertFalse(spectrumRouter.isRouting("direcTag"));
+        Assert.assertEquals("charge:1-3,peaks:20-", spectrumRouter.toString("pepnovo"));
+        Assert.assertEquals("title:.*HCD.*", spectrumRouter.toString("novor"));
+        Assert.assertEquals("", spectrumRouter.toString("direcTag"));
+    }
+
+    /**
+     * Tests that a routing without algorithm is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMissingAlgorithm() {
+        SpectrumRouter.parse("charge:1-3");
+    }
+
+    /**
+     * Tests that a rule without property is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseMissingProperty() {
+        SpectrumRouter.parse("pepnovo=1-3");
+    }
+
+    /**
+     * Tests that a rule on an unknown property is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseUnknownProperty() {
+        SpectrumRouter.parse("pepnovo=intensity:1-3");
+    }
+
+    /**
+     * Tests that a range which is not numeric is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidRange() {
+        SpectrumRouter.parse("pepnovo=mz:low-800");
+    }
+
+    /**
+     * Tests that an invalid title pattern is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseInvalidPattern() {
+        SpectrumRouter.parse("novor=title:(HCD");
+    }
+
+    /**
+     * Tests the spectra excluded by every property, the spectra without the
+     * value of a rule matching the rule.
+     *
+     * @throws IOException thrown if the mgf file cannot be read
+     */
+    @Test
+    public void testGetExcluded() throws IOException {
+        Assert.assertEquals(getBitSet(1), SpectrumRouter.parse("a=charge:2").getExcluded("a", mgfFile));
+        Assert.assertEquals(getBitSet(0), SpectrumRouter.parse("a=charge:3-").getExcluded("a", mgfFile));
+        Assert.assertEquals(getBitSet(0, 2), SpectrumRouter.parse("a=mz:500-800").getExcluded("a", mgfFile));
+        Assert.assertEquals(getBitSet(1, 3), SpectrumRouter.parse("a=peaks:2-").getExcluded("a", mgfFile));
+        Assert.assertEquals(getBitSet(1), SpectrumRouter.parse("a=rt:-300").getExcluded("a", mgfFile));
+        Assert.assertEquals(getBitSet(1, 2), SpectrumRouter.parse("a=title:HCD").getExcluded("a", mgfFile));
+        Assert.assertEquals(getBitSet(1, 2, 3), SpectrumRouter.parse("a=title:HCD,peaks:2-").getExcluded("a", mgfFile));
+        Assert.assertTrue(SpectrumRouter.parse("a=charge:2").getExcluded("b", mgfFile).isEmpty());
+    }
+
+    /**
+     * Returns a bit set with the given bits set.
+     *
+     * @param indexes the indexes of the bits to set
+     *
+     * @return the bit set
+     */
+    private static BitSet getBitSet(int... indexes) {
+        BitSet result = new BitSet();
+        for (int index : indexes) {
+            result.set(index);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import com.compomics.util.experiment.identification.identification_parameters.SearchParameters;
+import com.compomics.util.preferences.SequenceMatchingPreferences;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the headless export of the de novo results.
+ *
+ * @author Marc Vaudel
+ */
+public class StreamingExporterTest {
+
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+    /**
+     * The exporter tested.
+     */
+    private StreamingExporter streamingExporter;
+
+    /**
+     * Creates a temporary folder and the exporter.
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("streaming_exporter");
+        streamingExporter = new StreamingExporter(new SearchParameters(), SequenceMatchingPreferences.getDefaultSequenceMatching(), 0, true, 5);
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests that the exports are written with their headers only when no
+     * result file is exported.
+     *
+     * @throws IOException thrown if the exports cannot be written or read
+     */
+    @Test
+    public void testHeaders() throws IOException {
+        File peptidesFile = new File(folder, "peptides.txt");
+        File tagsFile = new File(folder, "tags.txt");
+        File blastFile = new File(folder, "blast.txt");
+        streamingExporter.open(peptidesFile, tagsFile, blastFile);
+        streamingExporter.close();
+
+        ArrayList<String> lines = TestFiles.readLines(peptidesFile);
+        Assert.assertEquals(1, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("File Name\tSpectrum Title\t"));
+        Assert.assertTrue(lines.get(0).contains("\tPeptide\t"));
+        lines = TestFiles.readLines(tagsFile);
+        Assert.assertEquals(1, lines.size());
+        Assert.assertTrue(lines.get(0).startsWith("File Name\tSpectrum Title\t"));
+        Assert.assertTrue(lines.get(0).contains("\tTag\t"));
+        Assert.assertTrue(TestFiles.readLines(blastFile).isEmpty());
+
+        Assert.assertEquals(0, streamingExporter.getNSpectra());
+        Assert.assertFalse(streamingExporter.isPeptideFound());
+    }
+
+    /**
+     * Tests that the exports not requested are not written.
+     *
+     * @throws IOException thrown if the exports cannot be written
+     */
+    @Test
+    public void testNoExport() throws IOException {
+        File peptidesFile = new File(folder, "peptides.txt");
+        streamingExporter.open(peptidesFile, null, null);
+        streamingExporter.close();
+        Assert.assertTrue(peptidesFile.exists());
+        Assert.assertEquals(1, folder.listFiles().length);
+    }
+
+    /**
+     * Tests that a result file of unknown format is rejected.
+     *
+     * @throws Exception thrown if the result file cannot be exported
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownResultFile() throws Exception {
+        File resultFile = new File(folder, "results.xyz");
+        TestFiles.writeLines(resultFile, "not a de novo result");
+        streamingExporter.open(null, null, null);
+        try {
+            streamingExporter.export(resultFile, null);
+        } finally {
+            streamingExporter.close();
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.compomics.denovogui.io;
+
+import com.compomics.denovogui.TestFiles;
+import com.compomics.util.Util;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the indexing of mzML and mzXML files and the decoding of their binary
+ * arrays.
+ *
+ * @author Marc Vaudel
+ */
+public class XmlSpectrumFileTest {
+
+    /**
+     * The m/z values of the test spectra, the last one needs 64-bit
+     * precision.
+     */
+    private static final double[] MZ = new double[]{100.5, 200.25, 300.123456789};
+    /**
+     * The intensities of the test spectra.
+     */
+    private static final double[] INTENSITIES = new double[]{1000, 20.5, 3};
+    /**
+     * The temporary folder of the test.
+     */
+    private File folder;
+
+    /**
+     * Creates a temporary folder.
+     *
+     * @throws IOException thrown if the folder cannot be created
+     */
+    @Before
+    public void setUp() throws IOException {
+        folder = TestFiles.createTempFolder("xml_spectrum_file");
+    }
+
+    /**
+     * Deletes the temporary folder.
+     */
+    @After
+    public void tearDown() {
+        Util.deleteDir(folder);
+    }
+
+    /**
+     * Tests that the MS2 spectra of an mzML file are indexed, the MS1 spectra
+     * skipped, and that the 32 and 64-bit arrays are decoded with and without
+     * zlib compression.
+     *
+     * @throws IOException thrown if the file cannot be written or parsed
+     */
+    @Test
+    public void testMzMl() throws IOException {
+        StringBuilder mzMl = new StringBuilder();
+        mzMl.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<mzML>\n<referenceableParamGroupList count=\"1\">\n");
+        mzMl.append("<referenceableParamGroup id=\"ms2\">\n").append(getCvParam("MS:1000511", "2", null)).append("</referenceableParamGroup>\n");
+        mzMl.append("</referenceableParamGroupList>\n<run>\n<spectrumList count=\"3\">\n");
+        mzMl.append("<spectrum index=\"0\" id=\"scan=1\" defaultArrayLength=\"3\">\n").append(getCvParam("MS:1000511", "1", null));
+        mzMl.append(getMzMlArrays(false, false, true, true)).append("</spectrum>\n");
+        mzMl.append("<spectrum index=\"1\" id=\"scan=2\" defaultArrayLength=\"3\">\n<referenceableParamGroupRef ref=\"ms2\"/>\n");
+        mzMl.append(getCvParam("MS:1000016", "1.5", "UO:0000031"));
+        mzMl.append("<precursorList count=\"1\">\n<precursor>\n<selectedIonList count=\"1\">\n<selectedIon>\n");
+        mzMl.append(getCvParam("MS:1000744", "445.12", null)).append(getCvParam("MS:1000041", "2", null));
+        mzMl.append("</selectedIon>\n</selectedIonList>\n</precursor>\n</precursorList>\n");
+        mzMl.append(getMzMlArrays(true, false, false, true)).append("</spectrum>\n");
+        mzMl.append("<spectrum index=\"2\" id=\"scan=3\" defaultArrayLength=\"3\">\n").append(getCvParam("MS:1000511", "2", null));
+        mzMl.append("<precursorList count=\"1\">\n<precursor>\n<isolationWindow>\n").append(getCvParam("MS:1000827", "512.5", null));
+        mzMl.append("</isolationWindow>\n</precursor>\n</precursorList>\n");
+        mzMl.append(getMzMlArrays(true, true, false, false)).append("</spectrum>\n");
+        mzMl.append("</spectrumList>\n</run>\n</mzML>\n");
+        File mzMlFile = new File(folder, "test.mzML");
+        TestFiles.write(mzMlFile, mzMl.toString());
+
+        Assert.assertTrue(XmlSpectrumFile.isXmlSpectrumFile(mzMlFile));
+        XmlSpectrumFile xmlSpectrumFile = new XmlSpectrumFile(mzMlFile, null);
+        Assert.assertEquals(2, xmlSpectrumFile.getNSpectra());
+        Assert.assertEquals("scan=2", xmlSpectrumFile.getSpectrumTitle(0));
+        Assert.assertEquals("scan=3", xmlSpectrumFile.getSpectrumTitle(1));
+        Assert.assertEquals(445.12, xmlSpectrumFile.getPrecursorMz(0), 0);
+        Assert.assertEquals(512.5, xmlSpectrumFile.getPrecursorMz(1), 0);
+        Assert.assertEquals(2, xmlSpectrumFile.getPrecursorCharge(0));
+        Assert.assertEquals(0, xmlSpectrumFile.getPrecursorCharge(1));
+        Assert.assertEquals(3, xmlSpectrumFile.getPeakCount(0));
+
+        // 64-bit m/z, zlib compressed 32-bit intensities
+        StringWriter writer = new StringWriter();
+        xmlSpectrumFile.writeSpectrum(0, writer);
+        Assert.assertEquals("BEGIN IONS\nTITLE=scan=2\nPEPMASS=445.12\nCHARGE=2+\nRTINSECONDS=90.0\n"
+                + "100.5 1000.0\n200.25 20.5\n300.123456789 3.0\nEND IONS\n\n", writer.toString());
+
+        // zlib compressed 64-bit m/z, 64-bit intensities
+        writer = new StringWriter();
+        xmlSpectrumFile.writeSpectrum(1, writer);
+        Assert.assertEquals("BEGIN IONS\nTITLE=scan=3\nPEPMASS=512.5\n"
+                + "100.5 1000.0\n200.25 20.5\n300.123456789 3.0\nEND IONS\n\n", writer.toString());
+    }
+
+    /**
+     * Tests that the nested scans of an mzXML file are indexed and that the
+     * big and little endian arrays are decoded with and without zlib
+     * compression.
+     *
+     * @throws IOException thrown if the file cannot be written or parsed
+     */
+    @Test
+    public void testMzXml() throws IOException {
+        StringBuilder mzXml = new StringBuilder();
+        mzXml.append("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<mzXML>\n<msRun scanCount=\"3\">\n");
+        mzXml.append("<scan num=\"1\" msLevel=\"1\" peaksCount=\"3\" retentionTime=\"PT1M30S\">\n");
+        mzXml.append(getMzXmlPeaks(false, false, ByteOrder.BIG_ENDIAN));
+        mzXml.append("<scan num=\"2\" msLevel=\"2\" peaksCount=\"3\" retentionTime=\"PT91.5S\">\n");
+        mzXml.append("<precursorMz precursorCharge=\"3\">445.12</precursorMz>\n");
+        mzXml.append(getMzXmlPeaks(false, false, ByteOrder.BIG_ENDIAN)).append("</scan>\n");
+        mzXml.append("<scan num=\"3\" msLevel=\"2\" peaksCount=\"3\" retentionTime=\"PT92S\">\n");
+        mzXml.append("<precursorMz>512.5</precursorMz>\n");
+        mzXml.append(getMzXmlPeaks(true, true, ByteOrder.LITTLE_ENDIAN)).append("</scan>\n");
+        mzXml.append("</scan>\n</msRun>\n</mzXML>\n");
+        File mzXmlFile = new File(folder, "test.mzXML");
+        TestFiles.write(mzXmlFile, mzXml.toString());
+
+        XmlSpectrumFile xmlSpectrumFile = new XmlSpectrumFile(mzXmlFile, null);
+        Assert.assertEquals(2, xmlSpectrumFile.getNSpectra());
+        Assert.assertEquals("scan=2", xmlSpectrumFile.getSpectrumTitle(0));
+        Assert.assertEquals("scan=3", xmlSpectrumFile.getSpectrumTitle(1));
+        Assert.assertEquals(3, xmlSpectrumFile.getPrecursorCharge(0));
+        Assert.assertEquals(512.5, xmlSpectrumFile.getPrecursorMz(1), 0);
+
+        // 32-bit network order pairs, the last m/z loses its 64-bit precision
+        StringWriter writer = new StringWriter();
+        xmlSpectrumFile.writeSpectrum(0, writer);
+        Assert.assertEquals("BEGIN IONS\nTITLE=scan=2\nPEPMASS=445.12\nCHARGE=3+\nRTINSECONDS=91.5\n"
+                + "100.5 1000.0\n200.25 20.5\n" + (float) MZ[2] + " 3.0\nEND IONS\n\n", writer.toString());
+
+        // zlib compressed 64-bit little endian pairs
+        writer = new StringWriter();
+        xmlSpectrumFile.writeSpectrum(1, writer);
+        Assert.assertEquals("BEGIN IONS\nTITLE=scan=3\nPEPMASS=512.5\nRTINSECONDS=92.0\n"
+                + "100.5 1000.0\n200.25 20.5\n300.123456789 3.0\nEND IONS\n\n", writer.toString());
+    }
+
+    /**
+     * Tests that the unsupported MS-Numpress compression is reported.
+     *
+     * @throws IOException thrown if the file cannot be written or parsed
+     */
+    @Test(expected = IOException.class)
+    public void testNumpress() throws IOException {
+        StringBuilder mzMl = new StringBuilder();
+        mzMl.append("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<mzML>\n<run>\n<spectrumList count=\"1\">\n");
+        mzMl.append("<spectrum index=\"0\" id=\"scan=1\" defaultArrayLength=\"0\">\n").append(getCvParam("MS:1000511", "2", null));
+        mzMl.append("<binaryDataArrayList count=\"1\">\n<binaryDataArray encodedLength=\"0\">\n");
+        mzMl.append(getCvParam("MS:1002312", null, null)).append(getCvParam("MS:1000514", null, null));
+        mzMl.append("<binary></binary>\n</binaryDataArray>\n</binaryDataArrayList>\n");
+        mzMl.append("</spectrum>\n</spectrumList>\n</run>\n</mzML>\n");
+        File mzMlFile = new File(folder, "numpress.mzML");
+        TestFiles.write(mzMlFile, mzMl.toString());
+
+        XmlSpectrumFile xmlSpectrumFile = new XmlSpectrumFile(mzMlFile, null);
+        xmlSpectrumFile.writeSpectrum(0, new StringWriter());
+    }
+
+    /**
+     * Returns an mzML cv param element.
+     *
+     * @param accession the accession
+     * @param value the value, can be null
+     * @param unitAccession the unit accession, can be null
+     *
+     * @return the cv param element
+     */
+    private static String getCvParam(String accession, String value, String unitAccession) {
+        StringBuilder cvParam = new StringBuilder("<cvParam cvRef=\"MS\" accession=\"").append(accession).append("\"");
+        if (value != null) {
+            cvParam.append(" value=\"").append(value).append("\"");
+        }
+        if (unitAccession != null) {
+            cvParam.append(" unitAccession=\"").append(unitAccession).append("\"");
+        }
+        return cvParam.append("/>\n").toString();
+    }
+
+    /**
+     * Returns the binary data array list of an mzML spectrum.
+     *
+     * @param mz64Bit true to encode the m/z values with 64-bit floats
+     * @param mzZlib true to compress the m/z values
+     * @param intensity64Bit true to encode the intensities with 64-bit
+     * floats
+     * @param intensityZlib true to compress the intensities
+     *
+     * @return the binary data array list
+     */
+    private static String getMzMlArrays(boolean mz64Bit, boolean mzZlib, boolean intensity64Bit, boolean intensityZlib) {
+        StringBuilder arrays = new StringBuilder("<binaryDataArrayList count=\"2\">\n");
+        arrays.append(getMzMlArray(MZ, "MS:1000514", mz64Bit, mzZlib));
+        arrays.append(getMzMlArray(INTENSITIES, "MS:1000515", intensity64Bit, intensityZlib));
+        return arrays.append("</binaryDataArrayList>\n").toString();
+    }
+
+    /**
+     * Returns an mzML binary data array.
+     *
+     * @param values the values
+     * @param arrayType the accession of the array type
+     * @param is64Bit true to encode the values with 64-bit floats
+     * @param zlib true to compress the values
+     *
+     * @return the binary data array
+     */
+    private static String getMzMlArray(double[] values, String arrayType, boolean is64Bit, boolean zlib) {
+        StringBuilder array = new StringBuilder("<binaryDataArray encodedLength=\"0\">\n");
+        array.append(getCvParam(is64Bit ? "MS:1000523" : "MS:1000521", null, null));
+        if (zlib) {
+            array.append(getCvParam("MS:1000574", null, null));
+        }
+        array.append(getCvParam(arrayType, null, null));
+        array.append("<binary>").append(encode(values, is64Bit, zlib, ByteOrder.LITTLE_ENDIAN)).append("</binary>\n");
+        return array.append("</binaryDataArray>\n").toString();
+    }
+
+    /**
+     * Returns the peaks element of an mzXML scan.
+     *
+     * @param is64Bit true to encode the values with 64-bit floats
+     * @param zlib true to compress the values
+     * @param byteOrder the byte order
+     *
+     * @return the peaks element
+     */
+    private static String getMzXmlPeaks(boolean is64Bit, boolean zlib, ByteOrder byteOrder) {
+        double[] pairs = new double[2 * MZ.length];
+        for (int i = 0; i < MZ.length; i++) {
+            pairs[2 * i] = MZ[i];
+            pairs[2 * i + 1] = INTENSITIES[i];
+        }
+        StringBuilder peaks = new StringBuilder("<peaks precision=\"").append(is64Bit ? 64 : 32).append("\"");
+        peaks.append(" byteOrder=\"").append(byteOrder == ByteOrder.BIG_ENDIAN ? "network" : "little").append("\"");
+        if (zlib) {
+            peaks.append(" compressionType=\"zlib\"");
+        }
+        peaks.append(">").append(encode(pairs, is64Bit, zlib, byteOrder)).append("</peaks>\n");
+        return peaks.toString();
+    }
+
+    /**
+     * Encodes values in base64.
+     *
+     * @param values the values
+     * @param is64Bit true to encode the values with 64-bit floats
+     * @param zlib true to compress the values
+     * @param byteOrder the byte order
+     *
+     * @return the base64 text
+     */
+    private static String encode(double[] values, boolean is64Bit, boolean zlib, ByteOrder byteOrder) {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(values.length * (is64Bit ? 8 : 4)).order(byteOrder);
+        for (double value : values) {
+            if (is64Bit) {
+                byteBuffer.putDouble(value);
+            } else {
+                byteBuffer.putFloat((float) value);
+            }
+        }
+        byte[] bytes = byteBuffer.array();
+        if (zlib) {
+            Deflater deflater = new Deflater();
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            deflater.end();
+            bytes = compressed.toByteArray();
+        }
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}